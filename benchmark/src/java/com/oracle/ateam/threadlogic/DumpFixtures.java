@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.oracle.ateam.threadlogic.parsers.DumpParser;
+import com.oracle.ateam.threadlogic.parsers.DumpParserFactory;
+
+/**
+ * the dumps the benchmarks run on, generated by the {@link DumpGenerator} with
+ * a fixed seed, so every run measures the same dumps. The sizes are a small
+ * dump, a typical WebLogic dump (800 threads) and an extreme one (20k
+ * threads).
+ */
+public class DumpFixtures {
+
+  public static final String SMALL = "small";
+  public static final String WEBLOGIC = "weblogic";
+  public static final String EXTREME = "extreme";
+
+  private static final long SEED = 42;
+
+  /**
+   * @return the number of threads of a dump of the given size.
+   */
+  public static int getThreads(String size) {
+    if (SMALL.equals(size)) {
+      return 50;
+    } else if (WEBLOGIC.equals(size)) {
+      return 800;
+    } else if (EXTREME.equals(size)) {
+      return 20000;
+    }
+    throw new IllegalArgumentException("Unknown fixture size: " + size);
+  }
+
+  public static int getVendor(String vendor) {
+    for (int i = 0; i < DumpGenerator.VENDORS.length; i++) {
+      if (DumpGenerator.VENDORS[i].equals(vendor)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Unknown vendor: " + vendor);
+  }
+
+  /**
+   * generate the given number of dumps into a single log, the dumps have a
+   * few contended locks and a single deadlock.
+   */
+  public static byte[] generate(String vendor, String size, int dumps) throws IOException {
+    DumpGenerator generator = new DumpGenerator();
+    generator.setVendor(getVendor(vendor));
+    generator.setThreads(getThreads(size));
+    generator.setStackDepth(30);
+    generator.setContentionRate(0.05);
+    generator.setDeadlocks(1);
+    generator.setDumps(dumps);
+    generator.setSeed(SEED);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Writer out = new OutputStreamWriter(bytes, Charset.defaultCharset());
+    generator.writeDumps(out);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  public static LineNumberReader createReader(byte[] log) throws IOException {
+    return DumpParserFactory.get().createLineReader(new ByteArrayInputStream(log));
+  }
+
+  /**
+   * @return the parser the dump factory picks for the log.
+   */
+  public static DumpParser createParser(byte[] log, Map dumpStore) throws IOException {
+    DumpParser dp = DumpParserFactory.get().getDumpParserForLogfile(createReader(log), dumpStore, false, 1);
+    if (dp == null) {
+      throw new IllegalStateException("No parser found for the generated log");
+    }
+    return dp;
+  }
+
+  /**
+   * parse the analysis model of the first dump of the log.
+   */
+  public static ThreadDumpInfo parseModel(byte[] log) throws IOException {
+    DumpParser dp = createParser(log, new HashMap());
+    try {
+      return dp.parseNextModel();
+    } finally {
+      dp.close();
+    }
+  }
+
+  public static String[] readLines(byte[] log) throws IOException {
+    ArrayList<String> lines = new ArrayList<String>();
+    LineNumberReader reader = createReader(log);
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      reader.close();
+    }
+    return lines.toArray(new String[lines.size()]);
+  }
+
+  /**
+   * stop the advisory pool of the dumps, so the benchmark vm can exit.
+   */
+  public static void shutdown() {
+    ThreadDumpInfo.shutdownExecutor();
+  }
+}
@@ -0,0 +1,1120 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic thread dumps of a WebLogic like server for the supported
+ * vm vendors (HotSpot, OpenJDK, JRockit, IBM javacore and HotSpot dumps
+ * prefixed by the Tanuki service wrapper), e.g. to check the parsers and the
+ * analysis against large dumps. The threads of all dumps are the same, their
+ * state changes from dump to dump. Some threads are blocked on a few hot
+ * locks, injected deadlocks are kept over all dumps. Everything is derived
+ * from the seed, the same settings always write the same dumps.
+ *
+ * Usage: DumpGenerator [-vendor name] [-threads n] [-depth n] [-contention rate]
+ * [-deadlocks n] [-dumps n] [-seed n] -out file
+ *
+ * It is built with the benchmarks ("ant benchmark-build") and not shipped.
+ */
+public class DumpGenerator {
+
+  public static final int HOTSPOT = 0;
+  public static final int OPENJDK = 1;
+  public static final int JROCKIT = 2;
+  public static final int IBM = 3;
+  public static final int WRAPPED = 4;
+
+  public static final String[] VENDORS = { "hotspot", "openjdk", "jrockit", "ibm", "wrapped" };
+
+  // thread states
+  private static final int RUNNABLE = 0;
+  private static final int BLOCKED = 1;
+  private static final int WAITING = 2;
+  private static final int TIMED_WAITING = 3;
+  private static final int PARKED = 4;
+  private static final int SLEEPING = 5;
+
+  // kinds of lock lines
+  private static final int LOCKED = 0;
+  private static final int WAITING_TO_LOCK = 1;
+  private static final int WAITING_ON = 2;
+  private static final int PARKING = 3;
+
+  // kinds of threads
+  private static final int SYSTEM = 0;
+  private static final int EXECUTE_THREAD = 1;
+  private static final int POOL_THREAD = 2;
+  private static final int TIMER_THREAD = 3;
+
+  private static final String EXECUTE_QUEUE = "' for queue: 'weblogic.kernel.Default (self-tuning)'";
+  private static final String WRAPPER_PREFIX = "INFO   | jvm 1    | ";
+
+  private static final Frame OBJECT_WAIT_NATIVE = new Frame("java.lang.Object", "wait", null);
+  private static final Frame OBJECT_WAIT = new Frame("java.lang.Object", "wait", "Object.java:485");
+  private static final Frame THREAD_SLEEP = new Frame("java.lang.Thread", "sleep", null);
+  private static final Frame THREAD_RUN = new Frame("java.lang.Thread", "run", "Thread.java:662");
+  private static final Frame UNSAFE_PARK = new Frame("sun.misc.Unsafe", "park", null);
+  private static final Frame LOCK_SUPPORT_PARK = new Frame("java.util.concurrent.locks.LockSupport", "park",
+      "LockSupport.java:156");
+  private static final Frame CONDITION_AWAIT = new Frame(
+      "java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject", "await",
+      "AbstractQueuedSynchronizer.java:1987");
+  private static final Frame[] SOCKET_READ = {
+      new Frame("java.net.SocketInputStream", "socketRead0", null),
+      new Frame("java.net.SocketInputStream", "read", "SocketInputStream.java:129"),
+      new Frame("oracle.net.ns.Packet", "receive", "Packet.java:300"),
+      new Frame("oracle.jdbc.driver.T4CPreparedStatement", "executeForDescribe", "T4CPreparedStatement.java:774") };
+  private static final Frame[] EXECUTE_IDLE = {
+      new Frame("weblogic.work.ExecuteThread", "waitForRequest", "ExecuteThread.java:205"),
+      new Frame("weblogic.work.ExecuteThread", "run", "ExecuteThread.java:226") };
+  private static final Frame[] EXECUTE_BOTTOM = {
+      new Frame("javax.servlet.http.HttpServlet", "service", "HttpServlet.java:820"),
+      new Frame("weblogic.servlet.internal.ServletStubImpl", "execute", "ServletStubImpl.java:227"),
+      new Frame("weblogic.servlet.internal.WebAppServletContext$ServletInvocationAction", "run",
+          "WebAppServletContext.java:3715"),
+      new Frame("weblogic.work.ExecuteThread", "execute", "ExecuteThread.java:256"),
+      new Frame("weblogic.work.ExecuteThread", "run", "ExecuteThread.java:221") };
+  private static final Frame[] POOL_IDLE = {
+      new Frame("java.util.concurrent.LinkedBlockingQueue", "take", "LinkedBlockingQueue.java:399"),
+      new Frame("java.util.concurrent.ThreadPoolExecutor", "getTask", "ThreadPoolExecutor.java:947"),
+      new Frame("java.util.concurrent.ThreadPoolExecutor$Worker", "run", "ThreadPoolExecutor.java:907"),
+      THREAD_RUN };
+  private static final Frame[] POOL_BOTTOM = {
+      new Frame("java.util.concurrent.ThreadPoolExecutor$Worker", "runTask", "ThreadPoolExecutor.java:885"),
+      new Frame("java.util.concurrent.ThreadPoolExecutor$Worker", "run", "ThreadPoolExecutor.java:907"),
+      THREAD_RUN };
+  private static final Frame[] TIMER_IDLE = {
+      new Frame("java.util.TimerThread", "mainLoop", "Timer.java:509"),
+      new Frame("java.util.TimerThread", "run", "Timer.java:462") };
+  private static final Frame POOL_RESERVE = new Frame("com.acme.pool.ConnectionPool", "reserve",
+      "ConnectionPool.java:214");
+
+  private static final String[] PACKAGES = { "com.acme.order", "com.acme.billing", "com.acme.inventory",
+      "com.acme.customer", "com.acme.shipping", "com.acme.catalog" };
+  private static final String[] CLASS_SUFFIXES = { "Service", "ServiceBean", "Dao", "Manager", "Handler", "Facade",
+      "Validator", "Servlet" };
+  private static final String[] METHODS = { "process", "lookup", "update", "find", "execute", "handle", "load",
+      "save", "validate", "refresh", "doGet", "doPost" };
+
+  private static final String[][] HOT_LOCKS = { { "com.acme.cache.RegionCache", "get" },
+      { "java.util.Hashtable", "put" }, { "com.acme.pool.ConnectionPool", "getConnection" },
+      { "com.acme.session.SessionRegistry", "lookup" }, { "com.acme.log.AuditLogger", "write" } };
+  private static final String[][] DEADLOCK_LOCKS = { { "com.acme.order.OrderLedger", "post" },
+      { "com.acme.billing.AccountBook", "transfer" } };
+
+  private int vendor = HOTSPOT;
+  private int threads = 100;
+  private int stackDepth = 20;
+  private double contentionRate = 0.05;
+  private int deadlocks = 0;
+  private int dumps = 1;
+  private long seed = 0;
+  private long startTime = 1333620672000L;
+  private long dumpInterval = 30000;
+
+  // the threads and locks shared by all dumps, created on first use
+  private ThreadModel[] model;
+  private Lock[] hotLocks;
+  private Lock poolCondition;
+  private long nextAddress;
+
+  /**
+   * @param vendor
+   *          one of HOTSPOT, OPENJDK, JROCKIT, IBM or WRAPPED.
+   */
+  public void setVendor(int vendor) {
+    if (vendor < HOTSPOT || vendor > WRAPPED) {
+      throw new IllegalArgumentException("Unknown vendor: " + vendor);
+    }
+    this.vendor = vendor;
+    model = null;
+  }
+
+  /**
+   * @param threads
+   *          the number of java threads of every dump, the internal vm threads
+   *          are added.
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("At least one thread is needed: " + threads);
+    }
+    this.threads = threads;
+    model = null;
+  }
+
+  /**
+   * @param stackDepth
+   *          the max number of frames of a busy thread, idle threads have
+   *          shorter stacks.
+   */
+  public void setStackDepth(int stackDepth) {
+    this.stackDepth = Math.max(1, stackDepth);
+    model = null;
+  }
+
+  /**
+   * @param contentionRate
+   *          the share of threads blocked on a hot lock within a dump, between
+   *          0 and 1.
+   */
+  public void setContentionRate(double contentionRate) {
+    if (contentionRate < 0 || contentionRate > 1) {
+      throw new IllegalArgumentException("Contention rate not within 0 and 1: " + contentionRate);
+    }
+    this.contentionRate = contentionRate;
+  }
+
+  /**
+   * @param deadlocks
+   *          the number of deadlocks between two threads each.
+   */
+  public void setDeadlocks(int deadlocks) {
+    this.deadlocks = Math.max(0, deadlocks);
+    model = null;
+  }
+
+  public void setDumps(int dumps) {
+    this.dumps = Math.max(1, dumps);
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+    model = null;
+  }
+
+  /**
+   * @param startTime
+   *          the time of the first dump in milliseconds since the epoch.
+   */
+  public void setStartTime(long startTime) {
+    this.startTime = startTime;
+  }
+
+  /**
+   * @param dumpInterval
+   *          the milliseconds between two dumps.
+   */
+  public void setDumpInterval(long dumpInterval) {
+    this.dumpInterval = dumpInterval;
+  }
+
+  public int getDumps() {
+    return dumps;
+  }
+
+  /**
+   * write all dumps into the given file. As a javacore only contains a single
+   * dump, every IBM dump is written into a file of its own, named like the
+   * given file with the number of the dump added.
+   *
+   * @return the written files.
+   */
+  public ArrayList<File> generate(File file) throws IOException {
+    ArrayList<File> files = new ArrayList<File>();
+    if (vendor == IBM && dumps > 1) {
+      String name = file.getName();
+      int dot = name.lastIndexOf('.');
+      for (int i = 0; i < dumps; i++) {
+        String dumpName = (dot > 0) ? name.substring(0, dot) + "." + (i + 1) + name.substring(dot) : name + "."
+            + (i + 1);
+        File dumpFile = new File(file.getParentFile(), dumpName);
+        Writer out = new BufferedWriter(new FileWriter(dumpFile));
+        try {
+          writeDump(out, i);
+        } finally {
+          out.close();
+        }
+        files.add(dumpFile);
+      }
+    } else {
+      Writer out = new BufferedWriter(new FileWriter(file));
+      try {
+        writeDumps(out);
+      } finally {
+        out.close();
+      }
+      files.add(file);
+    }
+    return files;
+  }
+
+  /**
+   * write all dumps one after the other, for IBM see {@link #generate(File)}.
+   */
+  public void writeDumps(Writer out) throws IOException {
+    for (int i = 0; i < dumps; i++) {
+      writeDump(out, i);
+    }
+  }
+
+  /**
+   * write a single dump, every dump only depends on the settings and its index.
+   *
+   * @param index
+   *          the index of the dump, starting with 0.
+   */
+  public void writeDump(Writer out, int index) throws IOException {
+    if (model == null) {
+      createModel();
+    }
+
+    Random random = new Random(seed ^ ((index + 1) * 0x9E3779B97F4A7C15L));
+    ArrayList<ThreadSnapshot> snapshots = createSnapshots(random);
+    Date time = new Date(startTime + index * dumpInterval);
+
+    PrintWriter pw = new PrintWriter(out);
+    if (vendor == JROCKIT) {
+      writeJrockitDump(pw, snapshots, time);
+    } else if (vendor == IBM) {
+      writeIbmDump(pw, snapshots, time, index);
+    } else {
+      DumpWriter dw = (vendor == WRAPPED) ? new WrappedDumpWriter(pw, time) : new DumpWriter(pw);
+      writeHotspotDump(dw, snapshots, time);
+    }
+    pw.flush();
+    if (pw.checkError()) {
+      throw new IOException("Error writing dump " + (index + 1));
+    }
+  }
+
+  /**
+   * create the threads and locks of all dumps.
+   */
+  private void createModel() {
+    Random random = new Random(seed);
+    nextAddress = 0xe0000000L + (random.nextInt(0x1000) << 4);
+
+    ArrayList<ThreadModel> threadList = new ArrayList<ThreadModel>();
+    String[][] systemThreads = { { "main", "weblogic.t3.srvr.T3Srvr", "waitForDeath" },
+        { "Reference Handler", "java.lang.ref.Reference$Lock", null },
+        { "Finalizer", "java.lang.ref.ReferenceQueue$Lock", null }, { "Signal Dispatcher", null, null } };
+    int system = Math.min(systemThreads.length, threads / 8);
+    for (int i = 0; i < system; i++) {
+      ThreadModel t = createThread(random, i, systemThreads[i][0], SYSTEM, i > 0);
+      t.prio = (i == 1) ? 10 : ((i == 2) ? 8 : (i == 3 ? 9 : 5));
+      if (systemThreads[i][1] != null) {
+        t.waitLock = createLock(systemThreads[i][1], systemThreads[i][2]);
+      }
+      threadList.add(t);
+    }
+
+    int executeCount = 0;
+    int poolCount = 0;
+    int timerCount = 0;
+    for (int i = system; i < threads; i++) {
+      double kind = random.nextDouble();
+      ThreadModel t;
+      if (kind < 0.80) {
+        t = createThread(random, i, "[ACTIVE] ExecuteThread: '" + (executeCount++) + EXECUTE_QUEUE, EXECUTE_THREAD, true);
+        t.waitLock = createLock("weblogic.work.ExecuteThread", null);
+      } else if (kind < 0.96) {
+        t = createThread(random, i, "pool-1-thread-" + (++poolCount), POOL_THREAD, false);
+      } else {
+        t = createThread(random, i, "Timer-" + (timerCount++), TIMER_THREAD, true);
+        t.waitLock = createLock("java.util.TaskQueue", null);
+      }
+      t.appFrames = createAppFrames(random);
+      threadList.add(t);
+    }
+    model = threadList.toArray(new ThreadModel[threadList.size()]);
+
+    hotLocks = new Lock[Math.max(1, (threads - system) / 100)];
+    for (int i = 0; i < hotLocks.length; i++) {
+      hotLocks[i] = createLock(HOT_LOCKS[i % HOT_LOCKS.length][0], HOT_LOCKS[i % HOT_LOCKS.length][1]);
+    }
+    poolCondition = createLock("java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject", null);
+
+    // the deadlocked threads are picked from the shuffled workers, every
+    // deadlocked thread holds its own lock and waits for the one of its peer.
+    ArrayList<ThreadModel> workers = new ArrayList<ThreadModel>();
+    for (int i = system; i < model.length; i++) {
+      workers.add(model[i]);
+    }
+    Collections.shuffle(workers, random);
+    int injected = Math.min(deadlocks, workers.size() / 2);
+    for (int i = 0; i < injected; i++) {
+      ThreadModel first = workers.get(2 * i);
+      ThreadModel second = workers.get(2 * i + 1);
+      first.deadlockHeld = createLock(DEADLOCK_LOCKS[0][0], DEADLOCK_LOCKS[0][1]);
+      second.deadlockHeld = createLock(DEADLOCK_LOCKS[1][0], DEADLOCK_LOCKS[1][1]);
+      first.deadlockPeer = second;
+      second.deadlockPeer = first;
+    }
+  }
+
+  private ThreadModel createThread(Random random, int id, String name, int kind, boolean daemon) {
+    ThreadModel t = new ThreadModel();
+    t.id = id;
+    t.name = name;
+    t.kind = kind;
+    t.daemon = daemon;
+    t.prio = (kind == EXECUTE_THREAD) ? 10 : 5;
+    t.tid = 0x00002aaab0000000L + ((long) random.nextInt(0x100000) << 12);
+    t.nid = 0x1000 + random.nextInt(0xefff);
+    t.stackBase = 0x0000000040000000L + ((long) random.nextInt(0x100000) << 12);
+    return t;
+  }
+
+  private Frame[] createAppFrames(Random random) {
+    Frame[] frames = new Frame[Math.max(1, stackDepth)];
+    for (int i = 0; i < frames.length; i++) {
+      String pkg = PACKAGES[random.nextInt(PACKAGES.length)];
+      String entity = pkg.substring(pkg.lastIndexOf('.') + 1);
+      String simpleName = Character.toUpperCase(entity.charAt(0)) + entity.substring(1)
+          + CLASS_SUFFIXES[random.nextInt(CLASS_SUFFIXES.length)];
+      frames[i] = new Frame(pkg + "." + simpleName, METHODS[random.nextInt(METHODS.length)], simpleName + ".java:"
+          + (20 + random.nextInt(900)));
+    }
+    return frames;
+  }
+
+  private Lock createLock(String className, String method) {
+    Lock lock = new Lock();
+    lock.className = className;
+    lock.address = nextAddress;
+    lock.monitor = 0x00002aaac0000000L + (nextAddress & 0xfffffff);
+    nextAddress += 0x18;
+    if (method != null) {
+      String simpleName = className.substring(className.lastIndexOf('.') + 1);
+      lock.frame = new Frame(className, method, simpleName + ".java:" + (40 + (int) (lock.address % 400)));
+    }
+    return lock;
+  }
+
+  /**
+   * pick the states of all threads for a dump and build their stacks.
+   */
+  private ArrayList<ThreadSnapshot> createSnapshots(Random random) {
+    int[] states = new int[model.length];
+    Lock[] blockedOn = new Lock[model.length];
+    HashMap<Lock, ArrayList<Integer>> blockers = new LinkedHashMap<Lock, ArrayList<Integer>>();
+
+    for (int i = 0; i < model.length; i++) {
+      ThreadModel t = model[i];
+      if (t.kind == SYSTEM) {
+        states[i] = (t.waitLock == null) ? RUNNABLE : WAITING;
+      } else if (t.deadlockPeer != null) {
+        states[i] = BLOCKED;
+      } else if (t.kind != TIMER_THREAD && random.nextDouble() < contentionRate) {
+        states[i] = BLOCKED;
+        blockedOn[i] = hotLocks[random.nextInt(hotLocks.length)];
+        ArrayList<Integer> list = blockers.get(blockedOn[i]);
+        if (list == null) {
+          list = new ArrayList<Integer>();
+          blockers.put(blockedOn[i], list);
+        }
+        list.add(Integer.valueOf(i));
+      } else {
+        double r = random.nextDouble();
+        if (t.kind == TIMER_THREAD) {
+          states[i] = TIMED_WAITING;
+        } else if (r < 0.45) {
+          // idle, an execute thread waits for a request, a pool thread parks
+          // on its queue.
+          states[i] = (t.kind == EXECUTE_THREAD) ? WAITING : PARKED;
+        } else if (r < 0.80) {
+          states[i] = RUNNABLE;
+        } else if (r < 0.90) {
+          states[i] = SLEEPING;
+        } else {
+          states[i] = PARKED;
+        }
+      }
+    }
+
+    // every hot lock with blocked threads is owned by a running thread
+    Lock[] held = new Lock[model.length];
+    for (Lock lock : blockers.keySet()) {
+      ArrayList<Integer> runnable = new ArrayList<Integer>();
+      for (int i = 0; i < model.length; i++) {
+        if (states[i] == RUNNABLE && model[i].kind != SYSTEM && held[i] == null) {
+          runnable.add(Integer.valueOf(i));
+        }
+      }
+      int owner;
+      if (runnable.isEmpty()) {
+        ArrayList<Integer> list = blockers.get(lock);
+        owner = list.remove(0).intValue();
+        blockedOn[owner] = null;
+        states[owner] = RUNNABLE;
+      } else {
+        owner = runnable.get(random.nextInt(runnable.size())).intValue();
+      }
+      held[owner] = lock;
+    }
+
+    ArrayList<ThreadSnapshot> snapshots = new ArrayList<ThreadSnapshot>(model.length);
+    for (int i = 0; i < model.length; i++) {
+      snapshots.add(createSnapshot(model[i], states[i], blockedOn[i], held[i], random));
+    }
+    return snapshots;
+  }
+
+  private ThreadSnapshot createSnapshot(ThreadModel t, int state, Lock blockedOn, Lock held, Random random) {
+    ThreadSnapshot s = new ThreadSnapshot();
+    s.thread = t;
+    s.state = state;
+    s.inNative = false;
+
+    if (t.kind == SYSTEM) {
+      if (t.waitLock != null) {
+        s.addFrame(OBJECT_WAIT_NATIVE);
+        s.addLock(WAITING_ON, t.waitLock);
+        s.addFrame(OBJECT_WAIT);
+        if (t.waitLock.frame != null) {
+          s.addFrame(t.waitLock.frame);
+        } else if (t.name.equals("Reference Handler")) {
+          s.addFrame(new Frame("java.lang.ref.Reference$ReferenceHandler", "run", "Reference.java:116"));
+        } else {
+          s.addFrame(new Frame("java.lang.ref.ReferenceQueue", "remove", "ReferenceQueue.java:118"));
+        }
+        s.addLock(LOCKED, t.waitLock);
+        if (t.name.equals("Finalizer")) {
+          s.addFrame(new Frame("java.lang.ref.Finalizer$FinalizerThread", "run", "Finalizer.java:159"));
+        } else if (t.name.equals("main")) {
+          s.addFrame(new Frame("weblogic.Server", "main", "Server.java:71"));
+        }
+      }
+      return s;
+    }
+
+    boolean idle = (state == WAITING || state == TIMED_WAITING || (state == PARKED && t.kind == POOL_THREAD))
+        && t.deadlockPeer == null && held == null;
+    if (idle) {
+      if (state == PARKED) {
+        s.addFrame(UNSAFE_PARK);
+        s.addLock(PARKING, poolCondition);
+        s.addFrame(LOCK_SUPPORT_PARK);
+        s.addFrame(CONDITION_AWAIT);
+        s.addFrames(POOL_IDLE, 0, POOL_IDLE.length);
+      } else {
+        Frame[] idleFrames = (t.kind == TIMER_THREAD) ? TIMER_IDLE : EXECUTE_IDLE;
+        s.addFrame(OBJECT_WAIT_NATIVE);
+        s.addLock(WAITING_ON, t.waitLock);
+        if (t.kind != TIMER_THREAD) {
+          s.addFrame(OBJECT_WAIT);
+        }
+        s.addFrame(idleFrames[0]);
+        s.addLock(LOCKED, t.waitLock);
+        s.addFrames(idleFrames, 1, idleFrames.length);
+      }
+      return s;
+    }
+
+    // busy thread, the top frames depend on the state
+    if (t.deadlockPeer != null) {
+      s.addFrame(t.deadlockPeer.deadlockHeld.frame);
+      s.addLock(WAITING_TO_LOCK, t.deadlockPeer.deadlockHeld);
+      s.addFrame(t.deadlockHeld.frame);
+      s.addLock(LOCKED, t.deadlockHeld);
+    } else if (state == BLOCKED) {
+      s.addFrame(blockedOn.frame);
+      s.addLock(WAITING_TO_LOCK, blockedOn);
+    } else if (state == SLEEPING) {
+      s.addFrame(THREAD_SLEEP);
+    } else if (state == PARKED) {
+      s.addFrame(UNSAFE_PARK);
+      s.addLock(PARKING, poolCondition);
+      s.addFrame(LOCK_SUPPORT_PARK);
+      s.addFrame(CONDITION_AWAIT);
+      s.addFrame(POOL_RESERVE);
+    } else if (held == null && random.nextBoolean()) {
+      s.inNative = true;
+      s.addFrames(SOCKET_READ, 0, SOCKET_READ.length);
+    }
+
+    if (held != null) {
+      s.addFrame(held.frame);
+      s.addLock(LOCKED, held);
+    }
+
+    Frame[] bottom = (t.kind == POOL_THREAD) ? POOL_BOTTOM : ((t.kind == TIMER_THREAD) ? TIMER_IDLE : EXECUTE_BOTTOM);
+    int appFrames = Math.max(1, Math.min(t.appFrames.length, stackDepth - s.frames - bottom.length));
+    s.addFrames(t.appFrames, 0, appFrames);
+    s.addFrames(bottom, 0, bottom.length);
+    return s;
+  }
+
+  private void writeHotspotDump(DumpWriter out, ArrayList<ThreadSnapshot> snapshots, Date time) {
+    out.println(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(time));
+    if (vendor == OPENJDK) {
+      out.println("Full thread dump OpenJDK 64-Bit Server VM (25.181-b13 mixed mode):");
+    } else {
+      out.println("Full thread dump Java HotSpot(TM) 64-Bit Server VM (20.14-b01 mixed mode):");
+    }
+    out.println("");
+
+    for (ThreadSnapshot s : snapshots) {
+      ThreadModel t = s.thread;
+      String[] state = getHotspotState(s);
+      out.println(getHotspotTitle(t) + " " + state[0] + " [" + hex(t.stackBase + 0x1000, 16) + "]");
+      out.println("   java.lang.Thread.State: " + state[1]);
+      writeHotspotStack(out, s);
+      if (vendor == OPENJDK) {
+        out.println("");
+        out.println("   Locked ownable synchronizers:");
+        out.println("\t- None");
+      }
+      out.println("");
+    }
+
+    long vmThread = 0x00002aaab8000000L;
+    out.println("\"VM Thread\" prio=10 tid=" + hex(vmThread, 16) + " nid=0x" + Integer.toHexString(0x0f00) + " runnable ");
+    out.println("");
+    for (int i = 0; i < 4; i++) {
+      out.println("\"GC task thread#" + i + " (ParallelGC)\" prio=10 tid=" + hex(vmThread + (i + 1) * 0x1000, 16)
+          + " nid=0x" + Integer.toHexString(0x0f01 + i) + " runnable ");
+      out.println("");
+    }
+    out.println("\"VM Periodic Task Thread\" prio=10 tid=" + hex(vmThread + 0x8000, 16) + " nid=0x"
+        + Integer.toHexString(0x0f10) + " waiting on condition ");
+    out.println("");
+    out.println("JNI global references: " + (1000 + model.length));
+    out.println("");
+
+    ArrayList<ThreadSnapshot> deadlocked = getDeadlocked(snapshots);
+    if (!deadlocked.isEmpty()) {
+      for (int i = 0; i < deadlocked.size(); i += 2) {
+        out.println("");
+        out.println("Found one Java-level deadlock:");
+        out.println("=============================");
+        for (int j = i; j < i + 2; j++) {
+          ThreadModel t = deadlocked.get(j).thread;
+          Lock lock = t.deadlockPeer.deadlockHeld;
+          out.println("\"" + t.name + "\":");
+          out.println("  waiting to lock monitor " + hex(lock.monitor, 16) + " (object " + hex(lock.address, 16)
+              + ", a " + lock.className + "),");
+          out.println("  which is held by \"" + t.deadlockPeer.name + "\"");
+        }
+        out.println("");
+        out.println("Java stack information for the threads listed above:");
+        out.println("===================================================");
+        for (int j = i; j < i + 2; j++) {
+          out.println("\"" + deadlocked.get(j).thread.name + "\":");
+          writeHotspotStack(out, deadlocked.get(j));
+        }
+        out.println("");
+      }
+      int found = deadlocked.size() / 2;
+      out.println("Found " + found + " Java-level deadlock" + (found > 1 ? "s." : "."));
+      out.println("");
+    }
+  }
+
+  private String getHotspotTitle(ThreadModel t) {
+    return "\"" + t.name + "\"" + (t.daemon ? " daemon" : "") + " prio=" + t.prio + " tid=" + hex(t.tid, 16)
+        + " nid=0x" + Integer.toHexString(t.nid);
+  }
+
+  /**
+   * @return the state of the title and the thread state line.
+   */
+  private String[] getHotspotState(ThreadSnapshot s) {
+    switch (s.state) {
+    case BLOCKED:
+      return new String[] { "waiting for monitor entry", "BLOCKED (on object monitor)" };
+    case WAITING:
+      return new String[] { "in Object.wait()", "WAITING (on object monitor)" };
+    case TIMED_WAITING:
+      return new String[] { "in Object.wait()", "TIMED_WAITING (on object monitor)" };
+    case PARKED:
+      return new String[] { "waiting on condition", "WAITING (parking)" };
+    case SLEEPING:
+      return new String[] { "waiting on condition", "TIMED_WAITING (sleeping)" };
+    default:
+      return new String[] { "runnable", "RUNNABLE" };
+    }
+  }
+
+  private void writeHotspotStack(DumpWriter out, ThreadSnapshot s) {
+    for (StackLine line : s.stack) {
+      if (line.frame != null) {
+        out.println("\tat " + line.frame.className + "." + line.frame.method + "("
+            + (line.frame.source != null ? line.frame.source : "Native Method") + ")");
+      } else {
+        String lockText = "<" + hex(line.lock.address, 16) + "> (a " + line.lock.className + ")";
+        switch (line.kind) {
+        case WAITING_TO_LOCK:
+          out.println("\t- waiting to lock " + lockText);
+          break;
+        case WAITING_ON:
+          out.println("\t- waiting on " + lockText);
+          break;
+        case PARKING:
+          out.println("\t- parking to wait for  " + lockText);
+          break;
+        default:
+          out.println("\t- locked " + lockText);
+        }
+      }
+    }
+  }
+
+  private void writeJrockitDump(PrintWriter out, ArrayList<ThreadSnapshot> snapshots, Date time) {
+    out.println("===== FULL THREAD DUMP ===============");
+    out.println(new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy", Locale.US).format(time));
+    out.println("Oracle JRockit(R) R28.2.5-20-152429-1.6.0_37-20120927-1915-linux-x86_64");
+    out.println("");
+
+    for (ThreadSnapshot s : snapshots) {
+      ThreadModel t = s.thread;
+      out.println(getJrockitTitle(t) + " prio=" + t.prio + " alive" + getJrockitState(s) + (t.daemon ? ", daemon" : ""));
+
+      // the lock the thread waits for is shown above the stack, the monitors
+      // released by a wait are marked in the stack
+      Lock waitingOn = null;
+      for (StackLine line : s.stack) {
+        if (line.kind == WAITING_ON) {
+          waitingOn = line.lock;
+          out.println("    -- Waiting for notification on: " + jrockitLock(line.lock));
+        } else if (line.kind == WAITING_TO_LOCK) {
+          out.println("    -- Blocked trying to get lock: " + jrockitLock(line.lock));
+        } else if (line.kind == PARKING) {
+          out.println("    -- Parking to wait for: " + line.lock.className.replace('.', '/') + "@"
+              + hex(line.lock.address, 16));
+        }
+      }
+      for (StackLine line : s.stack) {
+        if (line.frame != null) {
+          out.println("    at " + line.frame.className.replace('.', '/') + "." + line.frame.method + "("
+              + (line.frame.source != null ? line.frame.source : "Native Method") + ")");
+        } else if (line.kind == LOCKED) {
+          out.println((line.lock == waitingOn ? "    ^-- Lock released while waiting: " : "    ^-- Holding lock: ")
+              + jrockitLock(line.lock));
+        }
+      }
+      if (!s.stack.isEmpty()) {
+        out.println("    -- end of trace");
+      }
+      out.println("");
+    }
+
+    ArrayList<ThreadSnapshot> deadlocked = getDeadlocked(snapshots);
+    if (!deadlocked.isEmpty()) {
+      out.println("Circular (deadlocked) lock chains");
+      out.println("=================================");
+      for (int i = 0; i < deadlocked.size(); i += 2) {
+        ThreadModel first = deadlocked.get(i).thread;
+        ThreadModel second = first.deadlockPeer;
+        out.println("Chain " + (i / 2 + 2) + ":");
+        out.println(getJrockitTitle(first) + " waiting for " + jrockitLock(second.deadlockHeld) + " held by:");
+        out.println(getJrockitTitle(second) + " waiting for " + jrockitLock(first.deadlockHeld) + " held by:");
+        out.println(getJrockitTitle(first));
+        out.println("");
+      }
+      out.println("");
+    }
+    out.println("===== END OF THREAD DUMP ===============");
+    out.println("");
+  }
+
+  private String getJrockitTitle(ThreadModel t) {
+    return "\"" + t.name + "\" id=" + (t.id + 1) + " idx=0x" + Integer.toHexString((t.id + 1) * 4) + " tid="
+        + t.nid;
+  }
+
+  private String getJrockitState(ThreadSnapshot s) {
+    switch (s.state) {
+    case BLOCKED:
+      return ", blocked, native_blocked";
+    case WAITING:
+    case TIMED_WAITING:
+      return ", in native, waiting";
+    case PARKED:
+      return ", parked, native_blocked";
+    case SLEEPING:
+      return ", sleeping, native_waiting";
+    default:
+      return s.inNative ? ", in native" : "";
+    }
+  }
+
+  private static String jrockitLock(Lock lock) {
+    return lock.className.replace('.', '/') + "@" + hex(lock.address, 16) + "[fat lock]";
+  }
+
+  private void writeIbmDump(PrintWriter out, ArrayList<ThreadSnapshot> snapshots, Date time, int index) {
+    String separator = "NULL           ------------------------------------------------------------------------";
+    out.println("0SECTION       TITLE subcomponent dump routine");
+    out.println("NULL           ===============================");
+    out.println("1TICHARSET     UTF-8");
+    out.println("1TISIGINFO     Dump Event \"user\" (00004000) received ");
+    out.println("1TIDATETIME    Date:                 " + new SimpleDateFormat("yyyy/MM/dd 'at' HH:mm:ss").format(time));
+    out.println("1TIFILENAME    Javacore filename:    /opt/weblogic/javacore."
+        + new SimpleDateFormat("yyyyMMdd.HHmmss").format(time) + ".4242." + pad(index + 1, 4) + ".txt");
+    out.println(separator);
+    out.println("0SECTION       ENVINFO subcomponent dump routine");
+    out.println("NULL           =================================");
+    out.println("1CIJAVAVERSION JRE 1.6.0 Linux amd64-64 build 20120607_114136 (pxa6460sr11-20120613_01(SR11))");
+    out.println("1CIVMVERSION   VM build R26_Java626_SR4_20120608_1350_B114136");
+    out.println(separator);
+
+    // the monitors are listed before the threads, with their owner and the
+    // threads waiting to enter or to be notified
+    LinkedHashMap<Lock, IbmMonitor> monitors = new LinkedHashMap<Lock, IbmMonitor>();
+    for (ThreadSnapshot s : snapshots) {
+      Lock waitingOn = null;
+      for (StackLine line : s.stack) {
+        if (line.kind == WAITING_ON) {
+          waitingOn = line.lock;
+          getIbmMonitor(monitors, line.lock).notifyWaiters.add(s.thread);
+        } else if (line.kind == WAITING_TO_LOCK) {
+          getIbmMonitor(monitors, line.lock).enterWaiters.add(s.thread);
+        }
+      }
+      for (StackLine line : s.stack) {
+        if (line.frame == null && line.kind == LOCKED && line.lock != waitingOn) {
+          getIbmMonitor(monitors, line.lock).owner = s.thread;
+        }
+      }
+    }
+
+    out.println("0SECTION       LOCKS subcomponent dump routine");
+    out.println("NULL           ===============================");
+    out.println("NULL           ");
+    out.println("1LKPOOLINFO    Monitor pool info:");
+    out.println("2LKPOOLTOTAL     Current total number of monitors: " + monitors.size());
+    out.println("NULL           ");
+    out.println("1LKMONPOOLDUMP Monitor Pool Dump (flat & inflated object-monitors):");
+    for (IbmMonitor monitor : monitors.values()) {
+      Lock lock = monitor.lock;
+      out.println("2LKMONINUSE      sys_mon_t:" + hex(lock.monitor, 16) + " infl_mon_t: " + hex(lock.monitor + 0x80, 16)
+          + ":");
+      String object = "3LKMONOBJECT       " + lock.className.replace('.', '/') + "@" + hexUpper(lock.address) + "/"
+          + hexUpper(lock.address + 0xc) + ": ";
+      if (monitor.owner != null) {
+        out.println(object + "owner \"" + monitor.owner.name + "\" (J9VMThread:" + hexUpper(monitor.owner.tid)
+            + "), entry count 1");
+      } else {
+        out.println(object + "<unowned>");
+      }
+      if (!monitor.enterWaiters.isEmpty()) {
+        out.println("3LKWAITERQ            Waiting to enter:");
+        for (ThreadModel t : monitor.enterWaiters) {
+          out.println("3LKWAITER                \"" + t.name + "\" (J9VMThread:" + hexUpper(t.tid) + ")");
+        }
+      }
+      if (!monitor.notifyWaiters.isEmpty()) {
+        out.println("3LKNOTIFYQ            Waiting to be notified:");
+        for (ThreadModel t : monitor.notifyWaiters) {
+          out.println("3LKWAITNOTIFY            \"" + t.name + "\" (J9VMThread:" + hexUpper(t.tid) + ")");
+        }
+      }
+    }
+    out.println("NULL           ");
+    out.println("1LKREGMONDUMP  JVM System Monitor Dump (registered monitors):");
+    out.println("2LKREGMON          Thread global lock (" + hexUpper(0x00002aaab9000000L) + "): <unowned>");
+    out.println("NULL           ");
+    out.println(separator);
+
+    out.println("0SECTION       THREADS subcomponent dump routine");
+    out.println("NULL           =================================");
+    out.println("NULL           ");
+    out.println("1XMTHDINFO     Thread Details");
+    out.println("NULL           ");
+    for (ThreadSnapshot s : snapshots) {
+      ThreadModel t = s.thread;
+      out.println("3XMTHREADINFO      \"" + t.name + "\" J9VMThread:" + hexUpper(t.tid) + ", j9thread_t:"
+          + hexUpper(t.stackBase) + ", java/lang/Thread:" + hexUpper(0xd0000000L + t.id * 0x60) + ", state:"
+          + getIbmState(s) + ", prio=" + t.prio);
+      out.println("3XMTHREADINFO1            (native thread ID:0x" + Integer.toHexString(t.nid).toUpperCase()
+          + ", native priority:0x" + Integer.toHexString(t.prio) + ", native policy:UNKNOWN)");
+      if (s.stack.isEmpty()) {
+        out.println("3XMTHREADINFO3           No Java callstack associated with this thread");
+      } else {
+        out.println("3XMTHREADINFO3           Java callstack:");
+        for (StackLine line : s.stack) {
+          if (line.frame != null) {
+            out.println("4XESTACKTRACE                at " + line.frame.className.replace('.', '/') + "."
+                + line.frame.method + "(" + (line.frame.source != null ? line.frame.source : "Native Method") + ")");
+          }
+        }
+      }
+      out.println("3XMTHREADINFO3           No native callstack available on this platform");
+      out.println("NULL");
+    }
+    out.println(separator);
+    out.println("0SECTION       Javadump End section");
+    out.println("NULL           ---------------------- END OF DUMP -------------------------------------");
+  }
+
+  private static IbmMonitor getIbmMonitor(HashMap<Lock, IbmMonitor> monitors, Lock lock) {
+    IbmMonitor monitor = monitors.get(lock);
+    if (monitor == null) {
+      monitor = new IbmMonitor();
+      monitor.lock = lock;
+      monitors.put(lock, monitor);
+    }
+    return monitor;
+  }
+
+  private String getIbmState(ThreadSnapshot s) {
+    switch (s.state) {
+    case BLOCKED:
+      return "B";
+    case WAITING:
+    case TIMED_WAITING:
+    case SLEEPING:
+      return "CW";
+    case PARKED:
+      return "P";
+    default:
+      return "R";
+    }
+  }
+
+  /**
+   * @return the deadlocked threads, the peers next to each other.
+   */
+  private ArrayList<ThreadSnapshot> getDeadlocked(ArrayList<ThreadSnapshot> snapshots) {
+    ArrayList<ThreadSnapshot> deadlocked = new ArrayList<ThreadSnapshot>();
+    HashMap<ThreadModel, ThreadSnapshot> byThread = new HashMap<ThreadModel, ThreadSnapshot>();
+    for (ThreadSnapshot s : snapshots) {
+      byThread.put(s.thread, s);
+    }
+    for (ThreadSnapshot s : snapshots) {
+      ThreadModel peer = s.thread.deadlockPeer;
+      if (peer != null && s.thread.id < peer.id) {
+        deadlocked.add(s);
+        deadlocked.add(byThread.get(peer));
+      }
+    }
+    return deadlocked;
+  }
+
+  private static String hex(long value, int digits) {
+    String hex = Long.toHexString(value);
+    StringBuffer sb = new StringBuffer("0x");
+    for (int i = hex.length(); i < digits; i++) {
+      sb.append('0');
+    }
+    return sb.append(hex).toString();
+  }
+
+  private static String hexUpper(long value) {
+    return "0x" + hex(value, 16).substring(2).toUpperCase();
+  }
+
+  private static String pad(int value, int digits) {
+    String s = String.valueOf(value);
+    while (s.length() < digits) {
+      s = "0" + s;
+    }
+    return s;
+  }
+
+  /**
+   * a stack frame, source is null for native methods.
+   */
+  private static class Frame {
+    final String className;
+    final String method;
+    final String source;
+
+    Frame(String className, String method, String source) {
+      this.className = className;
+      this.method = method;
+      this.source = source;
+    }
+  }
+
+  private static class Lock {
+    String className;
+    long address;
+    long monitor;
+    // the synchronized method entering the lock
+    Frame frame;
+  }
+
+  /**
+   * a thread as it is in all dumps.
+   */
+  private static class ThreadModel {
+    String name;
+    int kind;
+    int id;
+    boolean daemon;
+    int prio;
+    long tid;
+    int nid;
+    long stackBase;
+    Frame[] appFrames;
+    // the monitor an idle thread waits on
+    Lock waitLock;
+    // the lock held if the thread is deadlocked with its peer
+    Lock deadlockHeld;
+    ThreadModel deadlockPeer;
+  }
+
+  /**
+   * either a frame or a lock line following the frame above.
+   */
+  private static class StackLine {
+    Frame frame;
+    int kind;
+    Lock lock;
+  }
+
+  /**
+   * a thread within a single dump.
+   */
+  private static class ThreadSnapshot {
+    ThreadModel thread;
+    int state;
+    boolean inNative;
+    int frames;
+    ArrayList<StackLine> stack = new ArrayList<StackLine>();
+
+    void addFrame(Frame frame) {
+      StackLine line = new StackLine();
+      line.frame = frame;
+      stack.add(line);
+      frames++;
+    }
+
+    void addFrames(Frame[] frames, int from, int to) {
+      for (int i = from; i < to; i++) {
+        addFrame(frames[i]);
+      }
+    }
+
+    void addLock(int kind, Lock lock) {
+      StackLine line = new StackLine();
+      line.kind = kind;
+      line.lock = lock;
+      stack.add(line);
+    }
+  }
+
+  private static class IbmMonitor {
+    Lock lock;
+    ThreadModel owner;
+    ArrayList<ThreadModel> enterWaiters = new ArrayList<ThreadModel>();
+    ArrayList<ThreadModel> notifyWaiters = new ArrayList<ThreadModel>();
+  }
+
+  /**
+   * writes the lines of a HotSpot dump.
+   */
+  private static class DumpWriter {
+    protected final PrintWriter out;
+
+    DumpWriter(PrintWriter out) {
+      this.out = out;
+    }
+
+    void println(String line) {
+      out.println(line);
+    }
+  }
+
+  /**
+   * prefixes every line like the Tanuki service wrapper does with the output
+   * of the jvm.
+   */
+  private static class WrappedDumpWriter extends DumpWriter {
+    private final String prefix;
+
+    WrappedDumpWriter(PrintWriter out, Date time) {
+      super(out);
+      prefix = WRAPPER_PREFIX + new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(time) + " | ";
+    }
+
+    void println(String line) {
+      out.println(prefix + line);
+    }
+  }
+
+  private static void usage() {
+    System.err.println("Usage: DumpGenerator [-vendor name] [-threads n] [-depth n] [-contention rate]");
+    System.err.println("                     [-deadlocks n] [-dumps n] [-seed n] -out file");
+    System.err.println("  -vendor name      hotspot, openjdk, jrockit, ibm or wrapped (default: hotspot)");
+    System.err.println("  -threads n        java threads per dump (default: 100)");
+    System.err.println("  -depth n          max stack depth of busy threads (default: 20)");
+    System.err.println("  -contention rate  share of threads blocked on hot locks, 0 to 1 (default: 0.05)");
+    System.err.println("  -deadlocks n      number of deadlocked thread pairs (default: 0)");
+    System.err.println("  -dumps n          number of dumps, ibm writes a file per dump (default: 1)");
+    System.err.println("  -seed n           seed of the generated dumps (default: 0)");
+  }
+
+  /**
+   * main startup method for generating dumps
+   */
+  public static void main(String[] args) {
+    DumpGenerator generator = new DumpGenerator();
+    File file = null;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        if ("-vendor".equals(args[i])) {
+          int vendor = -1;
+          for (int j = 0; j < VENDORS.length; j++) {
+            if (VENDORS[j].equalsIgnoreCase(args[i + 1])) {
+              vendor = j;
+            }
+          }
+          generator.setVendor(vendor);
+          i++;
+        } else if ("-threads".equals(args[i])) {
+          generator.setThreads(Integer.parseInt(args[++i]));
+        } else if ("-depth".equals(args[i])) {
+          generator.setStackDepth(Integer.parseInt(args[++i]));
+        } else if ("-contention".equals(args[i])) {
+          generator.setContentionRate(Double.parseDouble(args[++i]));
+        } else if ("-deadlocks".equals(args[i])) {
+          generator.setDeadlocks(Integer.parseInt(args[++i]));
+        } else if ("-dumps".equals(args[i])) {
+          generator.setDumps(Integer.parseInt(args[++i]));
+        } else if ("-seed".equals(args[i])) {
+          generator.setSeed(Long.parseLong(args[++i]));
+        } else if ("-out".equals(args[i])) {
+          file = new File(args[++i]);
+        } else {
+          throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+      }
+    } catch (RuntimeException e) {
+      usage();
+      System.exit(2);
+    }
+
+    if (file == null) {
+      usage();
+      System.exit(2);
+    }
+
+    try {
+      for (File written : generator.generate(file)) {
+        System.out.println("Generated " + written.getPath());
+      }
+    } catch (IOException ioe) {
+      System.err.println("Unable to write " + file + ": " + ioe.getMessage());
+      System.exit(1);
+    }
+  }
+}
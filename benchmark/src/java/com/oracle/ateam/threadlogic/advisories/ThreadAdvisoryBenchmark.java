@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.advisories;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.oracle.ateam.threadlogic.DumpFixtures;
+import com.oracle.ateam.threadlogic.ThreadDumpInfo;
+import com.oracle.ateam.threadlogic.ThreadInfo;
+
+/**
+ * matching the advisories against all threads of a dump.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class ThreadAdvisoryBenchmark {
+
+  @Param({ DumpFixtures.SMALL, DumpFixtures.WEBLOGIC, DumpFixtures.EXTREME })
+  public String size;
+
+  private ThreadInfo[] threads;
+
+  @Setup
+  public void setup() throws IOException {
+    ThreadDumpInfo tdi = DumpFixtures.parseModel(DumpFixtures.generate("hotspot", size, 1));
+    threads = tdi.getThreadMap().values().toArray(new ThreadInfo[0]);
+  }
+
+  @TearDown
+  public void tearDown() {
+    DumpFixtures.shutdown();
+  }
+
+  @Benchmark
+  public ThreadInfo[] runThreadAdvisory() {
+    for (int i = 0; i < threads.length; i++) {
+      ThreadAdvisory.runThreadAdvisory(threads[i]);
+    }
+    return threads;
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.parsers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.oracle.ateam.threadlogic.DumpFixtures;
+import com.oracle.ateam.threadlogic.LockInfo;
+import com.oracle.ateam.threadlogic.ThreadDumpInfo;
+import com.oracle.ateam.threadlogic.ThreadInfo;
+
+/**
+ * extraction of the owned, blocking and waited on locks of all threads of a
+ * dump.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class CreateLockInfoBenchmark {
+
+  @Param({ "hotspot", "jrockit" })
+  public String vendor;
+
+  @Param({ DumpFixtures.SMALL, DumpFixtures.WEBLOGIC, DumpFixtures.EXTREME })
+  public String size;
+
+  private byte[] log;
+  private AbstractDumpParser parser;
+  private ThreadDumpInfo tdi;
+  private ThreadInfo[] threads;
+
+  @Setup
+  public void setup() throws IOException {
+    log = DumpFixtures.generate(vendor, size, 1);
+    parser = (AbstractDumpParser) DumpFixtures.createParser(log, new HashMap());
+    tdi = parser.parseNextModel();
+    parser.close();
+    threads = tdi.getThreadMap().values().toArray(new ThreadInfo[0]);
+  }
+
+  /**
+   * the threads and the dump remember the locks found, start every invocation
+   * without any so they don't pile up and the locks are created like in the
+   * first parse.
+   */
+  @Setup(Level.Invocation)
+  public void resetLocks() {
+    tdi.setLockTable(new HashMap<String, LockInfo>());
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].setOwnedLocks(new ArrayList<LockInfo>());
+      threads[i].setParkedForLockId(null);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    DumpFixtures.shutdown();
+  }
+
+  @Benchmark
+  public ThreadInfo[] createLockInfo() {
+    for (int i = 0; i < threads.length; i++) {
+      parser.createLockInfo(threads[i]);
+    }
+    return threads;
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.parsers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreePath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.oracle.ateam.threadlogic.DumpFixtures;
+import com.oracle.ateam.threadlogic.Logfile;
+
+/**
+ * the long running thread detection, a diff over the dumps of a log file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class DiffDumpsBenchmark {
+
+  private static final int DUMPS = 5;
+
+  @Param({ DumpFixtures.SMALL, DumpFixtures.WEBLOGIC, DumpFixtures.EXTREME })
+  public String size;
+
+  private AbstractDumpParser parser;
+  private Map dumpStore;
+  private TreePath[] paths;
+
+  @Setup
+  public void setup() throws IOException {
+    byte[] log = DumpFixtures.generate("hotspot", size, DUMPS);
+    dumpStore = new HashMap();
+    parser = (AbstractDumpParser) DumpFixtures.createParser(log, dumpStore);
+
+    // same tree as for an opened log file, the dumps below the log file node
+    DefaultMutableTreeNode logNode = new DefaultMutableTreeNode(new Logfile("generated.log"));
+    ArrayList<TreePath> dumpPaths = new ArrayList<TreePath>();
+    try {
+      while (parser.hasMoreDumps()) {
+        DefaultMutableTreeNode dumpNode = (DefaultMutableTreeNode) parser.parseNext();
+        if (dumpNode == null) {
+          break;
+        }
+        logNode.add(dumpNode);
+        dumpPaths.add(new TreePath(dumpNode.getPath()));
+      }
+    } finally {
+      parser.close();
+    }
+    paths = dumpPaths.toArray(new TreePath[dumpPaths.size()]);
+  }
+
+  @TearDown
+  public void tearDown() {
+    DumpFixtures.shutdown();
+  }
+
+  @Benchmark
+  public DefaultMutableTreeNode findLongRunningThreads() {
+    DefaultMutableTreeNode root = new DefaultMutableTreeNode("Long running threads");
+    parser.findLongRunningThreads(root, dumpStore, paths, paths.length, null);
+    return root;
+  }
+}
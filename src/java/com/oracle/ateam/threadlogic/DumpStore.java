@@ -60,7 +60,7 @@ public class DumpStore implements Serializable {
    * @param threadDumpsInFile
    *          new found thread dumps to add.
    */
-  public void addFileToDumpFiles(String key, Map threadDumpsInFile) {
+  public synchronized void addFileToDumpFiles(String key, Map threadDumpsInFile) {
     // first check if map is null, and if so, create new instance
     if (dumpFiles == null) {
       dumpFiles = new HashMap();
@@ -73,7 +73,7 @@ public class DumpStore implements Serializable {
   /**
    * get the thread dumps for the specified file key from the store
    */
-  public Map getFromDumpFiles(String key) {
+  public synchronized Map getFromDumpFiles(String key) {
     return (dumpFiles != null ? (Map) dumpFiles.get(key) : null);
   }
 
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * the dumps of several log files (e.g. of all nodes of a cluster) ordered by
+ * their start time, so the dumps taken within a time range can be looked up by
+ * binary search. Dumps without a parsed start time are left out. The timeline
+ * is a snapshot, create a new one after loading more dumps.
+ */
+public class DumpTimeline {
+
+  private final long[] times;
+  private final ThreadDumpInfo[] dumps;
+
+  public DumpTimeline(Collection<Logfile> logFiles) {
+    ArrayList<ThreadDumpInfo> timedDumps = new ArrayList<ThreadDumpInfo>();
+    for (Logfile logFile : logFiles) {
+      for (ThreadDumpInfo tdi : logFile.getThreadDumps()) {
+        if (tdi.getStartTimeMillis() > 0) {
+          timedDumps.add(tdi);
+        }
+      }
+    }
+
+    // stable, dumps of the same time keep the order of the log files
+    Collections.sort(timedDumps, new Comparator<ThreadDumpInfo>() {
+      public int compare(ThreadDumpInfo tdi1, ThreadDumpInfo tdi2) {
+        long time1 = tdi1.getStartTimeMillis();
+        long time2 = tdi2.getStartTimeMillis();
+        return (time1 < time2) ? -1 : ((time1 == time2) ? 0 : 1);
+      }
+    });
+
+    dumps = timedDumps.toArray(new ThreadDumpInfo[timedDumps.size()]);
+    times = new long[dumps.length];
+    for (int i = 0; i < dumps.length; i++) {
+      times[i] = dumps[i].getStartTimeMillis();
+    }
+  }
+
+  /**
+   * @return the number of dumps with a start time.
+   */
+  public int size() {
+    return dumps.length;
+  }
+
+  /**
+   * @return all dumps ordered by start time.
+   */
+  public List<ThreadDumpInfo> getDumps() {
+    return Collections.unmodifiableList(Arrays.asList(dumps));
+  }
+
+  /**
+   * @param from
+   *          start of the range in milliseconds since the epoch, inclusive.
+   * @param to
+   *          end of the range, inclusive.
+   * @return the dumps started within the range ordered by start time.
+   */
+  public List<ThreadDumpInfo> getDumpsBetween(long from, long to) {
+    if (from > to) {
+      return Collections.emptyList();
+    }
+    int start = indexOf(from);
+    int end = (to == Long.MAX_VALUE) ? dumps.length : indexOf(to + 1);
+    return Collections.unmodifiableList(Arrays.asList(dumps).subList(start, end));
+  }
+
+  /**
+   * @return the last dump started before or at the given time, null if there
+   *         is none.
+   */
+  public ThreadDumpInfo getDumpAt(long time) {
+    int index = (time == Long.MAX_VALUE) ? dumps.length : indexOf(time + 1);
+    return (index > 0) ? dumps[index - 1] : null;
+  }
+
+  /**
+   * @return the index of the first dump started at or after the given time.
+   */
+  private int indexOf(long time) {
+    int low = 0;
+    int high = times.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (times[mid] < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * session wide table of the stack frames and symbols (class and method names)
+ * of all loaded dumps. Consecutive dumps of a server mostly repeat the same
+ * frames, so every distinct frame is only kept once and the threads of all
+ * dumps reference it. Entries are weak, frames and symbols no longer used by
+ * any loaded dump are dropped from the table. The tables are split into
+ * stripes locked on their own, so the dumps parsed in parallel don't wait for
+ * each other.
+ */
+public final class FrameTable {
+
+  private static final int STRIPES = 16;
+
+  private static final InternTable<StackFrame> frames = new InternTable<StackFrame>();
+
+  private static final InternTable<String> symbols = new InternTable<String>();
+
+  private FrameTable() {
+  }
+
+  /**
+   * weak intern table, the stripe of a value is chosen by its hash code.
+   */
+  private static final class InternTable<T> {
+    private final Map<T, WeakReference<T>>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    InternTable() {
+      stripes = new Map[STRIPES];
+      for (int i = 0; i < STRIPES; i++) {
+        stripes[i] = new WeakHashMap<T, WeakReference<T>>();
+      }
+    }
+
+    T intern(T value) {
+      int hash = value.hashCode();
+      Map<T, WeakReference<T>> stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+      synchronized (stripe) {
+        WeakReference<T> ref = stripe.get(value);
+        T shared = (ref != null ? ref.get() : null);
+        if (shared == null) {
+          stripe.put(value, new WeakReference<T>(value));
+          shared = value;
+        }
+        return shared;
+      }
+    }
+
+    int size() {
+      int size = 0;
+      for (int i = 0; i < STRIPES; i++) {
+        synchronized (stripes[i]) {
+          size += stripes[i].size();
+        }
+      }
+      return size;
+    }
+  }
+
+  /**
+   * get the shared frame for the given stack line.
+   *
+   * @param type
+   *          the type of the line as defined in {@link StackFrame}.
+   * @param line
+   *          the line as read from the dump.
+   */
+  public static StackFrame intern(int type, String line) {
+    return intern(new StackFrame(type, line));
+  }
+
+  /**
+   * get the shared instance of the passed frame, the frame itself becomes the
+   * shared one if it is not known yet.
+   */
+  public static StackFrame intern(StackFrame frame) {
+    return frames.intern(frame);
+  }
+
+  /**
+   * get the shared instance of a class or method name.
+   */
+  public static String internSymbol(String symbol) {
+    return symbols.intern(symbol);
+  }
+
+  /**
+   * @return the number of distinct frames currently in use.
+   */
+  public static int size() {
+    return frames.size();
+  }
+}
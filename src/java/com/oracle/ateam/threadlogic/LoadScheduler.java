@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import com.oracle.ateam.threadlogic.utils.CustomLogger;
+
+/**
+ * loads several log files concurrently on a bounded pool (e.g. the logs of all
+ * managed servers of a cluster), so loading takes about the time of the
+ * largest file instead of the sum. Every file is handed to the listener as
+ * soon as it is loaded. The progress of the files and the overall throughput
+ * can be polled, single files can be cancelled.
+ */
+public class LoadScheduler {
+
+  /**
+   * parses the file of a task into the task node, runs on a pool thread. The
+   * loader should report its progress to the task and stop once the task is
+   * cancelled.
+   */
+  public interface Loader {
+    public void load(LoadTask task) throws Exception;
+  }
+
+  /**
+   * notified on the pool threads.
+   */
+  public interface Listener {
+    /**
+     * the file of the task is loaded, not called for cancelled tasks.
+     */
+    public void fileLoaded(LoadTask task);
+
+    /**
+     * all tasks are done or cancelled.
+     */
+    public void loadFinished();
+  }
+
+  /**
+   * a single file to load.
+   */
+  public static class LoadTask {
+    private final File file;
+    private final String name;
+    private final DefaultMutableTreeNode node;
+    private final long size;
+
+    private volatile long bytesRead;
+    private volatile int dumpCount;
+    private volatile boolean canceled;
+    private volatile boolean done;
+    private volatile Throwable error;
+
+    LoadTask(File file, String name, DefaultMutableTreeNode node) {
+      this.file = file;
+      this.name = name;
+      this.node = node;
+      this.size = file.length();
+    }
+
+    public File getFile() {
+      return file;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the log file node the dumps are added to.
+     */
+    public DefaultMutableTreeNode getNode() {
+      return node;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getBytesRead() {
+      return bytesRead;
+    }
+
+    public int getDumpCount() {
+      return dumpCount;
+    }
+
+    /**
+     * @param bytesRead
+     *          the bytes of the file read so far, -1 if not known.
+     * @param dumpCount
+     *          the dumps found so far.
+     */
+    public void setProgress(long bytesRead, int dumpCount) {
+      if (bytesRead >= 0) {
+        this.bytesRead = Math.min(bytesRead, size);
+      }
+      this.dumpCount = dumpCount;
+    }
+
+    /**
+     * @return the loaded part of the file in percent.
+     */
+    public int getProgress() {
+      if (done) {
+        return 100;
+      }
+      return (size > 0) ? (int) (bytesRead * 100 / size) : 0;
+    }
+
+    /**
+     * tasks not yet started are skipped, running ones stop at the next dump.
+     */
+    public void cancel() {
+      canceled = true;
+    }
+
+    public boolean isCanceled() {
+      return canceled;
+    }
+
+    public boolean isDone() {
+      return done;
+    }
+
+    /**
+     * @return the error the file couldn't be loaded with, null if there was
+     *         none.
+     */
+    public Throwable getError() {
+      return error;
+    }
+  }
+
+  private static Logger theLogger = CustomLogger.getLogger(LoadScheduler.class.getSimpleName());
+
+  private final ArrayList<LoadTask> tasks = new ArrayList<LoadTask>();
+  private final int maxThreads;
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private ExecutorService pool;
+  private volatile long startTime;
+  private volatile long endTime;
+
+  /**
+   * @param maxThreads
+   *          the max number of files loaded at the same time.
+   */
+  public LoadScheduler(int maxThreads) {
+    this.maxThreads = Math.max(1, maxThreads);
+  }
+
+  /**
+   * add a file to load, all files have to be added before starting.
+   */
+  public LoadTask addFile(File file, String name, DefaultMutableTreeNode node) {
+    LoadTask task = new LoadTask(file, name, node);
+    tasks.add(task);
+    return task;
+  }
+
+  public List<LoadTask> getTasks() {
+    return Collections.unmodifiableList(tasks);
+  }
+
+  /**
+   * start loading the files, the larger files are started first.
+   */
+  public synchronized void start(final Loader loader, final Listener listener) {
+    if (pool != null) {
+      return;
+    }
+
+    pool = Executors.newFixedThreadPool(Math.min(maxThreads, Math.max(1, tasks.size())), new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "Load " + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    startTime = System.currentTimeMillis();
+    pending.set(tasks.size());
+    if (tasks.isEmpty()) {
+      endTime = startTime;
+      listener.loadFinished();
+    }
+
+    ArrayList<LoadTask> bySize = new ArrayList<LoadTask>(tasks);
+    Collections.sort(bySize, new Comparator<LoadTask>() {
+      public int compare(LoadTask task1, LoadTask task2) {
+        return (task1.getSize() > task2.getSize()) ? -1 : ((task1.getSize() == task2.getSize()) ? 0 : 1);
+      }
+    });
+
+    for (final LoadTask task : bySize) {
+      pool.execute(new Runnable() {
+        public void run() {
+          try {
+            if (!task.isCanceled()) {
+              loader.load(task);
+            }
+          } catch (Throwable ex) {
+            theLogger.warning("Error loading " + task.getName() + ": " + ex);
+            task.error = ex;
+          } finally {
+            task.done = true;
+            if (!task.isCanceled() && (task.getError() == null)) {
+              listener.fileLoaded(task);
+            }
+            taskFinished(listener);
+          }
+        }
+      });
+    }
+    pool.shutdown();
+  }
+
+  private void taskFinished(Listener listener) {
+    if (pending.decrementAndGet() == 0) {
+      endTime = System.currentTimeMillis();
+      listener.loadFinished();
+    }
+  }
+
+  /**
+   * cancel all files not loaded yet.
+   */
+  public void cancelAll() {
+    for (LoadTask task : tasks) {
+      task.cancel();
+    }
+  }
+
+  /**
+   * wait until all files are loaded or cancelled.
+   */
+  public void await() throws InterruptedException {
+    ExecutorService loadPool;
+    synchronized (this) {
+      loadPool = pool;
+    }
+    if (loadPool != null) {
+      loadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public boolean isFinished() {
+    return endTime != 0;
+  }
+
+  public long getTotalBytes() {
+    long total = 0;
+    for (LoadTask task : tasks) {
+      total += task.getSize();
+    }
+    return total;
+  }
+
+  public long getBytesRead() {
+    long read = 0;
+    for (LoadTask task : tasks) {
+      read += task.isDone() && !task.isCanceled() ? task.getSize() : task.getBytesRead();
+    }
+    return read;
+  }
+
+  public int getDumpCount() {
+    int count = 0;
+    for (LoadTask task : tasks) {
+      count += task.getDumpCount();
+    }
+    return count;
+  }
+
+  /**
+   * @return the overall throughput in MB per second.
+   */
+  public double getMBPerSecond() {
+    return getBytesRead() / (1024.0 * 1024.0) / getElapsedSeconds();
+  }
+
+  /**
+   * @return the overall throughput in dumps per second.
+   */
+  public double getDumpsPerSecond() {
+    return getDumpCount() / getElapsedSeconds();
+  }
+
+  private double getElapsedSeconds() {
+    if (startTime == 0) {
+      return 1;
+    }
+    long end = (endTime != 0) ? endTime : System.currentTimeMillis();
+    return Math.max(1, end - startTime) / 1000.0;
+  }
+}
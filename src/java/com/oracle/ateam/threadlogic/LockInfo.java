@@ -13,10 +13,10 @@ package com.oracle.ateam.threadlogic;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Stack;
 
 import com.oracle.ateam.threadlogic.advisories.ThreadLogicConstants;
 import com.oracle.ateam.threadlogic.advisories.ThreadAdvisory;
@@ -32,16 +32,15 @@ public class LockInfo implements Serializable {
     
     private static Logger theLogger = CustomLogger.getLogger(LockInfo.class.getSimpleName());
 
-    public DeadLockEntry(String deadlockMsg, Stack<ThreadInfo> deadlockChain) {
+    public DeadLockEntry(String deadlockMsg, Collection<ThreadInfo> deadlockChain) {
       this.deadlockMsg = deadlockMsg;
-      this.deadlockChain = sanitiseChain(deadlockChain);
+      this.deadlockChain = deadlockChain;
 
       ThreadAdvisory deadLockAdvisory = ThreadAdvisory.lookupThreadAdvisory(ThreadLogicConstants.DEADLOCK_PATTERN);
       Iterator<ThreadInfo> iter = this.deadlockChain.iterator();
       while (iter.hasNext()) {
         ThreadInfo th = iter.next();
         th.setHealth(HealthLevel.FATAL);
-        ;
         th.getBlockedForLock().addAdvisory(deadLockAdvisory);
         th.addAdvisory(deadLockAdvisory);
       }
@@ -49,7 +48,6 @@ public class LockInfo implements Serializable {
       theLogger.fine("Final Deadlock Chain Stack contains:\n");
       StringBuffer sbuf = new StringBuffer("Deadlock Chain:\n--------------------------\n");
       sbuf.append(deadlockMsg + "\n");
-      int size = deadlockChain.size();
       for (iter = deadlockChain.iterator(); iter.hasNext();) {
         sbuf.append("\n\n\t" + iter.next().getContent());
       }
@@ -57,47 +55,6 @@ public class LockInfo implements Serializable {
       this.completeDeadlockStack = sbuf.toString();
     }
 
-    private Collection<ThreadInfo> sanitiseChain(Collection<ThreadInfo> deadlockChain) {
-
-      // Its possible for the chain to be deadlocked but the individual threads
-      // might not be part of circular chain
-      // Start with the end of the chain and navigate backward to see if they
-      // all are mutually linked
-
-      int stackDepth = deadlockChain.size();
-
-      Collection<ThreadInfo> blockedChain = new LinkedList<ThreadInfo>();
-      ArrayList<ThreadInfo> linkedThreads = new ArrayList<ThreadInfo>(deadlockChain);
-
-      // Add the very last thread to chain first...
-      ThreadInfo lastSavedThread = linkedThreads.get(stackDepth - 1);
-      blockedChain.add(lastSavedThread);
-
-      for (int i = 0; i < stackDepth - 1; i++) {
-        ThreadInfo blockedThread = linkedThreads.get(i);
-        LockInfo blockedForLock = blockedThread.getBlockedForLock();
-
-        // If the last thread was owning the locks which is required by the
-        // current thread
-        // then they are linked...
-        if (lastSavedThread.getOwnedLocks().contains(blockedForLock)) {
-          blockedChain.add(blockedThread);
-          lastSavedThread = blockedThread;
-          break;
-        }
-
-        // Else check if the current thread owns lock required by the previously
-        // saved thread
-        LockInfo prevThreadBlockingLock = lastSavedThread.getBlockedForLock();
-        if (blockedThread.getOwnedLocks().contains(prevThreadBlockingLock)) {
-          blockedChain.add(blockedThread);
-          lastSavedThread = blockedThread;
-          break;
-        }
-      }
-      return blockedChain;
-    }
-
     public String getCompleteDeadlockStack() {
       return completeDeadlockStack;
     }
@@ -165,84 +122,149 @@ public class LockInfo implements Serializable {
     this.lockOwner = lockOwner;
   }
 
-  public static DeadLockEntry detectDeadlock(ArrayList<LockInfo> locks) {
-    return detectDeadlock(locks.toArray(new LockInfo[] {}));
+  public static ArrayList<DeadLockEntry> detectDeadlocks(ArrayList<LockInfo> locks) {
+    return detectDeadlocks(locks.toArray(new LockInfo[] {}));
   }
 
-  public static DeadLockEntry detectDeadlock(LockInfo[] locks) {
-
-    // This stack will be used to track which threads have been visited
-    // previously while navigating blocked lock chains...
-    Stack<ThreadInfo> threadChainStack = new Stack<ThreadInfo>();
-
+  /**
+   * find all deadlocks between the owners and blockers of the given locks.
+   *
+   * The wait-for graph has an edge from each blocked thread to the owner of
+   * the lock it is blocked for. Its strongly connected components (Tarjan,
+   * linear in threads and edges) with more than one thread are the deadlock
+   * cycles.
+   *
+   * @return one entry per deadlock cycle, empty if there is none.
+   */
+  public static ArrayList<DeadLockEntry> detectDeadlocks(LockInfo[] locks) {
+    ArrayList<DeadLockEntry> deadlocks = new ArrayList<DeadLockEntry>();
+
+    // number the threads owning or blocked for any of the locks, and note the
+    // locks whose owner is blocked for them as well
+    IdentityHashMap<ThreadInfo, Integer> ids = new IdentityHashMap<ThreadInfo, Integer>();
+    ArrayList<ThreadInfo> threads = new ArrayList<ThreadInfo>();
+    IdentityHashMap<LockInfo, Boolean> ownerBlocked = new IdentityHashMap<LockInfo, Boolean>();
     for (LockInfo lock : locks) {
-
-      // Clear the stack and start with the new lock in the list for a possible
-      // deadlock...
-      threadChainStack.clear();
-
-      // Check if current owner is also blocked for a different lock
-      // Then navigate to other locks to see if thats held by someone waiting
-      // for the first lock...
-      String currentLockId = lock.getLockId();
-      ThreadInfo currentOwnerThread = lock.getLockOwner();
-
-      ThreadAdvisory.runLockInfoAdvisory(lock);
-
-      if (currentOwnerThread == null) {
-        // theLogger.fine("Contention for an unlockedlock:" + currentLockId
-        // +
-        // " Possible due to high concurrency..\nSo skipping that from Deadlock check");
-        continue;
+      ThreadInfo owner = lock.getLockOwner();
+      addThread(owner, ids, threads);
+      for (ThreadInfo blocker : lock.getBlockers()) {
+        addThread(blocker, ids, threads);
+        if ((owner != null) && (blocker == owner)) {
+          ownerBlocked.put(lock, Boolean.TRUE);
+        }
       }
+    }
+
+    // a thread is blocked for one lock at most, so it has one edge at most
+    int count = threads.size();
+    int[] waitsFor = new int[count];
+    for (int i = 0; i < count; i++) {
+      ThreadInfo owner = getBlockingOwner(threads.get(i), ownerBlocked);
+      Integer id = (owner != null) ? ids.get(owner) : null;
+      waitsFor[i] = (id != null) ? id.intValue() : -1;
+    }
 
-      ArrayList<ThreadInfo> blockedThreads = lock.getBlockers();
-      ArrayList<LockInfo> allOwnedLocks = currentOwnerThread.getOwnedLocks();
-      LockInfo blockedForLock = currentOwnerThread.getBlockedForLock();
-
-      // Current owner not blocked for anything, so safe....
-      // Nor is anyone currently waiting to lock
-      // Ignore for case where the owner is also blocked for the same lock - must be transient - 
-      // for a case where the lock its holding is the same lock its blocking too
-      // Saw a rare case of the owner of the lock blocking for the same lock it owns
-      // Possible the thread dump was taken at the exact moment as the thread tried to reobtain its lock
-      /*
-       * "RMICallHandler-2283" prio=1 tid=0x00002aab08ca8c70 nid=0x1f90 runnable [0x0000000046c5d000..0x0000000046c60c10]
-       * at oracle.xml.parser.v2.XMLNode.xdkInit(XMLNode.java:3511)
-       * - waiting to lock <0x00002acb22f504b0> (a oracle.j2ee.ws.saaj.soap.SOAPPartImpl$SOAPPartDocument)
-       * at oracle.xml.parser.v2.XMLNode.<init>(XMLNode.java:469)
-       * ...........
-       * at oracle.j2ee.ws.saaj.soap.SOAPPartImpl.getEnvelope(SOAPPartImpl.java:77)
-       * - locked <0x00002acb22f504b0> (a oracle.j2ee.ws.saaj.soap.SOAPPartImpl$SOAPPartDocument)
-       * at oracle.j2ee.ws.saaj.soap.MessageImpl.getSOAPBody(MessageImpl.java:989)
-       * 
-       */      
-      // Ignore this and move to next lock
-      if ((blockedForLock == null) || (blockedThreads.size() == 0) || lock.equals(blockedForLock)) {
+    int[] index = new int[count];
+    int[] low = new int[count];
+    boolean[] onStack = new boolean[count];
+    int[] stack = new int[count];
+    int[] path = new int[count];
+    int stackSize = 0;
+    int counter = 0;
+    Arrays.fill(index, -1);
+
+    for (int root = 0; root < count; root++) {
+      if (index[root] >= 0) {
         continue;
       }
 
-      threadChainStack.push(currentOwnerThread);
-      String navigationTrail = "Checking for deadlock with Thread[" + currentOwnerThread.getName()
-          + "], blocked for Lock [" + blockedForLock.getLockId() + "] while holding Lock [" + currentLockId + "] ";
-      // theLogger.fine(navigationTrail);
+      int depth = 0;
+      index[root] = low[root] = counter++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      path[depth++] = root;
+
+      while (depth > 0) {
+        int thread = path[depth - 1];
+        int owner = waitsFor[thread];
+        if ((owner >= 0) && (index[owner] < 0)) {
+          index[owner] = low[owner] = counter++;
+          stack[stackSize++] = owner;
+          onStack[owner] = true;
+          path[depth++] = owner;
+          continue;
+        }
 
-      // Check to see if the waiter on the lock can actual hold the lock
-      // Deadlock will occur when waiter on this lock blocks the owner of the
-      // lock from grabbing a resource that the waiter has already locked
-      // In that case, canThreadWaitForLock() will return false as it will mean
-      // a deadlock if the waiter does grab a lock...
-      if (isCyclicDependency(blockedForLock, threadChainStack)) {
-        String deadlockChain = printDeadlockChain(threadChainStack);
+        if ((owner >= 0) && onStack[owner]) {
+          low[thread] = Math.min(low[thread], low[owner]);
+        }
+        depth--;
+
+        if (low[thread] == index[thread]) {
+          // thread is the first visited thread of a component, pop it
+          int size = 0;
+          int member;
+          do {
+            member = stack[--stackSize];
+            onStack[member] = false;
+            size++;
+          } while (member != thread);
+
+          if (size > 1) {
+            // each thread of the component has its single edge within the
+            // component, so following the edges walks the cycle
+            ArrayList<ThreadInfo> chain = new ArrayList<ThreadInfo>(size);
+            member = thread;
+            do {
+              chain.add(threads.get(member));
+              member = waitsFor[member];
+            } while (member != thread);
+            deadlocks.add(new DeadLockEntry(printDeadlockChain(chain), chain));
+          }
+        }
+      }
+    }
+    return deadlocks;
+  }
 
-        ThreadAdvisory advisory = ThreadAdvisory.lookupThreadAdvisory(ThreadLogicConstants.DEADLOCK_PATTERN);
-        lock.addAdvisory(advisory);
+  private static void addThread(ThreadInfo thread, IdentityHashMap<ThreadInfo, Integer> ids,
+      ArrayList<ThreadInfo> threads) {
+    if ((thread != null) && !ids.containsKey(thread)) {
+      ids.put(thread, Integer.valueOf(threads.size()));
+      threads.add(thread);
+    }
+  }
 
-        return new DeadLockEntry(deadlockChain, threadChainStack);
-      }
+  /**
+   * @param ownerBlocked
+   *          the locks whose owner is one of their blockers.
+   * @return the owner of the lock the thread is blocked for, null if the
+   *         thread isn't blocked or waits for a lock it owns itself.
+   */
+  private static ThreadInfo getBlockingOwner(ThreadInfo thread, IdentityHashMap<LockInfo, Boolean> ownerBlocked) {
+    LockInfo blockedForLock = thread.getBlockedForLock();
+    if (blockedForLock == null) {
+      return null;
+    }
 
+    ThreadInfo owner = blockedForLock.getLockOwner();
+    // Saw a rare case of the owner of the lock blocking for the same lock it owns
+    // Possible the thread dump was taken at the exact moment as the thread tried to reobtain its lock
+    /*
+     * "RMICallHandler-2283" prio=1 tid=0x00002aab08ca8c70 nid=0x1f90 runnable [0x0000000046c5d000..0x0000000046c60c10]
+     * at oracle.xml.parser.v2.XMLNode.xdkInit(XMLNode.java:3511)
+     * - waiting to lock <0x00002acb22f504b0> (a oracle.j2ee.ws.saaj.soap.SOAPPartImpl$SOAPPartDocument)
+     * at oracle.xml.parser.v2.XMLNode.<init>(XMLNode.java:469)
+     * ...........
+     * at oracle.j2ee.ws.saaj.soap.SOAPPartImpl.getEnvelope(SOAPPartImpl.java:77)
+     * - locked <0x00002acb22f504b0> (a oracle.j2ee.ws.saaj.soap.SOAPPartImpl$SOAPPartDocument)
+     * at oracle.j2ee.ws.saaj.soap.MessageImpl.getSOAPBody(MessageImpl.java:989)
+     * 
+     */
+    if ((owner == null) || (owner == thread) || ownerBlocked.containsKey(blockedForLock)) {
+      return null;
     }
-    return null;
+    return owner;
   }
 
   public static String printDeadlockChain(Collection<ThreadInfo> threadChainStack) {
@@ -256,7 +278,7 @@ public class LockInfo implements Serializable {
       sbuf.append("   Thread: ");
       sbuf.append(th.getFilteredName());
       sbuf.append(" is waiting to lock monitor ");
-      sbuf.append(targetLock.getLockId());
+      sbuf.append(th.linkifyMonitor(targetLock.getLockId()));
       sbuf.append(",<br>&nbsp;&nbsp; which is held by Thread: ");
       sbuf.append(targetLockOwner.getFilteredName());
       sbuf.append("<br><br>");
@@ -296,52 +318,6 @@ public class LockInfo implements Serializable {
    * hasStateHealth)); } return lockRowsBuf.toString(); }
    */
 
-  public static boolean isCyclicDependency(LockInfo blockedForLock, Stack<ThreadInfo> threadChainStack) {
-
-    // The targetLock owner cannot be blocked for the same lock,
-    // so we can ignore the check if lockOwner is same as the thread contending
-    // for lock...
-
-    // Lets look if the owner of the current desired lock is blocking for any
-    // locks owned by the original thread wanting the desired lock
-    // We can check the stack to see if there is a matching entry...
-    ThreadInfo ownerOfBlockingLock = blockedForLock.lockOwner;
-
-    if ((ownerOfBlockingLock == null) || (ownerOfBlockingLock.getBlockedForLock() == null)
-        || (ownerOfBlockingLock.getOwnedLocks().size() == 0) ) {
-      // This thread has no locks or its not blocked for any locks
-      return false;
-    }
-
-    
-    // Saw a rare case of the owner of the lock blocking for the same lock it owns
-    // Possible the thread dump was taken at the exact moment as the thread tried to reobtain its lock
-    /*
-     * "RMICallHandler-2283" prio=1 tid=0x00002aab08ca8c70 nid=0x1f90 runnable [0x0000000046c5d000..0x0000000046c60c10]
-     * at oracle.xml.parser.v2.XMLNode.xdkInit(XMLNode.java:3511)
-     * - waiting to lock <0x00002acb22f504b0> (a oracle.j2ee.ws.saaj.soap.SOAPPartImpl$SOAPPartDocument)
-     * at oracle.xml.parser.v2.XMLNode.<init>(XMLNode.java:469)
-     * ...........
-     * at oracle.j2ee.ws.saaj.soap.SOAPPartImpl.getEnvelope(SOAPPartImpl.java:77)
-     * - locked <0x00002acb22f504b0> (a oracle.j2ee.ws.saaj.soap.SOAPPartImpl$SOAPPartDocument)
-     * at oracle.j2ee.ws.saaj.soap.MessageImpl.getSOAPBody(MessageImpl.java:989)
-     * 
-     */
-
-    if (blockedForLock.getBlockers().contains(ownerOfBlockingLock)) {
-      return false;
-    }
-
-    if (threadChainStack.contains(ownerOfBlockingLock))
-      return true;
-
-    // Save this thread in the stack for chaining of dependency....
-    threadChainStack.push(ownerOfBlockingLock);
-
-    // Now lets recursively see who is holding lock for the ownerOfBlockingLock
-    return isCyclicDependency(ownerOfBlockingLock.getBlockedForLock(), threadChainStack);
-  }
-
   public void addAdvisory(ThreadAdvisory advisory) {
     if ((advisories != null) && !advisories.contains(advisory))
       this.advisories.add(advisory);
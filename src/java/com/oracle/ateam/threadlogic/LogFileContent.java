@@ -35,12 +35,13 @@ package com.oracle.ateam.threadlogic;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
 
+import com.oracle.ateam.threadlogic.parsers.DumpParserFactory;
+
 /**
  * logfile content info object of log file thread dump information.
  * 
@@ -118,7 +119,7 @@ public class LogFileContent extends AbstractInfo implements Serializable {
 
     LineNumberReader br = null;
     try {
-      br = new LineNumberReader(new FileReader(getLogfile()));
+      br = DumpParserFactory.get().openLogfile(getLogfile());
       while (br.ready()) {
         contentReader.append(br.readLine());
         contentReader.append("\n");
@@ -128,7 +129,9 @@ public class LogFileContent extends AbstractInfo implements Serializable {
       contentReader.append("The Logfile unavailable! " + ex.getMessage());
     } finally {
       try {
-        br.close();
+        if (br != null) {
+          br.close();
+        }
       } catch (IOException ex) {
         ex.printStackTrace();
       }
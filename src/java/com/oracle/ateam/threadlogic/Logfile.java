@@ -47,6 +47,7 @@ public class Logfile extends AbstractInfo {
   private DumpParser usedParser;
   private String tempFileLocation;  
   private ArrayList<ThreadDumpInfo> tdList = new ArrayList<ThreadDumpInfo>();
+  private long parsedLength = -1;
 
   /**
    * Creates a new instance of Logfile
@@ -93,10 +94,29 @@ public class Logfile extends AbstractInfo {
     return tdList;
   }
   
+  /**
+   * add the dump to the log file, the cpu time its threads used since the
+   * previous dump of the log file is computed on the way.
+   */
   public void addThreadDump(ThreadDumpInfo tdi) {
+    if (!tdList.isEmpty()) {
+      tdi.computeCpuDeltas(tdList.get(tdList.size() - 1));
+    }
     tdList.add(tdi);
   }
   
+  /**
+   * @return the number of bytes of the log file parsed so far, -1 if the dumps
+   *         weren't read from a plain file.
+   */
+  public long getParsedLength() {
+    return parsedLength;
+  }
+
+  public void setParsedLength(long parsedLength) {
+    this.parsedLength = parsedLength;
+  }
+
   /**
    * @return the tempFileLocation
    */
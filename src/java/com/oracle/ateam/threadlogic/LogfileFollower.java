@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import com.oracle.ateam.threadlogic.parsers.AbstractDumpParser;
+import com.oracle.ateam.threadlogic.parsers.DumpParser;
+import com.oracle.ateam.threadlogic.parsers.DumpParserFactory;
+import com.oracle.ateam.threadlogic.parsers.FallbackParser;
+import com.oracle.ateam.threadlogic.utils.CustomLogger;
+import com.oracle.ateam.threadlogic.utils.DateMatcher;
+import com.oracle.ateam.threadlogic.utils.MappedLineReader;
+
+/**
+ * follows a log file while thread dumps are appended to it (e.g. the server
+ * out file while kill -3 is sent to the server). The file is polled for
+ * growth, every poll parses the dumps appended completely so far. A dump is
+ * complete once its end of dump line or the next dump start was written, the
+ * dump still being written is left for the next poll. Only the new bytes are
+ * read, the offset and line number after the last parsed region are
+ * remembered. The parsed dumps are added to the log file on the EDT.
+ */
+public class LogfileFollower {
+
+  /**
+   * notified on the EDT about the dumps found in the appended region, after
+   * they were added to the log file.
+   */
+  public interface Listener {
+    public void dumpsAppended(Logfile logFile, ArrayList<DefaultMutableTreeNode> dumpNodes);
+  }
+
+  private static Logger theLogger = CustomLogger.getLogger(LogfileFollower.class.getSimpleName());
+
+  private static final int SCAN_CHUNK = 4096;
+
+  private final File file;
+  private final Logfile logFile;
+  private final Map dumpMap;
+  private final Listener listener;
+
+  private long offset;
+  private int lineNumber = -1;
+  // dumps of the log file including the ones not added on the EDT yet
+  private int dumpCount;
+
+  private ScheduledExecutorService poller;
+
+  /**
+   * @param file
+   *          the file to follow.
+   * @param logFile
+   *          the log file the found dumps are added to, following starts at
+   *          its parsed length.
+   * @param dumpMap
+   *          the map to store the threads of the found dumps in.
+   */
+  public LogfileFollower(File file, Logfile logFile, Map dumpMap, Listener listener) {
+    this.file = file;
+    this.logFile = logFile;
+    this.dumpMap = dumpMap;
+    this.listener = listener;
+    this.offset = Math.max(0, logFile.getParsedLength());
+    this.dumpCount = logFile.getThreadDumps().size();
+  }
+
+  /**
+   * start polling the file every given number of milliseconds.
+   */
+  public synchronized void start(long pollMillis) {
+    if (poller != null) {
+      return;
+    }
+
+    poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "Follow " + file.getName());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    poller.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        try {
+          poll();
+        } catch (Exception ex) {
+          // keep following, a failing poll would cancel the schedule
+          theLogger.warning("Error following " + file + ": " + ex);
+        }
+      }
+    }, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized void stop() {
+    if (poller != null) {
+      poller.shutdown();
+      poller = null;
+    }
+  }
+
+  public synchronized boolean isFollowing() {
+    return poller != null;
+  }
+
+  /**
+   * check the file for growth and parse the complete dumps of the appended
+   * region.
+   */
+  void poll() throws IOException {
+    long size = file.length();
+    if (size < offset) {
+      // the log was rotated or truncated, start over.
+      offset = 0;
+      lineNumber = 0;
+    }
+
+    if (size == offset) {
+      return;
+    }
+
+    long end = findLastLineEnd(offset, size);
+    if (end > offset) {
+      end = findCompleteEnd(offset, end);
+    }
+    if (end > offset) {
+      parseRegion(end);
+    }
+  }
+
+  /**
+   * @return the offset up to which the complete lines in [start, end) hold
+   *         complete dumps. The dump still being written is left out together
+   *         with its timestamp line, if no dump was started only the last
+   *         line is kept as it might be the timestamp of the next one.
+   */
+  private long findCompleteEnd(long start, long end) throws IOException {
+    Charset charset = Charset.defaultCharset();
+    MappedLineReader detector = new MappedLineReader(file, charset, start, end, 0);
+    DumpParser dp;
+    try {
+      dp = DumpParserFactory.get().getDumpParserForLogfile(detector, new HashMap(), false, 0);
+    } finally {
+      detector.close();
+    }
+    if (dp == null) {
+      return findLastLineEnd(start, end - 1);
+    }
+    if (!(dp instanceof AbstractDumpParser)) {
+      return end;
+    }
+
+    AbstractDumpParser parser = (AbstractDumpParser) dp;
+    MappedLineReader scanner = new MappedLineReader(file, charset, start, end, 0);
+    DateMatcher dm = new DateMatcher();
+    // start of the dump not ended yet, -1 if there is none
+    long openDumpStart = -1;
+    try {
+      String previousLine = null;
+      long previousOffset = start;
+      while (scanner.ready()) {
+        long lineOffset = scanner.getPosition();
+        String line = scanner.readLine();
+        if (line.trim().length() == 0) {
+          continue;
+        }
+
+        if (parser.isDumpStart(line)) {
+          boolean dateInFront = false;
+          if (previousLine != null && !dm.isPatternError()) {
+            dm.resetLastMatch();
+            dateInFront = dm.checkForDateMatch(previousLine) != null;
+          }
+          openDumpStart = dateInFront ? previousOffset : lineOffset;
+        } else if (parser.isDumpEnd(line)) {
+          openDumpStart = -1;
+        }
+        previousLine = line;
+        previousOffset = lineOffset;
+      }
+    } finally {
+      scanner.close();
+    }
+    return (openDumpStart >= 0) ? openDumpStart : end;
+  }
+
+  private void parseRegion(long end) throws IOException {
+    Charset charset = Charset.defaultCharset();
+    if (lineNumber < 0) {
+      // count the lines of the part parsed when the file was opened.
+      MappedLineReader counter = new MappedLineReader(file, charset, 0, offset, 0);
+      try {
+        lineNumber = counter.skipToEnd();
+      } finally {
+        counter.close();
+      }
+    }
+
+    final ArrayList<DefaultMutableTreeNode> dumpNodes = new ArrayList<DefaultMutableTreeNode>();
+    final Map threadStore = new HashMap();
+    MappedLineReader reader = new MappedLineReader(file, charset, offset, end, lineNumber);
+    DumpParser dp = DumpParserFactory.get().getDumpParserForLogfile(reader, threadStore, false, dumpCount + 1);
+    DumpParser usedParser = dp;
+    try {
+      while ((dp != null) && dp.hasMoreDumps()) {
+        dumpNodes.add((DefaultMutableTreeNode) dp.parseNext());
+
+        // Try to switch parsers if we have determined the native jvm vendor
+        if (dp instanceof FallbackParser && ((FallbackParser) dp).determinedJvmVendor()) {
+          dp = ((FallbackParser) dp).recreateParserBasedOnVendor();
+          usedParser = dp;
+        }
+      }
+    } finally {
+      if (dp != null) {
+        dp.close();
+      } else {
+        reader.close();
+      }
+    }
+
+    MappedLineReader counter = new MappedLineReader(file, charset, offset, end, lineNumber);
+    try {
+      lineNumber = counter.skipToEnd();
+    } finally {
+      counter.close();
+    }
+    offset = end;
+    dumpCount += dumpNodes.size();
+
+    // the log file and the dump map are used by the EDT
+    final DumpParser parser = usedParser;
+    final long parsedLength = end;
+    SwingUtilities.invokeLater(new Runnable() {
+      public void run() {
+        dumpMap.putAll(threadStore);
+        if (parser != null) {
+          logFile.setUsedParser(parser);
+        }
+        for (DefaultMutableTreeNode node : dumpNodes) {
+          ThreadDumpInfo tdi = (ThreadDumpInfo) node.getUserObject();
+          logFile.addThreadDump(tdi);
+          tdi.setLogFile(logFile);
+        }
+        logFile.setParsedLength(parsedLength);
+
+        if (!dumpNodes.isEmpty()) {
+          listener.dumpsAppended(logFile, dumpNodes);
+        }
+      }
+    });
+  }
+
+  /**
+   * @return the offset after the last line break within [start, end), start
+   *         if there is none.
+   */
+  private long findLastLineEnd(long start, long end) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      byte[] chunk = new byte[SCAN_CHUNK];
+      long pos = end;
+      while (pos > start) {
+        int len = (int) Math.min(SCAN_CHUNK, pos - start);
+        pos -= len;
+        raf.seek(pos);
+        raf.readFully(chunk, 0, len);
+        for (int i = len - 1; i >= 0; i--) {
+          if (chunk[i] == '\n') {
+            return pos + i + 1;
+          }
+        }
+      }
+      return start;
+    } finally {
+      raf.close();
+    }
+  }
+}
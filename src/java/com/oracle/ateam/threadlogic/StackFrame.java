@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic;
+
+import java.io.Serializable;
+
+/**
+ * a single line of a thread stack as read from the dump. Besides the plain
+ * line the type of the line is kept, for method frames the class, method and
+ * location are parsed when first asked for. Frames are immutable, use
+ * {@link FrameTable#intern(int, String)} to share them between threads.
+ */
+public class StackFrame implements Serializable {
+
+  /**
+   * title, thread state and any other line of the stack
+   */
+  public static final int LINE = 0;
+
+  /**
+   * a method frame ("at ...")
+   */
+  public static final int FRAME = 1;
+
+  /**
+   * lock annotations of the previous frame
+   */
+  public static final int WAITING_ON = 2;
+  public static final int PARKING_TO_WAIT = 3;
+  public static final int WAITING_TO_LOCK = 4;
+  public static final int LOCKED = 5;
+
+  /**
+   * a synchronizer listed under "Locked ownable synchronizers"
+   */
+  public static final int LOCKED_OWNABLE = 6;
+
+  private final int type;
+  private final String line;
+
+  private transient String className;
+  private transient String methodName;
+  private transient String location;
+
+  public StackFrame(int type, String line) {
+    this.type = type;
+    this.line = line;
+  }
+
+  public int getType() {
+    return type;
+  }
+
+  /**
+   * @return the line as read from the dump.
+   */
+  public String getLine() {
+    return line;
+  }
+
+  public boolean isFrame() {
+    return type == FRAME;
+  }
+
+  public boolean isLock() {
+    return type >= WAITING_ON;
+  }
+
+  /**
+   * @return the fully qualified class of a method frame, null for other lines.
+   */
+  public String getClassName() {
+    parseFrame();
+    return className;
+  }
+
+  /**
+   * @return the method name of a method frame, null for other lines.
+   */
+  public String getMethodName() {
+    parseFrame();
+    return methodName;
+  }
+
+  /**
+   * @return the location of a method frame like "Thread.java:619" or "Native
+   *         Method", null if there is none.
+   */
+  public String getLocation() {
+    parseFrame();
+    return location;
+  }
+
+  private void parseFrame() {
+    if (type != FRAME || methodName != null) {
+      return;
+    }
+
+    String frame = line.trim();
+    if (frame.startsWith("at ")) {
+      frame = frame.substring(3).trim();
+    }
+
+    int paren = frame.indexOf('(');
+    String qualifiedMethod = paren >= 0 ? frame.substring(0, paren) : frame;
+    if (paren >= 0) {
+      int end = frame.lastIndexOf(')');
+      location = frame.substring(paren + 1, end > paren ? end : frame.length());
+    }
+
+    int dot = qualifiedMethod.lastIndexOf('.');
+    className = FrameTable.internSymbol(dot > 0 ? qualifiedMethod.substring(0, dot) : "");
+    methodName = FrameTable.internSymbol(qualifiedMethod.substring(dot + 1));
+  }
+
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof StackFrame)) {
+      return false;
+    }
+    StackFrame other = (StackFrame) o;
+    return (type == other.type) && line.equals(other.line);
+  }
+
+  public int hashCode() {
+    return 31 * line.hashCode() + type;
+  }
+
+  public String toString() {
+    return line;
+  }
+
+  /**
+   * frames read from a session are shared again with the loaded dumps.
+   */
+  private Object readResolve() {
+    return FrameTable.intern(this);
+  }
+}
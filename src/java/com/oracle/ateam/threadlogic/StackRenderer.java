@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * renders the stack frames of a thread as html for display, monitors are
+ * turned into links for monitor navigation. Threads only keep their frames,
+ * the html is created when a thread is displayed and the last rendered stacks
+ * are kept in a small cache.
+ */
+public abstract class StackRenderer implements Serializable {
+
+  /**
+   * renderer for Sun/Oracle and OpenJDK dumps, monitors look like
+   * "&lt;0x04292a30&gt;".
+   */
+  public static final StackRenderer HOTSPOT = new HotspotRenderer();
+
+  /**
+   * renderer for JRockit dumps, monitors look like
+   * "java/lang/Object@0x101F0B40[fat lock]".
+   */
+  public static final StackRenderer JROCKIT = new JRockitRenderer();
+
+  private static final int RENDER_CACHE_SIZE = 128;
+
+  // keyed by the frames of a thread, the font size at rendering time is kept
+  // with the html as it is part of the markup.
+  private static final Map<StackFrame[], String[]> renderCache = new LinkedHashMap<StackFrame[], String[]>(
+          RENDER_CACHE_SIZE, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<StackFrame[], String[]> eldest) {
+      return size() > RENDER_CACHE_SIZE;
+    }
+  };
+
+  /**
+   * add a monitor link for monitor navigation
+   *
+   * @param line
+   *          containing monitor
+   */
+  public abstract String linkifyMonitor(String line);
+
+  /**
+   * get the html of the passed stack, served from the render cache if it was
+   * rendered recently.
+   */
+  public String render(StackFrame[] frames) {
+    String fontSize = ThreadLogic.getFontSizeModifier(-1);
+    synchronized (renderCache) {
+      String[] cached = renderCache.get(frames);
+      if ((cached != null) && cached[0].equals(fontSize)) {
+        return cached[1];
+      }
+    }
+
+    String html = renderStack(frames, fontSize);
+    synchronized (renderCache) {
+      renderCache.put(frames, new String[] { fontSize, html });
+    }
+    return html;
+  }
+
+  /**
+   * render the passed stack without using the render cache.
+   */
+  public String renderStack(StackFrame[] frames) {
+    return renderStack(frames, ThreadLogic.getFontSizeModifier(-1));
+  }
+
+  private String renderStack(StackFrame[] frames, String fontSize) {
+    StringBuffer content = new StringBuffer(frames.length * 80 + 64);
+    content.append("<pre><font size=").append(fontSize).append(">");
+    for (int i = 0; i < frames.length; i++) {
+      if (frames[i].isLock()) {
+        content.append(linkifyMonitor(frames[i].getLine()));
+      } else {
+        content.append(frames[i].getLine());
+      }
+      content.append("\n");
+    }
+    content.append("</font></pre><br>");
+    return content.toString();
+  }
+
+  private static class HotspotRenderer extends StackRenderer {
+
+    public String linkifyMonitor(String line) {
+      try {
+        if (line != null && line.indexOf('<') >= 0) {
+          String begin = line.substring(0, line.indexOf('<'));
+          String monitor = line.substring(line.indexOf('<'), line.indexOf('>') + 1);
+          String end = line.substring(line.indexOf('>') + 1);
+          monitor = monitor.replaceAll("<", "<a href=\"monitor://" + monitor + "\">&lt;");
+          monitor = monitor.substring(0, monitor.length() - 1) + "&gt;</a>";
+          return (begin + monitor + end);
+        } else if (line != null && line.indexOf('@') >= 0) {
+          String begin = line.substring(0, line.indexOf('@') + 1);
+          String monitor = line.substring(line.indexOf('@'));
+          monitor = monitor.replaceAll("@", "@<a href=\"monitor://<" + monitor.substring(1) + ">\">");
+          monitor = monitor.substring(0, monitor.length() - 1) + "</a>";
+          return (begin + monitor);
+        } else {
+          return (line);
+        }
+      } catch (Exception e) {
+        return null;
+      }
+    }
+
+    private Object readResolve() {
+      return HOTSPOT;
+    }
+  }
+
+  private static class JRockitRenderer extends StackRenderer {
+
+    public String linkifyMonitor(String line) {
+      if (line != null) {
+        int colon = line.indexOf(":");
+        int last = line.indexOf('[') >= 0 ? line.indexOf('[') : line.length();
+        String begin = colon != -1 ? line.substring(0, colon + 2) : "";
+        String monitor = colon != -1 ? line.substring(colon + 2, last) : line;
+        String end = line.substring(last);
+        monitor = "<a href=\"monitor://" + monitor + "\">" + monitor;
+        monitor = monitor.substring(0, monitor.length()) + "</a>";
+        return (begin + monitor + end);
+      } else {
+        return (line);
+      }
+    }
+
+    private Object readResolve() {
+      return JROCKIT;
+    }
+  }
+}
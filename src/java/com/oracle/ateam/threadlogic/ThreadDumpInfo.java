@@ -36,15 +36,23 @@ import com.oracle.ateam.threadlogic.LockInfo.DeadLockEntry;
 import com.oracle.ateam.threadlogic.advisories.ThreadAdvisory;
 import com.oracle.ateam.threadlogic.advisories.ThreadGroup;
 import com.oracle.ateam.threadlogic.categories.Category;
+import com.oracle.ateam.threadlogic.categories.TopCpuCategory;
 import com.oracle.ateam.threadlogic.parsers.AbstractDumpParser;
+import com.oracle.ateam.threadlogic.utils.DateMatcher;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -59,6 +67,7 @@ public class ThreadDumpInfo extends ThreadLogicElement {
   private int overallThreadsWaitingWithoutLocksCount;
 
   private String startTime;
+  private long startTimeMillis;
   private String jvmVersion;
   private String jvmType;  
   private boolean parsedWithFBParser = false;  
@@ -73,11 +82,12 @@ public class ThreadDumpInfo extends ThreadLogicElement {
   private Category blockingMonitors;
   private Category threads;
   private Category deadlocks;
+  private TopCpuCategory topCpuThreads;
   private HeapInfo heapInfo;
   
 
   protected String deadLockMsg;
-  protected DeadLockEntry deadlockEntry;
+  protected ArrayList<DeadLockEntry> deadlockEntries = new ArrayList<DeadLockEntry>();
   protected boolean hasDeadlock;
   protected boolean isIBMJVM = false;
   protected String mainThread = "";
@@ -92,11 +102,18 @@ public class ThreadDumpInfo extends ThreadLogicElement {
   private ArrayList<ThreadGroup> threadGrpList = new ArrayList<ThreadGroup>();
 
   private ArrayList<ThreadInfo> lockList = new ArrayList<ThreadInfo>();
-  protected Hashtable<String, LockInfo> lockTable = new Hashtable<String, LockInfo>();
-  protected Hashtable<String, ThreadInfo> threadTable = new Hashtable<String, ThreadInfo>();
-  protected Hashtable<String, ThreadGroup> threadGroupTable = new Hashtable<String, ThreadGroup>();
+  protected Map<String, LockInfo> lockTable = new HashMap<String, LockInfo>();
+  protected Map<String, ThreadInfo> threadTable = new HashMap<String, ThreadInfo>();
+  protected Map<String, ThreadGroup> threadGroupTable = new HashMap<String, ThreadGroup>();
   
-  private Hashtable<String, String> threadContextDataMap = new Hashtable<String, String>();
+  private Map<String, String> threadContextDataMap = new HashMap<String, String>();
+
+  // secondary indexes of the thread table, built on the first lookup and
+  // dropped whenever the thread table changes.
+  private Map<String, ThreadInfo> threadsById;
+  private Map<String, ThreadInfo> threadsByNid;
+  private TreeMap<String, ThreadInfo> threadsByName;
+  private TreeMap<String, ThreadInfo> threadsByNameId;
   
   static ExecutorService fixedPoolExecutor = Executors.newFixedThreadPool(6);
   
@@ -137,13 +154,31 @@ public class ThreadDumpInfo extends ThreadLogicElement {
   }
 
   /**
-   * set the start time as string, can be of any format.
+   * set the start time as string, can be of any format. The timestamp formats
+   * of the supported vms are also parsed into the start time millis.
    * 
    * @param startTime
    *          the start time as string.
    */
   public void setStartTime(String startTime) {
     this.startTime = startTime;
+    this.startTimeMillis = Math.max(0, DateMatcher.parseMillis(startTime));
+  }
+
+  /**
+   * set the start time of a dump taken now or logged as milliseconds.
+   */
+  public void setStartTime(long startTimeMillis) {
+    this.startTime = new Date(startTimeMillis).toString();
+    this.startTimeMillis = startTimeMillis;
+  }
+
+  /**
+   * @return the start time in milliseconds since the epoch, 0 if it isn't
+   *         known.
+   */
+  public long getStartTimeMillis() {
+    return startTimeMillis;
   }
 
   /**
@@ -508,38 +543,52 @@ public class ThreadDumpInfo extends ThreadLogicElement {
     int index = 0;
     
     while (index < noOfThreads) {
-      ThreadInfo ti = (ThreadInfo) threads.getNodeAt(index++).getUserObject();
-      ti.setParentThreadDump(this);
-      ti.setIsIBMJVM(this.isIBMJVM);
-      this.threadList.add(ti);
-      
-      String nid = ti.getNid();      
-      String contextData = this.getThreadContextData(nid);
-      if (contextData != null)
-        ti.setCtxData(contextData);
-      
-      if (ti.isMainThread()) {
-        String[] stackLines = ti.getContent().split("(\n)|(\r\n)");        
-        for(String classEntry: stackLines) {
-          
-          int mainIndex = classEntry.indexOf(".main(");
+      addThread((ThreadInfo) threads.getNodeAt(index++).getUserObject());
+    }
+  }
+
+  /**
+   * set the threads of this dump without a threads category, used if the
+   * dump was parsed into the analysis model only.
+   */
+  public void setThreads(Collection<ThreadInfo> threads) {
+    for (ThreadInfo ti : threads) {
+      addThread(ti);
+    }
+  }
+
+  private void addThread(ThreadInfo ti) {
+    ti.setParentThreadDump(this);
+    ti.setIsIBMJVM(this.isIBMJVM);
+    this.threadList.add(ti);
+    
+    String nid = ti.getNid();      
+    String contextData = this.getThreadContextData(nid);
+    if (contextData != null)
+      ti.setCtxData(contextData);
+    
+    if (ti.isMainThread()) {
+      String[] stackLines = ti.getStackText().split("(\n)|(\r\n)");        
+      for(String classEntry: stackLines) {
+        
+        int mainIndex = classEntry.indexOf(".main(");
+        if (mainIndex > 0) {
+          this.mainThread = classEntry.substring(0, mainIndex).replaceAll("/", ".").trim();
+          int len = this.mainThread.length();
+          mainIndex = this.mainThread.indexOf(" ");
           if (mainIndex > 0) {
-            this.mainThread = classEntry.substring(0, mainIndex).replaceAll("/", ".").trim();
-            int len = this.mainThread.length();
-            mainIndex = this.mainThread.indexOf(" ");
-            if (mainIndex > 0) {
-              this.mainThread = this.mainThread.substring(mainIndex + 1);
-            }
-            break;
+            this.mainThread = this.mainThread.substring(mainIndex + 1);
           }
+          break;
         }
       }
-        
-
-      // ThreadInfo.getName() returns everything including state/nid/tid..., so
-      // use the filteredName that does not have the rest of the labels...      
-      this.threadTable.put(ti.getNameId(), ti);
     }
+      
+
+    // ThreadInfo.getName() returns everything including state/nid/tid..., so
+    // use the filteredName that does not have the rest of the labels...      
+    this.threadTable.put(ti.getNameId(), ti);
+    clearThreadIndexes();
   }
 
   public ThreadInfo getThread(String threadName) {
@@ -549,13 +598,21 @@ public class ThreadDumpInfo extends ThreadLogicElement {
     return this.threadTable.get(filteredThreadName);
   }
   
+  /**
+   * find the thread whose name contains the name of the given thread title.
+   * The exact name and a name prefix are looked up in the name index, only
+   * other partial names are searched for in all threads.
+   */
   public ThreadInfo getThreadByName(String threadName) {
-    String filteredSearchName = threadName.replaceAll("\\[.*\\] ", "").replaceAll("\" .*$", "\"").trim();
-    Collection<ThreadInfo> threads = this.threadTable.values();
-    for(ThreadInfo ti: threads) {
-      String filteredName = ti.getFilteredName();      
-      if (filteredName.contains(filteredSearchName))
-        return ti;
+    String filteredSearchName = ThreadInfo.filterName(threadName);
+    buildThreadIndexes();
+    ThreadInfo ti = searchIndex(threadsByName, filteredSearchName);
+    if (ti != null)
+      return ti;
+
+    for (ThreadInfo thread : this.threadTable.values()) {
+      if (thread.getFilteredName().contains(filteredSearchName))
+        return thread;
     }
     return null;
   }
@@ -564,19 +621,77 @@ public class ThreadDumpInfo extends ThreadLogicElement {
     if (id == null)
       return null;
     
-    Collection<ThreadInfo> threads = this.threadTable.values();
-    for(ThreadInfo ti: threads) {
-      String tid = ti.getId();      
-      if (id.contains(id))
-        return ti;
-    }
-    return null;
+    buildThreadIndexes();
+    return threadsById.get(id);
+  }
+
+  public ThreadInfo getThreadByNid(String nid) {
+    if (nid == null)
+      return null;
+
+    buildThreadIndexes();
+    return threadsByNid.get(nid);
   }
 
-  public Hashtable<String, ThreadInfo> getThreadMap() {
+  public Map<String, ThreadInfo> getThreadMap() {
     return this.threadTable;
   }
 
+  private void clearThreadIndexes() {
+    threadsById = null;
+    threadsByNid = null;
+    threadsByName = null;
+    threadsByNameId = null;
+  }
+
+  /**
+   * index the threads of the thread table by id, native id, name and name id.
+   * For duplicate keys the first thread in dump order is kept.
+   */
+  private void buildThreadIndexes() {
+    if (threadsByNameId != null)
+      return;
+
+    Map<String, ThreadInfo> byId = new HashMap<String, ThreadInfo>();
+    Map<String, ThreadInfo> byNid = new HashMap<String, ThreadInfo>();
+    TreeMap<String, ThreadInfo> byName = new TreeMap<String, ThreadInfo>();
+    TreeMap<String, ThreadInfo> byNameId = new TreeMap<String, ThreadInfo>();
+    for (ThreadInfo ti : threadList) {
+      if (threadTable.get(ti.getNameId()) != ti)
+        continue;
+
+      addToIndex(byId, ti.getId(), ti);
+      addToIndex(byNid, ti.getNid(), ti);
+      addToIndex(byName, ti.getFilteredName(), ti);
+      addToIndex(byNameId, ti.getNameId(), ti);
+    }
+
+    threadsById = byId;
+    threadsByNid = byNid;
+    threadsByName = byName;
+    threadsByNameId = byNameId;
+  }
+
+  private static void addToIndex(Map<String, ThreadInfo> index, String key, ThreadInfo ti) {
+    if ((key != null) && !index.containsKey(key))
+      index.put(key, ti);
+  }
+
+  /**
+   * @return the thread of the given key or else of the first key starting
+   *         with it.
+   */
+  private static ThreadInfo searchIndex(TreeMap<String, ThreadInfo> index, String key) {
+    ThreadInfo ti = index.get(key);
+    if (ti != null)
+      return ti;
+
+    Map.Entry<String, ThreadInfo> entry = index.ceilingEntry(key);
+    if ((entry != null) && entry.getKey().startsWith(key))
+      return entry.getValue();
+    return null;
+  }
+
   public void parseLocks(AbstractDumpParser parser) {
 
     for (ThreadInfo ti : threadList) {
@@ -599,12 +714,22 @@ public class ThreadDumpInfo extends ThreadLogicElement {
       }
     }
 
+    // threads parked on an owned j.u.c lock are blocked for it like for a monitor
+    for (ThreadInfo ti : threadList) {
+      String parkedLockId = ti.getParkedForLockId();
+      if ((parkedLockId == null) || (ti.getBlockedForLock() != null))
+        continue;
+
+      LockInfo lock = this.lockTable.get(parkedLockId);
+      if ((lock != null) && (lock.getLockOwner() != null) && (lock.getLockOwner() != ti))
+        ti.setBlockedForLock(lock);
+    }
   }
 
   // Special method for IBM Thread dumps
   // The lock & threads are separate and have to be linked together
   // The lock has partial thread info while the threads dont know abt locks...
-  public void linkThreadsWithLocks(Hashtable<String, LockInfo> lockTable) {
+  public void linkThreadsWithLocks(Map<String, LockInfo> lockTable) {
 
     this.lockTable = lockTable;
 
@@ -656,14 +781,17 @@ public class ThreadDumpInfo extends ThreadLogicElement {
     // Its possible the thread didnt have ID information (as in IBM Lock section only carries the thread name, no tid)
     // 2LKMONINUSE sys_mon_t:0x000000011C47FAF8 infl_mon_t: 0x000000011C47FB38:
     // 3LKMONOBJECT java/net/URLClassLoader@0x0700000000F829F8/0x0700000000F82A10: Flat locked by "ReplicatedCache|SERVICE_STOPPED" (0x000000017E3A7700), entry count 2    
-    // so the given nameId might be really only just the name
-    Iterator<String> keys = threadTable.keySet().iterator();
-    while(keys.hasNext()) {
-      String key = keys.next();
-      if (key.contains(nameId))
-        return threadTable.get(key);
+    // so the given nameId might be really only just the name, which is a prefix of the name id
+    buildThreadIndexes();
+    ti = searchIndex(threadsByNameId, nameId);
+    if (ti != null)
+      return ti;
+
+    for (Map.Entry<String, ThreadInfo> entry : threadTable.entrySet()) {
+      if (entry.getKey().contains(nameId))
+        return entry.getValue();
     }
-    return ti;
+    return null;
   }
 
   public LockInfo findLock(String lockId) {
@@ -672,7 +800,7 @@ public class ThreadDumpInfo extends ThreadLogicElement {
 
   public void addLock(LockInfo lock) {
     // Check if Lock is already registered...
-    if (lockTable.contains(lock.getLockId()))
+    if (lockTable.containsKey(lock.getLockId()))
       return;
 
     lockTable.put(lock.getLockId(), lock);
@@ -687,17 +815,17 @@ public class ThreadDumpInfo extends ThreadLogicElement {
   public ThreadInfo getLockOwner(String lock) {
     theLogger.finest("Lock searched for: " + lock);
     theLogger.finest("Lock Table size: " + lockTable.size());
-    Enumeration<String> keys = lockTable.keys();
-    while(keys.hasMoreElements()) {
-      String key = keys.nextElement();
-      theLogger.finest("Lock : " + key + ", lock:" + lockTable.get(key));
+    if (theLogger.isLoggable(Level.FINEST)) {
+      for (Map.Entry<String, LockInfo> entry : lockTable.entrySet()) {
+        theLogger.finest("Lock : " + entry.getKey() + ", lock:" + entry.getValue());
+      }
     }
     theLogger.finest("Lock: " + lockTable.get(lock));
     return this.lockTable.get(lock).getLockOwner();
   }
 
   public boolean detectDeadlock() {
-    if (this.hasDeadlock && deadlockEntry != null)
+    if (this.hasDeadlock)
       return true;
 
     LockInfo[] lockArr = lockTable.values().toArray(new LockInfo[] {});
@@ -706,12 +834,16 @@ public class ThreadDumpInfo extends ThreadLogicElement {
       ThreadAdvisory.runLockInfoAdvisory(lock);
     }
 
-    deadlockEntry = LockInfo.detectDeadlock(lockArr);
-    if (deadlockEntry != null) {
+    deadlockEntries = LockInfo.detectDeadlocks(lockArr);
+    if (deadlockEntries.size() > 0) {
       ThreadAdvisory deadlockAdvisory = ThreadAdvisory.getDeadlockAdvisory();
 
       this.hasDeadlock = true;
-      this.deadLockMsg = deadlockEntry.getDeadlockMsg();
+      StringBuffer sbuf = new StringBuffer();
+      for (DeadLockEntry entry : deadlockEntries) {
+        sbuf.append(entry.getDeadlockMsg());
+      }
+      this.deadLockMsg = sbuf.toString();
       this.addAdvisory(deadlockAdvisory);
     }
 
@@ -850,6 +982,7 @@ public class ThreadDumpInfo extends ThreadLogicElement {
 
     this.threadList = ThreadInfo.sortByHealth(this.threadList);
     this.threadTable.clear();
+    clearThreadIndexes();
     for (ThreadInfo ti : threadList) {
       theLogger.finest("Saving inside ThreadMap: threadName: " + ti.getName() + ", NameId is: " + ti.getNameId());
       this.threadTable.put(ti.getNameId(), ti);
@@ -932,7 +1065,9 @@ public class ThreadDumpInfo extends ThreadLogicElement {
     if (this.hasDeadlock) {
       statData.append("<tr bgcolor=\"#cccccc\" ><td colspan=2><font face=System"
           + "><p><font style=color:Red><b>Deadlock Found !!!</b></font><p><br>");
-      statData.append(LockInfo.printDeadlockChain(this.deadlockEntry.getDeadlockChain()) + "<br>");
+      for (DeadLockEntry entry : this.deadlockEntries) {
+        statData.append(entry.getDeadlockMsg() + "<br>");
+      }
       statData
           .append("<font style=color:Red>Deadlocked threads cannot proceed without killing the threads or restarting the JVM<p><br>");
       statData
@@ -993,15 +1128,15 @@ public class ThreadDumpInfo extends ThreadLogicElement {
     sortByHealth(this.threadGrpList);
   }
 
-  public Hashtable<String, LockInfo> getLockTable() {
+  public Map<String, LockInfo> getLockTable() {
     return lockTable;
   }
 
-  public void setLockTable(Hashtable<String, LockInfo> lockTable) {
+  public void setLockTable(Map<String, LockInfo> lockTable) {
     this.lockTable = lockTable;
   }
 
-  public Hashtable<String, ThreadGroup> getThreadGroupTable() {
+  public Map<String, ThreadGroup> getThreadGroupTable() {
     return threadGroupTable;
   }
 
@@ -1009,23 +1144,41 @@ public class ThreadDumpInfo extends ThreadLogicElement {
     return hasDeadlock;
   }
 
+  /**
+   * @return the deadlock cycles of this dump, one entry per cycle.
+   */
+  public List<DeadLockEntry> getDeadlockEntries() {
+    return deadlockEntries;
+  }
+
   public Collection<ThreadInfo> getDeadlockedThreads() {
-    if (this.hasDeadlock)
-      return this.deadlockEntry.getDeadlockChain();
-    return new ArrayList<ThreadInfo>() {
-    };
+    ArrayList<ThreadInfo> deadLockedThreads = new ArrayList<ThreadInfo>();
+    for (DeadLockEntry entry : deadlockEntries) {
+      deadLockedThreads.addAll(entry.getDeadlockChain());
+    }
+    return deadLockedThreads;
   }
 
   public String getDeadlockedInfo() {
     if (!this.hasDeadlock)
       return "";
 
-    Collection<ThreadInfo> deadLockedThreads = this.getDeadlockedThreads();
+    return getDeadlockedInfo(this.deadLockMsg, this.getDeadlockedThreads());
+  }
+
+  /**
+   * @return the info of a single deadlock cycle.
+   */
+  public String getDeadlockedInfo(DeadLockEntry entry) {
+    return getDeadlockedInfo(entry.getDeadlockMsg(), entry.getDeadlockChain());
+  }
+
+  private String getDeadlockedInfo(String deadlockMsg, Collection<ThreadInfo> deadLockedThreads) {
     StringBuffer sbuf = new StringBuffer("<table width=1200><tr bgcolor=\"#cccccc\" >");
     sbuf.append("<td colspan=3><font face=System><p><font style=color:Red>");
     sbuf.append("<b>Deadlock Found !!!</b></font><p><br>");
     
-    sbuf.append(LockInfo.printDeadlockChain(deadLockedThreads));
+    sbuf.append(deadlockMsg);
     sbuf.append("<br></td>\n\n<tr bgcolor=\"#ffffff\"><td></td></tr></table>");
 
     sbuf.append("<table><tr><td>Associated Java Thread Stacks<hr><br></td></tr>");
@@ -1110,6 +1263,109 @@ public class ThreadDumpInfo extends ThreadLogicElement {
     this.noOfRunningThreads = noOfRunningThreads;
   }
   
+  /**
+   * @return the top cpu consumers category of the dump tree, null if the dump
+   *         has no cpu times.
+   */
+  public TopCpuCategory getTopCpuThreads() {
+    return topCpuThreads;
+  }
+
+  public void setTopCpuThreads(TopCpuCategory topCpuThreads) {
+    this.topCpuThreads = topCpuThreads;
+  }
+
+  /**
+   * @param max
+   *          the max number of threads to return.
+   * @return the threads with a cpu time ordered by the cpu time used since the
+   *         previous dump if known, otherwise by their total cpu time.
+   */
+  public List<ThreadInfo> getTopCpuThreads(int max) {
+    ArrayList<ThreadInfo> cpuThreads = new ArrayList<ThreadInfo>();
+    for (ThreadInfo ti : threadList) {
+      if (ti.getCpuUsageMillis() >= 0) {
+        cpuThreads.add(ti);
+      }
+    }
+
+    Collections.sort(cpuThreads, new Comparator<ThreadInfo>() {
+      public int compare(ThreadInfo ti1, ThreadInfo ti2) {
+        long usage1 = ti1.getCpuUsageMillis();
+        long usage2 = ti2.getCpuUsageMillis();
+        return (usage1 > usage2) ? -1 : ((usage1 == usage2) ? 0 : 1);
+      }
+    });
+    return new ArrayList<ThreadInfo>(cpuThreads.subList(0, Math.min(max, cpuThreads.size())));
+  }
+
+  /**
+   * @return true if the cpu time used since the previous dump is known for any
+   *         thread.
+   */
+  public boolean hasCpuDeltas() {
+    for (ThreadInfo ti : threadList) {
+      if (ti.getCpuDeltaMillis() >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * set the cpu time the threads used since the passed previous dump, the
+   * threads are matched by their name id. Nothing is set if the previous dump
+   * is from another jvm.
+   * 
+   * @return true if the cpu time since the previous dump was found for any
+   *         thread.
+   */
+  public boolean computeCpuDeltas(ThreadDumpInfo previous) {
+    if (!isSameJvm(previous)) {
+      return false;
+    }
+
+    boolean found = false;
+    for (ThreadInfo ti : threadList) {
+      if (ti.getCpuTimeMillis() < 0) {
+        continue;
+      }
+      ThreadInfo previousTi = previous.threadTable.get(ti.getNameId());
+      if ((previousTi == null) || (previousTi.getCpuTimeMillis() < 0)) {
+        continue;
+      }
+      // a thread of the same name started after the previous dump
+      if ((ti.getElapsedMillis() >= 0) && (previousTi.getElapsedMillis() > ti.getElapsedMillis())) {
+        continue;
+      }
+
+      long delta = ti.getCpuTimeMillis() - previousTi.getCpuTimeMillis();
+      if (delta >= 0) {
+        ti.setCpuDeltaMillis(delta);
+        found = true;
+      }
+    }
+
+    if (found && (topCpuThreads != null)) {
+      topCpuThreads.refresh();
+    }
+    return found;
+  }
+
+  private boolean isSameJvm(ThreadDumpInfo previous) {
+    if ((previous == null) || (previous == this)) {
+      return false;
+    }
+    if (!isEqual(jvmType, previous.jvmType) || !isEqual(jvmVersion, previous.jvmVersion)) {
+      return false;
+    }
+    return (startTimeMillis <= 0) || (previous.startTimeMillis <= startTimeMillis);
+  }
+
+  private static boolean isEqual(String value1, String value2) {
+    return (value1 == null) ? (value2 == null) : value1.equals(value2);
+  }
+
   public static void shutdownExecutor() {
     if (fixedPoolExecutor != null)
       fixedPoolExecutor.shutdown();
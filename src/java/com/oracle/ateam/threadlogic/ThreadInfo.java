@@ -12,9 +12,12 @@
 package com.oracle.ateam.threadlogic;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.oracle.ateam.threadlogic.advisories.ThreadAdvisory;
 import com.oracle.ateam.threadlogic.advisories.ThreadGroup;
+import com.oracle.ateam.threadlogic.utils.BlockCodec;
 import com.oracle.ateam.threadlogic.utils.CustomLogger;
 import java.util.logging.Logger;
 
@@ -27,6 +30,12 @@ import java.util.logging.Logger;
 public class ThreadInfo extends ThreadLogicElement {
   
   private String content;
+  // content of threads of inactive dumps, see compressContent()
+  private byte[] compressedContent;
+  private StackFrame[] frames;
+  // plain text of the frames, built when first asked for
+  private transient String stackText;
+  private StackRenderer renderer;
   private String info;
   private int stackLines;
   private String[] tokens;
@@ -42,6 +51,8 @@ public class ThreadInfo extends ThreadLogicElement {
   
   protected String tGroup;
   protected LockInfo blockedForLock;
+  // synchronizer the thread is parked on, only a lock once its owner is known
+  protected String parkedForLockId;
   protected ArrayList<LockInfo> ownedLocks = new ArrayList<LockInfo>();
   protected ThreadDumpInfo tdi;
   protected ThreadGroup tg;
@@ -52,28 +63,70 @@ public class ThreadInfo extends ThreadLogicElement {
   
   // Add support for ContextData
   private String ctxData;
+
+  // cpu time and age of the thread in milliseconds, -1 if not in the dump
+  private long cpuTimeMillis = -1;
+  private long elapsedMillis = -1;
+  // cpu time used since the previous dump of the same jvm, -1 if not known
+  private long cpuDeltaMillis = -1;
+
+  // thread container (executor, scope...) the thread was started in, if known
+  private String threadContainer;
   
   public static final String CONTEXT_DATA_SEPARATOR = ";;"; 
+
+  // short contents aren't worth compressing
+  private static final int MIN_COMPRESS_LENGTH = 64;
+
+  private static final int DECOMPRESSED_CACHE_SIZE = 128;
+
+  // the contents decompressed last, keyed by the compressed content
+  private static final Map<byte[], String> decompressedCache = new LinkedHashMap<byte[], String>(
+          DECOMPRESSED_CACHE_SIZE, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<byte[], String> eldest) {
+      return size() > DECOMPRESSED_CACHE_SIZE;
+    }
+  };
   
   private static Logger theLogger = CustomLogger.getLogger(ThreadLogic.class.getSimpleName());
   
   
   public ThreadInfo(String name, String info, String content, int stackLines, String[] tableTokens) {
     super(name);
-    setFilteredName();
     this.info = info;
     this.content = content;
+    init(stackLines, tableTokens);
+  }
+
+  /**
+   * create a thread keeping the parsed stack frames, the html content is only
+   * rendered with the passed renderer once it is asked for.
+   */
+  public ThreadInfo(String name, String info, StackFrame[] frames, StackRenderer renderer, int stackLines,
+          String[] tableTokens) {
+    super(name);
+    this.info = info;
+    this.frames = frames;
+    this.renderer = renderer;
+    init(stackLines, tableTokens);
+  }
+
+  private void init(int stackLines, String[] tableTokens) {
+    setFilteredName();
     this.stackLines = stackLines;
     tokens = tableTokens;
-    
-    this.isMainThread = this.content.contains(".main(");
+
+    String stack = getStackText();
+    this.isMainThread = stack.contains(".main(");
       
     this.state = ThreadState.RUNNING;
     if (tokens != null)
-      parseState();
+      parseState(stack);
     
     setNameId();
-    checkForECID();
+    checkForECID(stack);
+    parseCpuTime(getName());
+    parseThreadContainer(getName());
   }
   
   public ThreadInfo(ThreadInfo copy) {
@@ -82,12 +135,20 @@ public class ThreadInfo extends ThreadLogicElement {
     setFilteredName();
     this.info = copy.info;
     this.content = copy.content;
+    this.compressedContent = copy.compressedContent;
+    this.frames = copy.frames;
+    this.stackText = copy.stackText;
+    this.renderer = copy.renderer;
     this.stackLines = copy.stackLines;
     tokens = copy.tokens;
     
     this.isMainThread = copy.isMainThread;
       
     this.state = copy.state;
+    this.cpuTimeMillis = copy.cpuTimeMillis;
+    this.elapsedMillis = copy.elapsedMillis;
+    this.cpuDeltaMillis = copy.cpuDeltaMillis;
+    this.threadContainer = copy.threadContainer;
     
     setNameId();
   }
@@ -102,7 +163,7 @@ public class ThreadInfo extends ThreadLogicElement {
     return new ThreadInfo(name);
   }
 
-  protected void parseState() {
+  protected void parseState(String content) {
 
     // name is token[0]
     // tid is tokens[1]
@@ -164,9 +225,17 @@ public class ThreadInfo extends ThreadLogicElement {
    */
   public void setFilteredName() {
     if (filteredName == null) {
-      filteredName = getName().replaceAll("\\[.*\\] ", "").replaceAll("\" .*$", "\"").trim();
+      filteredName = filterName(getName());
     }
   }
+
+  /**
+   * strip the labels and everything following the quoted name from a thread
+   * title.
+   */
+  public static String filterName(String name) {
+    return name.replaceAll("\\[.*\\] ", "").replaceAll("\" .*$", "\"").trim();
+  }
   
   public String getNameId() {
     return this.nameId;
@@ -212,12 +281,112 @@ public class ThreadInfo extends ThreadLogicElement {
     return null;
   }
 
-  public String getContent() {
+  /**
+   * get the stack of the thread as html for display.
+   */
+  public synchronized String getContent() {
+    if (compressedContent != null) {
+      return decompress(compressedContent);
+    }
+    if ((content == null) && (frames != null)) {
+      return renderer.render(frames);
+    }
     return content;
   }
 
-  public void setContent(String content) {
+  public synchronized void setContent(String content) {
     this.content = content;
+    this.compressedContent = null;
+    this.frames = null;
+    this.stackText = null;
+  }
+
+  /**
+   * keep the content compressed, getContent() decompresses it (the contents
+   * decompressed last are cached) until {@link #expandContent()} is called.
+   * Used for the threads of dumps not being looked at. Threads keeping their
+   * frames only refer to the frames shared through {@link FrameTable}, these
+   * aren't compressed as that would copy the shared lines into every thread,
+   * only their plain stack text is dropped.
+   */
+  public synchronized void compressContent() {
+    if ((content != null) && (content.length() > MIN_COMPRESS_LENGTH)) {
+      compressedContent = BlockCodec.compress(content);
+      content = null;
+    }
+    stackText = null;
+  }
+
+  /**
+   * keep the content uncompressed again.
+   */
+  public synchronized void expandContent() {
+    if (compressedContent != null) {
+      content = decompress(compressedContent);
+      synchronized (decompressedCache) {
+        decompressedCache.remove(compressedContent);
+      }
+      compressedContent = null;
+    }
+  }
+
+  private static String decompress(byte[] compressed) {
+    synchronized (decompressedCache) {
+      String cached = decompressedCache.get(compressed);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    String decompressed = BlockCodec.decompressString(compressed);
+    synchronized (decompressedCache) {
+      decompressedCache.put(compressed, decompressed);
+    }
+    return decompressed;
+  }
+
+  public synchronized boolean isContentCompressed() {
+    return compressedContent != null;
+  }
+
+  /**
+   * @return the parsed stack frames, null if the parser only provided the
+   *         html content.
+   */
+  public StackFrame[] getFrames() {
+    return frames;
+  }
+
+  /**
+   * get the stack of the thread as plain text for analysis, one line per
+   * frame. For threads without parsed frames this is the content.
+   */
+  public synchronized String getStackText() {
+    if (frames == null) {
+      return getContent();
+    }
+    if (stackText != null) {
+      return stackText;
+    }
+
+    int length = 0;
+    for (int i = 0; i < frames.length; i++) {
+      length += frames[i].getLine().length() + 1;
+    }
+    StringBuilder stack = new StringBuilder(length);
+    for (int i = 0; i < frames.length; i++) {
+      stack.append(frames[i].getLine()).append('\n');
+    }
+    stackText = stack.toString();
+    return stackText;
+  }
+
+  /**
+   * add the monitor link to a lock id taken from the stack of this thread for
+   * display.
+   */
+  public String linkifyMonitor(String lockId) {
+    return (frames != null ? renderer.linkifyMonitor(lockId) : lockId);
   }
 
   public String getInfo() {
@@ -285,6 +454,14 @@ public class ThreadInfo extends ThreadLogicElement {
     this.setBlockedForLock(lock);
   }
 
+  public String getParkedForLockId() {
+    return parkedForLockId;
+  }
+
+  public void setParkedForLockId(String lockId) {
+    this.parkedForLockId = lockId;
+  }
+
   public void addOwnedLocks(LockInfo holdingLock) {
     holdingLock.setLockOwner(this);
     this.ownedLocks.add(holdingLock);
@@ -397,6 +574,10 @@ public class ThreadInfo extends ThreadLogicElement {
   }
 
   public void checkForECID() {
+    checkForECID(getStackText());
+  }
+
+  private void checkForECID(String content) {
     
     // Sample thread stack for ones generated by WLST
     /*
@@ -530,6 +711,112 @@ public class ThreadInfo extends ThreadLogicElement {
     this.compositeFlowID = compositeFlowID;
   }
   
+  /**
+   * take the cpu time and the age of the thread from the title of a jdk 11+
+   * jstack dump (cpu=12.34ms elapsed=56.78s).
+   */
+  private void parseCpuTime(String title) {
+    int nameEnd = title.indexOf('"', 1);
+    cpuTimeMillis = parseMillis(title, " cpu=", nameEnd);
+    elapsedMillis = parseMillis(title, " elapsed=", nameEnd);
+  }
+
+  /**
+   * @return the labeled value of the title in milliseconds, the value is taken
+   *         as seconds if followed by an "s". -1 if the label isn't found.
+   */
+  static long parseMillis(String title, String label, int fromIndex) {
+    int index = title.indexOf(label, Math.max(0, fromIndex));
+    if (index < 0) {
+      return -1;
+    }
+
+    int start = index + label.length();
+    int end = start;
+    while ((end < title.length()) && (Character.isDigit(title.charAt(end)) || (title.charAt(end) == '.'))) {
+      end++;
+    }
+    try {
+      double value = Double.parseDouble(title.substring(start, end));
+      if ((end < title.length()) && (title.charAt(end) == 's')) {
+        value *= 1000;
+      }
+      return Math.round(value);
+    } catch (NumberFormatException nfe) {
+      return -1;
+    }
+  }
+
+  /**
+   * @return the cpu time of the thread in milliseconds, -1 if the dump has
+   *         none.
+   */
+  public long getCpuTimeMillis() {
+    return cpuTimeMillis;
+  }
+
+  public void setCpuTimeMillis(long cpuTimeMillis) {
+    this.cpuTimeMillis = cpuTimeMillis;
+  }
+
+  /**
+   * @return the time since the thread was started in milliseconds, -1 if the
+   *         dump has none.
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  public void setElapsedMillis(long elapsedMillis) {
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * @return the cpu time used since the previous dump of the same jvm, -1 if
+   *         not known.
+   */
+  public long getCpuDeltaMillis() {
+    return cpuDeltaMillis;
+  }
+
+  public void setCpuDeltaMillis(long cpuDeltaMillis) {
+    this.cpuDeltaMillis = cpuDeltaMillis;
+  }
+
+  /**
+   * @return the cpu time used since the previous dump if known, otherwise the
+   *         total cpu time of the thread.
+   */
+  public long getCpuUsageMillis() {
+    return (cpuDeltaMillis >= 0) ? cpuDeltaMillis : cpuTimeMillis;
+  }
+
+  /**
+   * take the thread container from the title, the parsers put it last:
+   * ... container=ForkJoinPool-1
+   */
+  protected void parseThreadContainer(String title) {
+    if (title == null) {
+      return;
+    }
+    int index = title.lastIndexOf(" container=");
+    if (index > 0) {
+      threadContainer = title.substring(index + 11).trim();
+    }
+  }
+
+  /**
+   * @return the thread container the thread belongs to, null if the dump
+   *         has none or it is the root container.
+   */
+  public String getThreadContainer() {
+    return threadContainer;
+  }
+
+  public void setThreadContainer(String threadContainer) {
+    this.threadContainer = threadContainer;
+  }
+
   /**
    * @param matchAdvisory ThreadAdvisory to check against
    */
@@ -19,6 +19,7 @@ import com.oracle.ateam.threadlogic.dialogs.CustomCategoriesDialog;
 import com.oracle.ateam.threadlogic.dialogs.FilterDialog;
 import com.oracle.ateam.threadlogic.dialogs.HelpOverviewDialog;
 import com.oracle.ateam.threadlogic.dialogs.InfoDialog;
+import com.oracle.ateam.threadlogic.dialogs.LoadProgressDialog;
 import com.oracle.ateam.threadlogic.dialogs.LongThreadDialog;
 import com.oracle.ateam.threadlogic.dialogs.PreferencesDialog;
 import com.oracle.ateam.threadlogic.dialogs.SearchDialog;
@@ -31,10 +32,14 @@ import com.oracle.ateam.threadlogic.parsers.AbstractDumpParser;
 import com.oracle.ateam.threadlogic.parsers.DumpParser;
 import com.oracle.ateam.threadlogic.parsers.DumpParserFactory;
 import com.oracle.ateam.threadlogic.parsers.FallbackParser;
+import com.oracle.ateam.threadlogic.parsers.ParallelDumpParser;
 import com.oracle.ateam.threadlogic.utils.AppInfo;
 import com.oracle.ateam.threadlogic.utils.Browser;
 import com.oracle.ateam.threadlogic.utils.CustomLogger;
+import com.oracle.ateam.threadlogic.utils.DateMatcher;
+import com.oracle.ateam.threadlogic.utils.DumpContentCache;
 import com.oracle.ateam.threadlogic.utils.HistogramTableModel;
+import com.oracle.ateam.threadlogic.utils.MappedLineReader;
 import com.oracle.ateam.threadlogic.utils.MonitorComparator;
 import com.oracle.ateam.threadlogic.utils.PrefManager;
 import com.oracle.ateam.threadlogic.utils.ResourceManager;
@@ -106,18 +111,30 @@ import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationTargetException;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -137,6 +154,7 @@ import javax.swing.JToolTip;
 import javax.swing.KeyStroke;
 import javax.swing.Popup;
 import javax.swing.PopupFactory;
+import javax.swing.ProgressMonitor;
 import javax.swing.ProgressMonitorInputStream;
 import javax.swing.UIManager;
 import javax.swing.event.CaretEvent;
@@ -180,6 +198,7 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
   public JSplitPane topSplitPane;
   protected JSplitPane bottomSplitPane;
   private DumpStore dumpStore;
+  private DumpContentCache dumpContentCache;
   private Vector topNodes;
   private ViewScrollPane htmlView;
   private ViewScrollPane tableView;
@@ -191,6 +210,9 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
   private CustomCategoriesDialog categoriesDialog;
   private JTable histogramTable;
   private JMenuItem showDumpMenuItem;
+  private JMenuItem followMenuItem;
+  // followers of the log files being followed for appended dumps
+  private HashMap<Logfile, LogfileFollower> followers = new HashMap<Logfile, LogfileFollower>();
   private DefaultMutableTreeNode logFile;
   private MainMenu pluginMainMenu;
   private boolean isFoundClassHistogram = false;
@@ -203,6 +225,12 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
   private StatusBar statusBar;
   private SearchDialog searchDialog;
   private static final Vector<File> tempFileList = new Vector<File>();
+  // number of recently viewed dumps kept uncompressed if inactive dumps are compressed
+  private static final int EXPANDED_DUMPS = 3;
+  // poll interval for log files being followed
+  private static final long FOLLOW_POLL_MILLIS = 2000;
+  // separates the two timestamps of an entered time range
+  private static final String RANGE_SEPARATOR = " - ";
   // Placeholder to initialize ThreadLogic AppInfo ahead of everything else...
   private static AppInfo appInfoInitializer = new AppInfo();
 
@@ -991,6 +1019,7 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
   public void initDumpDisplay(String content) {
     // clear tree
     dumpStore = new DumpStore();
+    dumpContentCache = new DumpContentCache(EXPANDED_DUMPS);
 
     topNodes = new Vector();
 
@@ -1067,19 +1096,112 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
   private static Object syncObject = new Object();
 
   /**
-   * add the set dumpFileStream to the tree
+   * add the set dumpFileStream to the tree, several plain log files are loaded
+   * concurrently.
    */
   private void addDumpFiles(String[] files) {
+    ArrayList<String> logFiles = new ArrayList<String>();
     for (int i = 0; i < files.length; i++) {
+      File file = new File(files[i]);
+      if ((files.length > 1) && file.isFile() && !DumpParserFactory.get().isZipArchive(file)) {
+        logFiles.add(files[i]);
+        continue;
+      }
 
       dumpCounter = 1;
-      try {
-        addDumpStream(new BufferedInputStream(new FileInputStream(files[i])), files[i], true);
-      } catch (IOException ex) {
+      addDumpFile(file, files[i]);
+    }
 
-        JOptionPane.showMessageDialog(this.getRootPane(), "Error opening " + ex.getMessage() + ".",
-                "Error opening file", JOptionPane.ERROR_MESSAGE);
+    if (logFiles.size() == 1) {
+      dumpCounter = 1;
+      addDumpFile(new File(logFiles.get(0)), logFiles.get(0));
+    } else if (logFiles.size() > 1) {
+      addLogFiles(logFiles);
+    }
+  }
+
+  /**
+   * load the given log files concurrently, every log file is added to the tree
+   * as soon as it is loaded.
+   */
+  private void addLogFiles(ArrayList<String> files) {
+    final LoadScheduler scheduler = new LoadScheduler(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    for (String file : files) {
+      scheduler.addFile(new File(file), file, new DefaultMutableTreeNode(new Logfile(file)));
+    }
+    logFile = new DefaultMutableTreeNode(new LogFileContent(files.get(files.size() - 1)));
+    setFileOpen(true);
+
+    final LoadProgressDialog progressDialog = new LoadProgressDialog(JOptionPane.getFrameForComponent(this),
+            scheduler);
+    progressDialog.showDialog();
+
+    final SwingWorker worker = new SwingWorker() {
+
+      public Object construct() {
+        synchronized (syncObject) {
+          scheduler.start(new LoadScheduler.Loader() {
+
+            public void load(LoadScheduler.LoadTask task) throws IOException {
+              loadLogFile(task);
+            }
+          }, new LoadScheduler.Listener() {
+
+            public void fileLoaded(final LoadScheduler.LoadTask task) {
+              javax.swing.SwingUtilities.invokeLater(new Runnable() {
+
+                public void run() {
+                  addLoadedLogFile(task.getNode());
+                }
+              });
+            }
+
+            public void loadFinished() {
+            }
+          });
+          try {
+            scheduler.await();
+          } catch (InterruptedException ex) {
+            scheduler.cancelAll();
+            Thread.currentThread().interrupt();
+          }
+        }
+
+        return null;
       }
+    };
+    worker.start();
+  }
+
+  /**
+   * parse the log file of the given task into its node, runs on a thread of
+   * the load scheduler. Files are loaded concurrently, so every file is parsed
+   * sequentially.
+   */
+  private void loadLogFile(LoadScheduler.LoadTask task) throws IOException {
+    LineNumberReader dumpReader = DumpParserFactory.get().createLineReader(task.getFile());
+    try {
+      addThreadDumps(task.getNode(), dumpReader, null, null, task, null);
+      if ((dumpReader instanceof MappedLineReader) && !task.isCanceled()) {
+        ((Logfile) task.getNode().getUserObject()).setParsedLength(((MappedLineReader) dumpReader).length());
+      }
+    } finally {
+      dumpReader.close();
+    }
+  }
+
+  /**
+   * add the node of a loaded log file to the tree.
+   */
+  private void addLoadedLogFile(DefaultMutableTreeNode top) {
+    int divider = topSplitPane.getDividerLocation();
+    topNodes.add(top);
+    setRootNodeLevel(topNodes.size() > 1 ? 1 : 0);
+    createTree();
+    tree.expandRow(1);
+    topSplitPane.setDividerLocation(divider);
+    if (this.getRootPane() != null) {
+      this.getRootPane().revalidate();
     }
   }
 
@@ -1097,8 +1219,90 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
   }
 
   private void addDumpStream(InputStream inputStream, String file, boolean withLogfile) {
-    final InputStream parseFileStream = new ProgressMonitorInputStream(this, "Parsing " + file, inputStream);
+    addDumpSource(new ProgressMonitorInputStream(this, "Parsing " + file, inputStream), null, file, withLogfile);
+  }
+
+  /**
+   * add the given dump file to the tree, the file is parsed through a memory
+   * mapped line source instead of a stream.
+   */
+  private void addDumpFile(File dumpFile, String file) {
+    if (DumpParserFactory.get().isZipArchive(dumpFile)) {
+      addZipArchive(dumpFile, file);
+    } else {
+      addDumpSource(null, dumpFile, file, true);
+    }
+  }
+
+  /**
+   * add every entry of the given zip archive as log file of its own to the
+   * tree. The entries are decompressed and parsed concurrently.
+   */
+  private void addZipArchive(File archiveFile, final String file) {
+    final ZipFile archive;
+    try {
+      archive = new ZipFile(archiveFile);
+    } catch (IOException ex) {
+      JOptionPane.showMessageDialog(this.getRootPane(), "Error opening " + ex.getMessage() + ".",
+              "Error opening file", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+
+    final ArrayList<ZipEntry> entries = new ArrayList<ZipEntry>();
+    final ArrayList<DefaultMutableTreeNode> entryNodes = new ArrayList<DefaultMutableTreeNode>();
+    Enumeration<? extends ZipEntry> archiveEntries = archive.entries();
+    while (archiveEntries.hasMoreElements()) {
+      ZipEntry entry = archiveEntries.nextElement();
+      if (entry.isDirectory()) {
+        continue;
+      }
+      String entryFile = file + DumpParserFactory.ENTRY_SEPARATOR + entry.getName();
+      DefaultMutableTreeNode entryNode = new DefaultMutableTreeNode(new Logfile(entryFile));
+      topNodes.add(entryNode);
+      entries.add(entry);
+      entryNodes.add(entryNode);
+      logFile = new DefaultMutableTreeNode(new LogFileContent(entryFile));
+    }
+    if (entries.isEmpty()) {
+      try {
+        archive.close();
+      } catch (IOException ex) {
+        ex.printStackTrace();
+      }
+      JOptionPane.showMessageDialog(this.getRootPane(), "No log files found in " + file + ".",
+              "Error opening file", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    setFileOpen(true);
 
+    final SwingWorker worker = new SwingWorker() {
+
+      public Object construct() {
+        synchronized (syncObject) {
+          int divider = topSplitPane.getDividerLocation();
+          try {
+            addThreadDumps(archive, entries, entryNodes, file);
+          } finally {
+            try {
+              archive.close();
+            } catch (IOException ex) {
+              ex.printStackTrace();
+            }
+          }
+          createTree();
+          tree.expandRow(1);
+
+          topSplitPane.setDividerLocation(divider);
+        }
+
+        return null;
+      }
+    };
+    worker.start();
+  }
+
+  private void addDumpSource(final InputStream parseFileStream, final File dumpFileSource, String file,
+          boolean withLogfile) {
     Logfile logFileInstance = new Logfile(file);
     // Save the reference to the newly created dump file for clipboard content within logFileInstance
     if (!withLogfile) {
@@ -1126,12 +1330,41 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
 
       public Object construct() {
         synchronized (syncObject) {
-          int divider = topSplitPane.getDividerLocation();
-          addThreadDumps(top, parseFileStream);
-          createTree();
-          tree.expandRow(1);
+          final int divider = topSplitPane.getDividerLocation();
 
-          topSplitPane.setDividerLocation(divider);
+          // show the log file right away, its dumps are added while parsing
+          try {
+            javax.swing.SwingUtilities.invokeAndWait(new Runnable() {
+
+              public void run() {
+                createTree();
+                topSplitPane.setDividerLocation(divider);
+              }
+            });
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+          } catch (InvocationTargetException ex) {
+            theLogger.warning("Error creating tree: " + ex.getCause());
+          }
+
+          final DumpNodePublisher publisher = new DumpNodePublisher(top);
+          if (dumpFileSource != null) {
+            addThreadDumps(top, dumpFileSource, publisher);
+          } else {
+            addThreadDumps(top, parseFileStream, publisher);
+          }
+
+          javax.swing.SwingUtilities.invokeLater(new Runnable() {
+
+            public void run() {
+              publisher.flush();
+              // the histogram menu depends on the parsed dumps
+              createPopupMenu();
+              tree.expandRow(1);
+              topSplitPane.setDividerLocation(divider);
+            }
+          });
         }
 
         return null;
@@ -1140,6 +1373,65 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
     worker.start();
   }
 
+  /**
+   * adds the dump nodes parsed on a worker thread to their log file node in
+   * the displayed tree. The nodes are inserted on the EDT in batches, all
+   * nodes parsed while the EDT was busy are inserted with a single event.
+   */
+  private class DumpNodePublisher {
+
+    private final DefaultMutableTreeNode top;
+    private final ArrayList<MutableTreeNode> pending = new ArrayList<MutableTreeNode>();
+    private boolean scheduled;
+
+    DumpNodePublisher(DefaultMutableTreeNode top) {
+      this.top = top;
+    }
+
+    synchronized void publish(MutableTreeNode dumpNode) {
+      pending.add(dumpNode);
+      if (!scheduled) {
+        scheduled = true;
+        javax.swing.SwingUtilities.invokeLater(new Runnable() {
+
+          public void run() {
+            flush();
+          }
+        });
+      }
+    }
+
+    /**
+     * insert the pending nodes, has to run on the EDT.
+     */
+    void flush() {
+      ArrayList<MutableTreeNode> dumpNodes;
+      synchronized (this) {
+        dumpNodes = new ArrayList<MutableTreeNode>(pending);
+        pending.clear();
+        scheduled = false;
+      }
+      if (dumpNodes.isEmpty()) {
+        return;
+      }
+
+      boolean firstDumps = (top.getChildCount() == 0);
+      int[] indices = new int[dumpNodes.size()];
+      for (int i = 0; i < indices.length; i++) {
+        indices[i] = top.getChildCount();
+        top.add(dumpNodes.get(i));
+      }
+      // the model of the displayed tree, for several log files it isn't the tree model field
+      if ((tree != null) && (tree.getModel() instanceof DefaultTreeModel)
+              && (top.getRoot() == tree.getModel().getRoot())) {
+        ((DefaultTreeModel) tree.getModel()).nodesWereInserted(top, indices);
+        if (firstDumps) {
+          tree.expandPath(new TreePath(top.getPath()));
+        }
+      }
+    }
+  }
+
   public void createTree() {
     if (topNodes.size() == 1) {
       treeModel = new DefaultTreeModel((DefaultMutableTreeNode) topNodes.get(0));
@@ -1259,6 +1551,16 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
       return;
     }
 
+    if (PrefManager.get().getCompressInactiveDumps()) {
+      Object[] path = e.getPath().getPath();
+      for (int i = path.length - 1; i >= 0; i--) {
+        if (((DefaultMutableTreeNode) path[i]).getUserObject() instanceof ThreadDumpInfo) {
+          dumpContentCache.dumpSelected((DefaultMutableTreeNode) path[i]);
+          break;
+        }
+      }
+    }
+
     Object nodeInfo = node.getUserObject();
     if (nodeInfo instanceof ThreadInfo) {
       displayThreadInfo(nodeInfo);
@@ -1721,7 +2023,115 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
     }
   }
 
-  private void addThreadDumps(DefaultMutableTreeNode top, InputStream dumpFileStream) {
+  private void addThreadDumps(DefaultMutableTreeNode top, InputStream dumpFileStream, DumpNodePublisher publisher) {
+    addThreadDumps(top, new LineNumberReader(new InputStreamReader(dumpFileStream)), null, null, null, publisher);
+  }
+
+  private void addThreadDumps(DefaultMutableTreeNode top, File dumpFile, DumpNodePublisher publisher) {
+    LineNumberReader dumpReader = null;
+    try {
+      dumpReader = DumpParserFactory.get().createLineReader(dumpFile);
+    } catch (IOException ex) {
+      JOptionPane.showMessageDialog(this.getRootPane(), "Error opening " + ex.getMessage() + ".",
+              "Error opening file", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+
+    ProgressMonitor progress = new ProgressMonitor(this, "Parsing " + dumpFile, null, 0, 100);
+    ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try {
+      addThreadDumps(top, dumpReader, progress, executor, null, publisher);
+      if (dumpReader instanceof MappedLineReader) {
+        ((Logfile) top.getUserObject()).setParsedLength(((MappedLineReader) dumpReader).length());
+      }
+    } finally {
+      executor.shutdown();
+      progress.close();
+      try {
+        dumpReader.close();
+      } catch (IOException ex) {
+        ex.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * parse the given zip archive entries concurrently, each into its own log
+   * file node.
+   */
+  private void addThreadDumps(final ZipFile archive, ArrayList<ZipEntry> entries,
+          ArrayList<DefaultMutableTreeNode> entryNodes, String file) {
+    ProgressMonitor progress = new ProgressMonitor(this, "Parsing " + file, null, 0, entries.size());
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(entries.size(),
+            Runtime.getRuntime().availableProcessors())));
+    ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+    try {
+      for (int i = 0; i < entries.size(); i++) {
+        final ZipEntry entry = entries.get(i);
+        final DefaultMutableTreeNode entryNode = entryNodes.get(i);
+        results.add(executor.submit(new Runnable() {
+
+          public void run() {
+            LineNumberReader entryReader = null;
+            try {
+              entryReader = DumpParserFactory.get().createLineReader(archive, entry);
+              addThreadDumps(entryNode, entryReader, null, null);
+            } catch (IOException ex) {
+              theLogger.warning("Error reading " + entry.getName() + ": " + ex.getMessage());
+            } finally {
+              if (entryReader != null) {
+                try {
+                  entryReader.close();
+                } catch (IOException ex) {
+                  ex.printStackTrace();
+                }
+              }
+            }
+          }
+        }));
+      }
+
+      for (int i = 0; i < results.size(); i++) {
+        if (progress.isCanceled()) {
+          for (int j = i; j < results.size(); j++) {
+            results.get(j).cancel(false);
+          }
+          break;
+        }
+        try {
+          results.get(i).get();
+        } catch (ExecutionException ex) {
+          theLogger.warning("Error parsing " + entries.get(i).getName() + ": " + ex.getCause());
+        }
+        progress.setProgress(i + 1);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdown();
+      progress.close();
+    }
+
+    // wait for running entries before the archive gets closed
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void addThreadDumps(DefaultMutableTreeNode top, LineNumberReader dumpReader, ProgressMonitor progress,
+          ExecutorService executor) {
+    addThreadDumps(top, dumpReader, progress, executor, null, null);
+  }
+
+  /**
+   * parse the dumps of the reader into the log file node. The dump nodes are
+   * handed to the publisher if the node is already displayed, otherwise they
+   * are added directly.
+   */
+  private void addThreadDumps(DefaultMutableTreeNode top, LineNumberReader dumpReader, ProgressMonitor progress,
+          ExecutorService executor, LoadScheduler.LoadTask task, DumpNodePublisher publisher) {
     DumpParser dp = null;
     try {
       String fileName = top.getUserObject().toString();
@@ -1735,24 +2145,47 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
         dumpMap = new HashMap();
         dumpStore.addFileToDumpFiles(fileName, dumpMap);
       }
-      dp = DumpParserFactory.get().getDumpParserForLogfile(dumpFileStream, dumpMap,
-              runningAsJConsolePlugin, dumpCounter);
+      dp = DumpParserFactory.get().getDumpParserForLogfile(dumpReader, dumpMap,
+              runningAsJConsolePlugin, dumpCounter, executor);
       Logfile logFile = (Logfile) top.getUserObject();
       logFile.setUsedParser(dp);
 
       while ((dp != null) && dp.hasMoreDumps()) {
 
         MutableTreeNode node = dp.parseNext();
-        top.add(node);
-
         ThreadDumpInfo tdi = (ThreadDumpInfo) ((DefaultMutableTreeNode) node).getUserObject();
         logFile.addThreadDump(tdi);
         tdi.setLogFile(logFile);
 
+        if (publisher != null) {
+          publisher.publish(node);
+        } else {
+          top.add(node);
+        }
+        if (PrefManager.get().getCompressInactiveDumps()) {
+          dumpContentCache.dumpAdded((DefaultMutableTreeNode) node);
+        }
+
         if (!isFoundClassHistogram) {
           isFoundClassHistogram = dp.isFoundClassHistograms();
         }
 
+        long position = getParsedPosition(dp, dumpReader);
+        if (task != null) {
+          task.setProgress(position, logFile.getThreadDumps().size());
+          if (task.isCanceled()) {
+            break;
+          }
+        }
+
+        if (progress != null && dumpReader instanceof MappedLineReader) {
+          if (progress.isCanceled()) {
+            break;
+          }
+          long length = ((MappedLineReader) dumpReader).length();
+          progress.setProgress((int) (position * 100 / Math.max(1, length)));
+        }
+
         // Try to switch parsers if we have determined the native jvm vendor
         if (dp instanceof FallbackParser && ((FallbackParser) dp).determinedJvmVendor()) {
           dp = ((FallbackParser) dp).recreateParserBasedOnVendor();
@@ -1762,6 +2195,7 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
       }
     } finally {
       if (dp != null) {
+        reportDateParsingError(dp);
         try {
           dp.close();
         } catch (IOException ex) {
@@ -1771,6 +2205,202 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
     }
   }
 
+  /**
+   * @return the offset in the log file up to which the dumps are parsed, -1 if
+   *         it isn't known.
+   */
+  private static long getParsedPosition(DumpParser dp, LineNumberReader dumpReader) {
+    if (dp instanceof ParallelDumpParser) {
+      // the reader of the file isn't used for the ranges parsed in parallel
+      return ((ParallelDumpParser) dp).getParsedBytes();
+    } else if (dumpReader instanceof MappedLineReader) {
+      return ((MappedLineReader) dumpReader).getPosition();
+    }
+    return -1;
+  }
+
+  /**
+   * the timestamp regex of the preferences is deactivated by the parser if it
+   * fails, tell the user about it.
+   */
+  private void reportDateParsingError(DumpParser dp) {
+    String error = null;
+    if (dp instanceof AbstractDumpParser) {
+      DateMatcher dm = ((AbstractDumpParser) dp).getDm();
+      error = (dm != null) ? dm.getPatternErrorMessage() : null;
+    } else if (dp instanceof ParallelDumpParser) {
+      // the dumps were parsed by several parsers, each with a date matcher
+      error = ((ParallelDumpParser) dp).getPatternErrorMessage();
+    }
+    if (error == null) {
+      return;
+    }
+
+    final String message = error;
+    javax.swing.SwingUtilities.invokeLater(new Runnable() {
+
+      public void run() {
+        JOptionPane.showMessageDialog(getRootPane(), "Error during parsing line for timestamp regular expression!\n"
+                + "Please check regular expression in your preferences. Deactivating\n"
+                + "parsing for the rest of the file! Error Message is \"" + message + "\" \n",
+                "Error during Parsing", JOptionPane.ERROR_MESSAGE);
+      }
+    });
+  }
+
+  /**
+   * @return the dumps of all loaded log files ordered by their start time.
+   */
+  public DumpTimeline getDumpTimeline() {
+    ArrayList<Logfile> logFiles = new ArrayList<Logfile>();
+    if (topNodes != null) {
+      for (int i = 0; i < topNodes.size(); i++) {
+        Object userObject = ((DefaultMutableTreeNode) topNodes.get(i)).getUserObject();
+        if (userObject instanceof Logfile) {
+          logFiles.add((Logfile) userObject);
+        }
+      }
+    }
+    return new DumpTimeline(logFiles);
+  }
+
+  /**
+   * select the dumps of all loaded log files started within the time range
+   * entered by the user, e.g. the dumps of all nodes of a cluster taken around
+   * an incident.
+   */
+  private void selectDumpsInTimeRange() {
+    DumpTimeline timeline = getDumpTimeline();
+    if (timeline.size() == 0) {
+      JOptionPane.showMessageDialog(this.getRootPane(), "None of the loaded dumps has a timestamp!",
+              "Select Dumps in Time Range", JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
+
+    List<ThreadDumpInfo> timedDumps = timeline.getDumps();
+    String range = (String) JOptionPane.showInputDialog(this.getRootPane(),
+            "Select the dumps started between (inclusive):", "Select Dumps in Time Range",
+            JOptionPane.QUESTION_MESSAGE, null, null, timedDumps.get(0).getStartTime() + RANGE_SEPARATOR
+            + timedDumps.get(timedDumps.size() - 1).getStartTime());
+    if (range == null) {
+      return;
+    }
+
+    int separator = range.indexOf(RANGE_SEPARATOR);
+    long from = (separator > 0) ? DateMatcher.parseMillis(range.substring(0, separator)) : -1;
+    long to = (separator > 0) ? DateMatcher.parseMillis(range.substring(separator + RANGE_SEPARATOR.length())) : -1;
+    if ((from < 0) || (to < 0)) {
+      JOptionPane.showMessageDialog(this.getRootPane(), "Unable to read the time range \"" + range + "\",\n"
+              + "enter two timestamps separated by \"" + RANGE_SEPARATOR + "\".", "Error", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+
+    // the dump nodes are the children of the log file nodes
+    Set<ThreadDumpInfo> rangeDumps = Collections.newSetFromMap(new IdentityHashMap<ThreadDumpInfo, Boolean>());
+    rangeDumps.addAll(timeline.getDumpsBetween(from, to));
+    ArrayList<TreePath> paths = new ArrayList<TreePath>();
+    for (int i = 0; i < topNodes.size(); i++) {
+      DefaultMutableTreeNode logfileNode = (DefaultMutableTreeNode) topNodes.get(i);
+      for (int j = 0; j < logfileNode.getChildCount(); j++) {
+        DefaultMutableTreeNode dumpNode = (DefaultMutableTreeNode) logfileNode.getChildAt(j);
+        if (rangeDumps.contains(dumpNode.getUserObject())) {
+          paths.add(new TreePath(dumpNode.getPath()));
+        }
+      }
+    }
+
+    tree.setSelectionPaths(paths.toArray(new TreePath[paths.size()]));
+    if (!paths.isEmpty()) {
+      tree.scrollPathToVisible(paths.get(0));
+    }
+    statusBar.setInfoText("Selected " + paths.size() + " dumps started between " + range.substring(0, separator)
+            + " and " + range.substring(separator + RANGE_SEPARATOR.length()));
+  }
+
+  /**
+   * @return the log file node of the current selection, null if nothing or no
+   *         log file is selected.
+   */
+  private DefaultMutableTreeNode getSelectedLogfileNode() {
+    TreePath selPath = tree.getSelectionPath();
+    while (selPath != null) {
+      DefaultMutableTreeNode node = (DefaultMutableTreeNode) selPath.getLastPathComponent();
+      if (node.getUserObject() instanceof Logfile) {
+        return node;
+      }
+      selPath = selPath.getParentPath();
+    }
+    return null;
+  }
+
+  /**
+   * start or stop following the selected log file, dumps appended to the file
+   * are parsed and added to its node.
+   */
+  private void followSelectedLogfile(boolean follow) {
+    final DefaultMutableTreeNode logfileNode = getSelectedLogfileNode();
+    if (logfileNode == null) {
+      return;
+    }
+
+    Logfile selectedLogfile = (Logfile) logfileNode.getUserObject();
+    if (!follow) {
+      stopFollowing(selectedLogfile);
+      return;
+    }
+
+    if (!followers.containsKey(selectedLogfile)) {
+      Map dumpMap = dumpStore.getFromDumpFiles(selectedLogfile.getName());
+      if (dumpMap == null) {
+        dumpMap = new HashMap();
+        dumpStore.addFileToDumpFiles(selectedLogfile.getName(), dumpMap);
+      }
+      LogfileFollower follower = new LogfileFollower(new File(selectedLogfile.getName()), selectedLogfile, dumpMap,
+              new LogfileFollower.Listener() {
+
+                public void dumpsAppended(Logfile logFile, ArrayList<DefaultMutableTreeNode> dumpNodes) {
+                  addFollowedDumps(logfileNode, dumpNodes);
+                }
+              });
+      followers.put(selectedLogfile, follower);
+      follower.start(FOLLOW_POLL_MILLIS);
+      statusBar.setInfoText("Following " + selectedLogfile.getName());
+    }
+  }
+
+  private void stopFollowing(Logfile followedLogfile) {
+    LogfileFollower follower = followers.remove(followedLogfile);
+    if (follower != null) {
+      follower.stop();
+    }
+  }
+
+  private void stopFollowingAll() {
+    for (LogfileFollower follower : followers.values()) {
+      follower.stop();
+    }
+    followers.clear();
+  }
+
+  /**
+   * add the dumps appended to a followed log file to its node, runs on the
+   * event dispatch thread.
+   */
+  private void addFollowedDumps(DefaultMutableTreeNode logfileNode, ArrayList<DefaultMutableTreeNode> dumpNodes) {
+    if (!followers.containsKey(logfileNode.getUserObject())) {
+      // closed in between
+      return;
+    }
+
+    for (DefaultMutableTreeNode dumpNode : dumpNodes) {
+      ((DefaultTreeModel) tree.getModel()).insertNodeInto(dumpNode, logfileNode, logfileNode.getChildCount());
+      if (PrefManager.get().getCompressInactiveDumps()) {
+        dumpContentCache.dumpAdded(dumpNode);
+      }
+    }
+    statusBar.setInfoText(dumpNodes.size() + " dump(s) appended to " + ((Logfile) logfileNode.getUserObject()).getName());
+  }
+
   /**
    * navigate to the currently selected dump in logfile
    */
@@ -1940,6 +2570,10 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
     menuItem.addActionListener(this);
     popup.add(menuItem);
 
+    menuItem = new JMenuItem("Select Dumps in Time Range...");
+    menuItem.addActionListener(this);
+    popup.add(menuItem);
+
     /*
     menuItem = new JMenuItem("Find long running threads...");
     menuItem.addActionListener(this);
@@ -1964,6 +2598,9 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
     menuItem = new JMenuItem("Close logfile...");
     menuItem.addActionListener(this);
     popup.add(menuItem);
+    followMenuItem = new JMenuItem("Follow logfile");
+    followMenuItem.addActionListener(this);
+    popup.add(followMenuItem);
     popup.addSeparator();
     popup.add(showDumpMenuItem);
     menuItem = new JMenuItem("About ThreadLogic");
@@ -2052,6 +2689,10 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
         popup.show(e.getComponent(), e.getX(), e.getY());
         showDumpMenuItem.setEnabled((tree.getSelectionPath() != null)
                 && ((DefaultMutableTreeNode) tree.getSelectionPath().getLastPathComponent()).getUserObject() instanceof ThreadDumpInfo);
+        DefaultMutableTreeNode logfileNode = getSelectedLogfileNode();
+        Logfile selectedLogfile = logfileNode != null ? (Logfile) logfileNode.getUserObject() : null;
+        followMenuItem.setText(followers.containsKey(selectedLogfile) ? "Stop following logfile" : "Follow logfile");
+        followMenuItem.setEnabled((selectedLogfile != null) && (selectedLogfile.getParsedLength() >= 0));
       }
     }
   }
@@ -2145,8 +2786,14 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
             // Error when running in plugin mode
           }
         }
+      } else if ("Select Dumps in Time Range...".equals(source.getText())) {
+        selectDumpsInTimeRange();
       } else if ("Show selected Dump in logfile".equals(source.getText())) {
         navigateToDumpInLogfile();
+      } else if ("Follow logfile".equals(source.getText())) {
+        followSelectedLogfile(true);
+      } else if ("Stop following logfile".equals(source.getText())) {
+        followSelectedLogfile(false);
       } else if ("Show Toolbar".equals(source.getText())) {
         setShowToolbar(((JCheckBoxMenuItem) source).getState());
       } else if ("Request Thread Dump...".equals(source.getText())) {
@@ -2410,6 +3057,29 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
    */
   private void openFiles(File[] files, boolean isRecent) {
 
+    if (files.length > 1) {
+      // several files are loaded concurrently
+      if (firstFile) {
+        dumpFile = null;
+        setFileOpen(true);
+        initDumpDisplay(null);
+        firstFile = false;
+      } else {
+        setRootNodeLevel(1);
+      }
+
+      String[] filePaths = new String[files.length];
+      for (int i = 0; i < files.length; i++) {
+        filePaths[i] = files[i].getAbsolutePath();
+        if (!isRecent) {
+          PrefManager.get().addToRecentFiles(filePaths[i]);
+        }
+      }
+      dumpFile = filePaths[filePaths.length - 1];
+      addDumpFiles(filePaths);
+      files = new File[0];
+    }
+
     for (int i = 0; i < files.length; i++) {
       dumpFile = files[i].getAbsolutePath();
       if (dumpFile != null) {
@@ -2553,6 +3223,10 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
     if (selectValue == 0) {
       // remove stuff from the top nodes
 
+      Object closedInfo = ((DefaultMutableTreeNode) selPath.getLastPathComponent()).getUserObject();
+      if (closedInfo instanceof Logfile) {
+        stopFollowing((Logfile) closedInfo);
+      }
       if (topNodes.remove(selPath.getLastPathComponent()) == false) {
         ((DefaultMutableTreeNode) selPath.getPathComponent(0)).remove((DefaultMutableTreeNode) selPath.getLastPathComponent());
       }
@@ -2600,6 +3274,7 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
     if (selectValue == 0) {
       // remove stuff from the top nodes
       topNodes = new Vector();
+      stopFollowingAll();
 
       // simply do a reinit, as there is anything to display
       resetMainPanel();
@@ -2707,7 +3382,7 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
 
                 ((Logfile) top.getUserObject()).getUsedParser().parseLoggcFile(loggcFileStream, top);
 
-                addThreadDumps(top, loggcFileStream);
+                addThreadDumps(top, loggcFileStream, null);
                 createTree();
                 getRootPane().revalidate();
                 displayContent(null);
@@ -2909,6 +3584,12 @@ public class ThreadLogic extends JPanel implements ListSelectionListener, TreeSe
    * main startup method for ThreadLogic
    */
   public static void main(String[] args) {
+    // headless batch analysis, never bring up the gui
+    if (args.length > 0 && "-batch".equals(args[0])) {
+      ThreadLogicBatch.main(args);
+      return;
+    }
+
     if (args.length > 0) {
 
       File dumpDir = new File(args[0]);
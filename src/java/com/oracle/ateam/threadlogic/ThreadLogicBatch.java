@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.oracle.ateam.threadlogic.LockInfo.DeadLockEntry;
+import com.oracle.ateam.threadlogic.advisories.ThreadAdvisory;
+import com.oracle.ateam.threadlogic.advisories.ThreadGroup;
+import com.oracle.ateam.threadlogic.parsers.DumpParser;
+import com.oracle.ateam.threadlogic.parsers.DumpParserFactory;
+import com.oracle.ateam.threadlogic.parsers.FallbackParser;
+import com.oracle.ateam.threadlogic.utils.CustomLogger;
+
+/**
+ * Headless batch analysis of thread dump files. Every file (or every file
+ * within a given directory) is parsed on a bounded worker pool and the
+ * per-dump analysis (health, advisories, thread groups, deadlocks) is written
+ * as a plain text report into the output directory. No AWT component is ever
+ * created, so this can run on build agents without a display.
+ *
+ * Usage: ThreadLogicBatch [-out dir] [-workers n] file|directory ...
+ */
+public class ThreadLogicBatch {
+
+  public static final String REPORT_SUFFIX = ".report.txt";
+  private static final int TOP_CPU_THREADS = 10;
+
+  private static Logger theLogger = CustomLogger.getLogger(ThreadLogicBatch.class.getSimpleName());
+
+  private final File outputDir;
+  private final int workers;
+  private ExecutorService dumpPool;
+
+  public ThreadLogicBatch(File outputDir, int workers) {
+    this.outputDir = outputDir;
+    this.workers = Math.max(1, workers);
+  }
+
+  /**
+   * parse and analyze all the given files in parallel.
+   *
+   * @param files
+   *          the thread dump log files to analyze.
+   * @return number of files which could not be analyzed.
+   */
+  public int analyze(ArrayList<File> files) throws InterruptedException {
+    if (!outputDir.exists() && !outputDir.mkdirs()) {
+      theLogger.severe("Unable to create report directory: " + outputDir.getAbsolutePath());
+      return files.size();
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, files.size())));
+    // the dumps within a file are parsed on a separate pool, the file tasks block on them.
+    dumpPool = Executors.newFixedThreadPool(workers);
+    ArrayList<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    HashSet<String> reportNames = new HashSet<String>();
+
+    for (final File file : files) {
+      String reportName = file.getName() + REPORT_SUFFIX;
+      // same file name within different directories, keep both reports
+      for (int i = 1; !reportNames.add(reportName); i++) {
+        reportName = file.getName() + "." + i + REPORT_SUFFIX;
+      }
+      final File report = new File(outputDir, reportName);
+      results.add(pool.submit(new Callable<Integer>() {
+        public Integer call() throws Exception {
+          return analyzeFile(file, report);
+        }
+      }));
+    }
+    pool.shutdown();
+
+    int failed = 0;
+    try {
+      for (int i = 0; i < results.size(); i++) {
+        try {
+          int dumps = results.get(i).get().intValue();
+          System.out.println(files.get(i).getPath() + ": " + dumps + " thread dump(s)");
+        } catch (ExecutionException ee) {
+          ++failed;
+          theLogger.warning("Failed to analyze " + files.get(i).getPath() + ": " + ee.getCause());
+        }
+      }
+    } finally {
+      dumpPool.shutdown();
+    }
+    return failed;
+  }
+
+  /**
+   * parse a single log file and write the analysis of all contained thread
+   * dumps into the given report file. Every entry of a zip archive is reported
+   * as a log file of its own.
+   *
+   * @return the number of thread dumps found in the file.
+   */
+  protected int analyzeFile(File file, File report) throws IOException {
+    PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(report)));
+    int dumpCount = 0;
+    try {
+      if (DumpParserFactory.get().isZipArchive(file)) {
+        ZipFile archive = new ZipFile(file);
+        try {
+          Enumeration<? extends ZipEntry> entries = archive.entries();
+          while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (!entry.isDirectory()) {
+              dumpCount += analyzeLog(out, file.getAbsolutePath() + DumpParserFactory.ENTRY_SEPARATOR + entry.getName(),
+                  DumpParserFactory.get().createLineReader(archive, entry));
+            }
+          }
+        } finally {
+          archive.close();
+        }
+      } else {
+        dumpCount = analyzeLog(out, file.getAbsolutePath(), DumpParserFactory.get().createLineReader(file));
+      }
+    } finally {
+      out.close();
+    }
+    return dumpCount;
+  }
+
+  /**
+   * parse the log read from the given reader and write the analysis of all
+   * contained thread dumps, the reader is closed afterwards.
+   *
+   * @return the number of thread dumps found in the log.
+   */
+  protected int analyzeLog(PrintWriter out, String logName, LineNumberReader dumpReader) throws IOException {
+    DumpParser dp = null;
+    int dumpCount = 0;
+    try {
+      Logfile logFile = new Logfile(logName);
+      Map dumpMap = new HashMap();
+      dp = DumpParserFactory.get().getDumpParserForLogfile(dumpReader, dumpMap, false, 1, dumpPool);
+      if (dp == null) {
+        dumpReader.close();
+      }
+      logFile.setUsedParser(dp);
+
+      out.println("Log File: " + logName);
+      if (dp == null) {
+        out.println("No supported thread dump found.");
+      }
+
+      // only the analysis is reported, no need to build the dump trees.
+      ThreadDumpInfo tdi;
+      while ((dp != null) && ((tdi = dp.parseNextModel()) != null)) {
+        logFile.addThreadDump(tdi);
+        tdi.setLogFile(logFile);
+        ++dumpCount;
+
+        writeDumpReport(out, tdi);
+
+        // Try to switch parsers if we have determined the native jvm vendor
+        if (dp instanceof FallbackParser && ((FallbackParser) dp).determinedJvmVendor()) {
+          dp = ((FallbackParser) dp).recreateParserBasedOnVendor();
+          logFile.setUsedParser(dp);
+        }
+      }
+    } finally {
+      if (dp != null) {
+        dp.close();
+      }
+    }
+    return dumpCount;
+  }
+
+  protected void writeDumpReport(PrintWriter out, ThreadDumpInfo tdi) {
+    out.println();
+    out.println("==============================================================================");
+    out.println("Thread Dump: " + tdi.getName());
+    if (tdi.getStartTime() != null) {
+      out.println("Timestamp: " + tdi.getStartTime());
+    }
+    if (tdi.getJvmVersion() != null) {
+      out.println("JVM: " + tdi.getJvmVersion());
+    }
+    out.println("Health: " + tdi.getHealth());
+    out.println("Threads: " + tdi.getThreadMap().size() + ", Thread Groups: " + tdi.getThreadGroupTable().size()
+        + ", Running: " + tdi.getNoOfRunningThreads());
+    out.println("Deadlock Found: " + tdi.hasDeadlock());
+
+    int cycle = 0;
+    for (DeadLockEntry entry : tdi.getDeadlockEntries()) {
+      out.println("  Deadlock " + (++cycle) + ":");
+      for (ThreadInfo ti : entry.getDeadlockChain()) {
+        LockInfo targetLock = ti.getBlockedForLock();
+        out.println("   Thread: " + ti.getFilteredName() + " is waiting to lock monitor " + targetLock.getLockId()
+            + ", which is held by Thread: " + targetLock.getLockOwner().getFilteredName());
+      }
+    }
+
+    writeAdvisories(out, "Critical Advisories", tdi.getCritAdvisories(), "");
+
+    List<ThreadInfo> topCpuThreads = tdi.getTopCpuThreads(TOP_CPU_THREADS);
+    if (topCpuThreads.size() > 0) {
+      out.println();
+      out.println("Top CPU consumers" + (tdi.hasCpuDeltas() ? " (since previous dump):" : ":"));
+      for (ThreadInfo ti : topCpuThreads) {
+        out.println("  " + ti.getFilteredName() + " cpu: " + ti.getCpuTimeMillis() + "ms"
+            + ((ti.getCpuDeltaMillis() >= 0) ? ", delta: " + ti.getCpuDeltaMillis() + "ms" : ""));
+      }
+    }
+
+    out.println();
+    out.println("Thread Groups:");
+    Collection<ThreadGroup> groups = ThreadLogicElement.sortByHealth(new ArrayList<ThreadGroup>(tdi
+        .getThreadGroupTable().values()));
+    for (ThreadGroup tg : groups) {
+      out.println("  " + tg.getThreadGroupName() + " [" + tg.getHealth() + "] threads: " + tg.getGroupSize()
+          + ", blocked: " + tg.getNoOfBlockedThreads() + ", running: " + tg.getNoOfRunningThreads());
+      writeAdvisories(out, "Advisories", tg.getCritAdvisories(), "    ");
+    }
+  }
+
+  private void writeAdvisories(PrintWriter out, String title, Collection<ThreadAdvisory> advisories, String indent) {
+    if (advisories.size() == 0)
+      return;
+
+    out.println(indent + title + ":");
+    for (ThreadAdvisory advisory : advisories) {
+      out.println(indent + "  " + advisory.getHealth() + " - " + advisory.getKeyword() + ": " + advisory.getDescrp());
+      if (advisory.getAdvice() != null) {
+        out.println(indent + "      Advice: " + advisory.getAdvice());
+      }
+    }
+  }
+
+  /**
+   * collect the files to analyze, directories are expanded to the files
+   * directly within them (same as the directory argument for the gui).
+   */
+  static ArrayList<File> collectFiles(ArrayList<String> paths) {
+    ArrayList<File> files = new ArrayList<File>();
+    for (String path : paths) {
+      File file = new File(path);
+      if (file.isDirectory()) {
+        File[] logFiles = file.listFiles();
+        if (logFiles == null || logFiles.length == 0) {
+          theLogger.warning("No files found under the specified Log Directory:" + path);
+          continue;
+        }
+        Arrays.sort(logFiles);
+        for (File logFile : logFiles) {
+          if (logFile.isFile() && !logFile.isHidden()) {
+            files.add(logFile);
+          }
+        }
+      } else if (file.isFile()) {
+        files.add(file);
+      } else {
+        theLogger.warning("Skipping unknown file: " + path);
+      }
+    }
+    return files;
+  }
+
+  private static void usage() {
+    System.err.println("Usage: ThreadLogicBatch [-out dir] [-workers n] file|directory ...");
+    System.err.println("  -out dir     directory for the generated reports (default: threadlogic-reports)");
+    System.err.println("  -workers n   number of files parsed in parallel (default: number of cores)");
+  }
+
+  /**
+   * main startup method for headless batch analysis
+   */
+  public static void main(String[] args) {
+    // never touch a display, even if one is around.
+    System.setProperty("java.awt.headless", "true");
+
+    File outputDir = new File("threadlogic-reports");
+    int workers = Runtime.getRuntime().availableProcessors();
+    ArrayList<String> paths = new ArrayList<String>();
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        if ("-out".equals(args[i])) {
+          outputDir = new File(args[++i]);
+        } else if ("-workers".equals(args[i])) {
+          workers = Integer.parseInt(args[++i]);
+        } else if ("-batch".equals(args[i])) {
+          // passed through from ThreadLogic.main
+        } else {
+          paths.add(args[i]);
+        }
+      }
+    } catch (RuntimeException e) {
+      usage();
+      System.exit(2);
+    }
+
+    ArrayList<File> files = collectFiles(paths);
+    if (files.size() == 0) {
+      usage();
+      System.exit(2);
+    }
+
+    int failed = 0;
+    long start = System.currentTimeMillis();
+    try {
+      failed = new ThreadLogicBatch(outputDir, workers).analyze(files);
+    } catch (InterruptedException ie) {
+      failed = files.size();
+    } finally {
+      ThreadDumpInfo.shutdownExecutor();
+    }
+    System.out.println("Analyzed " + (files.size() - failed) + " of " + files.size() + " file(s) in "
+        + (System.currentTimeMillis() - start) + " ms, reports written to " + outputDir.getAbsolutePath());
+    System.exit(failed > 0 ? 1 : 0);
+  }
+}
@@ -21,7 +21,7 @@ public class MFTThreadGroup extends CustomizedThreadGroup {
 
 		for (ThreadInfo ti : this.threads) {
 
-			String content = ti.getContent();
+			String content = ti.getStackText();
 			String threadNameLowerCase = ti.getFilteredName().toLowerCase();
 
 			if (content.contains("mft.engine.EngineServiceImpl"))
@@ -38,7 +38,7 @@ public class MFTThreadGroup extends CustomizedThreadGroup {
 
 	public boolean isIdle(ThreadInfo ti) {
 
-		String threadStack = ti.getContent();
+		String threadStack = ti.getStackText();
 		Pattern mftThreadStartProgressMonitorUpdater = Pattern.compile("oracle.tip.mft.init.ThreadWorkExecutor.startProgressMonitorUpdater");
 
 		boolean threadStartProgressMonitorUpdater = mftThreadStartProgressMonitorUpdater.matcher(threadStack).find();
@@ -75,7 +75,7 @@ public class MFTThreadGroup extends CustomizedThreadGroup {
 		    if (! (advisories.contains(mftThreadAdvisory)))
 		      return false;
 		    
-		    String threadStack = ti.getContent();    
+		    String threadStack = ti.getStackText();    
 		    Pattern mftThreadSleepingOrWaitingPattern = Pattern.compile("Thread.sleep|Object.wait|sleeping");    
 		    boolean threadInSleepOrWait = mftThreadSleepingOrWaitingPattern.matcher(threadStack).find();
 		            
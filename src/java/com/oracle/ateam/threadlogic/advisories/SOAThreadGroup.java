@@ -39,7 +39,7 @@ public class SOAThreadGroup extends CustomizedThreadGroup {
     
     for (ThreadInfo ti : this.threads) {
 
-      String content = ti.getContent();
+      String content = ti.getStackText();
       String threadNameLowerCase = ti.getFilteredName().toLowerCase();
 
       if (content.contains("b2b.engine.ThreadWorkExecutor"))
@@ -61,7 +61,7 @@ public class SOAThreadGroup extends CustomizedThreadGroup {
   
   public boolean isIdle(ThreadInfo ti) {
     
-    String threadStack = ti.getContent();
+    String threadStack = ti.getStackText();
     Pattern soaThreadWaitingPattern = Pattern.compile("java.util.concurrent.locks.AbstractQueuedSynchronizer.ConditionObject");
     
     boolean threadWaitingForAbstractQueuedSynchronizer = soaThreadWaitingPattern.matcher(threadStack).find();
@@ -132,7 +132,7 @@ public class SOAThreadGroup extends CustomizedThreadGroup {
             || advisories.contains(umsAdapterThreadAdvisory)) )
       return false;
     
-    String threadStack = ti.getContent();    
+    String threadStack = ti.getStackText();    
     Pattern soaThreadSleepingOrWaitingPattern = Pattern.compile("Thread.sleep|Object.wait");    
     boolean threadInSleepOrWait = soaThreadSleepingOrWaitingPattern.matcher(threadStack).find();
             
@@ -18,6 +18,7 @@ import java.util.Hashtable;
 import com.oracle.ateam.threadlogic.ThreadInfo;
 import com.oracle.ateam.threadlogic.HealthLevel;
 import com.oracle.ateam.threadlogic.LockInfo;
+import com.oracle.ateam.threadlogic.StackFrame;
 import com.oracle.ateam.threadlogic.ThreadState;
 import com.oracle.ateam.threadlogic.utils.CustomLogger;
 import com.oracle.ateam.threadlogic.xml.AdvisoryMapParser;
@@ -49,6 +50,8 @@ public class ThreadAdvisory implements Comparable, Serializable {
   public static final Hashtable<String, ThreadAdvisory> threadAdvisoryMapById = new Hashtable<String, ThreadAdvisory>();
 
   private static Logger theLogger = CustomLogger.getLogger(ThreadAdvisory.class.getSimpleName());
+
+  private static final String OWNABLE_SYNCHRONIZERS = "Locked ownable synchronizers";
   
   static {
     DICTIONARY_KEYS = createAdvisoryMapFromExternalResources();
@@ -389,7 +392,7 @@ public class ThreadAdvisory implements Comparable, Serializable {
   public static void runThreadAdvisory(ThreadInfo threadInfo) {
 
     String threadName = threadInfo.getName();
-    String threadStack = threadInfo.getContent();
+    String threadStack = threadInfo.getStackText();
     ThreadState state = threadInfo.getState();
     
     if (threadInfo.isBlockedForLock() & (threadInfo.getBlockedForLock() != null)) {      
@@ -505,19 +508,49 @@ public class ThreadAdvisory implements Comparable, Serializable {
     
     if (threadInfo.getAdvisories().isEmpty()
                   && (threadInfo.getHealth().ordinal() < HealthLevel.WATCH.ordinal()) ) {
-      int stackDepth = threadStack.split("\n").length;
+      int stackDepth = getStackDepth(threadInfo, threadStack);
       if (stackDepth >= ThreadLogicConstants.ACTIVETHREAD_STACKDEPTH)       
         threadInfo.setHealth(HealthLevel.UNKNOWN);
     }
   }
 
+  /**
+   * the depth of the stack as counted on the html content of the thread, the
+   * title and stack lines plus the closing markup. The ownable synchronizers
+   * listed for the lock analysis aren't part of it.
+   */
+  private static int getStackDepth(ThreadInfo threadInfo, String threadStack) {
+    StackFrame[] frames = threadInfo.getFrames();
+    if (frames == null) {
+      return threadStack.split("\n").length;
+    }
+
+    int depth = 1;
+    for (int i = 0; i < frames.length; i++) {
+      if ((frames[i].getType() != StackFrame.LOCKED_OWNABLE)
+          && (frames[i].getLine().indexOf(OWNABLE_SYNCHRONIZERS) < 0)) {
+        depth++;
+      }
+    }
+    return depth;
+  }
+
   // Ignore the thread label/top few lines that might vary between threads...
   // Get the rest of the threads and check for repeat occurence of the same
   // stack pattern
   public static String getThreaddumpSubset(ThreadInfo thread, int minLenToConsider, int offset, int maxDepth) {
     StringBuffer sbuf = new StringBuffer(1000);
 
-    String[] threads = thread.getContent().split("(\n)|(\r\n)");
+    String[] threads;
+    StackFrame[] frames = thread.getFrames();
+    if (frames != null) {
+      threads = new String[frames.length];
+      for (int i = 0; i < frames.length; i++) {
+        threads[i] = frames[i].getLine();
+      }
+    } else {
+      threads = thread.getStackText().split("(\n)|(\r\n)");
+    }
 
     ArrayList<String> stackLines = new ArrayList<String>();
 
@@ -553,7 +586,7 @@ public class ThreadAdvisory implements Comparable, Serializable {
 	    // If the thread is in WAIT or BLOCKED state but the call contain SOA BPEL Engine EJB Bean in as a
 	    // then tag that at WARNING level...
 	    String threadName = threadInfo.getName();
-	    String threadStack = threadInfo.getContent();
+	    String threadStack = threadInfo.getStackText();
 	    ThreadState state = threadInfo.getState();
 	    
 	    if ((threadStack.contains(ThreadLogicConstants.SOA_ENGINE_PATTERN1) || threadStack.contains(ThreadLogicConstants.SOA_ENGINE_PATTERN2))
@@ -642,7 +675,7 @@ public class ThreadAdvisory implements Comparable, Serializable {
 
     if (threadNameLower.contains("muxer")) {      
       WLSMuxerThreadGroup.resetAdvisoriesBasedOnThread(threadInfo, advisoryList);
-    } else if (threadInfo.getContent().contains("oracle.tip.adapter")) {
+    } else if (threadInfo.getStackText().contains("oracle.tip.adapter")) {
       SOAThreadGroup.resetAdvisoriesBasedOnThread(threadInfo, advisoryList);
     }
 
@@ -87,7 +87,7 @@ public class WLSMuxerThreadGroup extends CustomizedThreadGroup {
         // Check if this is from a IBM JVM
         // IBM JVM makes the poller marks it as CW/Waiting state as its waiting natively in poll
         // If not IBM, add warning about Muxer blocked in a bad state
-        if (!threadInfo.isIBMJVM() && !threadInfo.getContent().contains("FdStruct") ) {
+        if (!threadInfo.isIBMJVM() && !threadInfo.getStackText().contains("FdStruct") ) {
 
           ThreadAdvisory warningAdvisory = ThreadAdvisory.lookupThreadAdvisory(ThreadLogicConstants.MUXER_WAITING);        
           advisoryList.add(warningAdvisory);
@@ -109,7 +109,7 @@ public class WLSMuxerThreadGroup extends CustomizedThreadGroup {
 
     // Make sure the Muxer thread not executing or handling requests itself.
     // it should only be dispatching requests to sub-systems instead of handling job itself
-    if (threadInfo.getContent().contains("WorkAdapterImpl.run")) {
+    if (threadInfo.getStackText().contains("WorkAdapterImpl.run")) {
       ThreadAdvisory warningAdvisory = ThreadAdvisory.lookupThreadAdvisory(ThreadLogicConstants.WLS_SUBSYSTEM_REQUEST_OVERFLOW);
       advisoryList.add(warningAdvisory);
       threadInfo.setHealth(warningAdvisory.getHealth());
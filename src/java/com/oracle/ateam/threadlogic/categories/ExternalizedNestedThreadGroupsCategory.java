@@ -35,6 +35,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.logging.Logger;
 import javax.swing.tree.DefaultMutableTreeNode;
@@ -309,6 +310,19 @@ public class ExternalizedNestedThreadGroupsCategory extends NestedCategory {
       threadLinkedList.add(ti);
     }
 
+    createThreadGroups();
+  }
+
+  /**
+   * group the passed threads without a threads category, used if the dump
+   * was parsed into the analysis model only.
+   */
+  public void setThreads(Collection<ThreadInfo> threads) {
+    threadLinkedList.addAll(threads);
+    createThreadGroups();
+  }
+
+  private void createThreadGroups() {
     addFilters();
 
     // Sort the thread groups and nested threads by health
@@ -435,6 +449,7 @@ public class ExternalizedNestedThreadGroupsCategory extends NestedCategory {
 
     Arrays.fill(wlsDefaultExecuteThreadIds, -1);
     LinkedList<ThreadInfo> pendingThreadList = new LinkedList<ThreadInfo>(threadLinkedList);
+    createContainerThreadGroups(pendingThreadList);
     createThreadGroups(pendingThreadList, allWLSFilterList, true, nestedWLSCategory);
     createThreadGroups(pendingThreadList, allNonWLSFilterList, false, nestedNonWLSCategory);
 
@@ -558,6 +573,40 @@ public class ExternalizedNestedThreadGroupsCategory extends NestedCategory {
     }
   }
 
+  /**
+   * group the threads by the thread container (executor, carrier threads...)
+   * the dump reported them in, these go before the groups of the filters.
+   */
+  private void createContainerThreadGroups(LinkedList<ThreadInfo> pendingThreadList) {
+    LinkedHashMap<String, ThreadGroup> containerGroups = new LinkedHashMap<String, ThreadGroup>();
+    for (Iterator<ThreadInfo> iterator = pendingThreadList.iterator(); iterator.hasNext();) {
+      ThreadInfo ti = iterator.next();
+      String container = ti.getThreadContainer();
+      if (container == null) {
+        continue;
+      }
+
+      ThreadGroup tg = containerGroups.get(container);
+      if (tg == null) {
+        tg = ThreadGroupFactory.createThreadGroup(container);
+        containerGroups.put(container, tg);
+      }
+      tg.addThread(ti);
+      ti.setThreadGroup(tg);
+      iterator.remove();
+    }
+
+    for (ThreadGroup tg : containerGroups.values()) {
+      ThreadContainerFilter filter = new ThreadContainerFilter(tg.getName());
+      nestedNonWLSCategory.addToFilters(filter);
+      unknownCompositeFilter.addFilter(filter, false);
+
+      threadGroupList.add(tg);
+      nonWlsThreadGroupList.add(tg);
+      createThreadGroupNestedCategories(tg, filter, nestedNonWLSCategory);
+    }
+  }
+
   private void createThreadGroupNestedCategories(ThreadGroup tg, Filter associatedFilter, NestedCategory parentCategory) {
 
     tg.runAdvisory();
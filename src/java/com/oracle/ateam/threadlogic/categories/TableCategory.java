@@ -187,6 +187,8 @@ public class TableCategory extends AbstractCategory {
         filteredTable.getColumnModel().getColumn(6).setPreferredWidth(30); //Thread ID
         filteredTable.getColumnModel().getColumn(7).setPreferredWidth(20); //Native ID
         filteredTable.getColumnModel().getColumn(8).setPreferredWidth(40); //State
+        filteredTable.getColumnModel().getColumn(9).setPreferredWidth(40); //CPU
+        filteredTable.getColumnModel().getColumn(10).setPreferredWidth(40); //CPU Delta
         
         filteredTable.getColumnModel().getColumn(4).setCellRenderer(renderer);
         // filteredTable.getColumnModel().getColumn(5).setCellRenderer(renderer);
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.categories;
+
+import java.util.List;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import com.oracle.ateam.threadlogic.ThreadInfo;
+
+/**
+ * table category showing a subset of the threads of a dump. The category only
+ * keeps the indexes of its threads within the thread list of the dump, every
+ * thread exists once per dump no matter in how many categories it shows up.
+ * The tree nodes for the table are only created once the category is
+ * displayed or its nodes are asked for.
+ */
+public class ThreadListCategory extends TableCategory {
+
+  private final List<ThreadInfo> threads;
+  private int[] indexes;
+  private int count = 0;
+  private boolean nodesCreated = false;
+
+  /**
+   * create an empty view on the passed thread list, add the threads to show
+   * with {@link #addThread(int)}.
+   */
+  public ThreadListCategory(String name, int iconID, List<ThreadInfo> threads) {
+    super(name, iconID);
+    this.threads = threads;
+    this.indexes = new int[16];
+  }
+
+  /**
+   * create a view showing all threads of the passed list.
+   */
+  public static ThreadListCategory allOf(String name, int iconID, List<ThreadInfo> threads) {
+    ThreadListCategory cat = new ThreadListCategory(name, iconID, threads);
+    cat.indexes = new int[threads.size()];
+    for (int i = 0; i < threads.size(); i++) {
+      cat.indexes[i] = i;
+    }
+    cat.count = threads.size();
+    return cat;
+  }
+
+  /**
+   * add the thread at the given index of the thread list to this category.
+   */
+  public void addThread(int index) {
+    if (nodesCreated) {
+      addToCatNodes(new DefaultMutableTreeNode(threads.get(index)));
+      return;
+    }
+    if (count == indexes.length) {
+      int[] newIndexes = new int[indexes.length * 2];
+      System.arraycopy(indexes, 0, newIndexes, 0, count);
+      indexes = newIndexes;
+    }
+    indexes[count++] = index;
+  }
+
+  /**
+   * get the thread at the given position without creating the tree nodes.
+   */
+  public ThreadInfo getThreadAt(int index) {
+    if (nodesCreated) {
+      return (ThreadInfo) super.getNodeAt(index).getUserObject();
+    }
+    return threads.get(indexes[index]);
+  }
+
+  /**
+   * as long as the table wasn't shown, a detached node is returned so the
+   * tree nodes of the category don't get created by just iterating it.
+   */
+  public DefaultMutableTreeNode getNodeAt(int index) {
+    if (nodesCreated) {
+      return super.getNodeAt(index);
+    }
+    return new DefaultMutableTreeNode(threads.get(indexes[index]));
+  }
+
+  public int getNodeCount() {
+    return (nodesCreated ? super.getNodeCount() : count);
+  }
+
+  protected DefaultMutableTreeNode getRootNode() {
+    if (!nodesCreated) {
+      nodesCreated = true;
+      if (count > 0) {
+        DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode("root");
+        for (int i = 0; i < count; i++) {
+          rootNode.add(new DefaultMutableTreeNode(threads.get(indexes[i])));
+        }
+        super.setRootNode(rootNode);
+      }
+      indexes = null;
+    }
+    return super.getRootNode();
+  }
+
+  protected void setRootNode(DefaultMutableTreeNode rootNode) {
+    // the nodes now define the content of the category
+    getRootNode();
+    super.setRootNode(rootNode);
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.categories;
+
+import java.util.List;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import com.oracle.ateam.threadlogic.ThreadDumpInfo;
+import com.oracle.ateam.threadlogic.ThreadInfo;
+import com.oracle.ateam.threadlogic.utils.IconFactory;
+
+/**
+ * the threads of a dump using the most cpu. Once the cpu time used since the
+ * previous dump of the same jvm is known the threads are ordered by it,
+ * otherwise by their total cpu time.
+ */
+public class TopCpuCategory extends TableCategory {
+
+  public static final String NAME = "Top CPU consumers";
+  public static final int MAX_THREADS = 25;
+
+  private final ThreadDumpInfo tdi;
+
+  public TopCpuCategory(ThreadDumpInfo tdi) {
+    super(NAME, IconFactory.THREADS, false);
+    this.tdi = tdi;
+    refresh();
+  }
+
+  /**
+   * pick the top threads again, e.g. after the cpu deltas of the dump were
+   * computed.
+   */
+  public synchronized void refresh() {
+    List<ThreadInfo> topThreads = tdi.getTopCpuThreads(MAX_THREADS);
+    setRootNode(new DefaultMutableTreeNode("root"));
+    for (ThreadInfo ti : topThreads) {
+      addToCatNodes(new DefaultMutableTreeNode(ti));
+    }
+    setFilteredRootNode(null);
+    setLastView(null);
+    filteredTable = null;
+
+    boolean deltas = tdi.hasCpuDeltas();
+    setName(NAME + " (" + topThreads.size() + " Threads" + (deltas ? ", CPU since previous dump" : "") + ")");
+    setInfo("<font face=System><b>" + NAME + "</b><br><br>The threads using the most CPU, ordered by the CPU time "
+        + (deltas ? "used since the previous dump of the same JVM." : "used since they were started.")
+        + "</font>");
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+
+import com.oracle.ateam.threadlogic.LoadScheduler;
+import com.oracle.ateam.threadlogic.LoadScheduler.LoadTask;
+
+/**
+ * shows the progress of the files loaded by a load scheduler, every file can
+ * be cancelled on its own.
+ */
+public class LoadProgressDialog extends JDialog {
+
+  private static final int REFRESH_MILLIS = 500;
+
+  private final LoadScheduler scheduler;
+  private final List<LoadTask> tasks;
+  private final ArrayList<JProgressBar> progressBars = new ArrayList<JProgressBar>();
+  private final ArrayList<JButton> cancelButtons = new ArrayList<JButton>();
+  private JLabel throughput;
+  private Timer refreshTimer;
+
+  public LoadProgressDialog(Frame owner, LoadScheduler scheduler) {
+    super(owner, "Loading " + scheduler.getTasks().size() + " log files", false);
+    this.scheduler = scheduler;
+    this.tasks = scheduler.getTasks();
+    getContentPane().setLayout(new BorderLayout());
+    initPanel();
+  }
+
+  private void initPanel() {
+    JPanel filesPanel = new JPanel(new GridBagLayout());
+    filesPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 5, 10));
+    GridBagConstraints c = new GridBagConstraints();
+    c.insets = new Insets(2, 4, 2, 4);
+    c.fill = GridBagConstraints.HORIZONTAL;
+
+    for (int i = 0; i < tasks.size(); i++) {
+      final LoadTask task = tasks.get(i);
+      c.gridy = i;
+
+      c.gridx = 0;
+      c.weightx = 1;
+      filesPanel.add(new JLabel(new File(task.getName()).getName()), c);
+
+      JProgressBar progressBar = new JProgressBar(0, 100);
+      progressBar.setStringPainted(true);
+      c.gridx = 1;
+      c.weightx = 0;
+      filesPanel.add(progressBar, c);
+      progressBars.add(progressBar);
+
+      final JButton cancelButton = new JButton("Cancel");
+      cancelButton.addActionListener(new ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+          task.cancel();
+          cancelButton.setEnabled(false);
+        }
+      });
+      c.gridx = 2;
+      filesPanel.add(cancelButton, c);
+      cancelButtons.add(cancelButton);
+    }
+    getContentPane().add(filesPanel, BorderLayout.CENTER);
+
+    JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+    throughput = new JLabel();
+    buttonPanel.add(throughput);
+    JButton cancelAllButton = new JButton("Cancel All");
+    cancelAllButton.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        scheduler.cancelAll();
+        for (JButton cancelButton : cancelButtons) {
+          cancelButton.setEnabled(false);
+        }
+      }
+    });
+    buttonPanel.add(cancelAllButton);
+    getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+
+    refreshTimer = new Timer(REFRESH_MILLIS, new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        refresh();
+      }
+    });
+  }
+
+  /**
+   * show the dialog and refresh it until the scheduler is finished.
+   */
+  public void showDialog() {
+    refresh();
+    pack();
+    setLocationRelativeTo(getOwner());
+    setVisible(true);
+    refreshTimer.start();
+  }
+
+  private void refresh() {
+    for (int i = 0; i < tasks.size(); i++) {
+      LoadTask task = tasks.get(i);
+      JProgressBar progressBar = progressBars.get(i);
+      progressBar.setValue(task.getProgress());
+      if (task.isCanceled()) {
+        progressBar.setString("cancelled");
+      } else if (task.getError() != null) {
+        progressBar.setString("failed");
+      } else {
+        progressBar.setString(task.getProgress() + "%, " + task.getDumpCount() + " dumps");
+      }
+      if (task.isDone()) {
+        cancelButtons.get(i).setEnabled(false);
+      }
+    }
+
+    throughput.setText(String.format("%.1f MB/s, %.1f dumps/s", scheduler.getMBPerSecond(),
+            scheduler.getDumpsPerSecond()));
+
+    if (scheduler.isFinished()) {
+      refreshTimer.stop();
+      dispose();
+    }
+  }
+}
@@ -133,6 +133,7 @@ public class PreferencesDialog extends JDialog {
     generalPanel.bufferField.setText(String.valueOf(PrefManager.get().getStreamResetBuffer()));
     generalPanel.showHotspotClasses.setSelected(PrefManager.get().getShowHotspotClasses());
     generalPanel.useGTKLF.setSelected(PrefManager.get().isUseGTKLF());
+    generalPanel.compressInactiveDumps.setSelected(PrefManager.get().getCompressInactiveDumps());
     generalPanel.maxLogfileSizeField.setText(String.valueOf(PrefManager.get().getMaxLogfileSize()));
 
     DefaultComboBoxModel boxModel = new DefaultComboBoxModel();
@@ -156,6 +157,7 @@ public class PreferencesDialog extends JDialog {
     PrefManager.get().setDateParsingRegexs(regExPanel.dateParsingRegexs.getModel());
     PrefManager.get().setMillisTimeStamp(regExPanel.isMillisTimeStamp.isSelected());
     PrefManager.get().setUseGTKLF(generalPanel.useGTKLF.isSelected());
+    PrefManager.get().setCompressInactiveDumps(generalPanel.compressInactiveDumps.isSelected());
     PrefManager.get().setJDK16DefaultParsing(regExPanel.isJDK16DefaultParsing.isSelected());
     PrefManager.get().setMaxLogfileSize(Integer.parseInt(generalPanel.maxLogfileSizeField.getText()));
     dispose();
@@ -168,6 +170,7 @@ public class PreferencesDialog extends JDialog {
     JCheckBox forceLoggcLoading;
     JCheckBox showHotspotClasses;
     JCheckBox useGTKLF;
+    JCheckBox compressInactiveDumps;
 
     public GeneralPanel() {
       setLayout(new FlowLayout(FlowLayout.RIGHT));
@@ -213,6 +216,12 @@ public class PreferencesDialog extends JDialog {
       useGTKLF = new JCheckBox();
       layoutPanel.add(useGTKLF);
       innerPanel.add(layoutPanel);
+
+      layoutPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+      layoutPanel.add(new JLabel("Keep dumps not being viewed compressed in memory (applies to newly opened files)"));
+      compressInactiveDumps = new JCheckBox();
+      layoutPanel.add(compressInactiveDumps);
+      innerPanel.add(layoutPanel);
       add(innerPanel);
     }
   }
@@ -252,20 +252,20 @@ public class Filter {
         result = getFilterExpressionPattern().matcher(ti.getName()).matches();
         break;
       case HAS_IN_STACK_RULE:
-        result = getFilterExpressionPattern().matcher(ti.getContent()).find();
+        result = getFilterExpressionPattern().matcher(ti.getStackText()).find();
         break;
       case MATCHES_STACK_RULE:
-        result = getFilterExpressionPattern().matcher(ti.getContent()).matches();
+        result = getFilterExpressionPattern().matcher(ti.getStackText()).matches();
         break;
       case WAITING_ON_RULE:
-        result = (ti.getContent().indexOf("- waiting on") >= 0) && checkLine(ti, "- waiting on", '<', ')');
+        result = (ti.getStackText().indexOf("- waiting on") >= 0) && checkLine(ti, "- waiting on", '<', ')');
         break;
       case WAITING_FOR_RULE:
         result = (ti.getName().indexOf("waiting for monitor entry") >= 0)
             && checkLine(ti, "- waiting to lock", '<', ')');
         break;
       case LOCKING_RULE:
-        result = (ti.getContent().indexOf("- locked") >= 0) && checkLine(ti, "- locked", '<', ')');
+        result = (ti.getStackText().indexOf("- locked") >= 0) && checkLine(ti, "- locked", '<', ')');
         break;
       case SLEEPING_RULE:
         result = (ti.getName().indexOf("Object.wait()") >= 0);
@@ -287,10 +287,11 @@ public class Filter {
    * checks a sub line for a lock handler (for waiting, locking, monitor entry)
    */
   private boolean checkLine(ThreadInfo ti, String contains, char beginChar, char endChar) {
-    int beginFrom = ti.getContent().indexOf(contains);
-    int beginIndex = ti.getContent().indexOf(beginChar, beginFrom);
-    int endIndex = ti.getContent().indexOf(endChar, beginIndex);
-    String matchLine = ti.getContent().substring(beginIndex, endIndex);
+    String stack = ti.getStackText();
+    int beginFrom = stack.indexOf(contains);
+    int beginIndex = stack.indexOf(beginChar, beginFrom);
+    int endIndex = stack.indexOf(endChar, beginIndex);
+    String matchLine = stack.substring(beginIndex, endIndex);
 
     return getFilterExpressionPattern().matcher(matchLine).matches();
   }
@@ -35,7 +35,7 @@ public class HotCallPatternFilter extends Filter {
 
   public boolean matches(ThreadInfo ti, boolean forceEnabled) {
     // Replace all Lock data with empty stuff so we can get match irrespective of lock ids...
-    boolean result = ti.getContent().replaceAll("<.*>", "").contains(callPattern);
+    boolean result = ti.getStackText().replaceAll("<.*>", "").contains(callPattern);
     return result;
   }
 
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ * 
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.filter;
+
+import com.oracle.ateam.threadlogic.ThreadInfo;
+
+/**
+ * matches the threads of a thread container (executor, structured task
+ * scope...) as reported by the jcmd thread dumps.
+ */
+public class ThreadContainerFilter extends Filter {
+
+  private String container;
+
+  public ThreadContainerFilter(String container) {
+    setName(container);
+    setEnabled(true);
+    this.container = container;
+  }
+
+  public boolean matches(ThreadInfo ti, boolean forceEnabled) {
+    return container.equals(ti.getThreadContainer());
+  }
+
+  public String getContainer() {
+    return container;
+  }
+}
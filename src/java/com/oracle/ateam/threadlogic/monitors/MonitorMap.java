@@ -1,9 +1,9 @@
 /**
  * Copyright (c) 2012 egross, sabha.
- * 
+ *
  * ThreadLogic - parses thread dumps and provides analysis/guidance
  * It is based on the popular TDA tool.  Thank you!
- * 
+ *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the GNU Lesser Public License v2.1
  * which accompanies this distribution, and is available at
@@ -34,13 +34,19 @@
 package com.oracle.ateam.threadlogic.monitors;
 
 import java.io.Serializable;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.ArrayList;
 import java.util.HashMap;
 
+import com.oracle.ateam.threadlogic.StackFrame;
+import com.oracle.ateam.threadlogic.StackRenderer;
+
 /**
  * map for saving monitor-thread relation in a thread dump.
- * 
+ *
+ * Monitors and threads are numbered in the order they are added, the
+ * relations are kept as int arrays per monitor. The stack of a thread is only
+ * kept once, no matter on how many monitors the thread shows up.
+ *
  * @author irockel
  */
 public class MonitorMap implements Serializable {
@@ -61,25 +67,27 @@ public class MonitorMap implements Serializable {
    */
   public static final int SLEEP_THREAD_POS = 2;
 
-  private Map monitorMap = null;
+  private HashMap<String, Integer> monitorIds = new HashMap<String, Integer>();
+  private ArrayList<String> monitors = new ArrayList<String>();
+  // per monitor the locking, waiting and sleeping threads
+  private ArrayList<IntList[]> monitorThreads = new ArrayList<IntList[]>();
+
+  private HashMap<String, Integer> threadIds = new HashMap<String, Integer>();
+  private ArrayList<String> threadTitles = new ArrayList<String>();
+  private ArrayList<String> threadContents = new ArrayList<String>();
+  private ArrayList<StackFrame[]> threadStacks = new ArrayList<StackFrame[]>();
+  // per thread the monitors it is waiting for
+  private ArrayList<IntList> threadWaits = new ArrayList<IntList>();
+  // per thread a bit for each relation (1 << pos) it has to any monitor
+  private IntList threadRelations = new IntList();
+  // per thread its relations to the monitors, see relationKey(). A thread
+  // only has a few, unlike a hot monitor with thousands of waiting threads.
+  private ArrayList<IntList> threadMonitors = new ArrayList<IntList>();
 
   /**
    * Creates a new instance of MonitorMap
    */
   public MonitorMap() {
-    monitorMap = new HashMap();
-  }
-
-  public void addToMonitorMap(String key, Map[] objectSet) {
-    monitorMap.put(key, objectSet);
-  }
-
-  public boolean hasInMonitorMap(String key) {
-    return (monitorMap != null && monitorMap.containsKey(key));
-  }
-
-  public Map[] getFromMonitorMap(String key) {
-    return (monitorMap != null && hasInMonitorMap(key) ? (Map[]) monitorMap.get(key) : null);
   }
 
   public void addWaitToMonitor(String key, String waitThread, String threadContent) {
@@ -98,22 +106,59 @@ public class MonitorMap implements Serializable {
   }
 
   private void addToMonitorValue(String key, int pos, String threadTitle, String thread) {
-    if (key == null)
+    if ((key == null) || (threadTitle == null))
       return;
-      
-    Map[] objectSet = null;
-
-    if (hasInMonitorMap(key)) {
-      objectSet = getFromMonitorMap(key);
-    } else {
-      objectSet = new HashMap[3];
-      objectSet[0] = new HashMap();
-      objectSet[1] = new HashMap();
-      objectSet[2] = new HashMap();
-      addToMonitorMap(key, objectSet);
+
+    int monitor = internMonitor(key);
+    int threadId = internThread(threadTitle);
+    if (thread != null) {
+      setThreadContent(threadId, thread);
     }
 
-    objectSet[pos].put(threadTitle, thread);
+    IntList related = threadMonitors.get(threadId);
+    int relation = relationKey(monitor, pos);
+    if (!related.contains(relation)) {
+      related.add(relation);
+      monitorThreads.get(monitor)[pos].add(threadId);
+      threadRelations.set(threadId, threadRelations.get(threadId) | (1 << pos));
+      if (pos == WAIT_THREAD_POS) {
+        threadWaits.get(threadId).add(monitor);
+      }
+    }
+  }
+
+  private static int relationKey(int monitor, int pos) {
+    return (monitor << 2) | pos;
+  }
+
+  private int internMonitor(String key) {
+    Integer id = monitorIds.get(key);
+    if (id != null) {
+      return id.intValue();
+    }
+
+    int monitor = monitors.size();
+    monitorIds.put(key, Integer.valueOf(monitor));
+    monitors.add(key);
+    monitorThreads.add(new IntList[] { new IntList(), new IntList(), new IntList() });
+    return monitor;
+  }
+
+  private int internThread(String title) {
+    Integer id = threadIds.get(title);
+    if (id != null) {
+      return id.intValue();
+    }
+
+    int thread = threadTitles.size();
+    threadIds.put(title, Integer.valueOf(thread));
+    threadTitles.add(title);
+    threadContents.add(null);
+    threadStacks.add(null);
+    threadWaits.add(new IntList());
+    threadRelations.add(0);
+    threadMonitors.add(new IntList());
+    return thread;
   }
 
   public void parseAndAddThread(String line, String threadTitle, String currentThread) {
@@ -123,7 +168,7 @@ public class MonitorMap implements Serializable {
     if ((line.indexOf('<') > 0)) {
       String monitor = line.substring(line.indexOf('<'));
       monitor = monitor.replaceFirst(" owned by.*", "");
-      
+
       if (line.trim().startsWith("- waiting to lock") || line.trim().startsWith("- parking to wait")) {
         addWaitToMonitor(monitor, threadTitle, currentThread);
       } else if (line.trim().startsWith("- waiting on")) {
@@ -136,7 +181,7 @@ public class MonitorMap implements Serializable {
           + line.substring(line.lastIndexOf(' '), line.indexOf('@')) + ")";
       if (monitor == null)
         return;
-      
+
       if (line.trim().startsWith("- waiting to lock") || line.trim().startsWith("- parking to wait")) {
         addWaitToMonitor(monitor, threadTitle, currentThread);
       } else if (line.trim().startsWith("- waiting on")) {
@@ -147,12 +192,179 @@ public class MonitorMap implements Serializable {
     }
   }
 
-  public Iterator iterOfKeys() {
-    return (monitorMap == null ? null : monitorMap.keySet().iterator());
+  /**
+   * add the relation of the thread to the monitor of the given lock line and
+   * keep the parsed stack of the thread, it is only rendered once shown.
+   */
+  public void parseAndAddThread(String line, String threadTitle, StackFrame[] stack) {
+    parseAndAddThread(line, threadTitle, (String) null);
+    int thread = findThread(threadTitle);
+    if ((thread >= 0) && (threadContents.get(thread) == null)) {
+      threadStacks.set(thread, stack);
+    }
   }
 
+  /**
+   * @return the number of monitors.
+   */
   public int size() {
-    return (monitorMap == null ? 0 : monitorMap.size());
+    return monitors.size();
+  }
+
+  /**
+   * @return the key of the given monitor.
+   */
+  public String getMonitor(int monitor) {
+    return monitors.get(monitor);
+  }
+
+  /**
+   * @return the number of threads with the given relation (LOCK_THREAD_POS,
+   *         WAIT_THREAD_POS or SLEEP_THREAD_POS) to the monitor.
+   */
+  public int getThreadCount(int monitor, int pos) {
+    return monitorThreads.get(monitor)[pos].size();
+  }
+
+  /**
+   * @return the index'th thread with the given relation to the monitor.
+   */
+  public int getThread(int monitor, int pos, int index) {
+    return monitorThreads.get(monitor)[pos].get(index);
+  }
+
+  public boolean hasThread(int monitor, int pos, int thread) {
+    return threadMonitors.get(thread).contains(relationKey(monitor, pos));
+  }
+
+  /**
+   * @return the number of threads related to any monitor.
+   */
+  public int getThreadsSize() {
+    return threadTitles.size();
+  }
+
+  /**
+   * @return the thread with the given title, -1 if it isn't related to any
+   *         monitor.
+   */
+  public int findThread(String threadTitle) {
+    Integer id = threadIds.get(threadTitle);
+    return (id != null) ? id.intValue() : -1;
+  }
+
+  public String getThreadTitle(int thread) {
+    return threadTitles.get(thread);
+  }
+
+  /**
+   * give the thread another title, e.g. once the full title of a thread only
+   * known by its name was found. Nothing is changed if the new title is
+   * already taken.
+   *
+   * @return the thread, -1 if no thread has the old title.
+   */
+  public int renameThread(String oldTitle, String newTitle) {
+    int thread = findThread(oldTitle);
+    if ((thread >= 0) && !threadIds.containsKey(newTitle)) {
+      threadIds.remove(oldTitle);
+      threadIds.put(newTitle, Integer.valueOf(thread));
+      threadTitles.set(thread, newTitle);
+    }
+    return thread;
+  }
+
+  /**
+   * @return true if the thread has the given relation (LOCK_THREAD_POS,
+   *         WAIT_THREAD_POS or SLEEP_THREAD_POS) to any monitor.
+   */
+  public boolean hasRelation(int thread, int pos) {
+    return (threadRelations.get(thread) & (1 << pos)) != 0;
+  }
+
+  public boolean hasThreadContent(int thread) {
+    return (threadContents.get(thread) != null) || (threadStacks.get(thread) != null);
+  }
+
+  /**
+   * @return the content of the thread as passed in or rendered from its
+   *         stack, null if not known.
+   */
+  public String getThreadContent(int thread, StackRenderer renderer) {
+    String content = threadContents.get(thread);
+    if (content == null) {
+      StackFrame[] stack = threadStacks.get(thread);
+      if (stack != null) {
+        content = renderer.render(stack);
+      }
+    }
+    return content;
+  }
+
+  /**
+   * @return the parsed stack of the thread, null if only its content is
+   *         known.
+   */
+  public StackFrame[] getThreadStack(int thread) {
+    return threadStacks.get(thread);
   }
 
+  public void setThreadContent(int thread, String content) {
+    threadContents.set(thread, content);
+    threadStacks.set(thread, null);
+  }
+
+  public void setThreadStack(int thread, StackFrame[] stack) {
+    threadContents.set(thread, null);
+    threadStacks.set(thread, stack);
+  }
+
+  /**
+   * @return the number of monitors the thread is waiting for.
+   */
+  public int getWaitedMonitorCount(int thread) {
+    return threadWaits.get(thread).size();
+  }
+
+  public int getWaitedMonitor(int thread, int index) {
+    return threadWaits.get(thread).get(index);
+  }
+
+  /**
+   * growable list of ints, the lists of a monitor are usually short.
+   */
+  private static class IntList implements Serializable {
+    private int[] values = new int[2];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        int[] grown = new int[size * 2];
+        System.arraycopy(values, 0, grown, 0, size);
+        values = grown;
+      }
+      values[size++] = value;
+    }
+
+    int get(int index) {
+      return values[index];
+    }
+
+    void set(int index, int value) {
+      values[index] = value;
+    }
+
+    int size() {
+      return size;
+    }
+
+    boolean contains(int value) {
+      for (int i = 0; i < size; i++) {
+        if (values[i] == value) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
 }
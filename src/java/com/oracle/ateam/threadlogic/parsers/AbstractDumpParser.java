@@ -31,7 +31,11 @@
 package com.oracle.ateam.threadlogic.parsers;
 
 import com.oracle.ateam.threadlogic.HeapInfo;
+import com.oracle.ateam.threadlogic.FrameTable;
 import com.oracle.ateam.threadlogic.Logfile;
+import com.oracle.ateam.threadlogic.LockInfo.DeadLockEntry;
+import com.oracle.ateam.threadlogic.StackFrame;
+import com.oracle.ateam.threadlogic.StackRenderer;
 import com.oracle.ateam.threadlogic.ThreadLogic;
 import com.oracle.ateam.threadlogic.ThreadDumpInfo;
 import com.oracle.ateam.threadlogic.ThreadInfo;
@@ -43,6 +47,7 @@ import com.oracle.ateam.threadlogic.categories.ExternalizedNestedThreadGroupsCat
 import com.oracle.ateam.threadlogic.categories.NestedCategory;
 import com.oracle.ateam.threadlogic.categories.TableCategory;
 import com.oracle.ateam.threadlogic.categories.ThreadDiffsTableCategory;
+import com.oracle.ateam.threadlogic.categories.TopCpuCategory;
 import com.oracle.ateam.threadlogic.categories.TreeCategory;
 import com.oracle.ateam.threadlogic.filter.Filter;
 import com.oracle.ateam.threadlogic.monitors.MonitorMap;
@@ -61,19 +66,22 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.swing.JOptionPane;
 import javax.swing.ListModel;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.MutableTreeNode;
@@ -112,6 +120,9 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
   protected String LOCKED;
   protected String BLOCKED_FOR_LOCK;
   protected String GENERAL_WAITING;
+  protected String PARKED_FOR_LOCK;
+  // compiled lock patterns, there are only a few per parser type
+  private static final Map<String, Pattern> trailingEntryPatterns = new ConcurrentHashMap<String, Pattern>();
   // Adding support for ECID & Thread Context data as part of generated thread dump
   protected String THREAD_TIMING_STATISTICS = " THREAD TIMING STATISTICS";
   protected String THREAD_CONTEXT_INFO = " THREAD CONTEXT INFORMATION";
@@ -147,6 +158,7 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     LOCKED = "- locked";
     BLOCKED_FOR_LOCK = "- waiting to lock";
     GENERAL_WAITING = "- waiting on ";
+    PARKED_FOR_LOCK = "- parking to wait for";
   }
 
   /**
@@ -203,6 +215,27 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     diffDumps("Merge", root, dumpStore, dumps, minOccurence, regex);
   }
 
+  /**
+   * stable sort of the dump keys by the start time of their dumps, the keys
+   * are left alone if a dump has no start time.
+   */
+  private static void sortByStartTime(List<String> tdiKeys, final Map<String, ThreadDumpInfo> tdiMap) {
+    for (String tdiKey : tdiKeys) {
+      ThreadDumpInfo tdi = tdiMap.get(tdiKey);
+      if ((tdi == null) || (tdi.getStartTimeMillis() <= 0)) {
+        return;
+      }
+    }
+
+    Collections.sort(tdiKeys, new Comparator<String>() {
+      public int compare(String key1, String key2) {
+        long time1 = tdiMap.get(key1).getStartTimeMillis();
+        long time2 = tdiMap.get(key2).getStartTimeMillis();
+        return (time1 < time2) ? -1 : ((time1 == time2) ? 0 : 1);
+      }
+    });
+  }
+
   protected void diffDumps(String prefix, DefaultMutableTreeNode root, Map dumpStore, TreePath[] dumps,
           int minOccurence, String regex) {
 
@@ -315,6 +348,10 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
       }
     }
 
+    // Order by the real time if all dumps have a timestamp, dumps of
+    // different logs (e.g. of the nodes of a cluster) get merged this way
+    sortByStartTime(tdiKeys, tdiMap);
+
     ArrayList<ThreadDumpInfo> tdiArrList = new ArrayList<ThreadDumpInfo>();
     for (String tdiKey : tdiKeys) {
       String dumpName = tdKeyMapper.get(tdiKey);
@@ -719,6 +756,22 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     dumpHistogramCounter = value;
   }
 
+  /**
+   * set the number to use for the next parsed thread dump, used if the dumps
+   * of a log file are parsed independently of each other.
+   */
+  void setDumpCounter(int value) {
+    counter = value;
+  }
+
+  /**
+   * set the number of lines read so far, used if the reader was moved to
+   * another dump.
+   */
+  void setLineCounter(int value) {
+    lineCounter = value;
+  }
+
   /**
    * retrieve the next node for adding histogram information into the tree.
    *
@@ -812,51 +865,42 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
    */
   protected int[] dumpMonitors(DefaultMutableTreeNode catMonitors, DefaultMutableTreeNode catMonitorsLocks,
           MonitorMap mmap) {
-    Iterator iter = mmap.iterOfKeys();
     int monitorsWithoutLocksCount = 0;
     int overallThreadsWaiting = 0;
-    while (iter.hasNext()) {
-      String monitor = (String) iter.next();
-      Map[] threads = mmap.getFromMonitorMap(monitor);
-      ThreadInfo mi = new ThreadInfo(monitor, null, "", 0, null);
+    for (int monitor = 0; monitor < mmap.size(); monitor++) {
+      ThreadInfo mi = new ThreadInfo(mmap.getMonitor(monitor), null, "", 0, null);
       DefaultMutableTreeNode monitorNode = new DefaultMutableTreeNode(mi);
 
       // first the locks
-      Iterator iterLocks = threads[MonitorMap.LOCK_THREAD_POS].keySet().iterator();
       int locks = 0;
       int sleeps = 0;
       int waits = 0;
-      while (iterLocks.hasNext()) {
-        String thread = (String) iterLocks.next();
-        String stackTrace = (String) threads[MonitorMap.LOCK_THREAD_POS].get(thread);
-        if (threads[MonitorMap.SLEEP_THREAD_POS].containsKey(thread)) {
-          createNode(monitorNode, "locks and sleeps on monitor: " + thread, null, stackTrace, 0);
+      for (int i = 0; i < mmap.getThreadCount(monitor, MonitorMap.LOCK_THREAD_POS); i++) {
+        int thread = mmap.getThread(monitor, MonitorMap.LOCK_THREAD_POS, i);
+        if (mmap.hasThread(monitor, MonitorMap.SLEEP_THREAD_POS, thread)) {
+          createThreadNode(monitorNode, "locks and sleeps on monitor: ", mmap, thread);
           sleeps++;
-        } else if (threads[MonitorMap.WAIT_THREAD_POS].containsKey(thread)) {
-          createNode(monitorNode, "locks and waits on monitor: " + thread, null, stackTrace, 0);
+        } else if (mmap.hasThread(monitor, MonitorMap.WAIT_THREAD_POS, thread)) {
+          createThreadNode(monitorNode, "locks and waits on monitor: ", mmap, thread);
           sleeps++;
         } else {
-          createNode(monitorNode, "locked by " + thread, null, stackTrace, 0);
+          createThreadNode(monitorNode, "locked by ", mmap, thread);
         }
         locks++;
       }
 
-      Iterator iterWaits = threads[MonitorMap.WAIT_THREAD_POS].keySet().iterator();
-      while (iterWaits.hasNext()) {
-        String thread = (String) iterWaits.next();
-        if (thread != null && !threads[MonitorMap.LOCK_THREAD_POS].containsKey(thread)) {
-          createNode(monitorNode, "waits on monitor: " + thread, null,
-                  (String) threads[MonitorMap.WAIT_THREAD_POS].get(thread), 0);
+      for (int i = 0; i < mmap.getThreadCount(monitor, MonitorMap.WAIT_THREAD_POS); i++) {
+        int thread = mmap.getThread(monitor, MonitorMap.WAIT_THREAD_POS, i);
+        if (!mmap.hasThread(monitor, MonitorMap.LOCK_THREAD_POS, thread)) {
+          createThreadNode(monitorNode, "waits on monitor: ", mmap, thread);
           waits++;
         }
       }
 
-      Iterator iterSleeps = threads[MonitorMap.SLEEP_THREAD_POS].keySet().iterator();
-      while (iterSleeps.hasNext()) {
-        String thread = (String) iterSleeps.next();
-        if (thread != null && !threads[MonitorMap.LOCK_THREAD_POS].containsKey(thread)) {
-          createNode(monitorNode, "sleeps on monitor: " + thread, null,
-                  (String) threads[MonitorMap.SLEEP_THREAD_POS].get(thread), 0);
+      for (int i = 0; i < mmap.getThreadCount(monitor, MonitorMap.SLEEP_THREAD_POS); i++) {
+        int thread = mmap.getThread(monitor, MonitorMap.SLEEP_THREAD_POS, i);
+        if (!mmap.hasThread(monitor, MonitorMap.LOCK_THREAD_POS, thread)) {
+          createThreadNode(monitorNode, "sleeps on monitor: ", mmap, thread);
           sleeps++;
         }
       }
@@ -879,8 +923,28 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     return new int[]{monitorsWithoutLocksCount, overallThreadsWaiting};
   }
 
+  /**
+   * create the node of a thread related to a monitor, its stack is only
+   * rendered once the node is shown if the parser kept it.
+   */
+  private void createThreadNode(DefaultMutableTreeNode top, String prefix, MonitorMap mmap, int thread) {
+    String title = prefix + mmap.getThreadTitle(thread);
+    StackFrame[] stack = mmap.getThreadStack(thread);
+    if (stack == null) {
+      createNode(top, title, null, mmap.getThreadContent(thread, getStackRenderer()), 0);
+      return;
+    }
+
+    String[] tokens = getThreadTokens(title);
+    if (tokens == null || tokens.length == 0) {
+      return;
+    }
+    top.add(new DefaultMutableTreeNode(new ThreadInfo(title, null, stack, getStackRenderer(), 0, tokens)));
+  }
+
   protected int[] dumpBlockingMonitors(DefaultMutableTreeNode catLockingTree, MonitorMap mmap) {
-    Map directChildMap = new HashMap(); // Top level of our display model
+    // Top level of our display model, by monitor
+    Map<Integer, DefaultMutableTreeNode> directChildMap = new LinkedHashMap<Integer, DefaultMutableTreeNode>();
 
     // ******************************************************************
     // Figure out what threads are blocking and what threads are blocked
@@ -897,9 +961,7 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     // Recalculate the number of blocked threads and add remaining top-level
     // threads to our display model
     // ********************************************************************
-    for (Iterator iter = directChildMap.entrySet().iterator(); iter.hasNext();) {
-      DefaultMutableTreeNode threadNode = (DefaultMutableTreeNode) ((Map.Entry) iter.next()).getValue();
-
+    for (DefaultMutableTreeNode threadNode : directChildMap.values()) {
       updateChildCount(threadNode, true);
       ((Category) catLockingTree.getUserObject()).addToCatNodes(threadNode);
     }
@@ -990,9 +1052,27 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
         DefaultMutableTreeNode deadlockedThread = new DefaultMutableTreeNode(deadlockedTi);
         ((Category) deadlockNode.getUserObject()).addToCatNodes(deadlockedThread);
       }
+
+      // one node per deadlock cycle
+      int cycle = 0;
+      for (DeadLockEntry entry : tdi.getDeadlockEntries()) {
+        Category cycleCategory = new TableCategory("Deadlock " + (++cycle) + " (" + entry.getDeadlockChain().size()
+            + " threads)", IconFactory.DEADLOCKS, false);
+        cycleCategory.setInfo(tdi.getDeadlockedInfo(entry));
+        for (ThreadInfo deadlockedTi : entry.getDeadlockChain()) {
+          cycleCategory.addToCatNodes(new DefaultMutableTreeNode(deadlockedTi));
+        }
+        deadlockNode.add(new DefaultMutableTreeNode(cycleCategory));
+      }
       threadDump.add(deadlockNode);
     }
 
+    TopCpuCategory topCpuCategory = new TopCpuCategory(tdi);
+    if (topCpuCategory.getNodeCount() > 0) {
+      tdi.setTopCpuThreads(topCpuCategory);
+      threadDump.add(new DefaultMutableTreeNode(topCpuCategory));
+    }
+
     DefaultMutableTreeNode threadGroupNode = createCustomTree(threadDump, threadGroupsCat, threads);
     Category threadGrpCategory = new TableCategory("Thread Groups Summary", IconFactory.THREADS, true);
     threadGrpCategory.setInfo(tdi.getTGSummaryOverview());
@@ -1106,45 +1186,56 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     Category lockedCategory = null;
     int count = 0;
     int blockedThread = 0;
-    for (Iterator monitorMapiIter = mmap.iterOfKeys(); monitorMapiIter.hasNext();) {
-      String monitor = (String) monitorMapiIter.next();
-      Map[] monitorThreads = mmap.getFromMonitorMap(monitor);
-
-      String lockedThread = getLockingThread(monitorThreads);
-      for (int i = 0; i < threads.getNodeCount(); i++) {
-        ThreadInfo ti = (ThreadInfo) ((DefaultMutableTreeNode) threads.getNodeAt(i)).getUserObject();
-        if (ti.getName().equals(lockedThread) && monitorThreads[MonitorMap.WAIT_THREAD_POS].size() > 0) {
-          count++;
-
-          if (lockedThreadNode == null) {
-            lockedCategory = new TreeCategory("Holding Locks", IconFactory.CUSTOM_CATEGORY, false);
-            lockedThreadNode = new DefaultMutableTreeNode(lockedCategory);
-          }
+    if (mmap.size() == 0) {
+      return null;
+    }
 
-          ThreadInfo tmi = new ThreadInfo("Thread - " + lockedThread, null, "", 0, null);
-          DefaultMutableTreeNode threadNode = new DefaultMutableTreeNode(tmi);
-
-          ThreadInfo mmi = new ThreadInfo("Monitor - " + monitor, null, "", 0, null);
-          DefaultMutableTreeNode monitorNode = new DefaultMutableTreeNode(mmi);
-          threadNode.add(monitorNode);
-
-          // Look over all threads blocked on this monitor
-          for (Iterator iterWaits = monitorThreads[MonitorMap.WAIT_THREAD_POS].keySet().iterator(); iterWaits.hasNext();) {
-            String thread = (String) iterWaits.next();
-            // Skip the thread that has this monitor locked
-            if (thread != null && !monitorThreads[MonitorMap.LOCK_THREAD_POS].containsKey(thread)) {
-              blockedThread++;
-              createNode(monitorNode, "Thread - " + thread, null,
-                      (String) monitorThreads[MonitorMap.WAIT_THREAD_POS].get(thread), 0);
-            }
-          }
+    // the number of threads of this group with each title
+    Map<String, Integer> threadNames = new HashMap<String, Integer>();
+    for (int i = 0; i < threads.getNodeCount(); i++) {
+      ThreadInfo ti = (ThreadInfo) ((DefaultMutableTreeNode) threads.getNodeAt(i)).getUserObject();
+      Integer sameName = threadNames.get(ti.getName());
+      threadNames.put(ti.getName(), Integer.valueOf((sameName == null) ? 1 : sameName.intValue() + 1));
+    }
+
+    for (int monitor = 0; monitor < mmap.size(); monitor++) {
+      int lockingThread = getLockingThread(mmap, monitor);
+      String lockedThread = (lockingThread >= 0) ? mmap.getThreadTitle(lockingThread) : "";
+      Integer sameName = threadNames.get(lockedThread);
+      if ((sameName == null) || (mmap.getThreadCount(monitor, MonitorMap.WAIT_THREAD_POS) == 0)) {
+        continue;
+      }
 
-          String blockingStackFrame = (String) monitorThreads[MonitorMap.LOCK_THREAD_POS].get(lockedThread);
-          tmi.setContent(blockingStackFrame);
-          mmi.setContent("This monitor (" + linkifyMonitor(monitor) + ") is held in the following stack frame:\n\n"
-                  + blockingStackFrame);
-          ((Category) lockedThreadNode.getUserObject()).addToCatNodes(threadNode);
+      String blockingStackFrame = (lockingThread >= 0) ? mmap.getThreadContent(lockingThread, getStackRenderer()) : null;
+      for (int n = 0; n < sameName.intValue(); n++) {
+        count++;
+
+        if (lockedThreadNode == null) {
+          lockedCategory = new TreeCategory("Holding Locks", IconFactory.CUSTOM_CATEGORY, false);
+          lockedThreadNode = new DefaultMutableTreeNode(lockedCategory);
+        }
+
+        ThreadInfo tmi = new ThreadInfo("Thread - " + lockedThread, null, "", 0, null);
+        DefaultMutableTreeNode threadNode = new DefaultMutableTreeNode(tmi);
+
+        ThreadInfo mmi = new ThreadInfo("Monitor - " + mmap.getMonitor(monitor), null, "", 0, null);
+        DefaultMutableTreeNode monitorNode = new DefaultMutableTreeNode(mmi);
+        threadNode.add(monitorNode);
+
+        // Look over all threads blocked on this monitor
+        for (int i = 0; i < mmap.getThreadCount(monitor, MonitorMap.WAIT_THREAD_POS); i++) {
+          int thread = mmap.getThread(monitor, MonitorMap.WAIT_THREAD_POS, i);
+          // Skip the thread that has this monitor locked
+          if (!mmap.hasThread(monitor, MonitorMap.LOCK_THREAD_POS, thread)) {
+            blockedThread++;
+            createThreadNode(monitorNode, "Thread - ", mmap, thread);
+          }
         }
+
+        tmi.setContent(blockingStackFrame);
+        mmi.setContent("This monitor (" + linkifyMonitor(mmap.getMonitor(monitor)) + ") is held in the following stack frame:\n\n"
+                + blockingStackFrame);
+        ((Category) lockedThreadNode.getUserObject()).addToCatNodes(threadNode);
       }
     }
     if (lockedCategory != null) {
@@ -1184,51 +1275,59 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     renormalizeThreadDepth(threadNode1);
   }
 
-  private int fillBlockingThreadMaps(MonitorMap mmap, Map directChildMap) {
+  private int fillBlockingThreadMaps(MonitorMap mmap, Map<Integer, DefaultMutableTreeNode> directChildMap) {
     int blockedThread = 0;
-    for (Iterator iter = mmap.iterOfKeys(); iter.hasNext();) {
-      String monitor = (String) iter.next();
-      Map[] threads = mmap.getFromMonitorMap(monitor);
+    for (int monitor = 0; monitor < mmap.size(); monitor++) {
+      String monitorKey = mmap.getMonitor(monitor);
 
       // Only one thread can really be holding this monitor, so find the thread
-      String threadLine = getLockingThread(threads);
+      int lockingThread = getLockingThread(mmap, monitor);
+      String threadLine = (lockingThread >= 0) ? mmap.getThreadTitle(lockingThread) : "";
       ThreadInfo tmi = new ThreadInfo("Thread - " + threadLine, null, "", 0, null);
       DefaultMutableTreeNode threadNode = new DefaultMutableTreeNode(tmi);
 
-      ThreadInfo mmi = new ThreadInfo("Monitor - " + monitor, null, "", 0, null);
+      ThreadInfo mmi = new ThreadInfo("Monitor - " + monitorKey, null, "", 0, null);
       DefaultMutableTreeNode monitorNode = new DefaultMutableTreeNode(mmi);
       threadNode.add(monitorNode);
 
       // Look over all threads blocked on this monitor
-      for (Iterator iterWaits = threads[MonitorMap.WAIT_THREAD_POS].keySet().iterator(); iterWaits.hasNext();) {
-        String thread = (String) iterWaits.next();
+      for (int i = 0; i < mmap.getThreadCount(monitor, MonitorMap.WAIT_THREAD_POS); i++) {
+        int thread = mmap.getThread(monitor, MonitorMap.WAIT_THREAD_POS, i);
         // Skip the thread that has this monitor locked
-        if (thread != null && !threads[MonitorMap.LOCK_THREAD_POS].containsKey(thread)) {
+        if (!mmap.hasThread(monitor, MonitorMap.LOCK_THREAD_POS, thread)) {
           blockedThread++;
-          createNode(monitorNode, "Thread - " + thread, null, (String) threads[MonitorMap.WAIT_THREAD_POS].get(thread),
-                  0);
+          createThreadNode(monitorNode, "Thread - ", mmap, thread);
         }
       }
 
-      String blockingStackFrame = (String) threads[MonitorMap.LOCK_THREAD_POS].get(threadLine);
+      // If no-one is blocked on or waiting for this monitor, don't show it
+      if (monitorNode.getChildCount() == 0) {
+        continue;
+      }
+
+      String blockingStackFrame = (lockingThread >= 0) ? mmap.getThreadContent(lockingThread, getStackRenderer()) : null;
       if (blockingStackFrame != null) {
         tmi.setContent(blockingStackFrame);
-        mmi.setContent("This monitor (" + linkifyMonitor(monitor) + ") is held in the following stack frame:\n\n"
+        mmi.setContent("This monitor (" + linkifyMonitor(monitorKey) + ") is held in the following stack frame:\n\n"
                 + blockingStackFrame);
       } else {
-        mmi.setContent("Owner of this monitor (" + linkifyMonitor(monitor) + ") could not be located");
-      }
-
-      // If no-one is blocked on or waiting for this monitor, don't show it
-      if (monitorNode.getChildCount() > 0) {
-        directChildMap.put(monitor, threadNode);
+        mmi.setContent("Owner of this monitor (" + linkifyMonitor(monitorKey) + ") could not be located");
       }
+      directChildMap.put(Integer.valueOf(monitor), threadNode);
     }
     return blockedThread;
   }
 
   protected abstract String linkifyMonitor(String monitor);
 
+  /**
+   * get the renderer creating the html of the thread stacks read by this
+   * parser.
+   */
+  protected StackRenderer getStackRenderer() {
+    return StackRenderer.HOTSPOT;
+  }
+
   private void updateChildCount(DefaultMutableTreeNode threadOrMonitorNode, boolean isThreadNode) {
     int count = 0;
     for (Enumeration e = threadOrMonitorNode.depthFirstEnumeration(); e.hasMoreElements();) {
@@ -1277,68 +1376,63 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     }
   }
 
-  private void renormalizeBlockingThreadTree(MonitorMap mmap, Map directChildMap) {
-    Map allBlockingThreadsMap = new HashMap(directChildMap); // All threads that
-    // are blocking at
-    // least one other
-    // thread
+  private void renormalizeBlockingThreadTree(MonitorMap mmap, Map<Integer, DefaultMutableTreeNode> directChildMap) {
+    // All threads that are blocking at least one other thread
+    Map<Integer, DefaultMutableTreeNode> allBlockingThreadsMap = new HashMap<Integer, DefaultMutableTreeNode>(directChildMap);
 
     // First, renormalize based on monitors to get our unique tree
     // Tree will be unique as long as there are no deadlocks aka monitor loops
-    for (Iterator iter = mmap.iterOfKeys(); iter.hasNext();) {
-      String monitor1 = (String) iter.next();
-      Map[] threads1 = mmap.getFromMonitorMap(monitor1);
-
-      DefaultMutableTreeNode thread1Node = (DefaultMutableTreeNode) allBlockingThreadsMap.get(monitor1);
+    for (int monitor1 = 0; monitor1 < mmap.size(); monitor1++) {
+      DefaultMutableTreeNode thread1Node = allBlockingThreadsMap.get(Integer.valueOf(monitor1));
       if (thread1Node == null) {
         continue;
       }
 
       // Get information on the one thread holding this lock
-      Iterator it = threads1[MonitorMap.LOCK_THREAD_POS].keySet().iterator();
-      if (!it.hasNext()) {
+      if (mmap.getThreadCount(monitor1, MonitorMap.LOCK_THREAD_POS) == 0) {
         continue;
       }
-      String threadLine1 = (String) it.next();
+      int thread1 = mmap.getThread(monitor1, MonitorMap.LOCK_THREAD_POS, 0);
+      String threadLine1 = mmap.getThreadTitle(thread1);
 
-      for (Iterator iter2 = mmap.iterOfKeys(); iter2.hasNext();) {
-        String monitor2 = (String) iter2.next();
+      // the monitors the thread is waiting for, in the order they were found
+      for (int i = 0; i < mmap.getWaitedMonitorCount(thread1); i++) {
+        int monitor2 = mmap.getWaitedMonitor(thread1, i);
         if (monitor1 == monitor2) {
           continue;
         }
 
-        Map[] threads2 = mmap.getFromMonitorMap(monitor2);
-        if (threads2[MonitorMap.WAIT_THREAD_POS].containsKey(threadLine1)) {
-
-          // Get the node of the thread that is holding this lock
-          DefaultMutableTreeNode thread2Node = (DefaultMutableTreeNode) allBlockingThreadsMap.get(monitor2);
-          // Get the node of the monitor itself
-          DefaultMutableTreeNode monitor2Node = (DefaultMutableTreeNode) thread2Node.getFirstChild();
-
+        // Get the node of the thread that is holding this lock
+        DefaultMutableTreeNode thread2Node = allBlockingThreadsMap.get(Integer.valueOf(monitor2));
+        if (thread2Node == null) {
+          continue;
+        }
+        // Get the node of the monitor itself
+        DefaultMutableTreeNode monitor2Node = (DefaultMutableTreeNode) thread2Node.getFirstChild();
 
-          // If a redundant node for thread2 exists with no children, remove it
-          // To compare, we have to remove "Thread - " from the front of display
-          // strings
-          for (int i = 0; i < monitor2Node.getChildCount(); i++) {
-            DefaultMutableTreeNode child2 = (DefaultMutableTreeNode) monitor2Node.getChildAt(i);
-            if (child2.toString().substring(9).equals(threadLine1) && child2.getChildCount() == 0) {
-              monitor2Node.remove(i);
-              break;
-            }
-          }
 
-          // Thread1 is blocked by monitor2 held by thread2, so move thread1
-          // under thread2
-          try {
-            monitor2Node.insert(thread1Node, 0);
-          } catch (IllegalArgumentException iae) {
-            // This means we have a deadlock... ignore for now.
-            // Lets not remove the node, blocked lock chain information gets lost
+        // If a redundant node for thread2 exists with no children, remove it
+        // To compare, we have to remove "Thread - " from the front of display
+        // strings
+        for (int j = 0; j < monitor2Node.getChildCount(); j++) {
+          DefaultMutableTreeNode child2 = (DefaultMutableTreeNode) monitor2Node.getChildAt(j);
+          if (child2.toString().substring(9).equals(threadLine1) && child2.getChildCount() == 0) {
+            monitor2Node.remove(j);
             break;
           }
-          directChildMap.remove(monitor1);
+        }
+
+        // Thread1 is blocked by monitor2 held by thread2, so move thread1
+        // under thread2
+        try {
+          monitor2Node.insert(thread1Node, 0);
+        } catch (IllegalArgumentException iae) {
+          // This means we have a deadlock... ignore for now.
+          // Lets not remove the node, blocked lock chain information gets lost
           break;
         }
+        directChildMap.remove(Integer.valueOf(monitor1));
+        break;
       }
     }
 
@@ -1349,8 +1443,7 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     boolean changed = false;
     do {
       changed = false;
-      for (Iterator iter = directChildMap.entrySet().iterator(); iter.hasNext();) {
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) ((Map.Entry) iter.next()).getValue();
+      for (DefaultMutableTreeNode node : directChildMap.values()) {
         if (checkForDuplicateThreadItem(directChildMap, node)) {
           changed = true;
           break;
@@ -1360,33 +1453,36 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
 
     // Third, renormalize lower levels of the tree based on threads for cases
     // where one thread holds multiple monitors
-    for (Iterator iter = directChildMap.entrySet().iterator(); iter.hasNext();) {
-      renormalizeThreadDepth((DefaultMutableTreeNode) ((Map.Entry) iter.next()).getValue());
+    for (DefaultMutableTreeNode node : directChildMap.values()) {
+      renormalizeThreadDepth(node);
     }
   }
 
-  String getLockingThread(Map[] threads) {
-    int lockingThreadCount = threads[MonitorMap.LOCK_THREAD_POS].keySet().size();
+  /**
+   * @return the thread holding the monitor, -1 if none.
+   */
+  int getLockingThread(MonitorMap mmap, int monitor) {
+    int lockingThreadCount = mmap.getThreadCount(monitor, MonitorMap.LOCK_THREAD_POS);
     if (lockingThreadCount == 1) {
-      return (String) threads[MonitorMap.LOCK_THREAD_POS].keySet().iterator().next();
+      return mmap.getThread(monitor, MonitorMap.LOCK_THREAD_POS, 0);
     }
 
-    for (Iterator iterLocks = threads[MonitorMap.LOCK_THREAD_POS].keySet().iterator(); iterLocks.hasNext();) {
-      String thread = (String) iterLocks.next();
-      if (!threads[MonitorMap.SLEEP_THREAD_POS].containsKey(thread)) {
+    for (int i = 0; i < lockingThreadCount; i++) {
+      int thread = mmap.getThread(monitor, MonitorMap.LOCK_THREAD_POS, i);
+      if (!mmap.hasThread(monitor, MonitorMap.SLEEP_THREAD_POS, thread)) {
         return thread;
       }
     }
 
-    return "";
+    return -1;
   }
 
-  boolean checkForDuplicateThreadItem(Map directChildMap, DefaultMutableTreeNode node1) {
+  boolean checkForDuplicateThreadItem(Map<Integer, DefaultMutableTreeNode> directChildMap, DefaultMutableTreeNode node1) {
     ThreadInfo mi1 = (ThreadInfo) node1.getUserObject();
     String name1 = mi1.getName();
 
-    for (Iterator iter2 = directChildMap.entrySet().iterator(); iter2.hasNext();) {
-      DefaultMutableTreeNode node2 = (DefaultMutableTreeNode) ((Map.Entry) iter2.next()).getValue();
+    for (Iterator<DefaultMutableTreeNode> iter2 = directChildMap.values().iterator(); iter2.hasNext();) {
+      DefaultMutableTreeNode node2 = iter2.next();
       if (node1 == node2) {
         continue;
       }
@@ -1406,6 +1502,30 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     return getBis().readLine();
   }
 
+  /**
+   * check if the passed log line starts a new thread dump. Used to index the
+   * dumps of a log file before parsing them.
+   */
+  public boolean isDumpStart(String line) {
+    return lineChecker.getFullDump(line) != null;
+  }
+
+  /**
+   * check if the passed log line is the last line of a thread dump. Used to
+   * find the complete dumps of a log file still being written.
+   */
+  public boolean isDumpEnd(String line) {
+    return (lineChecker.exactEndOfDumpPattern != null) && (lineChecker.getExactEndOfDump(line) != null);
+  }
+
+  /**
+   * @return a literal every dump start line contains, so the lines in between
+   *         can be skipped while indexing the dumps. null if there is none.
+   */
+  public String getDumpStartMarker() {
+    return null;
+  }
+
   /**
    * returns true if at least one more dump available, already loads it (this
    * will be returned on next call of parseNext)
@@ -1426,63 +1546,63 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
       nextDump = null;
       return (tmpDump);
     }
+    ThreadDumpTreeBuilder treeBuilder = new ThreadDumpTreeBuilder(this);
+    return (parseNext(treeBuilder) ? treeBuilder.getDumpNode() : null);
+  }
+
+  /**
+   * parse the next thread dump into the analysis model only, no tree nodes
+   * are created for it.
+   *
+   * @returns null if no more thread dumps were found.
+   */
+  public ThreadDumpInfo parseNextModel() {
+    if (nextDump != null) {
+      MutableTreeNode tmpDump = nextDump;
+      nextDump = null;
+      return ((ThreadDumpInfo) ((DefaultMutableTreeNode) tmpDump).getUserObject());
+    }
+    ThreadDumpModelBuilder modelBuilder = new ThreadDumpModelBuilder(this);
+    return (parseNext(modelBuilder) ? modelBuilder.getThreadDump() : null);
+  }
+
+  /**
+   * create the monitor map collecting the monitors of a single dump.
+   */
+  protected MonitorMap createMonitorMap() {
+    return new MonitorMap();
+  }
+
+  /**
+   * parse the next thread dump from the stream passed with the constructor
+   * and report its elements to the passed listener. Parsers with their own
+   * dump loop don't report to listeners, they override parseNext() and
+   * parseNextModel() instead.
+   *
+   * @returns true if a thread dump containing threads was found.
+   */
+  protected boolean parseNext(DumpParserListener listener) {
+    this.mmap = createMonitorMap();
     boolean retry = false;
     String line = null;
     String tempLine = null;
 
     do {
-      DefaultMutableTreeNode threadDump = null;
       ThreadDumpInfo overallTDI = null;
-      DefaultMutableTreeNode catMonitors = null;
-      DefaultMutableTreeNode catMonitorsLocks = null;
-      DefaultMutableTreeNode catThreads = null;
-      DefaultMutableTreeNode catLocking = null;
-      DefaultMutableTreeNode catBlockingMonitors = null;
-      DefaultMutableTreeNode catSleeping = null;
-      DefaultMutableTreeNode catWaiting = null;
 
       try {
-        Map threads = new HashMap();
+        Map threads = new LinkedHashMap();
         overallTDI = new ThreadDumpInfo("Dump No. " + counter++, 0);
         if (withCurrentTimeStamp) {
-          overallTDI.setStartTime((new Date(System.currentTimeMillis())).toString());
+          overallTDI.setStartTime(System.currentTimeMillis());
         }
         overallTDI.setJvmVersion(this.getJvmVersion());
-
-        threadDump = new DefaultMutableTreeNode(overallTDI);
-
-        catThreads = new DefaultMutableTreeNode(new TableCategory("Threads", IconFactory.THREADS));
-        threadDump.add(catThreads);
-
-        catWaiting = new DefaultMutableTreeNode(new TableCategory("Threads waiting for Monitors",
-                IconFactory.THREADS_WAITING));
-
-        catSleeping = new DefaultMutableTreeNode(new TableCategory("Threads sleeping on Monitors",
-                IconFactory.THREADS_SLEEPING));
-
-        catLocking = new DefaultMutableTreeNode(new TableCategory("Threads locking Monitors",
-                IconFactory.THREADS_LOCKING));
-
-        // create category for monitors with disabled filtering.
-        // NOTE: These strings are "magic" in that the methods
-        // ThreadLogic#displayCategory and TreeCategory#getCatComponent both
-        // checks these literal strings and the behavior differs.
-        catMonitors = new DefaultMutableTreeNode(new TreeCategory("Monitors", IconFactory.MONITORS, false));
-        catMonitorsLocks = new DefaultMutableTreeNode(new TreeCategory("Monitors without locking thread",
-                IconFactory.MONITORS_NOLOCKS, false));
-        catBlockingMonitors = new DefaultMutableTreeNode(new TreeCategory("Threads blocked by Monitors",
-                IconFactory.THREADS_LOCKING, false));
+        listener.dumpStarted(overallTDI);
 
         String title = null;
         String dumpKey = null;
-        StringBuffer content = null;
-        boolean inLocking = false;
-        boolean inSleeping = false;
-        boolean inWaiting = false;
+        ArrayList<StackFrame> frames = null;
         int threadCount = 0;
-        int waiting = 0;
-        int locking = 0;
-        int sleeping = 0;
         boolean locked = true;
         boolean finished = false;
         Stack monitorStack = new Stack();
@@ -1530,7 +1650,7 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
                       startTime = 0;
                     }
                     if (startTime > 0) {
-                      overallTDI.setStartTime((new Date(startTime)).toString());
+                      overallTDI.setStartTime(startTime);
                     }
                   } else {
                     overallTDI.setStartTime(parsedStartTime);
@@ -1570,7 +1690,9 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
             }
 
 
-            if ((tempLine = lineChecker.getStackStart(line)) != null) {
+            int lineType = lineChecker.classify(line);
+            tempLine = lineChecker.getMatch();
+            if (lineType == LineChecker.STACK_START) {
 
               // SABHA - Commenting off the GC thread portion, we want to know
               // how many GC threads are in the jvm.. so we can provide relevant
@@ -1598,45 +1720,26 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
               // any)
 
               concurrentSyncsFlag = false;
-              if (content != null) {
-                content.append("</font></pre><br>");
-              }
-              String stringContent = content != null ? content.toString() : null;
               if (title != null) {
-                threads.put(title, content.toString());
-
-                addToCategory(catThreads, overallTDI, title, null, stringContent, singleLineCounter, true);
+                StackFrame[] stack = frames.toArray(new StackFrame[frames.size()]);
+                threads.put(title, stack);
+                listener.threadFinished(title, stack, singleLineCounter);
                 threadCount++;
-              }
-              if (inWaiting) {
-                addToCategory(catWaiting, overallTDI, title, null, stringContent, singleLineCounter, true);
-                inWaiting = false;
-                waiting++;
-              }
-              if (inSleeping) {
-                addToCategory(catSleeping, overallTDI, title, null, stringContent, singleLineCounter, true);
-                inSleeping = false;
-                sleeping++;
-              }
-              if (inLocking) {
-                addToCategory(catLocking, overallTDI, title, null, stringContent, singleLineCounter, true);
-                inLocking = false;
-                locking++;
+
+                while (!monitorStack.empty()) {
+                  mmap.parseAndAddThread((String) monitorStack.pop(), title, stack);
+                }
               }
               singleLineCounter = 0;
-              while (!monitorStack.empty()) {
-                mmap.parseAndAddThread((String) monitorStack.pop(), title, content.toString());
-              }
 
               // Second, initialize state for this new thread
               title = tempLine;
-              content = new StringBuffer("<pre><font size=" + ThreadLogic.getFontSizeModifier(-1)
-                      + ">");
-              content.append(tempLine);
-              content.append("\n");
-            } else if ((tempLine = lineChecker.getThreadState(line)) != null) {
-              content.append(tempLine);
-              content.append("\n");
+              frames = new ArrayList<StackFrame>();
+              // titles are unique per thread, only the stack lines are shared
+              frames.add(new StackFrame(StackFrame.LINE, tempLine));
+              listener.threadStarted(title);
+            } else if (lineType == LineChecker.THREAD_STATE) {
+              frames.add(FrameTable.intern(StackFrame.LINE, tempLine));
               if (title.indexOf("t@") > 0) {
                 // in this case the title line is missing state
                 // informations
@@ -1647,39 +1750,35 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
                   title += " nid=none " + state;
                 }
               }
-              //} else if (content != null && (tempLine = lineChecker.getLockedOwnable(line)) != null) {
-              //  concurrentSyncsFlag = true;
-              //  content.append(tempLine);
-              //  content.append("\n");
-            } else if (content != null && (tempLine = lineChecker.getWaitingOn(line)) != null) {
-              content.append(linkifyMonitor(tempLine));
+            } else if (frames != null && lineType == LineChecker.LOCKED_OWNABLE) {
+              // the following "- <0x...>" lines are the j.u.c locks owned by the thread
+              concurrentSyncsFlag = true;
+              frames.add(FrameTable.intern(StackFrame.LINE, tempLine));
+            } else if (frames != null && concurrentSyncsFlag && line.trim().startsWith("- <")) {
+              tempLine = "\t" + line.trim();
+              frames.add(FrameTable.intern(StackFrame.LOCKED_OWNABLE, tempLine));
+              listener.lockLine(DumpParserListener.LOCKED, tempLine);
               monitorStack.push(tempLine);
-              inSleeping = true;
-              content.append("\n");
-            } else if (content != null && (tempLine = lineChecker.getParkingToWait(line)) != null) {
-              content.append(linkifyMonitor(tempLine));
+            } else if (frames != null && lineType == LineChecker.WAITING_ON) {
+              frames.add(FrameTable.intern(StackFrame.WAITING_ON, tempLine));
               monitorStack.push(tempLine);
-              inSleeping = true;
-              content.append("\n");
-            } else if (content != null && (tempLine = lineChecker.getWaitingTo(line)) != null) {
-              content.append(linkifyMonitor(tempLine));
+              listener.lockLine(DumpParserListener.WAITING_ON, tempLine);
+            } else if (frames != null && lineType == LineChecker.PARKING_TO_WAIT) {
+              frames.add(FrameTable.intern(StackFrame.PARKING_TO_WAIT, tempLine));
               monitorStack.push(tempLine);
-              inWaiting = true;
-              content.append("\n");
-            } else if (content != null && (tempLine = lineChecker.getLocked(line)) != null) {
-              content.append(linkifyMonitor(tempLine));
-              inLocking = true;
+              listener.lockLine(DumpParserListener.PARKING_TO_WAIT, tempLine);
+            } else if (frames != null && lineType == LineChecker.WAITING_TO) {
+              frames.add(FrameTable.intern(StackFrame.WAITING_TO_LOCK, tempLine));
               monitorStack.push(tempLine);
-              content.append("\n");
-            } else if (content != null && (tempLine = lineChecker.getAt(line)) != null) {
-              content.append(tempLine);
-              content.append("\n");
+              listener.lockLine(DumpParserListener.WAITING_TO_LOCK, tempLine);
+            } else if (frames != null && lineType == LineChecker.LOCKED) {
+              frames.add(FrameTable.intern(StackFrame.LOCKED, tempLine));
+              listener.lockLine(DumpParserListener.LOCKED, tempLine);
+              monitorStack.push(tempLine);
+            } else if (frames != null && lineType == LineChecker.AT) {
+              frames.add(FrameTable.intern(StackFrame.FRAME, tempLine));
+              listener.frame(tempLine);
             }
-            /*
-             * } else if (line.indexOf("- ") >= 0) { if (concurrentSyncsFlag) {
-             * content.append(linkifyMonitor(line)); monitorStack.push(line); }
-             * else { content.append(line); } content.append("\n"); }
-             */
             // last thread reached?
             if ((tempLine = lineChecker.getEndOfDump(line)) != null) {
               finished = true;
@@ -1695,20 +1794,29 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
 
               //getBis().mark(getMarkSize());
 
+              // after each section found the position is marked again, so the
+              // following checks don't need to read ahead over it (streams
+              // only allow resets within the mark size).
               if (!checkThreadDumpStatData(overallTDI)) {
                 // no statistical data found, set back original
                 // position.
                 getBis().reset();
+              } else {
+                getBis().mark(getMarkSize());
               }
 
 
-              if (!(foundClassHistograms = checkForClassHistogram(threadDump))) {
+              if (!(foundClassHistograms = checkForClassHistogram(listener))) {
                 getBis().reset();
+              } else {
+                getBis().mark(getMarkSize());
               }
 
               // Support for parsing Lock Chains in JRockit
-              if (!(foundLockChains = checkForLockChains(catThreads))) {
+              if (!(foundLockChains = checkForLockChains(threads))) {
                 getBis().reset();
+              } else {
+                getBis().mark(getMarkSize());
               }
 
               // Check for ECID & Thread Context Data
@@ -1729,157 +1837,38 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
           }
         }
 
-        if (content != null) {
-          content.append("</font></pre><br>");
-        }
-        String stringContent = content != null ? content.toString() : null;
         if (title != null) {
-          threads.put(title, content.toString());
-          addToCategory(catThreads, overallTDI, title, null, stringContent, singleLineCounter, true);
+          StackFrame[] stack = frames.toArray(new StackFrame[frames.size()]);
+          threads.put(title, stack);
+          listener.threadFinished(title, stack, singleLineCounter);
           threadCount++;
-        }
-        if (inWaiting) {
-          addToCategory(catWaiting, overallTDI, title, null, stringContent, singleLineCounter, true);
-          inWaiting = false;
-          waiting++;
-        }
-        if (inSleeping) {
-          addToCategory(catSleeping, overallTDI, title, null, stringContent, singleLineCounter, true);
-          inSleeping = false;
-          sleeping++;
-        }
-        if (inLocking) {
-          addToCategory(catLocking, overallTDI, title, null, stringContent, singleLineCounter, true);
-          inLocking = false;
-          locking++;
-        }
-        singleLineCounter = 0;
-        while (!monitorStack.empty()) {
-          mmap.parseAndAddThread((String) monitorStack.pop(), title, content.toString());
-        }
 
-        int monitorCount = mmap.size();
-
-        int monitorsWithoutLocksCount = 0;
-        int contendedMonitors = 0;
-        int blockedThreads = 0;
-
-        Iterator iter = mmap.iterOfKeys();
-        while (iter.hasNext()) {
-          String monitor = (String) iter.next();
-          Map[] threadsInMap = mmap.getFromMonitorMap(monitor);
-
-          // first the locks
-          // We need to reset the stack trace for those threads that are holders of locks
-          // previously we set the stack trace to be empty as the ownership info was present in a different thread
-          // that is blocked and not directly in the owner thread
-          Iterator iterLocks = threadsInMap[MonitorMap.LOCK_THREAD_POS].keySet().iterator();
-          while (iterLocks.hasNext()) {
-            String threadOwner = (String) iterLocks.next();
-            theLogger.finest("ThreadOwner :" + threadOwner);
-            String stackTrace = (String) threadsInMap[MonitorMap.LOCK_THREAD_POS].get(threadOwner);
-            if (stackTrace == null) {
-              theLogger.finest("ThreadOwner :" + threadOwner + ", owner stack is null");
-
-              // Search for the owner of the lock
-              ThreadInfo ownerThread = overallTDI.getThreadByName(threadOwner);
-              if (ownerThread != null) {
-                threadsInMap[MonitorMap.LOCK_THREAD_POS].put(threadOwner, ownerThread.getContent());
-              }
-            }
+          while (!monitorStack.empty()) {
+            mmap.parseAndAddThread((String) monitorStack.pop(), title, stack);
           }
         }
 
-        // dump monitors
-        if (mmap.size() > 0) {
-          int[] result = dumpMonitors(catMonitors, catMonitorsLocks, mmap);
-          monitorsWithoutLocksCount = result[0];
-          overallTDI.setOverallThreadsWaitingWithoutLocksCount(result[1]);
-
-          result = dumpBlockingMonitors(catBlockingMonitors, mmap);
-          contendedMonitors = result[0];
-          blockedThreads = result[1];
+        if (threadCount == 0) {
+          return (false);
         }
 
-        // display nodes with stuff to display
-        if (waiting > 0) {
-          overallTDI.setWaitingThreads((Category) catWaiting.getUserObject());
-          threadDump.add(catWaiting);
-        }
-
-        if (sleeping > 0) {
-          overallTDI.setSleepingThreads((Category) catSleeping.getUserObject());
-          threadDump.add(catSleeping);
-        }
-
-        if (locking > 0) {
-          overallTDI.setLockingThreads((Category) catLocking.getUserObject());
-          threadDump.add(catLocking);
-        }
-
-        if (monitorCount > 0) {
-          overallTDI.setMonitors((Category) catMonitors.getUserObject());
-          threadDump.add(catMonitors);
-        }
-
-        if (contendedMonitors > 0) {
-          overallTDI.setBlockingMonitors((Category) catBlockingMonitors.getUserObject());
-          threadDump.add(catBlockingMonitors);
-        }
-
-        if (monitorsWithoutLocksCount > 0) {
-          overallTDI.setMonitorsWithoutLocks((Category) catMonitorsLocks.getUserObject());
-          threadDump.add(catMonitorsLocks);
-        }
-
-        overallTDI.setJvmType(this.getJvmVendor());
-
-        Category unsortedThreadCategory = (Category) catThreads.getUserObject();
-        Category sortedThreads = sortThreadsByHealth(unsortedThreadCategory);
-        overallTDI.setThreads(sortedThreads);
-
-        // Create relationship between LockInfo and Threads
-        overallTDI.parseLocks(this);
-
-        // Detect Deadlocks
-        overallTDI.detectDeadlock();
-
-        // Run Thread Dump Advisory
-        overallTDI.runThreadsAdvisory();
-
-        ((Category) catThreads.getUserObject()).setName(((Category) catThreads.getUserObject()) + " (" + threadCount
-                + " Threads overall)");
-        ((Category) catWaiting.getUserObject()).setName(((Category) catWaiting.getUserObject()) + " (" + waiting
-                + " Threads waiting)");
-        ((Category) catSleeping.getUserObject()).setName(((Category) catSleeping.getUserObject()) + " (" + sleeping
-                + " Threads sleeping)");
-        ((Category) catLocking.getUserObject()).setName(((Category) catLocking.getUserObject()) + " (" + locking
-                + " Threads locking)");
-        ((Category) catMonitors.getUserObject()).setName(((Category) catMonitors.getUserObject()) + " (" + monitorCount
-                + " Monitors)");
-        ((Category) catBlockingMonitors.getUserObject()).setName(((Category) catBlockingMonitors.getUserObject())
-                + " (" + blockedThreads + " Threads blocked by " + contendedMonitors + " Monitors)");
-        ((Category) catMonitorsLocks.getUserObject()).setName(((Category) catMonitorsLocks.getUserObject()) + " ("
-                + monitorsWithoutLocksCount + " Monitors)");
         // add thread dump to passed dump store.
-        if ((threadCount > 0) && (dumpKey != null)) {
+        if (dumpKey != null) {
           threadStore.put(dumpKey.trim(), threads);
         }
 
-        // check custom categories
-        addCustomCategories(threadDump);
-        addCategories(threadDump);
+        overallTDI.setJvmType(this.getJvmVendor());
+        listener.dumpFinished(overallTDI);
 
-        return (threadCount > 0 ? threadDump : null);
+        return (true);
       } catch (FileNotFoundException e) {
         e.printStackTrace();
       } catch (StringIndexOutOfBoundsException e) {
-        e.printStackTrace();
-        JOptionPane.showMessageDialog(null, "Error during parsing of a found thread dump, skipping to next one!\n"
-                + "Check for possible broken dumps, sometimes, stream flushing mixes the logged data.\n"
-                + "Error Message is \"" + e.getLocalizedMessage() + "\". \n"
-                + (line != null ? "Last line read was \"" + line + "\". \n" : ""), "Error during Parsing Thread Dump",
-                JOptionPane.ERROR_MESSAGE);
+        // parsing runs on worker threads and in batch mode, don't pop up a dialog
+        theLogger.warning("Error during parsing of a found thread dump, skipping to next one! "
+                + "Check for possible broken dumps, sometimes, stream flushing mixes the logged data. "
+                + "Error Message is \"" + e.getLocalizedMessage() + "\"."
+                + (line != null ? " Last line read was \"" + line + "\"." : ""));
         retry = true;
       } catch (InterruptedIOException e) {
       } catch (IOException e) {
@@ -1887,7 +1876,7 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
       }
     } while (retry);
 
-    return (null);
+    return (false);
   }
 
   /**
@@ -1917,9 +1906,20 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
     return currentLine;
   }
 
-  abstract boolean checkForClassHistogram(DefaultMutableTreeNode threadDump) throws IOException;
+  /**
+   * checks for a class histogram following the threads of the dump and
+   * reports it to the passed listener.
+   */
+  abstract boolean checkForClassHistogram(DumpParserListener listener) throws IOException;
 
-  abstract boolean checkForLockChains(DefaultMutableTreeNode threadDump) throws IOException;
+  /**
+   * checks for lock chains following the threads of the dump.
+   *
+   * @param threads
+   *          the stack frames of the threads read so far, keyed by thread
+   *          title.
+   */
+  abstract boolean checkForLockChains(Map threads) throws IOException;
 
   /**
    * Heap PSYoungGen total 6656K, used 3855K [0xb0850000, 0xb0f50000,
@@ -2288,159 +2288,219 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
 
   public class LineChecker implements DumpParser.lineChecker {
 
-    Pattern fullDumpPattern;
-    Pattern stackStartPattern = createPattern("\\s*(\".*)");
-    Pattern atPattern;
-    Pattern threadStatePattern;
-    Pattern lockedOwnablePattern;
-    Pattern waitingOnPattern;
-    Pattern parkingToWaitPattern;
-    Pattern waitingToPattern;
-    Pattern lockedPattern;
-    Pattern endOfDumpPattern;
-    Pattern exactEndOfDumpPattern;
-    Pattern lockReleasedPattern;
-    Pattern gcThreadPattern = createPattern(".*(\".*G[Cc].*hread.*\").*");
-    Pattern endOfTitlePattern;
+    /**
+     * line types returned by {@link #classify(String)}.
+     */
+    public static final int OTHER = 0;
+    public static final int STACK_START = 1;
+    public static final int THREAD_STATE = 2;
+    public static final int WAITING_ON = 3;
+    public static final int PARKING_TO_WAIT = 4;
+    public static final int WAITING_TO = 5;
+    public static final int LOCKED = 6;
+    public static final int AT = 7;
+    public static final int LOCKED_OWNABLE = 8;
+
+    private static final String THREAD_STATE_PREFIX = "java.lang.Thread.State";
+
+    LinePattern fullDumpPattern;
+    LinePattern stackStartPattern = createPattern("\\s*(\".*)");
+    LinePattern atPattern;
+    LinePattern threadStatePattern;
+    LinePattern lockedOwnablePattern;
+    LinePattern waitingOnPattern;
+    LinePattern parkingToWaitPattern;
+    LinePattern waitingToPattern;
+    LinePattern lockedPattern;
+    LinePattern endOfDumpPattern;
+    LinePattern exactEndOfDumpPattern;
+    LinePattern lockReleasedPattern;
+    LinePattern gcThreadPattern = createPattern(".*(\".*G[Cc].*hread.*\").*");
+    LinePattern endOfTitlePattern;
+
+    // text of the line last classified
+    private String match;
+
+    /**
+     * classify a line within a thread dump. Most lines are told by their first
+     * non blank chars ("at ", "- ", a quote or the thread state), only the
+     * pattern of that type is checked for them. Other lines, or lines the
+     * pattern doesn't match, are checked against the stack start, thread
+     * state, lock and frame patterns in this order, the first one matching
+     * determines the type.
+     *
+     * @return the type of the line, the matched text is returned by
+     *         {@link #getMatch()}.
+     */
+    public int classify(String line) {
+      int start = 0;
+      while ((start < line.length()) && Character.isWhitespace(line.charAt(start))) {
+        start++;
+      }
+
+      if (start < line.length()) {
+        if (line.charAt(start) == '"') {
+          if ((match = getStackStart(line)) != null) {
+            return STACK_START;
+          }
+        } else if (line.startsWith("at ", start)) {
+          if ((match = getAt(line)) != null) {
+            return AT;
+          }
+        } else if (line.startsWith("- ", start)) {
+          int type = classifyLock(line);
+          if (type != OTHER) {
+            return type;
+          }
+        } else if (line.startsWith(THREAD_STATE_PREFIX, start)) {
+          if ((match = getThreadState(line)) != null) {
+            return THREAD_STATE;
+          }
+        }
+      }
+      return classifyByPatterns(line);
+    }
+
+    /**
+     * classify a "- " line by the lock patterns.
+     */
+    private int classifyLock(String line) {
+      if ((match = getWaitingOn(line)) != null) {
+        return WAITING_ON;
+      } else if ((match = getParkingToWait(line)) != null) {
+        return PARKING_TO_WAIT;
+      } else if ((match = getWaitingTo(line)) != null) {
+        return WAITING_TO;
+      } else if ((match = getLocked(line)) != null) {
+        return LOCKED;
+      }
+      return OTHER;
+    }
+
+    private int classifyByPatterns(String line) {
+      if ((match = getStackStart(line)) != null) {
+        return STACK_START;
+      } else if ((match = getThreadState(line)) != null) {
+        return THREAD_STATE;
+      }
+
+      int type = classifyLock(line);
+      if (type != OTHER) {
+        return type;
+      } else if ((match = getLockedOwnable(line)) != null) {
+        return LOCKED_OWNABLE;
+      } else if ((match = getAt(line)) != null) {
+        return AT;
+      }
+      return OTHER;
+    }
+
+    /**
+     * @return the matched text of the line last classified.
+     */
+    public String getMatch() {
+      return match;
+    }
 
     @Override
     public String getFullDump(String line) {
-      if (fullDumpPattern != null) {
-        Matcher matcher = fullDumpPattern.matcher(line);
-        if (matcher.matches()) {
-          return matcher.group(1);
-        }
+      if (fullDumpPattern != null && fullDumpPattern.matches(line)) {
+        return fullDumpPattern.group(1);
       }
       return null;
     }
 
     public String getStackStart(String line) {
-      if (stackStartPattern != null) {
-        Matcher matcher = stackStartPattern.matcher(line);
-        if (matcher.matches()) {
-          return matcher.group(1);
-        }
+      if (stackStartPattern != null && stackStartPattern.matches(line)) {
+        return stackStartPattern.group(1);
       }
       return null;
     }
 
     public String getGCThread(String line) {
-      if (gcThreadPattern != null) {
-        Matcher matcher = gcThreadPattern.matcher(line);
-        if (matcher.matches()) {
-          return format(matcher.group(1));
-        }
+      if (gcThreadPattern != null && gcThreadPattern.matches(line)) {
+        return format(gcThreadPattern.group(1));
       }
       return null;
     }
 
     @Override
     public String getAt(String line) {
-      if (atPattern != null) {
-        Matcher matcher = atPattern.matcher(line);
-        if (matcher.matches()) {
-          //return format(matcher.group(1));
-          return format(matcher.groupCount() == 1 ? matcher.group(1) : matcher.group(0));
-        }
+      if (atPattern != null && atPattern.matches(line)) {
+        //return format(matcher.group(1));
+        return format(atPattern.groupCount() == 1 ? atPattern.group(1) : atPattern.group(0));
       }
       return null;
     }
 
     @Override
     public String getThreadState(String line) {
-      if (threadStatePattern != null) {
-        Matcher matcher = threadStatePattern.matcher(line);
-        if (matcher.matches()) {
-          return matcher.group(1);
-        }
+      if (threadStatePattern != null && threadStatePattern.matches(line)) {
+        return threadStatePattern.group(1);
       }
       return null;
     }
 
     @Override
     public String getLockedOwnable(String line) {
-      if (lockedOwnablePattern != null) {
-        Matcher matcher = lockedOwnablePattern.matcher(line);
-        if (matcher.matches()) {
-          return format(matcher.group(1));
-        }
+      if (lockedOwnablePattern != null && lockedOwnablePattern.matches(line)) {
+        return format(lockedOwnablePattern.group(1));
       }
       return null;
     }
 
     @Override
     public String getWaitingOn(String line) {
-      if (waitingOnPattern != null) {
-        Matcher matcher = waitingOnPattern.matcher(line);
-        if (matcher.matches()) {
-          return format(matcher.group(1));
-        }
+      if (waitingOnPattern != null && waitingOnPattern.matches(line)) {
+        return format(waitingOnPattern.group(1));
       }
       return null;
     }
 
     @Override
     public String getParkingToWait(String line) {
-      if (parkingToWaitPattern != null) {
-        Matcher matcher = parkingToWaitPattern.matcher(line);
-        if (matcher.matches()) {
-          return format(matcher.group(1));
-        }
+      if (parkingToWaitPattern != null && parkingToWaitPattern.matches(line)) {
+        return format(parkingToWaitPattern.group(1));
       }
       return null;
     }
 
     @Override
     public String getWaitingTo(String line) {
-      if (waitingToPattern != null) {
-        Matcher matcher = waitingToPattern.matcher(line);
-        if (matcher.matches()) {
-          return format(matcher.group(1));
-        }
+      if (waitingToPattern != null && waitingToPattern.matches(line)) {
+        return format(waitingToPattern.group(1));
       }
       return null;
     }
 
     @Override
     public String getLocked(String line) {
-      if (lockedPattern != null) {
-        Matcher matcher = lockedPattern.matcher(line);
-        if (matcher.matches()) {
-          return format(matcher.group(1));
-        }
+      if (lockedPattern != null && lockedPattern.matches(line)) {
+        return format(lockedPattern.group(1));
       }
       return null;
     }
 
     @Override
     public String getEndOfDump(String line) {
-      if (endOfDumpPattern != null) {
-        Matcher matcher = endOfDumpPattern.matcher(line);
-        if (matcher.matches()) {
-          return matcher.group(1);
-        }
+      if (endOfDumpPattern != null && endOfDumpPattern.matches(line)) {
+        return endOfDumpPattern.group(1);
       }
       return null;
     }
 
     @Override
     public String getExactEndOfDump(String line) {
-      if (endOfDumpPattern != null) {
-        Matcher matcher = exactEndOfDumpPattern.matcher(line);
-        if (matcher.matches()) {
-          return matcher.group(1);
-        }
+      if (endOfDumpPattern != null && exactEndOfDumpPattern.matches(line)) {
+        return exactEndOfDumpPattern.group(1);
       }
       return null;
     }
 
     @Override
     public String getLockReleased(String line) {
-      if (lockReleasedPattern != null) {
-        Matcher matcher = lockReleasedPattern.matcher(line);
-        if (matcher.matches()) {
-          return format(matcher.group(1));
-        }
+      if (lockReleasedPattern != null && lockReleasedPattern.matches(line)) {
+        return format(lockReleasedPattern.group(1));
       }
       return null;
     }
@@ -2509,20 +2569,17 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
       gcThreadPattern = createPattern(pattern);
     }
 
-    private Pattern createPattern(String pattern) {
+    private LinePattern createPattern(String pattern) {
       if (pattern != null || pattern.length() != 0) {
-        return Pattern.compile(pattern);
+        return new LinePattern(pattern);
       }
       return null;
     }
 
     @Override
     public String getEndOfTitlePattern(String line) {
-      if (endOfTitlePattern != null) {
-        Matcher matcher = endOfTitlePattern.matcher(line);
-        if (matcher.matches()) {
-          return format(matcher.group(0));
-        }
+      if (endOfTitlePattern != null && endOfTitlePattern.matches(line)) {
+        return format(endOfTitlePattern.group(0));
       }
       return null;
     }
@@ -2540,14 +2597,56 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
   public void createLockInfo(ThreadInfo thread) {
 
     String blockedLockId = null;
-    String stack = thread.getContent();
-    if (stack == null) {
-      return;
+    ArrayList<String> ownedLockIds;
+    ArrayList<String> blockedLockIds;
+    ArrayList<String> waitingOnLockIds;
+    ArrayList<String> parkedLockIds;
+
+    StackFrame[] frames = thread.getFrames();
+    if (frames != null) {
+      // the lock lines were already typed while reading the dump, so only
+      // these have to be looked at, all in a single pass.
+      ownedLockIds = new ArrayList<String>();
+      blockedLockIds = new ArrayList<String>();
+      waitingOnLockIds = new ArrayList<String>();
+      parkedLockIds = new ArrayList<String>();
+      for (int i = 0; i < frames.length; i++) {
+        if (!frames[i].isLock()) {
+          continue;
+        }
+        String line = frames[i].getLine();
+        if (frames[i].getType() == StackFrame.LOCKED_OWNABLE) {
+          ownedLockIds.add(trimTrailingEntry(line.trim().substring(1)));
+          continue;
+        }
+        addTrailingEntryAfterPattern(line, LOCKED, ownedLockIds);
+        addTrailingEntryAfterPattern(line, BLOCKED_FOR_LOCK, blockedLockIds);
+        addTrailingEntryAfterPattern(line, GENERAL_WAITING, waitingOnLockIds);
+        if (PARKED_FOR_LOCK != null) {
+          addTrailingEntryAfterPattern(line, PARKED_FOR_LOCK, parkedLockIds);
+        }
+      }
+    } else {
+      String stack = thread.getStackText();
+      if (stack == null) {
+        return;
+      }
+      ownedLockIds = getTrailingEntryAfterPattern(stack, LOCKED);
+      ownedLockIds.addAll(getOwnableSynchronizers(stack));
+      blockedLockIds = getTrailingEntryAfterPattern(stack, BLOCKED_FOR_LOCK);
+      waitingOnLockIds = getTrailingEntryAfterPattern(stack, GENERAL_WAITING);
+      parkedLockIds = (PARKED_FOR_LOCK != null) ? getTrailingEntryAfterPattern(stack, PARKED_FOR_LOCK)
+          : new ArrayList<String>();
     }
 
-    ArrayList<String> ownedLockIds = getTrailingEntryAfterPattern(stack, LOCKED);
+    // A thread parked on a j.u.c lock is only blocked by it if another thread
+    // owns it, which is known once all threads are read. Parking on a
+    // condition or a queue is no contention.
+    if ((blockedLockIds.size() == 0) && (parkedLockIds.size() > 0)
+        && !ownedLockIds.contains(parkedLockIds.get(0))) {
+      thread.setParkedForLockId(parkedLockIds.get(0));
+    }
 
-    ArrayList<String> blockedLockIds = getTrailingEntryAfterPattern(stack, BLOCKED_FOR_LOCK);
     if (blockedLockIds.size() > 0) {
       blockedLockId = blockedLockIds.get(0);
 
@@ -2596,8 +2695,6 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
      */
 
     // So, check if the lock was released - as in its waiting on the same lock
-    ArrayList<String> waitingOnLockIds = getTrailingEntryAfterPattern(stack, GENERAL_WAITING);
-
     // There can be only 1 lock that can be waited upon at a time by a given
     // thread..
     if (waitingOnLockIds.size() > 0) {
@@ -2640,10 +2737,53 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
      ", waiting on locks: " + waitingOnLockIds);
   }
 
+  /**
+   * @return the synchronizers listed in the "Locked ownable synchronizers"
+   *         section of the stack.
+   */
+  private static ArrayList<String> getOwnableSynchronizers(String stack) {
+    ArrayList<String> synchronizers = new ArrayList<String>();
+    int start = stack.indexOf("Locked ownable synchronizers:");
+    if (start < 0) {
+      return synchronizers;
+    }
+
+    String[] lines = stack.substring(start).split("\n");
+    for (int i = 1; i < lines.length; i++) {
+      String line = lines[i].trim();
+      if (!line.startsWith("- <")) {
+        break;
+      }
+      synchronizers.add(trimTrailingEntry(line.substring(1)));
+    }
+    return synchronizers;
+  }
+
+  /**
+   * add the entry following the pattern in a single stack line to the list,
+   * see {@link #getTrailingEntryAfterPattern(String, String)}.
+   */
+  private static void addTrailingEntryAfterPattern(String line, String pattern, ArrayList<String> entries) {
+    int offset;
+    if (isLiteralPattern(pattern)) {
+      offset = line.indexOf(pattern);
+      if (offset < 0) {
+        return;
+      }
+      offset += pattern.length();
+    } else {
+      Matcher m = getTrailingEntryPattern(pattern).matcher(line);
+      if (!m.find()) {
+        return;
+      }
+      offset = m.end();
+    }
+    entries.add(trimTrailingEntry(line.substring(offset, Math.min(offset + 400, line.length()))));
+  }
+
   public static ArrayList<String> getTrailingEntryAfterPattern(String data, String pattern) {
 
-    Pattern vmPattern = Pattern.compile("(" + pattern + ")");
-    Matcher m = vmPattern.matcher(data);
+    Matcher m = getTrailingEntryPattern(pattern).matcher(data);
 
     ArrayList<String> trailingEntries = new ArrayList<String>();
 
@@ -2656,25 +2796,7 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
         endOffset = maxLength;
       }
 
-      String entry = data.substring(offset, endOffset);
-      entry = entry.trim().replaceAll("\\n.*", "").trim();
-
-      // Trim off the trailing "owned by " Thread info appened by VisualVM
-      /* Sample created by VisualVM
-      "ExecuteThread: '3' for queue: 'weblogic.socket.Muxer'" - Thread t@243
-      java.lang.Thread.State: BLOCKED
-      at weblogic.socket.DevPollSocketMuxer.processSockets(DevPollSocketMuxer.java:92)
-      - waiting to lock <4de8b404> (a java.lang.String) owned by "ExecuteThread: '2' for queue: 'weblogic.socket.Muxer'" t@242
-       *
-       */
-      entry = entry.replaceAll(" owned by .*", "").trim();
-
-
-      // JRockit has an extra entry at end showing type of lock - locked or
-      // unlocked or fat lock...
-      // strip that entry...
-      entry = entry.replaceAll("\\[.*\\]", "").trim();
-      trailingEntries.add(entry);
+      trailingEntries.add(trimTrailingEntry(data.substring(offset, endOffset)));
 
       if (endOffset == maxLength) {
         break;
@@ -2683,4 +2805,53 @@ public abstract class AbstractDumpParser implements DumpParser, Serializable {
 
     return trailingEntries;
   }
+
+  private static Pattern getTrailingEntryPattern(String pattern) {
+    Pattern vmPattern = trailingEntryPatterns.get(pattern);
+    if (vmPattern == null) {
+      vmPattern = Pattern.compile("(" + pattern + ")");
+      trailingEntryPatterns.put(pattern, vmPattern);
+    }
+    return vmPattern;
+  }
+
+  private static boolean isLiteralPattern(String pattern) {
+    for (int i = 0; i < pattern.length(); i++) {
+      if ("\\[](){}.?*+|^$".indexOf(pattern.charAt(i)) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String trimTrailingEntry(String entry) {
+    entry = entry.trim();
+    int end = entry.indexOf('\n');
+    if (end >= 0) {
+      entry = entry.substring(0, end).trim();
+    }
+
+    // Trim off the trailing "owned by " Thread info appened by VisualVM
+    /* Sample created by VisualVM
+    "ExecuteThread: '3' for queue: 'weblogic.socket.Muxer'" - Thread t@243
+    java.lang.Thread.State: BLOCKED
+    at weblogic.socket.DevPollSocketMuxer.processSockets(DevPollSocketMuxer.java:92)
+    - waiting to lock <4de8b404> (a java.lang.String) owned by "ExecuteThread: '2' for queue: 'weblogic.socket.Muxer'" t@242
+     *
+     */
+    end = entry.indexOf(" owned by ");
+    if (end >= 0) {
+      entry = entry.substring(0, end).trim();
+    }
+
+    // JRockit has an extra entry at end showing type of lock - locked or
+    // unlocked or fat lock...
+    // strip that entry...
+    int start = entry.indexOf('[');
+    end = entry.lastIndexOf(']');
+    if (start >= 0 && end > start) {
+      entry = (entry.substring(0, start) + entry.substring(end + 1)).trim();
+    }
+    return entry;
+  }
 }
@@ -42,6 +42,8 @@ import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.MutableTreeNode;
 import javax.swing.tree.TreePath;
 
+import com.oracle.ateam.threadlogic.ThreadDumpInfo;
+
 /**
  * Dump Parser Interface, defines base methods for all dump parsers.
  * 
@@ -52,6 +54,15 @@ public interface DumpParser {
 
   public MutableTreeNode parseNext();
 
+  /**
+   * parse the next dump into the analysis model without building the tree
+   * nodes for display. Loop on the result instead of using hasMoreDumps(), as
+   * that one already parses the next dump into a tree.
+   *
+   * @return the next dump, null if no more dumps are available.
+   */
+  public ThreadDumpInfo parseNextModel();
+
   public void close() throws IOException;
 
   public void findLongRunningThreads(DefaultMutableTreeNode root, Map dumpStore, TreePath[] paths, int minOccurence,
@@ -34,14 +34,24 @@
 package com.oracle.ateam.threadlogic.parsers;
 
 import com.oracle.ateam.threadlogic.utils.DateMatcher;
+import com.oracle.ateam.threadlogic.utils.MappedLineReader;
 import com.oracle.ateam.threadlogic.utils.PrefManager;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
+import java.nio.charset.Charset;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 /**
  * Factory for the dump parsers.
@@ -49,6 +59,16 @@ import java.util.Map;
  * @author irockel
  */
 public class DumpParserFactory {
+  /**
+   * separates the archive from the entry name in the name of a log file read
+   * from a zip archive, e.g. "dumps.zip!server1.log".
+   */
+  public static final String ENTRY_SEPARATOR = "!";
+
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int ZIP_MAGIC = 0x04034b50;
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
   private static DumpParserFactory instance = null;
 
   /**
@@ -87,13 +107,172 @@ public class DumpParserFactory {
    */
   public DumpParser getDumpParserForLogfile(InputStream dumpFileStream, Map threadStore, boolean withCurrentTimeStamp,
       int startCounter) {
-	  LineNumberReader bis = null;
+    return getDumpParserForLogfile(new LineNumberReader(new InputStreamReader(dumpFileStream)), threadStore,
+        withCurrentTimeStamp, startCounter);
+  }
+
+  /**
+   * parses the given dump file for thread dumps. The file is read through a
+   * memory mapped line source, so the read aheads done by the parsers don't
+   * need to re-read and re-decode the stream.
+   *
+   * @param dumpFile
+   *          the file to use for dump parsing.
+   * @param threadStore
+   *          the map to store the found thread dumps.
+   * @return a proper dump parser for the given log file, null if no proper
+   *         parser was found.
+   * @throws IOException
+   *           if the file cannot be opened.
+   */
+  public DumpParser getDumpParserForLogfile(File dumpFile, Map threadStore, boolean withCurrentTimeStamp,
+      int startCounter) throws IOException {
+    LineNumberReader reader = createLineReader(dumpFile);
+    DumpParser dumpParser = getDumpParserForLogfile(reader, threadStore, withCurrentTimeStamp, startCounter);
+    if (dumpParser == null) {
+      reader.close();
+    }
+    return dumpParser;
+  }
+
+  /**
+   * parses the given dump file for thread dumps. If the file contains several
+   * dumps, they are parsed in parallel on the passed executor.
+   *
+   * @param dumpReader
+   *          the line source to use, dumps can only be parsed in parallel if
+   *          this is a {@link MappedLineReader}.
+   * @param executor
+   *          the executor to run the parsing of the single dumps on.
+   * @return a proper dump parser for the given log file, null if no proper
+   *         parser was found.
+   */
+  public DumpParser getDumpParserForLogfile(LineNumberReader dumpReader, Map threadStore, boolean withCurrentTimeStamp,
+      int startCounter, ExecutorService executor) {
+    DumpParser dumpParser = getDumpParserForLogfile(dumpReader, threadStore, withCurrentTimeStamp, startCounter);
+    // the fallback parser might switch the parser in between, so it's always used sequentially
+    if ((executor != null) && (dumpReader instanceof MappedLineReader) && (dumpParser instanceof AbstractDumpParser)
+        && !(dumpParser instanceof FallbackParser)) {
+      dumpParser = new ParallelDumpParser((AbstractDumpParser) dumpParser, (MappedLineReader) dumpReader,
+          threadStore, withCurrentTimeStamp, startCounter, executor);
+    }
+    return dumpParser;
+  }
+
+  /**
+   * create the line source for the given dump file, memory mapped if the
+   * platform charset allows it.
+   */
+  public LineNumberReader createLineReader(File dumpFile) throws IOException {
+    Charset charset = Charset.defaultCharset();
+    if (MappedLineReader.isAsciiCompatible(charset) && !isGzipFile(dumpFile)) {
+      return new MappedLineReader(dumpFile, charset);
+    }
+    return createLineReader(new FileInputStream(dumpFile));
+  }
+
+  /**
+   * create the line source for the given zip archive entry, the entry is
+   * decompressed while it is parsed.
+   */
+  public LineNumberReader createLineReader(ZipFile archive, ZipEntry entry) throws IOException {
+    return createLineReader(archive.getInputStream(entry));
+  }
+
+  /**
+   * create the line source for the given stream, gzip compressed content is
+   * detected and decompressed on the fly.
+   */
+  public LineNumberReader createLineReader(InputStream dumpStream) throws IOException {
+    InputStream in = new BufferedInputStream(dumpStream, STREAM_BUFFER_SIZE);
+    in.mark(2);
+    int magic = in.read() | (in.read() << 8);
+    in.reset();
+    if (magic == GZIP_MAGIC) {
+      in = new GZIPInputStream(in, STREAM_BUFFER_SIZE);
+    }
+    return new LineNumberReader(new InputStreamReader(in, Charset.defaultCharset()));
+  }
+
+  /**
+   * open the content of a log file for reading, the name is either a (gzip
+   * compressed) file or an entry within a zip archive separated by
+   * {@link #ENTRY_SEPARATOR}.
+   */
+  public LineNumberReader openLogfile(String logFile) throws IOException {
+    File file = new File(logFile);
+    int separator = logFile.lastIndexOf(ENTRY_SEPARATOR);
+    if (file.isFile() || (separator < 0)) {
+      return createLineReader(file);
+    }
+
+    ZipInputStream zip = new ZipInputStream(new FileInputStream(logFile.substring(0, separator)));
+    String entryName = logFile.substring(separator + ENTRY_SEPARATOR.length());
+    ZipEntry entry;
+    while ((entry = zip.getNextEntry()) != null) {
+      if (entry.getName().equals(entryName)) {
+        return createLineReader(zip);
+      }
+    }
+    zip.close();
+    throw new IOException(logFile + " not found");
+  }
+
+  /**
+   * @return true if the given file is a zip archive, every entry of it is a log
+   *         file of its own.
+   */
+  public boolean isZipArchive(File file) {
+    return readMagic(file, 4) == ZIP_MAGIC;
+  }
+
+  /**
+   * @return true if the given file is gzip compressed.
+   */
+  public boolean isGzipFile(File file) {
+    return readMagic(file, 2) == GZIP_MAGIC;
+  }
+
+  /**
+   * read the given number of bytes from the start of the file as little
+   * endian number, -1 if the file is too short or cannot be read.
+   */
+  private static int readMagic(File file, int length) {
+    if (!file.isFile() || (file.length() < length)) {
+      return -1;
+    }
+
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      int magic = 0;
+      for (int i = 0; i < length; i++) {
+        magic |= in.read() << (i * 8);
+      }
+      return magic;
+    } catch (IOException ex) {
+      return -1;
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException ex) {
+          ex.printStackTrace();
+        }
+      }
+    }
+  }
+
+  /**
+   * parses the given reader for thread dumps and return a proper jdk parser
+   * initialized with the reader.
+   */
+  public DumpParser getDumpParserForLogfile(LineNumberReader bis, Map threadStore, boolean withCurrentTimeStamp,
+      int startCounter) {
     int readAheadLimit = PrefManager.get().getStreamResetBuffer();
     DumpParser currentDumpParser = null;
 
     try {
-      bis = new LineNumberReader(new InputStreamReader(dumpFileStream));
-
       // reset current dump parser
       DateMatcher dm = new DateMatcher();
       DateMatcher lastSavedDm = dm;
@@ -102,7 +281,8 @@ public class DumpParserFactory {
       while (bis.ready() && (currentDumpParser == null)) {
         bis.mark(readAheadLimit);
         String line = bis.readLine();
-        dm.checkForDateMatch(line);
+        // the wrapper prefix carries its own time, match the logged line
+        dm.checkForDateMatch(WrappedSunJDKParser.unwrap(line));
         if (dm.isDefaultMatches()) {
           dateEntry = line;
           foundDate = true;
@@ -135,6 +315,12 @@ public class DumpParserFactory {
 			}
         } else if (IBMJDKParser.checkForSupportedThreadDump(line)) {
           currentDumpParser = new IBMJDKParser(bis, threadStore, bis.getLineNumber(), withCurrentTimeStamp, startCounter, lastSavedDm);
+        } else if (JcmdThreadDumpParser.checkForJsonThreadDump(line)) {
+          currentDumpParser = new JcmdThreadDumpParser(bis, threadStore, bis.getLineNumber(), withCurrentTimeStamp,
+              startCounter, lastSavedDm, true);
+        } else if (JcmdThreadDumpParser.checkForPlainThreadDump(line, bis)) {
+          currentDumpParser = new JcmdThreadDumpParser(bis, threadStore, bis.getLineNumber(), withCurrentTimeStamp,
+              startCounter, lastSavedDm, false);
         } else {
           int supportedJvmType = FallbackParser.checkForSupportedThreadDump(line);
           if (supportedJvmType < 0)
@@ -146,7 +332,7 @@ public class DumpParserFactory {
         }
       }
 
-      if ((currentDumpParser != null) && (bis != null)) {
+      if (currentDumpParser != null) {
         bis.reset();
       }
     } catch (IOException ex) {
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.parsers;
+
+import com.oracle.ateam.threadlogic.StackFrame;
+import com.oracle.ateam.threadlogic.ThreadDumpInfo;
+import com.oracle.ateam.threadlogic.utils.HistogramTableModel;
+
+/**
+ * Receives the elements of a thread dump while it is being parsed. The
+ * parsers only report what they read, it is up to the listener to build
+ * something out of it: the ThreadDumpModelBuilder builds the plain analysis
+ * model, the ThreadDumpTreeBuilder additionally builds the tree nodes shown in
+ * the gui.
+ */
+public interface DumpParserListener {
+
+  /**
+   * lock line types passed to {@link #lockLine(int, String)}
+   */
+  public static final int WAITING_ON = 0;
+  public static final int PARKING_TO_WAIT = 1;
+  public static final int WAITING_TO_LOCK = 2;
+  public static final int LOCKED = 3;
+
+  /**
+   * a new thread dump was found, called again with a fresh dump info if the
+   * parser has to retry the dump.
+   */
+  public void dumpStarted(ThreadDumpInfo tdi);
+
+  /**
+   * the title line of a thread was read.
+   */
+  public void threadStarted(String title);
+
+  /**
+   * a stack frame of the current thread was read.
+   */
+  public void frame(String frame);
+
+  /**
+   * a monitor line of the current thread was read.
+   *
+   * @param lockType
+   *          one of WAITING_ON, PARKING_TO_WAIT, WAITING_TO_LOCK or LOCKED.
+   */
+  public void lockLine(int lockType, String line);
+
+  /**
+   * all lines of the current thread were read.
+   *
+   * @param title
+   *          the thread title, possibly completed by the thread state line.
+   * @param frames
+   *          the lines of the thread stack including the title.
+   * @param lineCount
+   *          number of lines read for the thread.
+   */
+  public void threadFinished(String title, StackFrame[] frames, int lineCount);
+
+  /**
+   * a class histogram was found after the threads of the dump.
+   */
+  public void classHistogram(HistogramTableModel histogram);
+
+  /**
+   * all threads of the dump were read, only called if the dump contained
+   * threads.
+   */
+  public void dumpFinished(ThreadDumpInfo tdi);
+}
@@ -53,7 +53,6 @@ import java.io.InputStream;
 import java.io.LineNumberReader;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Stack;
 import java.util.logging.Logger;
@@ -281,22 +280,16 @@ public class FallbackParser extends AbstractDumpParser {
 
 
   /**
-   * checks for the next class histogram and adds it to the tree node passed
-   * 
-   * @param threadDump
-   *          which tree node to add the histogram.
+   * checks for the next class histogram, not supported by this parser.
    */
-  public boolean checkForClassHistogram(DefaultMutableTreeNode threadDump) throws IOException {
+  public boolean checkForClassHistogram(DumpParserListener listener) throws IOException {
     return false;
   } 
   
   /**
-   * checks for the Lock Chains and adds it to the tree node passed
-   * 
-   * @param threadDump
-   *          which tree node to add the lock chain info.
+   * checks for the Lock Chains, not supported by this parser.
    */
-  public boolean checkForLockChains(DefaultMutableTreeNode threadDump) throws IOException {
+  public boolean checkForLockChains(Map threads) throws IOException {
     return false;
   } 
 
@@ -490,6 +483,15 @@ public class FallbackParser extends AbstractDumpParser {
     return tokens;    
   }  
 
+  /**
+   * no separate model path for this parser, the dump is taken from the
+   * parsed tree.
+   */
+  public ThreadDumpInfo parseNextModel() {
+    MutableTreeNode dump = parseNext();
+    return (dump != null ? (ThreadDumpInfo) ((DefaultMutableTreeNode) dump).getUserObject() : null);
+  }
+
   /**
    * parse the next thread dump from the stream passed with the constructor.
    * 
@@ -523,7 +525,7 @@ public class FallbackParser extends AbstractDumpParser {
         Map threads = new HashMap();
         overallTDI = new ThreadDumpInfo("Dump No. " + counter++, 0);
         if (withCurrentTimeStamp) {
-          overallTDI.setStartTime((new Date(System.currentTimeMillis())).toString());
+          overallTDI.setStartTime(System.currentTimeMillis());
         }
         overallTDI.setJvmVersion(this.getJvmVersion());
         
@@ -612,7 +614,7 @@ public class FallbackParser extends AbstractDumpParser {
                       startTime = 0;
                     }
                     if (startTime > 0) {
-                      overallTDI.setStartTime((new Date(startTime)).toString());
+                      overallTDI.setStartTime(startTime);
                     }
                   } else {
                     overallTDI.setStartTime(parsedStartTime);
@@ -822,7 +824,7 @@ public class FallbackParser extends AbstractDumpParser {
                   getBis().reset();
                 }              
 
-                if (!(foundClassHistograms = checkForClassHistogram(threadDump))) {
+                if (!(foundClassHistograms = checkForClassHistogram(null))) {
                   getBis().reset();                
                 }
 
@@ -891,27 +893,18 @@ public class FallbackParser extends AbstractDumpParser {
 
         int monitorCount = mmap.size();        
         
-        Iterator iter = mmap.iterOfKeys();
-        while (iter.hasNext()) {
-          String monitor = (String) iter.next();
-          Map[] threadsInMap = mmap.getFromMonitorMap(monitor);
-          
+        for (int thread = 0; thread < mmap.getThreadsSize(); thread++) {
           // first the locks
           // We need to reset the stack trace for those threads that are holders of locks
           // previously we set the stack trace to be empty as the ownership info was present in a different thread 
           // that is blocked and not directly in the owner thread
-          Iterator iterLocks = threadsInMap[MonitorMap.LOCK_THREAD_POS].keySet().iterator();
-          while (iterLocks.hasNext()) {
-            String threadOwner = (String) iterLocks.next();
-            theLogger.finest("ThreadOwner :" + threadOwner);
-            String stackTrace = (String) threadsInMap[MonitorMap.LOCK_THREAD_POS].get(threadOwner);
-            if (stackTrace == null) {
-              theLogger.finest("ThreadOwner :" + threadOwner + ", owner stack is null");
-              // Search for the owner of the lock
-              ThreadInfo ownerThread = overallTDI.getThreadByName(threadOwner);
-              if (ownerThread != null)
-                threadsInMap[MonitorMap.LOCK_THREAD_POS].put(threadOwner, ownerThread.getContent());              
-            }            
+          if (mmap.hasRelation(thread, MonitorMap.LOCK_THREAD_POS) && !mmap.hasThreadContent(thread)) {
+            String threadOwner = mmap.getThreadTitle(thread);
+            theLogger.finest("ThreadOwner :" + threadOwner + ", owner stack is null");
+            // Search for the owner of the lock
+            ThreadInfo ownerThread = overallTDI.getThreadByName(threadOwner);
+            if (ownerThread != null)
+              mmap.setThreadContent(thread, ownerThread.getContent());
           }
         }
 
@@ -36,7 +36,6 @@ import com.oracle.ateam.threadlogic.HistogramInfo;
 import com.oracle.ateam.threadlogic.ThreadLogic;
 import com.oracle.ateam.threadlogic.ThreadDumpInfo;
 import com.oracle.ateam.threadlogic.categories.TreeCategory;
-import com.oracle.ateam.threadlogic.monitors.MonitorMap;
 import com.oracle.ateam.threadlogic.utils.CustomLogger;
 import com.oracle.ateam.threadlogic.utils.DateMatcher;
 import com.oracle.ateam.threadlogic.utils.HistogramTableModel;
@@ -54,7 +53,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.MutableTreeNode;
 
 /**
  * Parses SunJDK Thread Dumps. Also parses SAP and HP Dumps. Needs to be closed
@@ -64,7 +62,6 @@ import javax.swing.tree.MutableTreeNode;
  */
 public class HotspotParser extends AbstractDumpParser {
 
-  private int counter = 1;
   private boolean foundClassHistograms = false;
   private boolean withCurrentTimeStamp = false;
 
@@ -103,11 +100,6 @@ public class HotspotParser extends AbstractDumpParser {
     return (foundClassHistograms);
   }
 
-  public MutableTreeNode parseNext() {
-    this.mmap = new MonitorMap();
-    return super.parseNext();
-  }
-
   /**
    * add a monitor link for monitor navigation
    * 
@@ -115,26 +107,7 @@ public class HotspotParser extends AbstractDumpParser {
    *          containing monitor
    */
   protected String linkifyMonitor(String line) {
-    try {
-      if (line != null && line.indexOf('<') >= 0) {
-        String begin = line.substring(0, line.indexOf('<'));
-        String monitor = line.substring(line.indexOf('<'), line.indexOf('>') + 1);
-        String end = line.substring(line.indexOf('>') + 1);
-        monitor = monitor.replaceAll("<", "<a href=\"monitor://" + monitor + "\">&lt;");
-        monitor = monitor.substring(0, monitor.length() - 1) + "&gt;</a>";
-        return (begin + monitor + end);
-      } else if (line != null && line.indexOf('@') >= 0) {
-        String begin = line.substring(0, line.indexOf('@') + 1);
-        String monitor = line.substring(line.indexOf('@'));
-        monitor = monitor.replaceAll("@", "@<a href=\"monitor://<" + monitor.substring(1) + ">\">");
-        monitor = monitor.substring(0, monitor.length() - 1) + "</a>";
-        return (begin + monitor);
-      } else {
-        return (line);
-      }
-    } catch(Exception e) { 
-      return null;
-    }
+    return getStackRenderer().linkifyMonitor(line);
   }
 
   /**
@@ -161,28 +134,25 @@ public class HotspotParser extends AbstractDumpParser {
   }
 
   /**
-   * checks for the next class histogram and adds it to the tree node passed
-   * 
-   * @param threadDump
-   *          which tree node to add the histogram.
+   * checks for the next class histogram and reports it to the passed listener
+   *
+   * @param listener
+   *          the listener of the current dump.
    */
-  public boolean checkForClassHistogram(DefaultMutableTreeNode threadDump) throws IOException {
+  public boolean checkForClassHistogram(DumpParserListener listener) throws IOException {
     HistogramTableModel classHistogram = parseNextClassHistogram(getBis());
 
     if (classHistogram.getRowCount() > 0) {
-      addHistogramToDump(threadDump, classHistogram);
+      listener.classHistogram(classHistogram);
     }
 
     return (classHistogram.getRowCount() > 0);
   }
   
   /**
-   * checks for the Lock Chains and adds it to the tree node passed
-   * 
-   * @param threadDump
-   *          which tree node to add the lock chain info.
+   * checks for the Lock Chains, not available for this vm
    */
-  public boolean checkForLockChains(DefaultMutableTreeNode threadDump) throws IOException {
+  public boolean checkForLockChains(Map threads) throws IOException {
     return false;
   } 
 
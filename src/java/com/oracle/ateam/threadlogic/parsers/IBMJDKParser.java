@@ -24,15 +24,19 @@ import com.oracle.ateam.threadlogic.parsers.AbstractDumpParser.LineChecker;
 import com.oracle.ateam.threadlogic.utils.CustomLogger;
 import com.oracle.ateam.threadlogic.utils.DateMatcher;
 import com.oracle.ateam.threadlogic.utils.IconFactory;
+import com.oracle.ateam.threadlogic.utils.MappedLineReader;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.LineNumberReader;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
@@ -43,7 +47,6 @@ import javax.swing.JOptionPane;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.MutableTreeNode;
 
-import java.util.Hashtable;
 import java.util.logging.Logger;
 
 public class IBMJDKParser extends AbstractDumpParser {
@@ -52,8 +55,23 @@ public class IBMJDKParser extends AbstractDumpParser {
   private String monPattern = "3LKMONOBJECT\\s*([^:.]*): (owner|Flat locked by|<unowned>) (\\\".*[^(]) \\(.*";
   private String waitNotify = "3LKWAITNOTIFY";
   private String waiter = "3LKWAITER";  
+  private String cpuTime = "3XMCPUTIME";
   private String parsedStartTime;
 
+  private static final String SECTION = "0SECTION";
+
+  /**
+   * the javacore sections the dump is taken from, the lines of all other
+   * sections (e.g. MEMINFO, CLASSES or NATIVEMEMINFO) are skipped unchecked.
+   */
+  private static final Set<String> PARSED_SECTIONS = new HashSet<String>(Arrays.asList("LOCKS", "THREADS"));
+
+  /**
+   * the line number of every section of the javacore read so far, keyed by
+   * section name.
+   */
+  private final Map<String, Integer> sectionIndex = new LinkedHashMap<String, Integer>();
+
   private static Logger theLogger = CustomLogger.getLogger(IBMJDKParser.class.getSimpleName());
   
   public IBMJDKParser(LineNumberReader bis, Map threadStore, int lineCounter, boolean withCurrentTimeStamp,
@@ -143,6 +161,15 @@ public class IBMJDKParser extends AbstractDumpParser {
    * super.parseNext(); }
    */
 
+  /**
+   * no separate model path for this parser, the dump is taken from the
+   * parsed tree.
+   */
+  public ThreadDumpInfo parseNextModel() {
+    MutableTreeNode dump = parseNext();
+    return (dump != null ? (ThreadDumpInfo) ((DefaultMutableTreeNode) dump).getUserObject() : null);
+  }
+
   /**
    * parse the next thread dump from the stream passed with the constructor.
    * 
@@ -181,7 +208,7 @@ public class IBMJDKParser extends AbstractDumpParser {
         if (parsedStartTime != null) {
           overallTDI.setStartTime(parsedStartTime);
         } else if (withCurrentTimeStamp) {
-          overallTDI.setStartTime((new Date(System.currentTimeMillis())).toString());
+          overallTDI.setStartTime(System.currentTimeMillis());
         }
         
         threadDump = new DefaultMutableTreeNode(overallTDI);
@@ -227,11 +254,23 @@ public class IBMJDKParser extends AbstractDumpParser {
         Matcher matched = getDm().getLastMatch();        
         String parsedStartTime = null;
         
-        Hashtable<String, LockInfo> lockTable = new Hashtable<String, LockInfo>();
+        Map<String, LockInfo> lockTable = new HashMap<String, LockInfo>();
+        // cpu times of the threads keyed by title, they follow the thread title
+        HashMap<String, Long> cpuTimes = new HashMap<String, Long>();
+
+        boolean skipSection = false;
 
         while (getBis().ready() && !finished) {
+          if (skipSection && !locked) {
+            lineCounter += skipToNextSection();
+          }
           line = getNextLine();
           lineCounter++;
+          if ((line != null) && (line.indexOf(SECTION) >= 0)) {
+            skipSection = !indexSection(line);
+          } else if (skipSection && !locked) {
+            continue;
+          }
           singleLineCounter++;
           if (locked) {
             if (lineChecker.getFullDump(line) != null) {
@@ -266,7 +305,7 @@ public class IBMJDKParser extends AbstractDumpParser {
                       startTime = 0;
                     }
                     if (startTime > 0) {
-                      overallTDI.setStartTime((new Date(startTime)).toString());
+                      overallTDI.setStartTime(startTime);
                     }
                   } else {
                     overallTDI.setStartTime(parsedStartTime);
@@ -391,36 +430,19 @@ public class IBMJDKParser extends AbstractDumpParser {
                 content.append("</pre></pre>");
                 addToCategory(catThreads, title, null, stringContent, singleLineCounter, true);
                 threadCount++;
-                Iterator iter = mmap.iterOfKeys();
-                while (iter.hasNext()) {
-                  String shortTitle = title.substring(0, title.indexOf("\"", 1) + 1);
-                  //theLogger.finest("1Complete title: " + title 
-                  // + ", Map Searching for shortTitle: " + shortTitle);
-                  String monitor = (String) iter.next();
-                  Map[] t = mmap.getFromMonitorMap(monitor);
-                  Set lockMap = t[MonitorMap.LOCK_THREAD_POS].keySet();
-                  if (lockMap.contains(shortTitle)) {
+                // the monitor section only knew the name of the thread
+                String shortTitle = title.substring(0, title.indexOf("\"", 1) + 1);
+                int thread = mmap.renameThread(shortTitle, title);
+                if (thread >= 0) {
+                  mmap.setThreadContent(thread, stringContent);
+                  if (mmap.hasRelation(thread, MonitorMap.LOCK_THREAD_POS)) {
                     inLocking = true;
-                    lockMap.remove(shortTitle);
-                    mmap.addLockToMonitor(monitor, title, stringContent);
-                    // theLogger.finest("2LockedMonitor[" + monitor +
-                    // "], title: " + title + ", content: " + stringContent );
                   }
-                  Set waitingMap = t[MonitorMap.WAIT_THREAD_POS].keySet();
-                  if (waitingMap.contains(shortTitle)) {
+                  if (mmap.hasRelation(thread, MonitorMap.WAIT_THREAD_POS)) {
                     inWaiting = true;
-                    waitingMap.remove(shortTitle);
-                    mmap.addWaitToMonitor(monitor, title, stringContent);
-                    // theLogger.finest("2BlockedForMonitor[" + monitor +
-                    // "], title: " + title + ", content: " + stringContent );
                   }
-                  Set sleepingMap = t[MonitorMap.SLEEP_THREAD_POS].keySet();
-                  if (sleepingMap.contains(shortTitle)) {
+                  if (mmap.hasRelation(thread, MonitorMap.SLEEP_THREAD_POS)) {
                     inSleeping = true;
-                    sleepingMap.remove(shortTitle);
-                    mmap.addSleepToMonitor(monitor, title, stringContent);
-                    // theLogger.finest("2WaitOnMonitor[" + monitor +
-                    // "], title: " + title + ", content: " + stringContent );
                   }
                 }
               }
@@ -451,6 +473,11 @@ public class IBMJDKParser extends AbstractDumpParser {
             } else if ((tempLine = lineChecker.getAt(line)) != null) {
               content.append(tempLine);
               content.append("\n");
+            } else if ((title != null) && line.startsWith(cpuTime)) {
+              long millis = parseCpuTime(line);
+              if (millis >= 0) {
+                cpuTimes.put(title, Long.valueOf(millis));
+              }
             }
 
             // last thread reached?
@@ -470,7 +497,7 @@ public class IBMJDKParser extends AbstractDumpParser {
               }
 
               getBis().mark(getMarkSize());
-              if (!(foundClassHistograms = checkForClassHistogram(threadDump))) {
+              if (!(foundClassHistograms = checkForClassHistogram(null))) {
                 getBis().reset();
               }
             }
@@ -483,34 +510,18 @@ public class IBMJDKParser extends AbstractDumpParser {
           content.append("</pre></pre>");
           addToCategory(catThreads, title, null, stringContent, singleLineCounter, true);
           threadCount++;
-          Iterator iter = mmap.iterOfKeys();
-          while (iter.hasNext()) {
-            String shortTitle = title.substring(0, title.indexOf("\"", 1) + 1);
-            String monitor = (String) iter.next();
-            Map[] t = mmap.getFromMonitorMap(monitor);
-            Set lockMap = t[MonitorMap.LOCK_THREAD_POS].keySet();
-            if (lockMap.contains(shortTitle)) {
+          String shortTitle = title.substring(0, title.indexOf("\"", 1) + 1);
+          int thread = mmap.renameThread(shortTitle, title);
+          if (thread >= 0) {
+            mmap.setThreadContent(thread, stringContent);
+            if (mmap.hasRelation(thread, MonitorMap.LOCK_THREAD_POS)) {
               inLocking = true;
-              lockMap.remove(shortTitle);
-              //theLogger.finest("Lock map contained shortTitle: " + shortTitle 
-              // + ", removing it... and adding to LockMonitor with title : " + title );
-              mmap.addLockToMonitor(monitor, title, stringContent);
             }
-            Set waitingMap = t[MonitorMap.WAIT_THREAD_POS].keySet();
-            if (waitingMap.contains(shortTitle)) {
+            if (mmap.hasRelation(thread, MonitorMap.WAIT_THREAD_POS)) {
               inWaiting = true;
-              waitingMap.remove(shortTitle);
-              //theLogger.finest("Lock map contained shortTitle: " + shortTitle 
-              // + ", removing it... and adding to waitMonitor with title : " + title );
-              mmap.addWaitToMonitor(monitor, title, stringContent);
             }
-            Set sleepingMap = t[MonitorMap.SLEEP_THREAD_POS].keySet();
-            if (sleepingMap.contains(shortTitle)) {
+            if (mmap.hasRelation(thread, MonitorMap.SLEEP_THREAD_POS)) {
               inSleeping = true;
-              sleepingMap.remove(shortTitle);
-              //theLogger.finest("Lock map contained shortTitle: " + shortTitle 
-              // + ", removing it... and adding to SleepMonitor with title : " + title );
-              mmap.addSleepToMonitor(monitor, title, stringContent);
             }
           }
         }
@@ -578,6 +589,7 @@ public class IBMJDKParser extends AbstractDumpParser {
           threadDump.add(catMonitorsLocks);
         }
         overallTDI.setThreads((Category) catThreads.getUserObject());
+        setCpuTimes((Category) catThreads.getUserObject(), cpuTimes);
 
         // Create relationship between LockInfo and Threads
         overallTDI.parseLocks(this);
@@ -634,6 +646,73 @@ public class IBMJDKParser extends AbstractDumpParser {
     return (null);
   }
 
+  /**
+   * @return the total cpu time of a 3XMCPUTIME line in milliseconds, -1 if
+   *         there is none.
+   *         3XMCPUTIME CPU usage total: 0.046800300 secs, current category="Application"
+   */
+  private long parseCpuTime(String line) {
+    int index = line.indexOf("total:");
+    if (index < 0) {
+      return -1;
+    }
+    String[] tokens = line.substring(index + 6).trim().split("[\\s,]+", 2);
+    try {
+      return Math.round(Double.parseDouble(tokens[0]) * 1000);
+    } catch (NumberFormatException nfe) {
+      return -1;
+    }
+  }
+
+  private void setCpuTimes(Category threads, Map<String, Long> cpuTimes) {
+    if (cpuTimes.isEmpty()) {
+      return;
+    }
+    for (int i = 0; i < threads.getNodeCount(); i++) {
+      ThreadInfo ti = (ThreadInfo) threads.getNodeAt(i).getUserObject();
+      Long millis = cpuTimes.get(ti.getName());
+      if (millis != null) {
+        ti.setCpuTimeMillis(millis.longValue());
+      }
+    }
+  }
+
+  /**
+   * add the section started by the passed 0SECTION line to the section index.
+   * 
+   * @return true if the lines of the section are needed for the dump.
+   */
+  private boolean indexSection(String line) {
+    String[] tokens = line.substring(line.indexOf(SECTION) + SECTION.length()).trim().split("\\s+", 2);
+    String section = tokens[0];
+    if (!sectionIndex.containsKey(section)) {
+      sectionIndex.put(section, Integer.valueOf(lineCounter));
+    }
+    return PARSED_SECTIONS.contains(section);
+  }
+
+  /**
+   * skip the rest of the current section. Mapped files are skipped by offset
+   * without decoding the lines, for other readers the lines are skipped one by
+   * one while parsing.
+   * 
+   * @return the number of lines skipped.
+   */
+  private int skipToNextSection() throws IOException {
+    if (getBis() instanceof MappedLineReader) {
+      return ((MappedLineReader) getBis()).skipToLineContaining(SECTION);
+    }
+    return 0;
+  }
+
+  /**
+   * @return the line numbers of the sections of the javacore read so far,
+   *         keyed by section name in the order of the javacore.
+   */
+  public Map<String, Integer> getSectionIndex() {
+    return Collections.unmodifiableMap(sectionIndex);
+  }
+
   private String[] parseMonitor(String line) {
     String[] tokens = null;
     Pattern monitorPattern = Pattern.compile(monPattern);
@@ -700,13 +779,13 @@ public class IBMJDKParser extends AbstractDumpParser {
   }
 
   @Override
-  boolean checkForClassHistogram(DefaultMutableTreeNode threadDump) throws IOException {
+  boolean checkForClassHistogram(DumpParserListener listener) throws IOException {
     // TODO Auto-generated method stub
     return false;
   }
 
   @Override
-  public boolean checkForLockChains(DefaultMutableTreeNode threadDump) throws IOException {
+  public boolean checkForLockChains(Map threads) throws IOException {
     return false;
   } 
 
@@ -717,6 +796,18 @@ public class IBMJDKParser extends AbstractDumpParser {
     return null;
   }
 
+  /**
+   * every section of a javacore starts with 0SECTION, only the TITLE section
+   * starts a new dump.
+   */
+  public boolean isDumpStart(String line) {
+    return (line.indexOf(SECTION) >= 0) && (line.indexOf("TITLE") >= 0);
+  }
+
+  public String getDumpStartMarker() {
+    return SECTION;
+  }
+
   /**
    * check if the passed logline contains the beginning of a Bea jdk thread
    * dump.
@@ -0,0 +1,864 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import com.oracle.ateam.threadlogic.FrameTable;
+import com.oracle.ateam.threadlogic.StackFrame;
+import com.oracle.ateam.threadlogic.ThreadDumpInfo;
+import com.oracle.ateam.threadlogic.utils.CustomLogger;
+import com.oracle.ateam.threadlogic.utils.DateMatcher;
+
+/**
+ * Parses the thread dumps written by "jcmd &lt;pid&gt; Thread.dump_to_file"
+ * (jdk 21+), either in the json or in the plain text format. These dumps can
+ * contain millions of virtual threads, so the document is streamed and the
+ * virtual threads are aggregated by thread container and stack while they are
+ * read, only one thread per distinct stack is handed to the listener. Platform
+ * threads are passed on one by one.
+ *
+ * The threads are reported with a hotspot like title and stack, so the usual
+ * analysis applies. Thread containers other than the root container and the
+ * carrier threads of virtual threads become thread groups of their own.
+ */
+public class JcmdThreadDumpParser extends AbstractDumpParser {
+
+  /**
+   * container label of the threads carrying virtual threads.
+   */
+  public static final String CARRIER_THREADS = "Carrier Threads";
+
+  /**
+   * container label of the virtual threads of the root container.
+   */
+  public static final String VIRTUAL_THREADS = "Virtual Threads";
+
+  private static final String JSON_DUMP_START = "\"threadDump\"";
+  private static final String ROOT_CONTAINER = "<root>";
+  private static final int MAX_HEADER_LINES = 4;
+
+  private final boolean json;
+
+  private static Logger theLogger = CustomLogger.getLogger(JcmdThreadDumpParser.class.getSimpleName());
+
+  public JcmdThreadDumpParser(LineNumberReader bis, Map threadStore, int lineCounter, boolean withCurrentTimeStamp,
+          int startCounter, DateMatcher dm, boolean json) {
+    super(bis, dm);
+    this.threadStore = threadStore;
+    this.withCurrentTimeStamp = withCurrentTimeStamp;
+    this.lineCounter = lineCounter;
+    this.counter = startCounter;
+    this.json = json;
+    this.setJvmVendor(JVM_VENDOR_LIST[OPENJDK_VM]);
+  }
+
+  /**
+   * check if the passed log line starts a json thread dump.
+   */
+  public static boolean checkForJsonThreadDump(String logLine) {
+    return logLine.indexOf(JSON_DUMP_START) >= 0;
+  }
+
+  /**
+   * check if the passed log line starts a plain text thread dump, that is the
+   * process id followed by the time and the runtime version and then the first
+   * thread. The lines following the process id are read ahead, the reader is
+   * set back to the line after the process id if no dump was found.
+   *
+   * @param logLine
+   *          the line just read, the reader has to be marked before it.
+   */
+  public static boolean checkForPlainThreadDump(String logLine, LineNumberReader bis) throws IOException {
+    if (!isProcessId(logLine)) {
+      return false;
+    }
+
+    boolean found = false;
+    for (int i = 0; (i < MAX_HEADER_LINES) && bis.ready() && !found; i++) {
+      String line = bis.readLine();
+      found = (line != null) && isThreadStart(line);
+    }
+    if (!found) {
+      bis.reset();
+      bis.readLine();
+    }
+    return found;
+  }
+
+  private static boolean isProcessId(String line) {
+    String pid = line.trim();
+    if (pid.length() == 0) {
+      return false;
+    }
+    for (int i = 0; i < pid.length(); i++) {
+      if (!Character.isDigit(pid.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true for the first line of a thread in the plain text format:
+   *         #1 "main"
+   */
+  private static boolean isThreadStart(String line) {
+    if ((line.length() < 4) || (line.charAt(0) != '#')) {
+      return false;
+    }
+    int space = line.indexOf(" \"");
+    if (space < 2) {
+      return false;
+    }
+    for (int i = 1; i < space; i++) {
+      if (!Character.isDigit(line.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean isDumpStart(String line) {
+    return json ? checkForJsonThreadDump(line) : isProcessId(line);
+  }
+
+  public String getDumpStartMarker() {
+    return json ? JSON_DUMP_START : null;
+  }
+
+  /**
+   * parse the next dump and report its threads to the listener, the virtual
+   * threads are only reported once the whole dump was read.
+   */
+  protected boolean parseNext(DumpParserListener listener) {
+    this.mmap = createMonitorMap();
+    try {
+      ThreadDumpInfo overallTDI = new ThreadDumpInfo("Dump No. " + counter, 0);
+      DumpContent dump = new DumpContent();
+      boolean found = json ? readJsonDump(overallTDI, dump) : readPlainDump(overallTDI, dump);
+      if (!found) {
+        return false;
+      }
+
+      counter++;
+      if (withCurrentTimeStamp) {
+        overallTDI.setStartTime(System.currentTimeMillis());
+      }
+      listener.dumpStarted(overallTDI);
+      Map threads = new LinkedHashMap();
+      dump.report(listener, threads);
+      if (threads.isEmpty()) {
+        return false;
+      }
+
+      threadStore.put(overallTDI.getName().trim(), threads);
+      overallTDI.setJvmType(this.getJvmVendor());
+      listener.dumpFinished(overallTDI);
+      return true;
+    } catch (InterruptedIOException e) {
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return false;
+  }
+
+  /**
+   * read the next json dump, the lines in front of it are skipped.
+   *
+   * @return false if no more dump was found.
+   */
+  private boolean readJsonDump(ThreadDumpInfo tdi, DumpContent dump) throws IOException {
+    String line = null;
+    int start = -1;
+    while (getBis().ready() && (start < 0)) {
+      line = getNextLine();
+      lineCounter++;
+      if (line == null) {
+        return false;
+      }
+      start = line.indexOf(JSON_DUMP_START);
+    }
+    if (start < 0) {
+      return false;
+    }
+    tdi.setLogLine(getBis().getLineNumber());
+
+    JsonStreamReader reader = new JsonStreamReader(line, start + JSON_DUMP_START.length()) {
+      protected String nextLine() throws IOException {
+        if (!getBis().ready()) {
+          return null;
+        }
+        lineCounter++;
+        return getNextLine();
+      }
+    };
+    if (reader.next() != JsonStreamReader.BEGIN_OBJECT) {
+      return false;
+    }
+
+    int dumpDepth = reader.getDepth() - 1;
+    int token;
+    while (((token = reader.next()) != JsonStreamReader.END_DOCUMENT) && (reader.getDepth() > dumpDepth)) {
+      if (token != JsonStreamReader.NAME) {
+        continue;
+      }
+      String name = reader.getValue();
+      if (name.equals("time")) {
+        String time = reader.nextString();
+        if (time != null) {
+          tdi.setStartTime(time);
+        }
+      } else if (name.equals("runtimeVersion")) {
+        tdi.setJvmVersion(reader.nextString());
+      } else if (name.equals("threadContainers")) {
+        if (reader.next() == JsonStreamReader.BEGIN_ARRAY) {
+          int containersDepth = reader.getDepth() - 1;
+          while (((token = reader.next()) == JsonStreamReader.BEGIN_OBJECT)) {
+            readJsonContainer(reader, dump);
+          }
+          reader.skipToEnd(containersDepth);
+        }
+      } else {
+        reader.skipValue();
+      }
+    }
+    return true;
+  }
+
+  private void readJsonContainer(JsonStreamReader reader, DumpContent dump) throws IOException {
+    int containerDepth = reader.getDepth() - 1;
+    String container = null;
+    int token;
+    while (((token = reader.next()) != JsonStreamReader.END_DOCUMENT) && (reader.getDepth() > containerDepth)) {
+      if (token != JsonStreamReader.NAME) {
+        continue;
+      }
+      String name = reader.getValue();
+      if (name.equals("container")) {
+        container = reader.nextString();
+      } else if (name.equals("threads")) {
+        if (reader.next() == JsonStreamReader.BEGIN_ARRAY) {
+          int threadsDepth = reader.getDepth() - 1;
+          while (reader.next() == JsonStreamReader.BEGIN_OBJECT) {
+            dump.add(readJsonThread(reader, container));
+          }
+          reader.skipToEnd(threadsDepth);
+        }
+      } else {
+        reader.skipValue();
+      }
+    }
+  }
+
+  /**
+   * read a thread object, besides the jdk 21 fields (tid, name, stack) the
+   * state and lock fields of later jdks are taken.
+   */
+  private DumpedThread readJsonThread(JsonStreamReader reader, String container) throws IOException {
+    int threadDepth = reader.getDepth() - 1;
+    DumpedThread thread = new DumpedThread(container);
+    ArrayList<String> stack = new ArrayList<String>();
+    ArrayList<String[]> ownedMonitors = new ArrayList<String[]>();
+    int token;
+    while (((token = reader.next()) != JsonStreamReader.END_DOCUMENT) && (reader.getDepth() > threadDepth)) {
+      if (token != JsonStreamReader.NAME) {
+        continue;
+      }
+      String name = reader.getValue();
+      if (name.equals("tid")) {
+        thread.tid = reader.nextString();
+      } else if (name.equals("name")) {
+        thread.name = reader.nextString();
+      } else if (name.equals("virtual")) {
+        thread.virtual = (reader.next() == JsonStreamReader.LITERAL) && "true".equals(reader.getValue());
+      } else if (name.equals("state")) {
+        thread.state = reader.nextString();
+      } else if (name.equals("carrier")) {
+        thread.carrier = reader.nextString();
+      } else if (name.equals("blockedOn")) {
+        thread.blockedOn = reader.nextString();
+      } else if (name.equals("waitingOn")) {
+        thread.waitingOn = reader.nextString();
+      } else if (name.equals("parkBlocker")) {
+        thread.parkBlocker = readParkBlocker(reader);
+      } else if (name.equals("stack")) {
+        readStrings(reader, stack);
+      } else if (name.equals("monitorsOwned")) {
+        readOwnedMonitors(reader, ownedMonitors);
+      } else {
+        reader.skipValue();
+      }
+    }
+    thread.setStack(stack, ownedMonitors);
+    return thread;
+  }
+
+  private String readParkBlocker(JsonStreamReader reader) throws IOException {
+    int token = reader.next();
+    if (token == JsonStreamReader.STRING) {
+      return reader.getValue();
+    } else if (token != JsonStreamReader.BEGIN_OBJECT) {
+      return null;
+    }
+
+    int blockerDepth = reader.getDepth() - 1;
+    String blocker = null;
+    while (((token = reader.next()) != JsonStreamReader.END_DOCUMENT) && (reader.getDepth() > blockerDepth)) {
+      if (token == JsonStreamReader.NAME) {
+        if (reader.getValue().equals("object")) {
+          blocker = reader.nextString();
+        } else {
+          reader.skipValue();
+        }
+      }
+    }
+    return blocker;
+  }
+
+  private void readStrings(JsonStreamReader reader, ArrayList<String> strings) throws IOException {
+    if (reader.next() != JsonStreamReader.BEGIN_ARRAY) {
+      return;
+    }
+    int arrayDepth = reader.getDepth() - 1;
+    int token;
+    while (((token = reader.next()) != JsonStreamReader.END_DOCUMENT) && (reader.getDepth() > arrayDepth)) {
+      if (token == JsonStreamReader.STRING) {
+        strings.add(reader.getValue());
+      }
+    }
+  }
+
+  /**
+   * read the monitors owned per frame depth, [{"depth": 0, "locks": [...]}]
+   */
+  private void readOwnedMonitors(JsonStreamReader reader, ArrayList<String[]> ownedMonitors) throws IOException {
+    if (reader.next() != JsonStreamReader.BEGIN_ARRAY) {
+      return;
+    }
+    int arrayDepth = reader.getDepth() - 1;
+    int token;
+    while (((token = reader.next()) != JsonStreamReader.END_DOCUMENT) && (reader.getDepth() > arrayDepth)) {
+      if (token != JsonStreamReader.BEGIN_OBJECT) {
+        continue;
+      }
+      int entryDepth = reader.getDepth() - 1;
+      String depth = null;
+      ArrayList<String> locks = new ArrayList<String>();
+      while (((token = reader.next()) != JsonStreamReader.END_DOCUMENT) && (reader.getDepth() > entryDepth)) {
+        if (token != JsonStreamReader.NAME) {
+          continue;
+        }
+        if (reader.getValue().equals("depth")) {
+          reader.next();
+          depth = reader.getValue();
+        } else if (reader.getValue().equals("locks")) {
+          readStrings(reader, locks);
+        } else {
+          reader.skipValue();
+        }
+      }
+      for (String lock : locks) {
+        ownedMonitors.add(new String[] { depth, lock });
+      }
+    }
+  }
+
+  /**
+   * read the next plain text dump, the lines in front of it are skipped. The
+   * dump ends at the process id of the next dump.
+   *
+   * @return false if no more dump was found.
+   */
+  private boolean readPlainDump(ThreadDumpInfo tdi, DumpContent dump) throws IOException {
+    boolean found = false;
+    while (getBis().ready() && !found) {
+      getBis().mark(getMarkSize());
+      String line = getNextLine();
+      lineCounter++;
+      found = (line != null) && checkForPlainThreadDump(line, getBis());
+    }
+    if (!found) {
+      return false;
+    }
+    getBis().reset();
+    getNextLine();
+    tdi.setLogLine(getBis().getLineNumber());
+
+    // the time and the runtime version follow the process id
+    String[] header = new String[2];
+    DumpedThread thread = null;
+    ArrayList<String> stack = new ArrayList<String>();
+    int headerLines = 0;
+    while (getBis().ready()) {
+      getBis().mark(getMarkSize());
+      String line = getNextLine();
+      lineCounter++;
+      if (line == null) {
+        break;
+      }
+
+      String trimmed = line.trim();
+      if (isThreadStart(line)) {
+        addPlainThread(dump, thread, stack);
+        thread = readPlainTitle(line);
+        stack.clear();
+      } else if (thread != null) {
+        if (isProcessId(trimmed)) {
+          // the next dump starts here
+          getBis().reset();
+          lineCounter--;
+          break;
+        } else if (trimmed.length() > 0) {
+          stack.add(trimmed);
+        }
+      } else if ((trimmed.length() > 0) && (headerLines < header.length)) {
+        header[headerLines++] = trimmed;
+      }
+    }
+    addPlainThread(dump, thread, stack);
+
+    if (header[0] != null) {
+      tdi.setStartTime(header[0]);
+    }
+    tdi.setJvmVersion(header[1]);
+    return true;
+  }
+
+  /**
+   * #1 "main"
+   * #31 "" virtual
+   */
+  private DumpedThread readPlainTitle(String line) {
+    DumpedThread thread = new DumpedThread(null);
+    int nameStart = line.indexOf(" \"");
+    int nameEnd = line.lastIndexOf('"');
+    thread.tid = line.substring(1, nameStart);
+    thread.name = (nameEnd > nameStart + 1) ? line.substring(nameStart + 2, nameEnd) : "";
+
+    String[] labels = line.substring(Math.max(nameEnd, nameStart + 1) + 1).trim().split(" ");
+    for (String label : labels) {
+      if (label.equals("virtual")) {
+        thread.virtual = true;
+      } else if ((label.length() > 0) && Character.isUpperCase(label.charAt(0))) {
+        // later jdks add the thread state
+        thread.state = label;
+      }
+    }
+    return thread;
+  }
+
+  private void addPlainThread(DumpContent dump, DumpedThread thread, ArrayList<String> stack) {
+    if (thread == null) {
+      return;
+    }
+
+    // monitor lines of later jdks: "- locked java.lang.Object@5ca881b5"
+    ArrayList<String> frames = new ArrayList<String>();
+    ArrayList<String[]> ownedMonitors = new ArrayList<String[]>();
+    for (String line : stack) {
+      if (!line.startsWith("- ")) {
+        frames.add(line);
+      } else if (line.startsWith("- locked ")) {
+        ownedMonitors.add(new String[] { String.valueOf(frames.size() - 1), line.substring(9).trim() });
+      } else if (line.startsWith("- waiting to lock ")) {
+        thread.blockedOn = line.substring(18).trim();
+      } else if (line.startsWith("- waiting on ")) {
+        thread.waitingOn = line.substring(13).trim();
+      } else if (line.startsWith("- parking to wait for ")) {
+        thread.parkBlocker = line.substring(22).trim();
+      }
+    }
+    thread.setStack(frames, ownedMonitors);
+    dump.add(thread);
+  }
+
+  /**
+   * generate thread info token for table view from the titles created by
+   * {@link DumpedThread#getTitle(int, String)}.
+   *
+   * @return name, tid, nid (none) and state.
+   */
+  protected String[] getThreadTokens(String title) {
+    String[] tokens = new String[4];
+    int nameEnd = title.indexOf("\" #", 1);
+    if (nameEnd < 0) {
+      return null;
+    }
+    tokens[0] = title.substring(1, nameEnd);
+
+    int tidStart = title.indexOf(" tid=", nameEnd);
+    if (tidStart > 0) {
+      int tidEnd = title.indexOf(' ', tidStart + 5);
+      tokens[1] = title.substring(tidStart + 5, (tidEnd > 0) ? tidEnd : title.length());
+      int stateEnd = title.indexOf(" container=", tidStart);
+      tokens[3] = (tidEnd > 0) ? title.substring(tidEnd + 1, (stateEnd > 0) ? stateEnd : title.length()) : "";
+    }
+    return tokens;
+  }
+
+  protected String linkifyMonitor(String line) {
+    return getStackRenderer().linkifyMonitor(line);
+  }
+
+  String linkifyDeadlockInfo(String line) {
+    return line;
+  }
+
+  /**
+   * the dumps have no class histograms.
+   */
+  boolean checkForClassHistogram(DumpParserListener listener) throws IOException {
+    return false;
+  }
+
+  /**
+   * the dumps have no lock chains.
+   */
+  boolean checkForLockChains(Map threads) throws IOException {
+    return false;
+  }
+
+  /**
+   * there are no class histograms in gc logs for these dumps.
+   */
+  public void parseLoggcFile(InputStream loggcFileStream, DefaultMutableTreeNode root) {
+  }
+
+  /**
+   * convert a monitor of the dump (java.lang.Object@5ca881b5) into the
+   * hotspot notation used by the lock analysis: &lt;0x5ca881b5&gt; (a
+   * java.lang.Object)
+   */
+  static String toHotspotMonitor(String monitor) {
+    int at = monitor.lastIndexOf('@');
+    if (at <= 0) {
+      return "<" + monitor + ">";
+    }
+    return "<0x" + monitor.substring(at + 1) + "> (a " + monitor.substring(0, at) + ")";
+  }
+
+  /**
+   * strip the class loader and module of a stack trace element, the location
+   * stays: java.base/java.lang.Thread.sleep(Thread.java:509)
+   */
+  static String toHotspotFrame(String element) {
+    int paren = element.indexOf('(');
+    int slash = element.lastIndexOf('/', (paren > 0) ? paren : element.length());
+    return "\tat " + ((slash >= 0) ? element.substring(slash + 1) : element);
+  }
+
+  /**
+   * a thread as read from the dump, the title is only created when the thread
+   * is reported as the number of aggregated virtual threads isn't known before.
+   */
+  private static class DumpedThread {
+    String tid;
+    String name;
+    String container;
+    String state;
+    String carrier;
+    String blockedOn;
+    String waitingOn;
+    String parkBlocker;
+    boolean virtual;
+    StackFrame[] frames;
+    // number of virtual threads with this stack
+    int count = 1;
+
+    DumpedThread(String container) {
+      this.container = container;
+    }
+
+    boolean isRootContainer() {
+      return (container == null) || container.equals(ROOT_CONTAINER);
+    }
+
+    /**
+     * build the stack frames (state line, frames and lock lines) shared with
+     * all other threads with the same stack.
+     */
+    void setStack(ArrayList<String> stack, ArrayList<String[]> ownedMonitors) {
+      // jdk 21 doesn't mark virtual threads in the json format, later jdks
+      // report the state along with the virtual flag.
+      if (!virtual && (state == null) && (stack.size() > 0)
+              && stack.get(stack.size() - 1).indexOf("java.lang.VirtualThread.run(") >= 0) {
+        virtual = true;
+      }
+
+      ArrayList<StackFrame> frameList = new ArrayList<StackFrame>(stack.size() + 2);
+      frameList.add(FrameTable.intern(StackFrame.LINE, "   java.lang.Thread.State: " + getState(stack)));
+      for (int i = 0; i < stack.size(); i++) {
+        frameList.add(FrameTable.intern(StackFrame.FRAME, toHotspotFrame(stack.get(i))));
+        if (i == 0) {
+          if (blockedOn != null) {
+            frameList.add(FrameTable.intern(StackFrame.WAITING_TO_LOCK, "\t- waiting to lock "
+                    + toHotspotMonitor(blockedOn)));
+          }
+          if (waitingOn != null) {
+            frameList.add(FrameTable.intern(StackFrame.WAITING_ON, "\t- waiting on " + toHotspotMonitor(waitingOn)));
+          }
+          if (parkBlocker != null) {
+            frameList.add(FrameTable.intern(StackFrame.PARKING_TO_WAIT, "\t- parking to wait for  "
+                    + toHotspotMonitor(parkBlocker)));
+          }
+        }
+        for (String[] monitor : ownedMonitors) {
+          if (String.valueOf(i).equals(monitor[0])) {
+            frameList.add(FrameTable.intern(StackFrame.LOCKED, "\t- locked " + toHotspotMonitor(monitor[1])));
+          }
+        }
+      }
+      frames = frameList.toArray(new StackFrame[frameList.size()]);
+    }
+
+    /**
+     * @return the thread state as printed by jstack, the state of jdk 21 dumps
+     *         is taken from the top frames.
+     */
+    private String getState(ArrayList<String> stack) {
+      String top = (stack.size() > 0) ? stack.get(0) : "";
+      boolean parking = false;
+      boolean sleeping = false;
+      boolean objectWait = false;
+      for (int i = 0; (i < stack.size()) && (i < 4); i++) {
+        String frame = stack.get(i);
+        parking |= (frame.indexOf(".park") >= 0) && (frame.indexOf("VirtualThread.") >= 0
+                || frame.indexOf("Unsafe.park") >= 0 || frame.indexOf("LockSupport.park") >= 0);
+        sleeping |= frame.indexOf("java.lang.Thread.sleep") >= 0;
+        objectWait |= frame.indexOf("java.lang.Object.wait") >= 0;
+      }
+
+      String jstackState = state;
+      if (jstackState == null) {
+        if (blockedOn != null) {
+          jstackState = "BLOCKED";
+        } else if (parking || objectWait) {
+          jstackState = (top.indexOf("Nanos") >= 0 || top.indexOf("Until") >= 0) ? "TIMED_WAITING" : "WAITING";
+        } else if (sleeping) {
+          jstackState = "TIMED_WAITING";
+        } else {
+          jstackState = "RUNNABLE";
+        }
+      }
+
+      if (jstackState.equals("BLOCKED")) {
+        return jstackState + " (on object monitor)";
+      } else if (jstackState.endsWith("WAITING")) {
+        if (parking) {
+          return jstackState + " (parking)";
+        } else if (objectWait) {
+          return jstackState + " (on object monitor)";
+        } else if (sleeping) {
+          return jstackState + " (sleeping)";
+        }
+      }
+      return jstackState;
+    }
+
+    /**
+     * @return the state as part of a hotspot thread title.
+     */
+    private String getTitleState() {
+      String state = frames[0].getLine();
+      if (state.indexOf("BLOCKED") >= 0) {
+        return "waiting for monitor entry";
+      } else if (state.indexOf("on object monitor") >= 0) {
+        return "in Object.wait()";
+      } else if (state.indexOf("WAITING") >= 0) {
+        return "waiting on condition";
+      }
+      return "runnable";
+    }
+
+    /**
+     * "main" #1 tid=1 runnable
+     * "virtual" #31 virtual threads=1000 tid=31 waiting on condition container=Virtual Threads
+     */
+    String getTitle(String containerLabel) {
+      StringBuilder title = new StringBuilder(64);
+      title.append('"').append(((name == null) || (name.length() == 0)) && virtual ? "virtual" : name).append("\" #")
+              .append(tid);
+      if (virtual) {
+        title.append(" virtual");
+        if (count > 1) {
+          title.append(" threads=").append(count);
+        }
+      }
+      title.append(" tid=").append(tid).append(' ').append(getTitleState());
+      if (containerLabel != null) {
+        title.append(" container=").append(containerLabel);
+      }
+      return title.toString();
+    }
+  }
+
+  /**
+   * key of the virtual threads sharing the container and the stack, the frames
+   * are interned so comparing them is cheap.
+   */
+  private static class StackKey {
+    private final String container;
+    private final StackFrame[] frames;
+    private final int hash;
+
+    StackKey(String container, StackFrame[] frames) {
+      this.container = container;
+      this.frames = frames;
+      this.hash = 31 * Arrays.hashCode(frames) + ((container != null) ? container.hashCode() : 0);
+    }
+
+    public boolean equals(Object o) {
+      if (!(o instanceof StackKey)) {
+        return false;
+      }
+      StackKey other = (StackKey) o;
+      return (hash == other.hash) && ((container == null) ? other.container == null : container.equals(other.container))
+              && Arrays.equals(frames, other.frames);
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * the threads of a dump, the platform threads in dump order and the virtual
+   * threads aggregated by container and stack.
+   */
+  private class DumpContent {
+    private final ArrayList<DumpedThread> platformThreads = new ArrayList<DumpedThread>();
+    private final LinkedHashMap<StackKey, DumpedThread> virtualThreads = new LinkedHashMap<StackKey, DumpedThread>();
+    private final Set<String> carriers = new HashSet<String>();
+    private int virtualThreadCount;
+
+    void add(DumpedThread thread) {
+      if (thread.tid == null) {
+        return;
+      }
+      if (!thread.virtual) {
+        platformThreads.add(thread);
+        return;
+      }
+
+      virtualThreadCount++;
+      if (thread.carrier != null) {
+        carriers.add(thread.carrier);
+      }
+      String container = thread.isRootContainer() ? null : thread.container;
+      StackKey key = new StackKey(container, thread.frames);
+      DumpedThread aggregate = virtualThreads.get(key);
+      if (aggregate == null) {
+        virtualThreads.put(key, thread);
+      } else {
+        aggregate.count++;
+        if ((aggregate.name != null) && !aggregate.name.equals(thread.name)) {
+          aggregate.name = "";
+        }
+      }
+    }
+
+    /**
+     * report the threads to the listener, the platform threads carrying
+     * virtual threads go to the carrier group, as do all threads of their
+     * container (e.g. the scheduler pool).
+     */
+    void report(DumpParserListener listener, Map threads) {
+      Set<String> carrierContainers = new HashSet<String>();
+      for (DumpedThread thread : platformThreads) {
+        if (isCarrier(thread) && !thread.isRootContainer()) {
+          carrierContainers.add(thread.container);
+        }
+      }
+
+      for (DumpedThread thread : platformThreads) {
+        String label = null;
+        if (isCarrier(thread) || carrierContainers.contains(thread.container)) {
+          label = CARRIER_THREADS;
+        } else if (!thread.isRootContainer()) {
+          label = thread.container;
+        }
+        report(listener, threads, thread, label);
+      }
+
+      for (DumpedThread thread : virtualThreads.values()) {
+        report(listener, threads, thread, thread.isRootContainer() ? VIRTUAL_THREADS : thread.container);
+      }
+      if (virtualThreadCount > 0) {
+        theLogger.fine("Aggregated " + virtualThreadCount + " virtual threads into " + virtualThreads.size()
+                + " distinct stacks");
+      }
+    }
+
+    private boolean isCarrier(DumpedThread thread) {
+      if (carriers.contains(thread.tid)) {
+        return true;
+      }
+      for (StackFrame frame : thread.frames) {
+        String line = frame.getLine();
+        if ((line.indexOf("java.lang.VirtualThread.runContinuation") >= 0)
+                || (line.indexOf("jdk.internal.misc.CarrierThread") >= 0)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void report(DumpParserListener listener, Map threads, DumpedThread thread, String containerLabel) {
+      String title = thread.getTitle(containerLabel);
+      StackFrame[] stack = new StackFrame[thread.frames.length + 1];
+      stack[0] = new StackFrame(StackFrame.LINE, title);
+      System.arraycopy(thread.frames, 0, stack, 1, thread.frames.length);
+
+      listener.threadStarted(title);
+      for (int i = 1; i < stack.length; i++) {
+        StackFrame frame = stack[i];
+        int lockType = getLockType(frame.getType());
+        if (frame.getType() == StackFrame.FRAME) {
+          listener.frame(frame.getLine());
+        } else if (lockType >= 0) {
+          listener.lockLine(lockType, frame.getLine());
+          mmap.parseAndAddThread(frame.getLine(), title, stack);
+        }
+      }
+      threads.put(title, stack);
+      listener.threadFinished(title, stack, stack.length);
+    }
+
+    private int getLockType(int frameType) {
+      switch (frameType) {
+      case StackFrame.WAITING_ON:
+        return DumpParserListener.WAITING_ON;
+      case StackFrame.PARKING_TO_WAIT:
+        return DumpParserListener.PARKING_TO_WAIT;
+      case StackFrame.WAITING_TO_LOCK:
+        return DumpParserListener.WAITING_TO_LOCK;
+      case StackFrame.LOCKED:
+        return DumpParserListener.LOCKED;
+      default:
+        return -1;
+      }
+    }
+  }
+}
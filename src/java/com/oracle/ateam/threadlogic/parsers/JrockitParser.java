@@ -31,10 +31,12 @@
 
 package com.oracle.ateam.threadlogic.parsers;
 
+import com.oracle.ateam.threadlogic.StackFrame;
+import com.oracle.ateam.threadlogic.StackRenderer;
 import com.oracle.ateam.threadlogic.ThreadDumpInfo;
 import com.oracle.ateam.threadlogic.ThreadInfo;
-import com.oracle.ateam.threadlogic.categories.Category;
 import com.oracle.ateam.threadlogic.monitors.JRockitMonitorMap;
+import com.oracle.ateam.threadlogic.monitors.MonitorMap;
 import com.oracle.ateam.threadlogic.parsers.AbstractDumpParser.LineChecker;
 import com.oracle.ateam.threadlogic.utils.CustomLogger;
 import com.oracle.ateam.threadlogic.utils.DateMatcher;
@@ -44,13 +46,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.LineNumberReader;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.MutableTreeNode;
 
 /**
  * Parses Bea/JRockit Thread Dumps
@@ -98,6 +100,7 @@ public class JrockitParser extends AbstractDumpParser {
     LOCKED = "-- Holding lock:";
     BLOCKED_FOR_LOCK = "-- Blocked trying to get lock:";
     GENERAL_WAITING = "- Waiting for notification:";
+    PARKED_FOR_LOCK = "-- Parking to wait for:";
   }  
   
   /**
@@ -150,29 +153,29 @@ public class JrockitParser extends AbstractDumpParser {
 
   
   /**
-   * parse the next thread dump from the stream passed with the constructor.
-   * 
-   * @returns null if no more thread dumps were found.
+   * create the JRockit specific monitor map for the next dump.
    */
+  protected MonitorMap createMonitorMap() {
+    return new JRockitMonitorMap();
+  }
 
-  public MutableTreeNode parseNext() {
-    this.mmap = new JRockitMonitorMap();
-    return super.parseNext();
+  /**
+   * render the stack of the given thread for the monitor map.
+   */
+  private String renderStack(Map threads, String title) {
+    StackFrame[] stack = (StackFrame[]) threads.get(title);
+    return (stack != null ? getStackRenderer().renderStack(stack) : null);
+  }
+
+  /**
+   * JRockit monitors are linked differently from the Sun ones.
+   */
+  protected StackRenderer getStackRenderer() {
+    return StackRenderer.JROCKIT;
   }
 
   protected String linkifyMonitor(String line) {
-    if (line != null) {
-      int colon = line.indexOf(":");
-      int last = line.indexOf('[') >= 0 ? line.indexOf('[') : line.length();
-      String begin = colon != -1 ? line.substring(0, colon + 2) : "";
-      String monitor = colon != -1 ? line.substring(colon + 2, last) : line;
-      String end = line.substring(last);
-      monitor = "<a href=\"monitor://" + monitor + "\">" + monitor;
-      monitor = monitor.substring(0, monitor.length()) + "</a>";
-      return (begin + monitor + end);
-    } else {
-      return (line);
-    }
+    return getStackRenderer().linkifyMonitor(line);
   }
 
   public boolean isFoundClassHistograms() {
@@ -268,7 +271,7 @@ public class JrockitParser extends AbstractDumpParser {
   }
    
   @Override
-  public boolean checkForClassHistogram(DefaultMutableTreeNode threadDump) throws IOException {
+  public boolean checkForClassHistogram(DumpParserListener listener) throws IOException {
     return false;
   }
   
@@ -276,10 +279,10 @@ public class JrockitParser extends AbstractDumpParser {
    * checks for the Lock Chains and adds it to the tree node passed
    * Useful to figure out thread holding ReentrantLock which is not visible in the thread stack traces
    * 
-   * @param threadDump
-   *          which tree node to add the lock chain info.
+   * @param threads
+   *          the stacks of the threads of the dump, keyed by thread title.
    */
-  public boolean checkForLockChains(DefaultMutableTreeNode catThreadNode) throws IOException {
+  public boolean checkForLockChains(Map threads) throws IOException {
     
     boolean finished = false;
     boolean found = false;
@@ -292,15 +295,14 @@ public class JrockitParser extends AbstractDumpParser {
     Pattern blockedThreadPattern = Pattern.compile(blockedThreadPatternMask);
     Pattern ownerThreadPattern = Pattern.compile(ownerThreadPatternMask);
 
-    Category catThreads = (Category)catThreadNode.getUserObject();
     String blockedThread, prevBlockedThread, lockObj, prevLockObj, ownerThread;
     blockedThread = prevBlockedThread = prevLockObj = lockObj = ownerThread = null;
     
-    // Save the thread info in a hashtable for quick retreival of the thread stack later based on thread name
-    Hashtable<String, ThreadInfo> threadMap = new Hashtable();
-    for (int i = 0; i < catThreads.getNodeCount(); i++) {
-      ThreadInfo ti = (ThreadInfo) ((DefaultMutableTreeNode) catThreads.getNodeAt(i)).getUserObject();
-      threadMap.put(ti.getFilteredName(), ti);         
+    // Save the thread titles in a hashtable for quick retreival of the thread stack later based on thread name
+    Hashtable<String, String> threadMap = new Hashtable<String, String>();
+    for (Iterator iter = threads.keySet().iterator(); iter.hasNext();) {
+      String title = (String) iter.next();
+      threadMap.put(ThreadInfo.filterName(title), title);
     }
     
     while (getBis().ready() && !finished) {
@@ -346,14 +348,14 @@ public class JrockitParser extends AbstractDumpParser {
             if ((prevBlockedThread != null) && (prevLockObj != null)) {
 
                 // The current blocked thread is owner of the previous lock object
-                ThreadInfo ownerThreadInfo = threadMap.get(blockedThread);
-                if (ownerThreadInfo == null)
+                String ownerTitle = threadMap.get(blockedThread);
+                if (ownerTitle == null)
                   continue;
 
                 // We already know the thread is in waiting state, so no need to call addSleepToMonitor()
                 // Call addLockToMonitor() just to cover cases like threads that are holding locks 
                 // that are not visible in the thread stack trace (like ReentrantLocks)
-                mmap.addLockToMonitor(prevLockObj, ownerThreadInfo.getName(), ownerThreadInfo.getContent()); 
+                mmap.addLockToMonitor(prevLockObj, ownerTitle, renderStack(threads, ownerTitle));
                 //theLogger.finest("Added owner: " + blockedThread + ", for lock: " + prevLockObj);
             }          
 
@@ -371,14 +373,14 @@ public class JrockitParser extends AbstractDumpParser {
               //theLogger.finest("Lock Obj: " + lockObj);
               
               
-              ThreadInfo ownerThreadInfo = threadMap.get(ownerThread);
-              if (ownerThreadInfo == null)
+              String ownerTitle = threadMap.get(ownerThread);
+              if (ownerTitle == null)
                 continue;
               
               // We already know the thread is in waiting state, so no need to call addSleepToMonitor()
               // Call addLockToMonitor() just to cover cases like threads that are holding locks 
               // that are not visible in the thread stack trace (like ReentrantLocks)
-              mmap.addLockToMonitor(lockObj, ownerThreadInfo.getName(), ownerThreadInfo.getContent());
+              mmap.addLockToMonitor(lockObj, ownerTitle, renderStack(threads, ownerTitle));
               
               // Reset all previously saved threads/locks...
               prevBlockedThread = blockedThread = lockObj = prevLockObj = ownerThread = null;
@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.parsers;
+
+import java.io.IOException;
+
+/**
+ * Minimal pull parser for json documents fed line by line, so a document is
+ * never held in memory as a whole. Names and values are only reported as
+ * tokens, the caller walks the structure it is interested in and skips the
+ * rest. Numbers, booleans and null are all reported as literals.
+ */
+abstract class JsonStreamReader {
+
+  public static final int END_DOCUMENT = 0;
+  public static final int BEGIN_OBJECT = 1;
+  public static final int END_OBJECT = 2;
+  public static final int BEGIN_ARRAY = 3;
+  public static final int END_ARRAY = 4;
+  public static final int NAME = 5;
+  public static final int STRING = 6;
+  public static final int LITERAL = 7;
+
+  private String line;
+  private int pos;
+  private String value;
+
+  // true for each open object, false for each open array
+  private boolean[] objects = new boolean[16];
+  private int depth;
+  private boolean expectName;
+
+  /**
+   * @param line
+   *          the line to start with.
+   * @param pos
+   *          the position within the line to start at.
+   */
+  JsonStreamReader(String line, int pos) {
+    this.line = line;
+    this.pos = pos;
+  }
+
+  /**
+   * @return the next line of the document, null at its end.
+   */
+  protected abstract String nextLine() throws IOException;
+
+  /**
+   * @return the name, string or literal of the last token.
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * @return the number of open objects and arrays.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @return the type of the next token.
+   */
+  public int next() throws IOException {
+    while (true) {
+      if (line == null) {
+        return END_DOCUMENT;
+      }
+
+      while (pos < line.length()) {
+        char c = line.charAt(pos);
+        if (c == ',') {
+          expectName = (depth > 0) && objects[depth - 1];
+        } else if ((c != ' ') && (c != '\t') && (c != ':') && (c != '\r')) {
+          break;
+        }
+        pos++;
+      }
+      if (pos >= line.length()) {
+        line = nextLine();
+        pos = 0;
+        continue;
+      }
+
+      char c = line.charAt(pos++);
+      switch (c) {
+      case '{':
+        push(true);
+        expectName = true;
+        return BEGIN_OBJECT;
+      case '[':
+        push(false);
+        expectName = false;
+        return BEGIN_ARRAY;
+      case '}':
+      case ']':
+        if (depth > 0) {
+          depth--;
+        }
+        expectName = false;
+        return (c == '}') ? END_OBJECT : END_ARRAY;
+      case '"':
+        value = readString();
+        if (expectName) {
+          expectName = false;
+          return NAME;
+        }
+        return STRING;
+      default:
+        int start = pos - 1;
+        while ((pos < line.length()) && ",}] \t\r".indexOf(line.charAt(pos)) < 0) {
+          pos++;
+        }
+        value = line.substring(start, pos);
+        return LITERAL;
+      }
+    }
+  }
+
+  /**
+   * skip the value following a name, nested objects and arrays are skipped as
+   * a whole.
+   */
+  public void skipValue() throws IOException {
+    int token = next();
+    if ((token == BEGIN_OBJECT) || (token == BEGIN_ARRAY)) {
+      skipToEnd(depth - 1);
+    }
+  }
+
+  /**
+   * skip the tokens up to the end of the object or array opened at the given
+   * depth.
+   */
+  public void skipToEnd(int openDepth) throws IOException {
+    while ((depth > openDepth) && (next() != END_DOCUMENT)) {
+    }
+  }
+
+  /**
+   * @return the string value following a name, null if the value is no
+   *         string (e.g. null).
+   */
+  public String nextString() throws IOException {
+    int token = next();
+    if ((token == BEGIN_OBJECT) || (token == BEGIN_ARRAY)) {
+      skipToEnd(depth - 1);
+      return null;
+    }
+    return (token == STRING) ? value : null;
+  }
+
+  private void push(boolean object) {
+    if (depth == objects.length) {
+      boolean[] grown = new boolean[depth * 2];
+      System.arraycopy(objects, 0, grown, 0, depth);
+      objects = grown;
+    }
+    objects[depth++] = object;
+  }
+
+  /**
+   * read the string starting at the current position up to the closing quote,
+   * strings are not split across lines.
+   */
+  private String readString() {
+    int start = pos;
+    while (pos < line.length()) {
+      char c = line.charAt(pos);
+      if (c == '"') {
+        return line.substring(start, pos++);
+      } else if (c == '\\') {
+        break;
+      }
+      pos++;
+    }
+
+    StringBuilder sb = new StringBuilder(line.length() - start);
+    sb.append(line, start, pos);
+    while (pos < line.length()) {
+      char c = line.charAt(pos++);
+      if (c == '"') {
+        return sb.toString();
+      } else if ((c == '\\') && (pos < line.length())) {
+        char escaped = line.charAt(pos++);
+        switch (escaped) {
+        case 'n':
+          sb.append('\n');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'u':
+          if (pos + 4 <= line.length()) {
+            try {
+              sb.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+              pos += 4;
+              break;
+            } catch (NumberFormatException nfe) {
+              // keep the escape as it is
+            }
+          }
+          sb.append("\\u");
+          break;
+        default:
+          sb.append(escaped);
+        }
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+}
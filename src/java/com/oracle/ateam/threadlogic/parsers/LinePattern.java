@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.parsers;
+
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * a line pattern of the line checker. Every line of a dump is checked against
+ * several patterns, so the common pattern shapes are matched without the regex
+ * engine:
+ * <ul>
+ * <li>"(.*literal.*)" is a contains check of the literal, '.' matching any
+ * char.</li>
+ * <li>"\s*(\".*)" (thread titles) checks the first non blank char.</li>
+ * <li>".*(literal|literal|...).*" only runs the matcher if the line contains
+ * one of the literals.</li>
+ * </ul>
+ * All other patterns run a matcher which is reused for every line. The results
+ * are the same as matching the whole line against the pattern.
+ *
+ * Not thread safe, every parser has a line checker of its own.
+ */
+class LinePattern {
+
+  private static final String STACK_START = "\\s*(\".*)";
+  private static final String META_CHARS = "\\[](){}?*+|^$";
+
+  private final Matcher matcher;
+
+  // "(.*literal.*)" patterns
+  private final String wildcardLiteral;
+
+  // "\s*(\".*)" pattern
+  private final boolean quoteAfterBlanks;
+
+  // one of these has to be contained in a matching line, null if not known
+  private final String[] requiredLiterals;
+
+  // an alternative anchored at the line start which requires a leading digit
+  private boolean digitAtStart;
+
+  // state of the last match without the matcher
+  private boolean matchedDirectly;
+  private String matchedLine;
+  private int groupStart;
+
+  LinePattern(String regex) {
+    matcher = Pattern.compile(regex).matcher("");
+    quoteAfterBlanks = STACK_START.equals(regex);
+
+    String literal = null;
+    if (regex.length() > 6 && regex.startsWith("(.*") && regex.endsWith(".*)")) {
+      literal = regex.substring(3, regex.length() - 3);
+      if (!isLiteral(literal, true)) {
+        literal = null;
+      }
+    }
+    wildcardLiteral = literal;
+    requiredLiterals = (literal == null && !quoteAfterBlanks) ? getRequiredLiterals(regex) : null;
+  }
+
+  /**
+   * @return true if the whole line matches the pattern.
+   */
+  boolean matches(String line) {
+    matchedDirectly = false;
+    if (quoteAfterBlanks) {
+      int start = skipBlanks(line);
+      if (start < line.length() && line.charAt(start) == '"' && !hasLineTerminator(line, start)) {
+        return matchedDirectly(line, start);
+      }
+      return false;
+    }
+
+    if (wildcardLiteral != null) {
+      if (containsWildcard(line, wildcardLiteral) && !hasLineTerminator(line, 0)) {
+        return matchedDirectly(line, 0);
+      }
+      return false;
+    }
+
+    if (requiredLiterals != null && !mayMatch(line)) {
+      return false;
+    }
+    return matcher.reset(line).matches();
+  }
+
+  /**
+   * @return the given group of the last successful match.
+   */
+  String group(int group) {
+    if (!matchedDirectly) {
+      return matcher.group(group);
+    }
+    return (group == 0 || groupStart == 0) ? matchedLine : matchedLine.substring(groupStart);
+  }
+
+  int groupCount() {
+    return matcher.groupCount();
+  }
+
+  private boolean matchedDirectly(String line, int start) {
+    matchedDirectly = true;
+    matchedLine = line;
+    groupStart = start;
+    return true;
+  }
+
+  private boolean mayMatch(String line) {
+    if (digitAtStart && line.length() > 0 && line.charAt(0) >= '0' && line.charAt(0) <= '9') {
+      return true;
+    }
+    for (int i = 0; i < requiredLiterals.length; i++) {
+      if (line.indexOf(requiredLiterals[i]) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * get the literals of ".*(a|b|c).*" or "(.*(a|b|c).*)" patterns, alternatives
+   * anchored at the line start are only allowed if they begin with a digit.
+   */
+  private String[] getRequiredLiterals(String regex) {
+    String alternatives = null;
+    if (regex.startsWith(".*(") && regex.endsWith(").*")) {
+      alternatives = regex.substring(3, regex.length() - 3);
+    } else if (regex.startsWith("(.*(") && regex.endsWith(").*)")) {
+      alternatives = regex.substring(4, regex.length() - 4);
+    }
+    if (alternatives == null || alternatives.indexOf('(') >= 0 || alternatives.indexOf(')') >= 0) {
+      return null;
+    }
+
+    ArrayList<String> literals = new ArrayList<String>();
+    for (String alternative : alternatives.split("\\|", -1)) {
+      if (alternative.length() > 0 && isLiteral(alternative, false)) {
+        literals.add(alternative);
+      } else if (alternative.startsWith("^\\d")) {
+        digitAtStart = true;
+      } else {
+        digitAtStart = false;
+        return null;
+      }
+    }
+    return literals.toArray(new String[literals.size()]);
+  }
+
+  private static boolean isLiteral(String s, boolean allowDot) {
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (META_CHARS.indexOf(c) >= 0 || (c == '.' && !allowDot)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * contains check with '.' in the literal matching any char.
+   */
+  private static boolean containsWildcard(String line, String literal) {
+    int last = line.length() - literal.length();
+    for (int i = 0; i <= last; i++) {
+      int j = 0;
+      while (j < literal.length() && (literal.charAt(j) == '.' || literal.charAt(j) == line.charAt(i + j))) {
+        j++;
+      }
+      if (j == literal.length()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * the regex '.' doesn't match line terminators, lines read from the dump
+   * can still contain some of them.
+   */
+  private static boolean hasLineTerminator(String line, int start) {
+    for (int i = start; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the index of the first char not matched by \s.
+   */
+  private static int skipBlanks(String line) {
+    int i = 0;
+    while (i < line.length()) {
+      char c = line.charAt(i);
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\u000B' && c != '\f' && c != '\r') {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+}
@@ -0,0 +1,414 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreePath;
+
+import com.oracle.ateam.threadlogic.ThreadDumpInfo;
+import com.oracle.ateam.threadlogic.utils.CustomLogger;
+import com.oracle.ateam.threadlogic.utils.DateMatcher;
+import com.oracle.ateam.threadlogic.utils.MappedLineReader;
+
+/**
+ * Parses the thread dumps of a memory mapped log file in parallel. A fast
+ * pre-scan records the byte range of every dump (using the dump start markers
+ * of the parser detected for the file), each range is then parsed by its own
+ * parser on the passed executor. The resulting dump nodes (or dump models if
+ * parsed with parseNextModel()) are handed out in file order as soon as their
+ * range is parsed, only waiting for the next one.
+ *
+ * If a range doesn't line up with the dumps (it yields no or several dumps, or
+ * is detected as another vm), the rest of the file is parsed sequentially from
+ * the start of that range on.
+ */
+public class ParallelDumpParser implements DumpParser {
+
+  private static Logger theLogger = CustomLogger.getLogger(ParallelDumpParser.class.getSimpleName());
+
+  private final AbstractDumpParser primaryParser;
+  private final MappedLineReader primaryReader;
+  private final Map threadStore;
+  private final boolean withCurrentTimeStamp;
+  private final int startCounter;
+  private final ExecutorService executor;
+
+  private boolean started = false;
+  private ArrayList<DumpRange> ranges;
+  private ArrayList<Future<RangeResult>> futures;
+  private int nextRange = 0;
+  private MutableTreeNode nextDump;
+  private boolean foundClassHistograms = false;
+  // timestamp regex errors of the ranges handed out
+  private final LinkedHashSet<String> patternErrors = new LinkedHashSet<String>();
+  // bytes of the ranges parsed so far, in whatever order they complete
+  private final AtomicLong parsedBytes = new AtomicLong();
+
+  // set from the first range not matching a dump on
+  private volatile boolean sequential = false;
+
+  /**
+   * byte range of a single dump within the log file.
+   */
+  static class DumpRange {
+    final long start;
+    final long end;
+    final int lineNumber;
+
+    DumpRange(long start, long end, int lineNumber) {
+      this.start = start;
+      this.end = end;
+      this.lineNumber = lineNumber;
+    }
+  }
+
+  /**
+   * result of parsing a single range.
+   */
+  private static class RangeResult {
+    final ArrayList<MutableTreeNode> dumps = new ArrayList<MutableTreeNode>();
+    final ArrayList<ThreadDumpInfo> models = new ArrayList<ThreadDumpInfo>();
+    final Map threadStore = new HashMap();
+    boolean sameParser = true;
+    boolean foundClassHistograms = false;
+    String patternError;
+
+    int size() {
+      return dumps.size() + models.size();
+    }
+  }
+
+  ParallelDumpParser(AbstractDumpParser primaryParser, MappedLineReader primaryReader, Map threadStore,
+      boolean withCurrentTimeStamp, int startCounter, ExecutorService executor) {
+    this.primaryParser = primaryParser;
+    this.primaryReader = primaryReader;
+    this.threadStore = threadStore;
+    this.withCurrentTimeStamp = withCurrentTimeStamp;
+    this.startCounter = startCounter;
+    this.executor = executor;
+  }
+
+  /**
+   * scan the whole file for the starts of the thread dumps. The range of a
+   * dump starts at its timestamp line (if the line in front of the dump
+   * marker is one) and ends where the next range starts. If the parser has a
+   * dump start marker, only the lines containing it are read.
+   */
+  ArrayList<DumpRange> scanDumpRanges() throws IOException {
+    ArrayList<long[]> starts = new ArrayList<long[]>();
+    MappedLineReader scanner = primaryReader.slice(0, primaryReader.length(), 0);
+    DateMatcher dm = new DateMatcher();
+    String marker = primaryParser.getDumpStartMarker();
+    try {
+      String previousLine = null;
+      long previousOffset = 0;
+      int previousLineNumber = 0;
+
+      while (scanner.ready()) {
+        if ((marker != null) && (scanner.skipToLineContaining(marker) > 0)) {
+          // the line in front of the next one wasn't read
+          previousLine = null;
+          if (!scanner.ready()) {
+            break;
+          }
+        }
+        long offset = scanner.getPosition();
+        int lineNumber = scanner.getLineNumber();
+        String line = scanner.readLine();
+        if (line.trim().length() == 0) {
+          continue;
+        }
+
+        if (primaryParser.isDumpStart(line)) {
+          boolean dateInFront = false;
+          if (previousLine != null && !dm.isPatternError()) {
+            dm.resetLastMatch();
+            dateInFront = dm.checkForDateMatch(previousLine) != null;
+          }
+          if (dateInFront) {
+            starts.add(new long[] { previousOffset, previousLineNumber });
+          } else {
+            starts.add(new long[] { offset, lineNumber });
+          }
+        }
+        previousLine = line;
+        previousOffset = offset;
+        previousLineNumber = lineNumber;
+      }
+    } finally {
+      scanner.close();
+    }
+
+    ArrayList<DumpRange> ranges = new ArrayList<DumpRange>();
+    for (int i = 0; i < starts.size(); i++) {
+      // the first dump also gets anything in front of it, like the factory saw it.
+      long start = (i == 0) ? 0 : starts.get(i)[0];
+      int lineNumber = (i == 0) ? 0 : (int) starts.get(i)[1];
+      long end = (i + 1 < starts.size()) ? starts.get(i + 1)[0] : primaryReader.length();
+      if (end > start) {
+        ranges.add(new DumpRange(start, end, lineNumber));
+      }
+    }
+    return ranges;
+  }
+
+  private RangeResult parseRange(DumpRange range, int dumpCounter, boolean modelOnly) throws IOException {
+    RangeResult result = new RangeResult();
+    MappedLineReader reader = primaryReader.slice(range.start, range.end, range.lineNumber);
+    DumpParser dp = DumpParserFactory.get().getDumpParserForLogfile(reader, result.threadStore,
+        withCurrentTimeStamp, dumpCounter);
+    if (dp == null) {
+      reader.close();
+      return result;
+    }
+
+    try {
+      if (dp.getClass() != primaryParser.getClass()) {
+        result.sameParser = false;
+        return result;
+      }
+      ((AbstractDumpParser) dp).setDumpCounter(dumpCounter);
+      if (modelOnly) {
+        ThreadDumpInfo tdi;
+        while ((tdi = dp.parseNextModel()) != null) {
+          result.models.add(tdi);
+        }
+      } else {
+        while (dp.hasMoreDumps()) {
+          result.dumps.add(dp.parseNext());
+        }
+      }
+      result.foundClassHistograms = dp.isFoundClassHistograms();
+      DateMatcher dm = ((AbstractDumpParser) dp).getDm();
+      result.patternError = (dm != null) ? dm.getPatternErrorMessage() : null;
+    } finally {
+      dp.close();
+    }
+    return result;
+  }
+
+  /**
+   * index the file and submit the parsing of all ranges, falls back to
+   * sequential parsing if there aren't several dumps.
+   *
+   * @param modelOnly
+   *          parse the dumps into the analysis model only.
+   */
+  private void start(final boolean modelOnly) {
+    started = true;
+    try {
+      ranges = scanDumpRanges();
+    } catch (IOException ex) {
+      theLogger.warning("Unable to index thread dumps, parsing sequentially: " + ex.getMessage());
+      fallBackFrom(0);
+      return;
+    }
+
+    if (ranges.size() < 2) {
+      fallBackFrom(0);
+      return;
+    }
+
+    futures = new ArrayList<Future<RangeResult>>(ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      final DumpRange range = ranges.get(i);
+      final int dumpCounter = startCounter + i;
+      futures.add(executor.submit(new Callable<RangeResult>() {
+        public RangeResult call() throws Exception {
+          RangeResult result = parseRange(range, dumpCounter, modelOnly);
+          parsedBytes.addAndGet(range.end - range.start);
+          return result;
+        }
+      }));
+    }
+  }
+
+  /**
+   * wait for the next range to be parsed.
+   *
+   * @return the result of the next range, null if all ranges are handed out
+   *         or the next range has to be parsed sequentially.
+   */
+  private RangeResult nextResult() {
+    if (sequential || (futures == null) || (nextRange >= futures.size())) {
+      return null;
+    }
+
+    int index = nextRange++;
+    RangeResult result = null;
+    try {
+      result = futures.get(index).get();
+    } catch (ExecutionException ex) {
+      theLogger.warning("Parallel parsing failed, parsing sequentially: " + ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    if ((result == null) || !result.sameParser || (result.size() != 1)) {
+      theLogger.fine("Thread dump index doesn't match the dumps found, parsing sequentially from dump "
+          + (startCounter + index));
+      fallBackFrom(index);
+      return null;
+    }
+
+    threadStore.putAll(result.threadStore);
+    foundClassHistograms |= result.foundClassHistograms;
+    if (result.patternError != null) {
+      patternErrors.add(result.patternError);
+    }
+    return result;
+  }
+
+  /**
+   * drop the ranges from the given one on and let the primary parser parse the
+   * rest of the file sequentially.
+   */
+  private void fallBackFrom(int index) {
+    if (futures != null) {
+      for (int i = index; i < futures.size(); i++) {
+        futures.get(i).cancel(true);
+      }
+      nextRange = futures.size();
+    }
+
+    if (index > 0) {
+      // the primary parser hasn't read anything yet, continue it at the range
+      // like it had parsed the dumps in front of it.
+      DumpRange range = ranges.get(index);
+      primaryReader.seek(range.start, range.lineNumber);
+      primaryParser.setLineCounter(range.lineNumber + 1);
+      primaryParser.setDumpCounter(startCounter + index);
+    }
+    sequential = true;
+  }
+
+  public boolean hasMoreDumps() {
+    if (nextDump == null) {
+      nextDump = parseNext();
+    }
+    return (nextDump != null);
+  }
+
+  public MutableTreeNode parseNext() {
+    if (nextDump != null) {
+      MutableTreeNode tmpDump = nextDump;
+      nextDump = null;
+      return tmpDump;
+    }
+    if (!started) {
+      start(false);
+    }
+    RangeResult result = nextResult();
+    if (result != null) {
+      return result.dumps.get(0);
+    }
+    return sequential ? primaryParser.parseNext() : null;
+  }
+
+  public ThreadDumpInfo parseNextModel() {
+    if (!started) {
+      start(true);
+    }
+    RangeResult result = nextResult();
+    if (result != null) {
+      return result.models.get(0);
+    }
+    return sequential ? primaryParser.parseNextModel() : null;
+  }
+
+  /**
+   * @return the number of bytes of the file parsed so far, for showing the
+   *         progress.
+   */
+  public long getParsedBytes() {
+    if (sequential) {
+      // everything in front of the sequentially parsed part was handed out
+      return primaryReader.getPosition();
+    }
+    return parsedBytes.get();
+  }
+
+  /**
+   * @return the size of the parsed file.
+   */
+  public long length() {
+    return primaryReader.length();
+  }
+
+  public void close() throws IOException {
+    if (futures != null) {
+      for (int i = nextRange; i < futures.size(); i++) {
+        futures.get(i).cancel(true);
+      }
+    }
+    primaryParser.close();
+  }
+
+  public void findLongRunningThreads(DefaultMutableTreeNode root, Map dumpStore, TreePath[] paths, int minOccurence,
+      String regex) {
+    primaryParser.findLongRunningThreads(root, dumpStore, paths, minOccurence, regex);
+  }
+
+  public void mergeDumps(DefaultMutableTreeNode root, Map dumpStore, TreePath[] dumps, int minOccurence, String regex) {
+    primaryParser.mergeDumps(root, dumpStore, dumps, minOccurence, regex);
+  }
+
+  /**
+   * @return the timestamp regex errors of the parsed ranges and the
+   *         sequentially parsed part, one per line. null if there were none.
+   */
+  public String getPatternErrorMessage() {
+    LinkedHashSet<String> errors = new LinkedHashSet<String>(patternErrors);
+    DateMatcher dm = primaryParser.getDm();
+    if ((dm != null) && (dm.getPatternErrorMessage() != null)) {
+      errors.add(dm.getPatternErrorMessage());
+    }
+    if (errors.isEmpty()) {
+      return null;
+    }
+
+    StringBuilder message = new StringBuilder();
+    for (String error : errors) {
+      if (message.length() > 0) {
+        message.append('\n');
+      }
+      message.append(error);
+    }
+    return message.toString();
+  }
+
+  public boolean isFoundClassHistograms() {
+    return foundClassHistograms || (sequential && primaryParser.isFoundClassHistograms());
+  }
+
+  public void parseLoggcFile(InputStream loggcFileStream, DefaultMutableTreeNode root) {
+    primaryParser.parseLoggcFile(loggcFileStream, root);
+  }
+
+  public void setDumpHistogramCounter(int value) {
+    primaryParser.setDumpHistogramCounter(value);
+  }
+}
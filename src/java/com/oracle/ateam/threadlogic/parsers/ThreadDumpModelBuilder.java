@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.parsers;
+
+import java.util.ArrayList;
+
+import com.oracle.ateam.threadlogic.StackFrame;
+import com.oracle.ateam.threadlogic.ThreadDumpInfo;
+import com.oracle.ateam.threadlogic.ThreadInfo;
+import com.oracle.ateam.threadlogic.categories.ExternalizedNestedThreadGroupsCategory;
+import com.oracle.ateam.threadlogic.utils.HistogramTableModel;
+
+/**
+ * Builds the analysis model of a thread dump (threads, locks, deadlocks,
+ * thread groups and advisories) from the parser events. Every thread is
+ * created exactly once and no tree nodes are allocated, so this can be used
+ * where no gui will ever show the dump.
+ */
+public class ThreadDumpModelBuilder implements DumpParserListener {
+
+  protected final AbstractDumpParser parser;
+  protected ThreadDumpInfo tdi;
+  // the threads in dump order, each thread is only created once.
+  protected ArrayList<ThreadInfo> threads;
+  private HistogramTableModel classHistogram;
+
+  public ThreadDumpModelBuilder(AbstractDumpParser parser) {
+    this.parser = parser;
+  }
+
+  /**
+   * @return the dump built by the last parse, null if none was started.
+   */
+  public ThreadDumpInfo getThreadDump() {
+    return tdi;
+  }
+
+  /**
+   * @return the class histogram of the dump, null if none was found.
+   */
+  public HistogramTableModel getClassHistogram() {
+    return classHistogram;
+  }
+
+  public void dumpStarted(ThreadDumpInfo tdi) {
+    this.tdi = tdi;
+    this.threads = new ArrayList<ThreadInfo>();
+    this.classHistogram = null;
+  }
+
+  public void threadStarted(String title) {
+  }
+
+  public void frame(String frame) {
+  }
+
+  public void lockLine(int lockType, String line) {
+  }
+
+  public void threadFinished(String title, StackFrame[] frames, int lineCount) {
+    addThread(title, frames, lineCount);
+  }
+
+  /**
+   * create the thread info for a finished thread and add it to the dump.
+   *
+   * @return the new thread, null if the title couldn't be parsed.
+   */
+  protected ThreadInfo addThread(String title, StackFrame[] frames, int lineCount) {
+    String[] tokens = parser.getThreadTokens(title);
+    if ((tokens == null) || (tokens.length == 0)) {
+      return null;
+    }
+
+    ThreadInfo ti = new ThreadInfo(title, null, frames, parser.getStackRenderer(), lineCount, tokens);
+    ti.setParentThreadDump(tdi);
+    threads.add(ti);
+    return ti;
+  }
+
+  public void classHistogram(HistogramTableModel histogram) {
+    this.classHistogram = histogram;
+  }
+
+  public void dumpFinished(ThreadDumpInfo tdi) {
+    ArrayList<ThreadInfo> sortedThreads = ThreadInfo.sortByHealth(new ArrayList<ThreadInfo>(threads));
+    setThreads(sortedThreads);
+
+    // Create relationship between LockInfo and Threads
+    tdi.parseLocks(parser);
+
+    // Detect Deadlocks
+    tdi.detectDeadlock();
+
+    // Run Thread Dump Advisory
+    tdi.runThreadsAdvisory();
+
+    addThreadGroups(sortedThreads);
+  }
+
+  /**
+   * set the threads (sorted by health) to the dump.
+   */
+  protected void setThreads(ArrayList<ThreadInfo> sortedThreads) {
+    tdi.setThreads(sortedThreads);
+  }
+
+  /**
+   * categorize the threads into thread groups and run the group advisories.
+   */
+  protected void addThreadGroups(ArrayList<ThreadInfo> sortedThreads) {
+    if (sortedThreads.size() == 0) {
+      return;
+    }
+
+    ExternalizedNestedThreadGroupsCategory threadGroupsCat = new ExternalizedNestedThreadGroupsCategory();
+    threadGroupsCat.setThreads(sortedThreads);
+    tdi.setThreadGroups(threadGroupsCat.getThreadGroups());
+    tdi.runAdvisory();
+  }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.parsers;
+
+import java.util.ArrayList;
+import java.util.logging.Logger;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import com.oracle.ateam.threadlogic.HistogramInfo;
+import com.oracle.ateam.threadlogic.StackFrame;
+import com.oracle.ateam.threadlogic.ThreadDumpInfo;
+import com.oracle.ateam.threadlogic.ThreadInfo;
+import com.oracle.ateam.threadlogic.categories.Category;
+import com.oracle.ateam.threadlogic.categories.ThreadListCategory;
+import com.oracle.ateam.threadlogic.categories.TreeCategory;
+import com.oracle.ateam.threadlogic.monitors.MonitorMap;
+import com.oracle.ateam.threadlogic.utils.CustomLogger;
+import com.oracle.ateam.threadlogic.utils.HistogramTableModel;
+import com.oracle.ateam.threadlogic.utils.IconFactory;
+
+/**
+ * Builds the tree of a thread dump as displayed in the gui (threads, waiting,
+ * sleeping and locking threads, monitors, custom categories and thread
+ * groups) on top of the analysis model.
+ */
+public class ThreadDumpTreeBuilder extends ThreadDumpModelBuilder {
+
+  private static Logger theLogger = CustomLogger.getLogger(ThreadDumpTreeBuilder.class.getSimpleName());
+
+  private DefaultMutableTreeNode threadDump;
+  private DefaultMutableTreeNode catMonitors;
+  private DefaultMutableTreeNode catMonitorsLocks;
+  private DefaultMutableTreeNode catThreads;
+  private DefaultMutableTreeNode catLocking;
+  private DefaultMutableTreeNode catBlockingMonitors;
+  private DefaultMutableTreeNode catSleeping;
+  private DefaultMutableTreeNode catWaiting;
+
+  private boolean inLocking;
+  private boolean inSleeping;
+  private boolean inWaiting;
+  private int threadCount;
+  private int waiting;
+  private int locking;
+  private int sleeping;
+  private int monitorCount;
+  private int monitorsWithoutLocksCount;
+  private int contendedMonitors;
+  private int blockedThreads;
+
+  public ThreadDumpTreeBuilder(AbstractDumpParser parser) {
+    super(parser);
+  }
+
+  /**
+   * @return the tree node of the dump built by the last parse.
+   */
+  public DefaultMutableTreeNode getDumpNode() {
+    return threadDump;
+  }
+
+  public void dumpStarted(ThreadDumpInfo tdi) {
+    super.dumpStarted(tdi);
+
+    threadDump = new DefaultMutableTreeNode(tdi);
+
+    // the thread categories are views on the threads of the model
+    catThreads = new DefaultMutableTreeNode(new ThreadListCategory("Threads", IconFactory.THREADS, threads));
+    threadDump.add(catThreads);
+
+    catWaiting = new DefaultMutableTreeNode(new ThreadListCategory("Threads waiting for Monitors",
+            IconFactory.THREADS_WAITING, threads));
+
+    catSleeping = new DefaultMutableTreeNode(new ThreadListCategory("Threads sleeping on Monitors",
+            IconFactory.THREADS_SLEEPING, threads));
+
+    catLocking = new DefaultMutableTreeNode(new ThreadListCategory("Threads locking Monitors",
+            IconFactory.THREADS_LOCKING, threads));
+
+    // create category for monitors with disabled filtering.
+    // NOTE: These strings are "magic" in that the methods
+    // ThreadLogic#displayCategory and TreeCategory#getCatComponent both
+    // checks these literal strings and the behavior differs.
+    catMonitors = new DefaultMutableTreeNode(new TreeCategory("Monitors", IconFactory.MONITORS, false));
+    catMonitorsLocks = new DefaultMutableTreeNode(new TreeCategory("Monitors without locking thread",
+            IconFactory.MONITORS_NOLOCKS, false));
+    catBlockingMonitors = new DefaultMutableTreeNode(new TreeCategory("Threads blocked by Monitors",
+            IconFactory.THREADS_LOCKING, false));
+
+    inLocking = inSleeping = inWaiting = false;
+    threadCount = waiting = locking = sleeping = 0;
+    monitorCount = monitorsWithoutLocksCount = contendedMonitors = blockedThreads = 0;
+  }
+
+  public void lockLine(int lockType, String line) {
+    switch (lockType) {
+    case WAITING_ON:
+    case PARKING_TO_WAIT:
+      inSleeping = true;
+      break;
+    case WAITING_TO_LOCK:
+      inWaiting = true;
+      break;
+    case LOCKED:
+      inLocking = true;
+      break;
+    }
+  }
+
+  public void threadFinished(String title, StackFrame[] frames, int lineCount) {
+    // threads without parseable title are counted, but not shown.
+    int index = (addThread(title, frames, lineCount) != null) ? threads.size() - 1 : -1;
+    addToView(catThreads, index);
+    threadCount++;
+
+    if (inWaiting) {
+      addToView(catWaiting, index);
+      inWaiting = false;
+      waiting++;
+    }
+    if (inSleeping) {
+      addToView(catSleeping, index);
+      inSleeping = false;
+      sleeping++;
+    }
+    if (inLocking) {
+      addToView(catLocking, index);
+      inLocking = false;
+      locking++;
+    }
+  }
+
+  private void addToView(DefaultMutableTreeNode category, int index) {
+    if (index >= 0) {
+      ((ThreadListCategory) category.getUserObject()).addThread(index);
+    }
+  }
+
+  public void classHistogram(HistogramTableModel histogram) {
+    super.classHistogram(histogram);
+    threadDump.add(new DefaultMutableTreeNode(new HistogramInfo("Class Histogram of Dump", histogram)));
+  }
+
+  public void dumpFinished(ThreadDumpInfo tdi) {
+    MonitorMap mmap = parser.mmap;
+    monitorCount = mmap.size();
+
+    // We need to reset the stack trace for those threads that are holders of locks
+    // previously we set the stack trace to be empty as the ownership info was present in a different thread
+    // that is blocked and not directly in the owner thread
+    for (int thread = 0; thread < mmap.getThreadsSize(); thread++) {
+      if (mmap.hasRelation(thread, MonitorMap.LOCK_THREAD_POS) && !mmap.hasThreadContent(thread)) {
+        String threadOwner = mmap.getThreadTitle(thread);
+        theLogger.finest("ThreadOwner :" + threadOwner + ", owner stack is null");
+
+        // Search for the owner of the lock
+        ThreadInfo ownerThread = tdi.getThreadByName(threadOwner);
+        if (ownerThread != null) {
+          mmap.setThreadContent(thread, ownerThread.getContent());
+        }
+      }
+    }
+
+    // dump monitors
+    if (mmap.size() > 0) {
+      int[] result = parser.dumpMonitors(catMonitors, catMonitorsLocks, mmap);
+      monitorsWithoutLocksCount = result[0];
+      tdi.setOverallThreadsWaitingWithoutLocksCount(result[1]);
+
+      result = parser.dumpBlockingMonitors(catBlockingMonitors, mmap);
+      contendedMonitors = result[0];
+      blockedThreads = result[1];
+    }
+
+    // display nodes with stuff to display
+    if (waiting > 0) {
+      tdi.setWaitingThreads((Category) catWaiting.getUserObject());
+      threadDump.add(catWaiting);
+    }
+
+    if (sleeping > 0) {
+      tdi.setSleepingThreads((Category) catSleeping.getUserObject());
+      threadDump.add(catSleeping);
+    }
+
+    if (locking > 0) {
+      tdi.setLockingThreads((Category) catLocking.getUserObject());
+      threadDump.add(catLocking);
+    }
+
+    if (monitorCount > 0) {
+      tdi.setMonitors((Category) catMonitors.getUserObject());
+      threadDump.add(catMonitors);
+    }
+
+    if (contendedMonitors > 0) {
+      tdi.setBlockingMonitors((Category) catBlockingMonitors.getUserObject());
+      threadDump.add(catBlockingMonitors);
+    }
+
+    if (monitorsWithoutLocksCount > 0) {
+      tdi.setMonitorsWithoutLocks((Category) catMonitorsLocks.getUserObject());
+      threadDump.add(catMonitorsLocks);
+    }
+
+    super.dumpFinished(tdi);
+  }
+
+  /**
+   * the dump gets a sorted view of the threads, the tree keeps the threads in
+   * dump order.
+   */
+  protected void setThreads(ArrayList<ThreadInfo> sortedThreads) {
+    Category unsortedThreadCategory = (Category) catThreads.getUserObject();
+    Category sortedThreadsCat = ThreadListCategory.allOf(unsortedThreadCategory.getName(),
+            unsortedThreadCategory.getIconID(), sortedThreads);
+    sortedThreadsCat.setInfo(unsortedThreadCategory.getInfo());
+    tdi.setThreads(sortedThreadsCat);
+  }
+
+  protected void addThreadGroups(ArrayList<ThreadInfo> sortedThreads) {
+    ((Category) catThreads.getUserObject()).setName(((Category) catThreads.getUserObject()) + " (" + threadCount
+            + " Threads overall)");
+    ((Category) catWaiting.getUserObject()).setName(((Category) catWaiting.getUserObject()) + " (" + waiting
+            + " Threads waiting)");
+    ((Category) catSleeping.getUserObject()).setName(((Category) catSleeping.getUserObject()) + " (" + sleeping
+            + " Threads sleeping)");
+    ((Category) catLocking.getUserObject()).setName(((Category) catLocking.getUserObject()) + " (" + locking
+            + " Threads locking)");
+    ((Category) catMonitors.getUserObject()).setName(((Category) catMonitors.getUserObject()) + " (" + monitorCount
+            + " Monitors)");
+    ((Category) catBlockingMonitors.getUserObject()).setName(((Category) catBlockingMonitors.getUserObject())
+            + " (" + blockedThreads + " Threads blocked by " + contendedMonitors + " Monitors)");
+    ((Category) catMonitorsLocks.getUserObject()).setName(((Category) catMonitorsLocks.getUserObject()) + " ("
+            + monitorsWithoutLocksCount + " Monitors)");
+
+    // check custom categories
+    parser.addCustomCategories(threadDump);
+    parser.addCategories(threadDump);
+  }
+}
@@ -40,6 +40,8 @@ import com.oracle.ateam.threadlogic.utils.DateMatcher;
 
 public class WrappedSunJDKParser extends HotspotParser {
 
+  private static final int WRAPPER_PREFIX_LENGTH = 42;
+
   /**
    * Creates a new instance of WrappedSunJDKParser: A SunJDKParser reading a lot
    * file created by the Tanuki Service Wrapper.
@@ -61,8 +63,23 @@ public class WrappedSunJDKParser extends HotspotParser {
     return logLine.startsWith("INFO   | jvm ") && logLine.trim().indexOf(" | Full thread dump") >= 0;
   }
 
+  /**
+   * strip the wrapper prefix off the passed line.
+   * 
+   * @param logLine
+   *          the line of the logfile
+   * @return the logged line, the passed line if it isn't written by the
+   *         wrapper.
+   */
+  public static String unwrap(String logLine) {
+    if ((logLine != null) && logLine.startsWith("INFO   | jvm ") && (logLine.length() >= WRAPPER_PREFIX_LENGTH)) {
+      return logLine.substring(WRAPPER_PREFIX_LENGTH);
+    }
+    return logLine;
+  }
+
   protected String getNextLine() throws IOException {
-    return getBis().readLine().substring(42);
+    return getBis().readLine().substring(WRAPPER_PREFIX_LENGTH);
   }
 
 }
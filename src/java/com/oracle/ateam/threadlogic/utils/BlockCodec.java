@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.utils;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * simple and fast LZ77 block codec (in the spirit of LZ4) used to keep the
+ * content of dumps not being looked at compressed in memory. Thread stacks are
+ * highly repetitive, so even this greedy single pass compressor gets them down
+ * to a fraction while decompressing fast enough for display.
+ *
+ * The block starts with the uncompressed length (4 bytes), followed by
+ * sequences of a token (high nibble literal count, low nibble match length -
+ * 4, 15 meaning more length bytes follow), the literals, the two byte match
+ * offset and the additional match length bytes. The last sequence only
+ * carries literals.
+ */
+public final class BlockCodec {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final int MIN_MATCH = 4;
+  private static final int MAX_OFFSET = 0xFFFF;
+  private static final int HASH_LOG = 12;
+
+  private BlockCodec() {
+  }
+
+  public static byte[] compress(String text) {
+    return compress(text.getBytes(UTF8));
+  }
+
+  public static String decompressString(byte[] block) {
+    return new String(decompress(block), UTF8);
+  }
+
+  public static byte[] compress(byte[] src) {
+    int len = src.length;
+    byte[] dst = new byte[4 + len + len / 255 + 16];
+    writeInt(dst, 0, len);
+    int dp = 4;
+
+    // positions + 1 of the last occurrence of a hashed 4 byte sequence
+    int[] table = new int[1 << HASH_LOG];
+    int anchor = 0;
+    int sp = 0;
+    while (sp + MIN_MATCH <= len) {
+      int seq = readInt(src, sp);
+      int h = (seq * -1640531535) >>> (32 - HASH_LOG);
+      int ref = table[h] - 1;
+      table[h] = sp + 1;
+
+      if ((ref < 0) || (sp - ref > MAX_OFFSET) || (readInt(src, ref) != seq)) {
+        sp++;
+        continue;
+      }
+
+      int matchLen = MIN_MATCH;
+      while ((sp + matchLen < len) && (src[ref + matchLen] == src[sp + matchLen])) {
+        matchLen++;
+      }
+
+      int litLen = sp - anchor;
+      int ml = matchLen - MIN_MATCH;
+      dst[dp++] = (byte) (((litLen >= 15 ? 15 : litLen) << 4) | (ml >= 15 ? 15 : ml));
+      dp = writeLength(dst, dp, litLen);
+      System.arraycopy(src, anchor, dst, dp, litLen);
+      dp += litLen;
+      dst[dp++] = (byte) (sp - ref);
+      dst[dp++] = (byte) ((sp - ref) >>> 8);
+      dp = writeLength(dst, dp, ml);
+
+      sp += matchLen;
+      anchor = sp;
+    }
+
+    // last sequence, literals only
+    int litLen = len - anchor;
+    dst[dp++] = (byte) ((litLen >= 15 ? 15 : litLen) << 4);
+    dp = writeLength(dst, dp, litLen);
+    System.arraycopy(src, anchor, dst, dp, litLen);
+    dp += litLen;
+
+    return Arrays.copyOf(dst, dp);
+  }
+
+  public static byte[] decompress(byte[] src) {
+    int len = readInt(src, 0);
+    byte[] dst = new byte[len];
+    int sp = 4;
+    int dp = 0;
+
+    while (true) {
+      int token = src[sp++] & 0xFF;
+
+      int litLen = token >>> 4;
+      if (litLen == 15) {
+        int b;
+        do {
+          b = src[sp++] & 0xFF;
+          litLen += b;
+        } while (b == 255);
+      }
+      System.arraycopy(src, sp, dst, dp, litLen);
+      sp += litLen;
+      dp += litLen;
+      if (dp >= len) {
+        break;
+      }
+
+      int offset = (src[sp++] & 0xFF) | ((src[sp++] & 0xFF) << 8);
+      int matchLen = token & 0x0F;
+      if (matchLen == 15) {
+        int b;
+        do {
+          b = src[sp++] & 0xFF;
+          matchLen += b;
+        } while (b == 255);
+      }
+      matchLen += MIN_MATCH;
+
+      // byte wise as the match may overlap the bytes being written
+      int ref = dp - offset;
+      for (int i = 0; i < matchLen; i++) {
+        dst[dp + i] = dst[ref + i];
+      }
+      dp += matchLen;
+    }
+
+    return dst;
+  }
+
+  private static int writeLength(byte[] dst, int dp, int length) {
+    if (length >= 15) {
+      length -= 15;
+      while (length >= 255) {
+        dst[dp++] = (byte) 255;
+        length -= 255;
+      }
+      dst[dp++] = (byte) length;
+    }
+    return dp;
+  }
+
+  private static int readInt(byte[] buf, int pos) {
+    return (buf[pos] & 0xFF) | ((buf[pos + 1] & 0xFF) << 8) | ((buf[pos + 2] & 0xFF) << 16)
+            | ((buf[pos + 3] & 0xFF) << 24);
+  }
+
+  private static void writeInt(byte[] buf, int pos, int value) {
+    buf[pos] = (byte) value;
+    buf[pos + 1] = (byte) (value >>> 8);
+    buf[pos + 2] = (byte) (value >>> 16);
+    buf[pos + 3] = (byte) (value >>> 24);
+  }
+}
@@ -32,39 +32,89 @@
  */
 package com.oracle.ateam.threadlogic.utils;
 
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
-import javax.swing.JOptionPane;
 
 /**
+ * detects the timestamps in front of the thread dumps. The preferences are
+ * read once when the matcher is created, so a matcher is used for a single
+ * parse. As this runs for every line outside of the dumps, lines are only
+ * handed to the regex engine if they look like they might contain a date: the
+ * default patterns all contain a time of day ("h:mm"), the custom pattern is
+ * only checked against lines with a digit if it requires one.
+ *
+ * Errors in the custom pattern don't show up in the UI, they deactivate the
+ * custom pattern and are returned by {@link #getPatternErrorMessage()}.
  * 
  * @author irockel
  */
 public class DateMatcher {
+
+  private static Logger theLogger = CustomLogger.getLogger(DateMatcher.class.getSimpleName());
+
+  // "2012-04-05 10:11:12", "2012/04/05 at 10:11:12" (IBM)
+  private static final Pattern YMD_TIME = Pattern
+          .compile("(\\d{4})[-/.](\\d{1,2})[-/.](\\d{1,2})(?:\\s*at)?[\\sT]*(\\d{1,2}):(\\d\\d):(\\d\\d)(?:[.,]\\d+)?");
+  // "4/5/12 10:11 AM" (WLST)
+  private static final Pattern MDY_TIME = Pattern
+          .compile("(\\d{1,2})/(\\d{1,2})/(\\d{2,4})\\s*(\\d{1,2}):(\\d{1,2})(?::(\\d\\d))?\\s*([AP])M");
+  // "Thu Apr  5 10:11:12 2012" (JRockit), "Thu Apr 05 10:11:12 CEST 2012" (Date.toString())
+  private static final Pattern DAY_MONTH_TIME = Pattern
+          .compile("([A-Z][a-z]{2})\\s+(\\d{1,2})\\s+(\\d{1,2}):(\\d\\d):(\\d\\d)\\s+(?:([A-Z]{2,5})\\s+)?(\\d{4})");
+  // zone following the time, "+0200", "+02:00", "Z" or an id like "PST"
+  private static final Pattern ZONE = Pattern.compile("\\s*(?:([+-]\\d\\d):?(\\d\\d)|(Z)|([A-Z]{2,5}))\\b");
+  private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+  // abbreviations TimeZone doesn't know (mostly summer times, as printed by
+  // Date.toString()) or maps to another zone (BST is Bangladesh for it)
+  private static final Map<String, String> ZONE_OFFSETS = new HashMap<String, String>();
+
+  static {
+    String[][] offsets = { { "BST", "+01:00" }, { "WEST", "+01:00" }, { "CEST", "+02:00" }, { "MEST", "+02:00" },
+        { "EEST", "+03:00" }, { "MSK", "+03:00" }, { "NDT", "-02:30" }, { "ADT", "-03:00" }, { "EDT", "-04:00" },
+        { "CDT", "-05:00" }, { "MDT", "-06:00" }, { "PDT", "-07:00" }, { "AKDT", "-08:00" }, { "HDT", "-09:00" },
+        { "AWST", "+08:00" }, { "ACST", "+09:30" }, { "AEST", "+10:00" }, { "ACDT", "+10:30" }, { "AEDT", "+11:00" },
+        { "NZST", "+12:00" }, { "NZDT", "+13:00" } };
+    for (int i = 0; i < offsets.length; i++) {
+      ZONE_OFFSETS.put(offsets[i][0], "GMT" + offsets[i][1]);
+    }
+  }
+
   private Pattern regexPattern;
   private Pattern defaultPattern;
   private boolean patternError;
+  private String patternErrorMessage;
   private boolean defaultMatches;
   private Matcher matched = null;
 
+  // preferences at the time the matcher was created
+  private final boolean defaultParsing;
+  private boolean regexRequiresDigit;
+
   public DateMatcher() {
+    PrefManager prefs = PrefManager.get();
+    defaultParsing = prefs.getJDK16DefaultParsing();
+
+    // The second pattern is for timestamp generated by WLST
+    // Added space at end of the hotspot date pattern as the GC timestamp also can be picked as thread dump time stamp.
+    defaultPattern = Pattern.compile(".*(\\d\\d\\d\\d.\\d\\d.\\d\\d.*\\d\\d:\\d\\d:\\d\\d\\s+"
+                              + "|\\d{1,2}/\\d{1,2}/\\d\\d\\s*\\d{1,2}:\\d\\d\\s*[AP]M" 
+                              + "|\\d\\d\\d\\d-\\d\\d-\\d\\d\\s*\\d\\d:\\d\\d:\\d\\d).*");
+
     // set date parsing pattern.
-    if ((PrefManager.get().getDateParsingRegex() != null) && !PrefManager.get().getDateParsingRegex().trim().equals("")) {
+    String regex = prefs.getDateParsingRegex();
+    if ((regex != null) && !regex.trim().equals("")) {
       try {
-        regexPattern = Pattern.compile(PrefManager.get().getDateParsingRegex().trim());
-        //defaultPattern = Pattern.compile("(\\d\\d\\d\\d\\-\\d\\d\\-\\d\\d\\s\\d\\d:\\d\\d:\\d\\d).*");
-        
-        // The second pattern is for timestamp generated by WLST
-        // Added space at end of the hotspot date pattern as the GC timestamp also can be picked as thread dump time stamp.
-        defaultPattern = Pattern.compile(".*(\\d\\d\\d\\d.\\d\\d.\\d\\d.*\\d\\d:\\d\\d:\\d\\d\\s+"                                  
-                                  + "|\\d{1,2}/\\d{1,2}/\\d\\d\\s*\\d{1,2}:\\d\\d\\s*[AP]M" 
-                                  + "|\\d\\d\\d\\d-\\d\\d-\\d\\d\\s*\\d\\d:\\d\\d:\\d\\d).*");
-                          
-
+        regexPattern = Pattern.compile(regex.trim());
+        regexRequiresDigit = requiresDigit(regex.trim());
         setPatternError(false);
       } catch (PatternSyntaxException pe) {
-        showErrorPane(pe.getMessage());
+        reportPatternError(pe.getMessage());
       }
     }
   }
@@ -75,8 +125,13 @@ public class DateMatcher {
 
   public void setRegexPattern(Pattern regexPattern) {
     this.regexPattern = regexPattern;
+    this.regexRequiresDigit = (regexPattern != null) && requiresDigit(regexPattern.pattern());
   }
 
+  /**
+   * set the pattern of the vm specific timestamps, it has to contain a time
+   * of day ("h:mm").
+   */
   public void setDefaultPattern(Pattern regexPattern) {
     this.defaultPattern = regexPattern;
   }
@@ -89,28 +144,31 @@ public class DateMatcher {
     this.patternError = patternError;
   }
 
+  /**
+   * @return the error of the custom date pattern, null if there was none.
+   */
+  public String getPatternErrorMessage() {
+    return patternErrorMessage;
+  }
+
   public Matcher checkForDateMatch(String line) {
     try {
-      if (getRegexPattern() == null) {
-        setRegexPattern(Pattern.compile(PrefManager.get().getDateParsingRegex().trim()));
-      }
-
       Matcher m = null;
-      if (PrefManager.get().getJDK16DefaultParsing()) {
+      if (defaultParsing && hasTimeOfDay(line)) {
         m = defaultPattern.matcher(line);
       }
       if (m != null && m.matches()) {
         setDefaultMatches(true);
         matched = m;
-      } else {
-        m = getRegexPattern().matcher(line);
+      } else if ((regexPattern != null) && !patternError && (!regexRequiresDigit || hasDigit(line))) {
+        m = regexPattern.matcher(line);
         if (m.matches()) {
           setDefaultMatches(false);
           matched = m;          
         }
       }
     } catch (Exception ex) {
-      showErrorPane(ex.getMessage());
+      reportPatternError(ex.getMessage());
     }
 
     return (matched);
@@ -124,15 +182,158 @@ public class DateMatcher {
     matched = null;    
   }
 
-  private void showErrorPane(String message) {
-    JOptionPane.showMessageDialog(null, "Error during parsing line for timestamp regular expression!\n"
-        + "Please check regular expression in your preferences. Deactivating\n"
-        + "parsing for the rest of the file! Error Message is \"" + message + "\" \n", "Error during Parsing",
-        JOptionPane.ERROR_MESSAGE);
+  /**
+   * parse the timestamp formats of the supported vms. A zone following the
+   * time is taken into account, otherwise the local time zone is assumed.
+   * 
+   * @return milliseconds since the epoch, -1 if no known date format was
+   *         found.
+   */
+  public static long parseMillis(String text) {
+    if (text == null) {
+      return -1;
+    }
+
+    Matcher m = YMD_TIME.matcher(text);
+    if (m.find()) {
+      return toMillis(m.group(1), m.group(2), m.group(3), m.group(4), m.group(5), m.group(6),
+              parseTimeZone(text, m.end()));
+    }
+
+    m = MDY_TIME.matcher(text);
+    if (m.find()) {
+      int hour = Integer.parseInt(m.group(4)) % 12;
+      if ("P".equals(m.group(7))) {
+        hour += 12;
+      }
+      String year = m.group(3).length() == 2 ? "20" + m.group(3) : m.group(3);
+      return toMillis(year, m.group(1), m.group(2), String.valueOf(hour), m.group(5), m.group(6),
+              parseTimeZone(text, m.end()));
+    }
+
+    m = DAY_MONTH_TIME.matcher(text);
+    if (m.find()) {
+      int month = MONTHS.indexOf(m.group(1));
+      if (month >= 0 && month % 3 == 0) {
+        TimeZone zone = (m.group(6) != null) ? toTimeZone(m.group(6)) : null;
+        return toMillis(m.group(7), String.valueOf(month / 3 + 1), m.group(2), m.group(3), m.group(4), m.group(5),
+                zone);
+      }
+    }
+
+    return -1;
+  }
+
+  private static TimeZone parseTimeZone(String text, int offset) {
+    Matcher m = ZONE.matcher(text);
+    m.region(offset, text.length());
+    if (!m.lookingAt()) {
+      return null;
+    }
+    if (m.group(1) != null) {
+      return TimeZone.getTimeZone("GMT" + m.group(1) + ":" + m.group(2));
+    }
+    return toTimeZone(m.group(3) != null ? "UTC" : m.group(4));
+  }
+
+  /**
+   * @return the zone of the given id or abbreviation, null if it isn't known.
+   */
+  private static TimeZone toTimeZone(String id) {
+    String offset = ZONE_OFFSETS.get(id);
+    if (offset != null) {
+      return TimeZone.getTimeZone(offset);
+    }
+    TimeZone zone = TimeZone.getTimeZone(id);
+    // unknown ids fall back to GMT
+    return (zone.getID().equals("GMT") && !id.equals("GMT")) ? null : zone;
+  }
 
+  private static long toMillis(String year, String month, String day, String hour, String minute, String second,
+          TimeZone zone) {
+    Calendar cal = (zone != null) ? Calendar.getInstance(zone) : Calendar.getInstance();
+    cal.clear();
+    cal.set(Integer.parseInt(year), Integer.parseInt(month) - 1, Integer.parseInt(day), Integer.parseInt(hour),
+            Integer.parseInt(minute), second != null ? Integer.parseInt(second) : 0);
+    return cal.getTimeInMillis();
+  }
+
+  private void reportPatternError(String message) {
+    theLogger.warning("Error during parsing line for timestamp regular expression, deactivating it: " + message);
+    patternErrorMessage = message;
     setPatternError(true);
   }
 
+  /**
+   * @return true if the line contains a digit followed by ':' and another
+   *         digit.
+   */
+  private static boolean hasTimeOfDay(String line) {
+    int colon = line.indexOf(':', 1);
+    while (colon > 0 && colon < line.length() - 1) {
+      if (isDigit(line.charAt(colon - 1)) && isDigit(line.charAt(colon + 1))) {
+        return true;
+      }
+      colon = line.indexOf(':', colon + 1);
+    }
+    return false;
+  }
+
+  private static boolean hasDigit(String line) {
+    for (int i = 0; i < line.length(); i++) {
+      if (isDigit(line.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * a pattern requires a digit if it has a \d which isn't optional and
+   * no alternatives or optional groups. A \d within a character class like
+   * [\dA-F] doesn't tell, these patterns (and quoted ones) are never taken
+   * as requiring a digit.
+   */
+  private static boolean requiresDigit(String regex) {
+    if (regex.indexOf('|') >= 0 || regex.indexOf(")?") >= 0 || regex.indexOf(")*") >= 0
+            || regex.indexOf("){0") >= 0 || regex.indexOf("\\Q") >= 0) {
+      return false;
+    }
+    boolean required = false;
+    int classDepth = 0;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+        if ((i < regex.length()) && (regex.charAt(i) == 'd')) {
+          if (classDepth > 0) {
+            return false;
+          }
+          int next = i + 1;
+          if (next >= regex.length() || "?*{".indexOf(regex.charAt(next)) < 0) {
+            required = true;
+          }
+        }
+      } else if (c == '[') {
+        classDepth++;
+        // a ']' right at the start of a class is a literal
+        if ((i + 1 < regex.length()) && (regex.charAt(i + 1) == '^')) {
+          i++;
+        }
+        if ((i + 1 < regex.length()) && (regex.charAt(i + 1) == ']')) {
+          i++;
+        }
+      } else if ((c == ']') && (classDepth > 0)) {
+        classDepth--;
+      }
+    }
+    return required;
+  }
+
   /**
    * 
    * @return true, if the default matcher matched (checks for 1.6 default date
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.utils;
+
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import com.oracle.ateam.threadlogic.ThreadDumpInfo;
+import com.oracle.ateam.threadlogic.ThreadInfo;
+import com.oracle.ateam.threadlogic.categories.Category;
+
+/**
+ * keeps the thread contents of the recently viewed dumps uncompressed, the
+ * contents of all other dumps are held compressed in memory and only
+ * decompressed on display. Dumps are identified by their tree node, all
+ * threads reachable from the node (threads, categories, monitors) are
+ * handled.
+ */
+public class DumpContentCache {
+
+  private final int maxExpandedDumps;
+
+  // dump nodes with uncompressed content, least recently viewed first
+  private final LinkedHashMap<DefaultMutableTreeNode, ThreadDumpInfo> expandedDumps;
+
+  public DumpContentCache(int maxExpandedDumps) {
+    this.maxExpandedDumps = maxExpandedDumps;
+    this.expandedDumps = new LinkedHashMap<DefaultMutableTreeNode, ThreadDumpInfo>(16, 0.75f, true);
+  }
+
+  /**
+   * a dump was loaded, it stays compressed until it gets selected.
+   */
+  public synchronized void dumpAdded(DefaultMutableTreeNode dumpNode) {
+    if (!expandedDumps.containsKey(dumpNode)) {
+      setCompressed(dumpNode, true);
+    }
+  }
+
+  /**
+   * a node of the passed dump was selected, make sure its content is
+   * uncompressed and compress the least recently viewed dump if too many are.
+   */
+  public synchronized void dumpSelected(DefaultMutableTreeNode dumpNode) {
+    if (expandedDumps.get(dumpNode) != null) {
+      return;
+    }
+
+    setCompressed(dumpNode, false);
+    expandedDumps.put(dumpNode, (ThreadDumpInfo) dumpNode.getUserObject());
+
+    Iterator<DefaultMutableTreeNode> iter = expandedDumps.keySet().iterator();
+    while (expandedDumps.size() > maxExpandedDumps) {
+      DefaultMutableTreeNode eldest = iter.next();
+      iter.remove();
+      setCompressed(eldest, true);
+    }
+  }
+
+  /**
+   * the dump was closed, forget about it.
+   */
+  public synchronized void dumpRemoved(DefaultMutableTreeNode dumpNode) {
+    expandedDumps.remove(dumpNode);
+  }
+
+  private static void setCompressed(DefaultMutableTreeNode dumpNode, boolean compress) {
+    ThreadDumpInfo tdi = (ThreadDumpInfo) dumpNode.getUserObject();
+    Map<String, ThreadInfo> threads = tdi.getThreadMap();
+    if (threads != null) {
+      for (ThreadInfo ti : threads.values()) {
+        setCompressed(ti, compress);
+      }
+    }
+    setCompressedNodes(dumpNode, compress);
+  }
+
+  private static void setCompressedNodes(DefaultMutableTreeNode node, boolean compress) {
+    Enumeration nodes = node.depthFirstEnumeration();
+    while (nodes.hasMoreElements()) {
+      Object userObject = ((DefaultMutableTreeNode) nodes.nextElement()).getUserObject();
+      if (userObject instanceof ThreadInfo) {
+        setCompressed((ThreadInfo) userObject, compress);
+      } else if (userObject instanceof Category) {
+        // the category nodes are not part of the tree
+        Category cat = (Category) userObject;
+        for (int i = 0; i < cat.getNodeCount(); i++) {
+          DefaultMutableTreeNode catNode = cat.getNodeAt(i);
+          if (catNode != null) {
+            setCompressedNodes(catNode, compress);
+          }
+        }
+      }
+    }
+  }
+
+  private static void setCompressed(ThreadInfo ti, boolean compress) {
+    if (compress) {
+      ti.compressContent();
+    } else {
+      ti.expandContent();
+    }
+  }
+}
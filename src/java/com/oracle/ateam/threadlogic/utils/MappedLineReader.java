@@ -0,0 +1,479 @@
+/**
+ * Copyright (c) 2012 egross, sabha.
+ *
+ * ThreadLogic - parses thread dumps and provides analysis/guidance
+ * It is based on the popular TDA tool.  Thank you!
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ */
+package com.oracle.ateam.threadlogic.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Line source for dump files backed by a memory mapped file channel. The
+ * parsers read ahead a lot (mark/reset around stat data, class histograms,
+ * lock chains, context data...). With a plain LineNumberReader every reset
+ * re-buffers and re-decodes the same bytes, here a mark is just a saved file
+ * offset and the read ahead limit is ignored.
+ *
+ * The file is mapped in windows so that multi GB logs can be read as well.
+ * Pure ASCII lines (the usual case for thread dumps) are converted without
+ * going through the charset decoder.
+ *
+ * Only the line oriented methods used by the parsers are optimized, the char
+ * based read methods go through a decoded line buffer.
+ */
+public class MappedLineReader extends LineNumberReader {
+
+  private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+  private static final int SKIP_CHUNK_SIZE = 64 * 1024;
+
+  private final File dumpFile;
+  private RandomAccessFile file;
+  private FileChannel channel;
+  private final long length;
+  private final Charset charset;
+  private final boolean asciiCompatible;
+
+  private MappedByteBuffer window;
+  private long windowStart;
+  private long windowEnd;
+
+  private long position;
+  private int lineNumber;
+  private long markPosition = -1;
+  private int markLineNumber;
+
+  private byte[] lineBytes = new byte[512];
+  private char[] lineChars = new char[512];
+  private byte[] skipBytes;
+
+  // decoded line (including terminator) only used by the char based read methods
+  private String pending;
+  private int pendingIndex;
+  private String markPending;
+  private int markPendingIndex;
+
+  public MappedLineReader(File dumpFile) throws IOException {
+    this(dumpFile, Charset.defaultCharset());
+  }
+
+  public MappedLineReader(File dumpFile, Charset charset) throws IOException {
+    this(dumpFile, charset, 0, -1, 0);
+  }
+
+  /**
+   * create a reader for the byte range [start, end) of the given file.
+   *
+   * @param start
+   *          start offset, should be the beginning of a line.
+   * @param end
+   *          end offset (exclusive), -1 for the end of the file.
+   * @param lineNumber
+   *          the line number of the line starting at the start offset.
+   */
+  public MappedLineReader(File dumpFile, Charset charset, long start, long end, int lineNumber) throws IOException {
+    super(new StringReader(""), 1);
+    // don't share the lock with the (unused) wrapped reader
+    this.lock = this;
+    this.dumpFile = dumpFile;
+    this.file = new RandomAccessFile(dumpFile, "r");
+    this.channel = file.getChannel();
+    this.length = (end < 0) ? channel.size() : Math.min(end, channel.size());
+    this.charset = charset;
+    this.asciiCompatible = isAsciiCompatible(charset);
+    this.position = start;
+    this.lineNumber = lineNumber;
+  }
+
+  /**
+   * create an independent reader for a byte range of the same file, e.g. to
+   * parse a single dump of the file on another thread.
+   *
+   * @param start
+   *          start offset, should be the beginning of a line.
+   * @param end
+   *          end offset (exclusive).
+   * @param lineNumber
+   *          the line number of the line starting at the start offset.
+   */
+  public MappedLineReader slice(long start, long end, int lineNumber) throws IOException {
+    return new MappedLineReader(dumpFile, charset, start, end, lineNumber);
+  }
+
+  /**
+   * the line scanning works on bytes, so only charsets encoding line breaks as
+   * single bytes can be mapped.
+   */
+  public static boolean isAsciiCompatible(Charset charset) {
+    byte[] ascii = new byte[128];
+    for (int i = 0; i < ascii.length; i++) {
+      ascii[i] = (byte) i;
+    }
+    String decoded = new String(ascii, charset);
+    if (decoded.length() != ascii.length)
+      return false;
+
+    for (int i = 0; i < ascii.length; i++) {
+      if (decoded.charAt(i) != i)
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return the current absolute byte offset within the file.
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * @return the end offset of the readable range, the size of the underlying
+   *         file if this reader is not a slice.
+   */
+  public long length() {
+    return length;
+  }
+
+  private void mapWindow(long start) throws IOException {
+    if (channel == null) {
+      throw new IOException("Stream closed");
+    }
+    long size = Math.min(WINDOW_SIZE, length - start);
+    window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    windowStart = start;
+    windowEnd = start + size;
+  }
+
+  private byte byteAt(long pos) throws IOException {
+    if (window == null || pos < windowStart || pos >= windowEnd) {
+      mapWindow(pos);
+    }
+    return window.get((int) (pos - windowStart));
+  }
+
+  private String decodeLine(long start, int len) throws IOException {
+    if (len > lineBytes.length) {
+      lineBytes = new byte[Math.max(len, lineBytes.length * 2)];
+    }
+
+    if (len <= WINDOW_SIZE && (start < windowStart || start + len > windowEnd)) {
+      mapWindow(start);
+    }
+    if (start + len <= windowEnd && start >= windowStart) {
+      window.position((int) (start - windowStart));
+      window.get(lineBytes, 0, len);
+    } else {
+      // line exceeds the window size, copy it byte by byte
+      for (int i = 0; i < len; i++) {
+        lineBytes[i] = byteAt(start + i);
+      }
+    }
+
+    if (asciiCompatible) {
+      if (len > lineChars.length) {
+        lineChars = new char[Math.max(len, lineChars.length * 2)];
+      }
+      int i = 0;
+      for (; i < len; i++) {
+        byte b = lineBytes[i];
+        if (b < 0)
+          break;
+        lineChars[i] = (char) b;
+      }
+      if (i == len) {
+        return new String(lineChars, 0, len);
+      }
+    }
+    return new String(lineBytes, 0, len, charset);
+  }
+
+  /**
+   * read the next line from the mapped file.
+   *
+   * @param withTerminator
+   *          whether the line terminator should be part of the result.
+   */
+  private String nextLine(boolean withTerminator) throws IOException {
+    if (position >= length) {
+      return null;
+    }
+
+    long start = position;
+    long pos = start;
+    int terminator = 0;
+    while (pos < length) {
+      byte b = byteAt(pos);
+      if (b == '\n') {
+        terminator = 1;
+        break;
+      } else if (b == '\r') {
+        terminator = (pos + 1 < length && byteAt(pos + 1) == '\n') ? 2 : 1;
+        break;
+      }
+      pos++;
+    }
+
+    int len = (int) (pos - start) + (withTerminator ? terminator : 0);
+    String line = decodeLine(start, len);
+    position = pos + terminator;
+    lineNumber++;
+    return line;
+  }
+
+  public String readLine() throws IOException {
+    synchronized (lock) {
+      if (pending != null && pendingIndex < pending.length()) {
+        String line = pending.substring(pendingIndex);
+        pending = null;
+        int end = line.length();
+        while (end > 0 && (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) {
+          end--;
+        }
+        return line.substring(0, end);
+      }
+      pending = null;
+      return nextLine(false);
+    }
+  }
+
+  public int read() throws IOException {
+    synchronized (lock) {
+      if (!fillPending()) {
+        return -1;
+      }
+      return pending.charAt(pendingIndex++);
+    }
+  }
+
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    synchronized (lock) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!fillPending()) {
+        return -1;
+      }
+      int count = Math.min(len, pending.length() - pendingIndex);
+      pending.getChars(pendingIndex, pendingIndex + count, cbuf, off);
+      pendingIndex += count;
+      return count;
+    }
+  }
+
+  private boolean fillPending() throws IOException {
+    if (pending != null && pendingIndex < pending.length()) {
+      return true;
+    }
+    pending = nextLine(true);
+    pendingIndex = 0;
+    return pending != null && pending.length() > 0;
+  }
+
+  public boolean ready() throws IOException {
+    synchronized (lock) {
+      if (channel == null) {
+        throw new IOException("Stream closed");
+      }
+      return (pending != null && pendingIndex < pending.length()) || position < length;
+    }
+  }
+
+  public boolean markSupported() {
+    return true;
+  }
+
+  /**
+   * mark the current position, the read ahead limit is ignored as going back
+   * just means restoring the saved offset.
+   */
+  public void mark(int readAheadLimit) throws IOException {
+    synchronized (lock) {
+      markPosition = position;
+      markLineNumber = lineNumber;
+      markPending = pending;
+      markPendingIndex = pendingIndex;
+    }
+  }
+
+  public void reset() throws IOException {
+    synchronized (lock) {
+      if (markPosition < 0) {
+        throw new IOException("Stream not marked");
+      }
+      position = markPosition;
+      lineNumber = markLineNumber;
+      pending = markPending;
+      pendingIndex = markPendingIndex;
+    }
+  }
+
+  /**
+   * continue reading at the given offset, e.g. to parse the rest of the file
+   * from a dump on.
+   *
+   * @param position
+   *          the offset to read from, should be the beginning of a line.
+   * @param lineNumber
+   *          the line number of the line starting at the offset.
+   */
+  public void seek(long position, int lineNumber) {
+    synchronized (lock) {
+      this.position = position;
+      this.lineNumber = lineNumber;
+      pending = null;
+    }
+  }
+
+  public long skip(long n) throws IOException {
+    if (n < 0L) {
+      throw new IllegalArgumentException("skip value is negative");
+    }
+    synchronized (lock) {
+      long skipped = 0;
+      while (skipped < n && fillPending()) {
+        int count = (int) Math.min(n - skipped, pending.length() - pendingIndex);
+        pendingIndex += count;
+        skipped += count;
+      }
+      return skipped;
+    }
+  }
+
+  /**
+   * skip the rest of the readable range, the lines are only counted and not
+   * decoded.
+   *
+   * @return the line number at the end of the range.
+   */
+  public int skipToEnd() throws IOException {
+    synchronized (lock) {
+      pending = null;
+      while (position < length) {
+        byte b = byteAt(position++);
+        if (b == '\n') {
+          lineNumber++;
+        } else if (b == '\r') {
+          if (position < length && byteAt(position) == '\n') {
+            position++;
+          }
+          lineNumber++;
+        }
+      }
+      return lineNumber;
+    }
+  }
+
+  /**
+   * skip forward to the next line containing the given (ASCII) marker, the
+   * skipped lines are only counted and not decoded. The marker line is
+   * returned by the next readLine().
+   *
+   * @return the number of lines skipped.
+   */
+  public int skipToLineContaining(String marker) throws IOException {
+    synchronized (lock) {
+      if (pending != null && pendingIndex < pending.length()) {
+        return 0;
+      }
+      pending = null;
+      if (skipBytes == null) {
+        skipBytes = new byte[SKIP_CHUNK_SIZE];
+      }
+      byte first = (byte) marker.charAt(0);
+      int skipped = 0;
+      long lineStart = position;
+      long chunkStart = position;
+      while (chunkStart < length) {
+        int count = readChunk(chunkStart);
+        for (int i = 0; i < count; i++) {
+          byte b = skipBytes[i];
+          if (b == '\n') {
+            lineStart = chunkStart + i + 1;
+            skipped++;
+          } else if (b == '\r') {
+            long next = chunkStart + i + 1;
+            if (next < length && byteAt(next) == '\n') {
+              next++;
+              i++;
+            }
+            lineStart = next;
+            skipped++;
+          } else if (b == first && matches(chunkStart + i, marker)) {
+            position = lineStart;
+            lineNumber += skipped;
+            return skipped;
+          }
+        }
+        // a "\r\n" split across chunks was consumed up to lineStart already
+        chunkStart = Math.max(chunkStart + count, lineStart);
+      }
+      if (lineStart < length) {
+        // last line without terminator
+        skipped++;
+      }
+      position = length;
+      lineNumber += skipped;
+      return skipped;
+    }
+  }
+
+  /**
+   * copy the bytes starting at the given offset into the skip buffer.
+   *
+   * @return the number of bytes copied.
+   */
+  private int readChunk(long start) throws IOException {
+    if (window == null || start < windowStart || start >= windowEnd) {
+      mapWindow(start);
+    }
+    int count = (int) Math.min(skipBytes.length, windowEnd - start);
+    window.position((int) (start - windowStart));
+    window.get(skipBytes, 0, count);
+    return count;
+  }
+
+  private boolean matches(long start, String marker) throws IOException {
+    if (start + marker.length() > length) {
+      return false;
+    }
+    for (int i = 1; i < marker.length(); i++) {
+      if (byteAt(start + i) != marker.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public int getLineNumber() {
+    return lineNumber;
+  }
+
+  public void setLineNumber(int lineNumber) {
+    this.lineNumber = lineNumber;
+  }
+
+  public void close() throws IOException {
+    synchronized (lock) {
+      if (channel == null) {
+        return;
+      }
+      window = null;
+      channel = null;
+      file.close();
+      file = null;
+    }
+  }
+}
@@ -292,6 +292,14 @@ public class PrefManager {
     return (toolPrefs.getBoolean("showHotspotClasses", false));
   }
   
+  public void setCompressInactiveDumps(boolean value) {
+    toolPrefs.putBoolean("compressInactiveDumps", value);
+  }
+
+  public boolean getCompressInactiveDumps() {
+    return (toolPrefs.getBoolean("compressInactiveDumps", false));
+  }
+  
   public void setHealthLevel(String value) {
     toolPrefs.put("healthLevel", value);
   }
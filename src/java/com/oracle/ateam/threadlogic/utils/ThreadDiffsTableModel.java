@@ -41,6 +41,7 @@ import com.oracle.ateam.threadlogic.ThreadInfo;
 import com.oracle.ateam.threadlogic.ThreadState;
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.logging.Logger;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.tree.DefaultMutableTreeNode;
@@ -321,7 +322,7 @@ public class ThreadDiffsTableModel extends ThreadsTableModel {
 
   private void createProgressMatrixBetweenTDs() {
 
-    Hashtable<String, ThreadInfo> threadMap0 = threadDumpArrList.get(0).getThreadMap();
+    Map<String, ThreadInfo> threadMap0 = threadDumpArrList.get(0).getThreadMap();
 
     for (String threadId : threadMap0.keySet()) {
 
@@ -243,7 +243,7 @@ public class ThreadsTableModel extends AbstractTableModel {
         Object entry = childNode.getUserObject();
         if (entry instanceof ThreadInfo) {
           ThreadInfo ti = (ThreadInfo) entry;
-          columnNames = new String[] { "Name", "Thread Group", "Health", "Advisories", "Composite/Flow ID", "ECID", "Thread-ID", "Native-ID", "State"};
+          columnNames = new String[] { "Name", "Thread Group", "Health", "Advisories", "Composite/Flow ID", "ECID", "Thread-ID", "Native-ID", "State", "CPU (ms)", "CPU Delta (ms)"};
           
           // Create the data once inside ThreadData isntead of repeatedly parsing and recreating data...from advisories/tid/nids...
           elements.add(new ThreadData(ti));  
@@ -279,12 +279,22 @@ public class ThreadsTableModel extends AbstractTableModel {
       case (6): return tidata.getTid(); 
       case (7): return tidata.getNid(); 
       case (8): return tidata.getState();
+      case (9): return getMillis(tidata.getAssocThreadInfo().getCpuTimeMillis());
+      case (10): return getMillis(tidata.getAssocThreadInfo().getCpuDeltaMillis());
       default:
         return null;
     } 
   }
 
-  
+  /**
+   * the cpu times are read from the thread info as the deltas are only set
+   * once the next dump of the log is parsed.
+   * 
+   * @return the millis, null if not known.
+   */
+  private Long getMillis(long millis) {
+    return (millis >= 0) ? Long.valueOf(millis) : null;
+  }
   
   /**
    * get the thread info object at the specified line
@@ -303,6 +313,8 @@ public class ThreadsTableModel extends AbstractTableModel {
   public Class getColumnClass(int columnIndex) {
     if ((columnIndex == 6) || (columnIndex == 7)) {
       return BigInteger.class;
+    } else if ((columnIndex == 9) || (columnIndex == 10)) {
+      return Long.class;
     } else {
       return String.class;
     }